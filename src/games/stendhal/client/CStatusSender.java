@@ -76,6 +76,14 @@ public final class CStatusSender {
 		}
 		action.put("version", version);
 
+		// the client tints the cached zone layers again, when only the zone
+		// attributes change
+		action.put("zone_attribute_update", "");
+
+		// heals and buddy logins are sent as events instead of attributes,
+		// which are removed again in the next turn
+		action.put("transient_events", "");
+
 		// extract the signer of the client, so that we can ask bug
 		// reporters to try again with the official client, if they
 		// are using an unofficial one.
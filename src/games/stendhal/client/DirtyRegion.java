@@ -0,0 +1,200 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The parts of the visible area that need to be drawn again. The area is
+ * tracked in tile sized cells, so that the changed areas of many small
+ * objects merge to a few rectangles that can be drawn efficiently.
+ */
+public final class DirtyRegion {
+	/** Size of a cell in pixels. */
+	private static final int CELL_SIZE = IGameScreen.SIZE_UNIT_PIXELS;
+	/**
+	 * Portion of the visible area that can be dirty before drawing everything
+	 * is considered cheaper.
+	 */
+	private static final double MAX_DIRTY_RATIO = 0.5;
+
+	/** Visible area in world pixel coordinates. */
+	private final Rectangle view = new Rectangle();
+	/** x coordinate of the first cell. */
+	private int firstColumn;
+	/** y coordinate of the first cell. */
+	private int firstRow;
+	/** Number of cell columns. */
+	private int columns;
+	/** Number of cell rows. */
+	private int rows;
+	/** Dirty flags of the cells, row by row. */
+	private boolean[] cells = new boolean[0];
+	/** Number of dirty cells. */
+	private int dirtyCells;
+	/** <code>true</code> if everything needs to be drawn. */
+	private boolean full;
+
+	/**
+	 * Start tracking a new frame.
+	 *
+	 * @param area visible area in world pixel coordinates
+	 */
+	void reset(Rectangle area) {
+		view.setBounds(area);
+		firstColumn = Math.floorDiv(area.x, CELL_SIZE);
+		firstRow = Math.floorDiv(area.y, CELL_SIZE);
+		columns = Math.floorDiv(area.x + area.width - 1, CELL_SIZE) - firstColumn + 1;
+		rows = Math.floorDiv(area.y + area.height - 1, CELL_SIZE) - firstRow + 1;
+		int size = Math.max(0, columns * rows);
+		if (cells.length < size) {
+			cells = new boolean[size];
+		} else {
+			Arrays.fill(cells, 0, size, false);
+		}
+		dirtyCells = 0;
+		full = false;
+	}
+
+	/**
+	 * Mark everything dirty.
+	 */
+	public void setFull() {
+		full = true;
+	}
+
+	/**
+	 * Check if everything needs to be drawn, either because it was requested,
+	 * or because most of the area is dirty anyway.
+	 *
+	 * @return <code>true</code> if the whole area should be drawn
+	 */
+	boolean isFull() {
+		return full || (dirtyCells > MAX_DIRTY_RATIO * columns * rows);
+	}
+
+	/**
+	 * Check if nothing needs to be drawn.
+	 *
+	 * @return <code>true</code> if the area is clean
+	 */
+	boolean isEmpty() {
+		return !full && (dirtyCells == 0);
+	}
+
+	/**
+	 * Mark an area dirty.
+	 *
+	 * @param area area in world pixel coordinates. <code>null</code> marks
+	 * 	everything dirty
+	 */
+	public void add(Rectangle area) {
+		if (area == null) {
+			full = true;
+		} else {
+			add(area.x, area.y, area.width, area.height);
+		}
+	}
+
+	/**
+	 * Mark an area dirty.
+	 *
+	 * @param x x coordinate in world pixels
+	 * @param y y coordinate in world pixels
+	 * @param width width in pixels
+	 * @param height height in pixels
+	 */
+	public void add(int x, int y, int width, int height) {
+		if (full || (width <= 0) || (height <= 0)) {
+			return;
+		}
+		int startColumn = Math.max(Math.floorDiv(x, CELL_SIZE) - firstColumn, 0);
+		int endColumn = Math.min(Math.floorDiv(x + width - 1, CELL_SIZE) - firstColumn, columns - 1);
+		int startRow = Math.max(Math.floorDiv(y, CELL_SIZE) - firstRow, 0);
+		int endRow = Math.min(Math.floorDiv(y + height - 1, CELL_SIZE) - firstRow, rows - 1);
+		for (int row = startRow; row <= endRow; row++) {
+			int index = row * columns + startColumn;
+			for (int column = startColumn; column <= endColumn; column++) {
+				if (!cells[index]) {
+					cells[index] = true;
+					dirtyCells++;
+				}
+				index++;
+			}
+		}
+	}
+
+	/**
+	 * Get the dirty area as rectangles. Runs of dirty cells on a row are
+	 * joined, and so are the identical runs on consecutive rows.
+	 *
+	 * @return dirty rectangles in world pixel coordinates, clipped to the
+	 * 	visible area
+	 */
+	List<Rectangle> getRectangles() {
+		List<Rectangle> result = new ArrayList<Rectangle>();
+		if (full) {
+			result.add(new Rectangle(view));
+			return result;
+		}
+		// The rectangles that can still grow downwards, by starting column
+		Rectangle[] open = new Rectangle[columns];
+		for (int row = 0; row < rows; row++) {
+			int column = 0;
+			while (column < columns) {
+				int index = row * columns + column;
+				if (!cells[index]) {
+					if (open[column] != null) {
+						result.add(open[column]);
+						open[column] = null;
+					}
+					column++;
+					continue;
+				}
+				int start = column;
+				while ((column < columns) && cells[row * columns + column]) {
+					column++;
+				}
+				int width = (column - start) * CELL_SIZE;
+				Rectangle rect = open[start];
+				if ((rect != null) && (rect.width == width)) {
+					rect.height += CELL_SIZE;
+				} else {
+					if (rect != null) {
+						result.add(rect);
+					}
+					open[start] = new Rectangle((firstColumn + start) * CELL_SIZE,
+							(firstRow + row) * CELL_SIZE, width, CELL_SIZE);
+				}
+				// Runs starting inside this one can not continue
+				for (int i = start + 1; i < column; i++) {
+					if (open[i] != null) {
+						result.add(open[i]);
+						open[i] = null;
+					}
+				}
+			}
+		}
+		for (Rectangle rect : open) {
+			if (rect != null) {
+				result.add(rect);
+			}
+		}
+		for (Rectangle rect : result) {
+			Rectangle.intersect(rect, view, rect);
+		}
+		return result;
+	}
+}
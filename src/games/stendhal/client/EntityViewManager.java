@@ -14,7 +14,6 @@ package games.stendhal.client;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -45,9 +44,20 @@ class EntityViewManager {
 
 	/**
 	 * The entity views. Modified in the game loop and read in the EDT.
-	 * Remember to synchronize.
+	 * Remember to synchronize. Kept in drawing order by the EDT; new views are
+	 * added to the end, and moved to their place on the next frame.
 	 */
 	private final List<EntityView<IEntity>> views = new ArrayList<EntityView<IEntity>>();
+	/**
+	 * Removed views whose screen area has not been reported yet. Modified in
+	 * the game loop and read in the EDT. Synchronized with the views.
+	 */
+	private final List<EntityView<IEntity>> removedViews = new ArrayList<EntityView<IEntity>>();
+	/**
+	 * <code>true</code> if the game screen asks for the changes. The removed
+	 * views are kept only then.
+	 */
+	private volatile boolean reportingChanges;
 	/** Entities on the screen. */
 	private final List<EntityView<IEntity>> visibleViews = new ArrayList<EntityView<IEntity>>();
 
@@ -76,11 +86,11 @@ class EntityViewManager {
 	}
 
 	/**
-	 * Add an entity view.
+	 * Add an entity view. Must be called only from the game loop thread.
 	 *
 	 * @param view new view
 	 */
-	private void addEntityView(EntityView<IEntity> view) {
+	void addEntityView(EntityView<IEntity> view) {
 		synchronized (views) {
 			views.add(view);
 		}
@@ -234,7 +244,9 @@ class EntityViewManager {
 	 */
 	private void removeEntityView(EntityView<IEntity> view) {
 		synchronized (views) {
-			views.remove(view);
+			if (views.remove(view) && reportingChanges) {
+				removedViews.add(view);
+			}
 			view.release();
 		}
 	}
@@ -262,8 +274,13 @@ class EntityViewManager {
 	void prepareViews(Rectangle area, boolean setVisibleArea) {
 		visibleViews.clear();
 		synchronized (views) {
-			for (EntityView<IEntity> view : views) {
+			for (int i = 0; i < views.size(); i++) {
+				EntityView<IEntity> view = views.get(i);
 				view.applyChanges();
+				moveToPlace(i);
+			}
+			// Already in drawing order
+			for (EntityView<IEntity> view : views) {
 				if (area.intersects(view.getArea())) {
 					visibleViews.add(view);
 					if (setVisibleArea) {
@@ -272,8 +289,56 @@ class EntityViewManager {
 				}
 			}
 		}
+	}
+
+	/**
+	 * Move a view to its place in the drawing order among the views before
+	 * it. The views before it must be in order. Usually a view is already in
+	 * its place, so this costs only one comparison. Views that were added, or
+	 * moved past others, are placed with a binary search.
+	 *
+	 * @param index index of the view in the view list
+	 */
+	private void moveToPlace(int index) {
+		if (index == 0) {
+			return;
+		}
+		EntityView<IEntity> view = views.get(index);
+		if (entityViewComparator.compare(views.get(index - 1), view) <= 0) {
+			return;
+		}
+		int low = 0;
+		int high = index - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (entityViewComparator.compare(views.get(mid), view) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		views.remove(index);
+		views.add(low, view);
+	}
 
-		Collections.sort(visibleViews, entityViewComparator);
+	/**
+	 * Mark the screen areas that changed since the previous call. Must be
+	 * called only from the event dispatch thread, after
+	 * {@link #prepareViews(Rectangle, boolean)}.
+	 *
+	 * @param region region to be updated
+	 */
+	void reportChanges(DirtyRegion region) {
+		reportingChanges = true;
+		synchronized (views) {
+			for (EntityView<IEntity> view : removedViews) {
+				view.reportChanges(region);
+			}
+			removedViews.clear();
+			for (EntityView<IEntity> view : views) {
+				view.reportChanges(region);
+			}
+		}
 	}
 
 	/**
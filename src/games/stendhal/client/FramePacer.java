@@ -0,0 +1,168 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Keeps the game loop frames at a steady rate.
+ * <p>
+ * The frames are scheduled to fixed deadlines measured with
+ * <code>System.nanoTime()</code>, so that time lost in one frame is
+ * compensated in the next instead of accumulating. If the loop falls more
+ * than a frame behind, the missed frames are skipped rather than run in a
+ * burst. While the loop is idle, for example when the game screen is not
+ * visible, the frames use the slower idle rate.
+ * <p>
+ * The old millisecond timer based pacing can be used with
+ * -Dstendhal.nanopacing=false for comparison.
+ */
+public final class FramePacer {
+	private static final Logger logger = Logger.getLogger(FramePacer.class);
+
+	/** Longest time the legacy pacing sleeps at once. */
+	private static final long MAX_LEGACY_WAIT = 100L;
+
+	private final boolean precise;
+	private final long frameNanos;
+	private final long idleFrameNanos;
+
+	/** Whether the slower idle rate should be used. */
+	private volatile boolean idle;
+	/** Start time of the current frame. */
+	private long frameStart;
+	/** Deadline of the current frame. */
+	private long deadline;
+	/** Part of the frame time not yet reported in whole milliseconds. */
+	private long deltaRemainder;
+
+	/**
+	 * Create a new FramePacer.
+	 *
+	 * @param fps normal frame rate
+	 * @param idleFps frame rate when idle
+	 * @param precise <code>true</code> if the frames should be paced with
+	 * 	nanosecond deadlines, <code>false</code> for the old millisecond
+	 * 	timer based pacing
+	 */
+	public FramePacer(int fps, int idleFps, boolean precise) {
+		this.precise = precise;
+		frameNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, fps);
+		idleFrameNanos = Math.max(frameNanos, TimeUnit.SECONDS.toNanos(1) / Math.max(1, idleFps));
+	}
+
+	/**
+	 * Set whether the loop is idle. Can be called from any thread.
+	 *
+	 * @param idle <code>true</code> if the idle frame rate should be used
+	 */
+	public void setIdle(boolean idle) {
+		this.idle = idle;
+	}
+
+	/**
+	 * Check if the idle frame rate is used.
+	 *
+	 * @return <code>true</code> if the loop is idle
+	 */
+	public boolean isIdle() {
+		return idle;
+	}
+
+	/**
+	 * Get the length of the next frame.
+	 *
+	 * @return frame length in nanoseconds
+	 */
+	long getFrameNanos() {
+		return idle ? idleFrameNanos : frameNanos;
+	}
+
+	/**
+	 * Called at the start of every frame.
+	 *
+	 * @return time since the start of the previous frame in milliseconds
+	 */
+	public int startFrame() {
+		if (!precise) {
+			long now = System.currentTimeMillis();
+			int delta = (frameStart != 0) ? (int) (now - frameStart) : 0;
+			frameStart = now;
+			return delta;
+		}
+		long now = System.nanoTime();
+		if (frameStart == 0) {
+			frameStart = now;
+			deadline = now;
+			return 0;
+		}
+		long elapsed = now - frameStart + deltaRemainder;
+		frameStart = now;
+		int delta = (int) TimeUnit.NANOSECONDS.toMillis(elapsed);
+		deltaRemainder = elapsed - TimeUnit.MILLISECONDS.toNanos(delta);
+		return delta;
+	}
+
+	/**
+	 * Wait until the next frame should start.
+	 */
+	public void waitForNextFrame() {
+		if (!precise) {
+			waitLegacy();
+			return;
+		}
+
+		long length = getFrameNanos();
+		deadline += length;
+		long now = System.nanoTime();
+		if (now - deadline > length) {
+			// Too far behind. Skip the missed frames instead of trying to
+			// catch up
+			deadline = now;
+			return;
+		}
+		long wait = deadline - now;
+		while (wait > 0) {
+			LockSupport.parkNanos(this, wait);
+			if (Thread.interrupted()) {
+				logger.warn("Frame wait interrupted");
+				return;
+			}
+			wait = deadline - System.nanoTime();
+		}
+	}
+
+	/**
+	 * The old pacing: sleep the rest of the frame length, with a millisecond
+	 * timer.
+	 */
+	private void waitLegacy() {
+		long frameLength = TimeUnit.NANOSECONDS.toMillis(getFrameNanos());
+		long wait = frameLength + frameStart - System.currentTimeMillis();
+
+		if (wait > 0) {
+			if (wait > MAX_LEGACY_WAIT) {
+				logger.info("Waiting " + wait + " ms");
+				wait = MAX_LEGACY_WAIT;
+			}
+
+			try {
+				Thread.sleep(wait);
+			} catch (final InterruptedException e) {
+				logger.error(e, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,345 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Collects the time spent in the main phases of the client frames. The
+ * timings can be shown on top of the game screen, and recorded to a file that
+ * can be attached to bug reports. Nothing is measured while neither is
+ * enabled.
+ * <p>
+ * The game screen is painted in the event dispatch thread, so the painting
+ * phases are counted to the game loop frame during which they finished.
+ */
+public final class FrameProfiler {
+	private static final Logger logger = Logger.getLogger(FrameProfiler.class);
+
+	/** Measured phases. */
+	public enum Phase {
+		/** Handling the perceptions from the server. */
+		PERCEPTION("perception"),
+		/** Updating the game objects. */
+		OBJECTS("objects"),
+		/** Applying the entity changes to the views, and ordering them. */
+		VIEWS("views"),
+		/** Drawing the map layers and the weather. */
+		LAYERS("layers"),
+		/** Drawing the entity views and their status bars. */
+		ENTITIES("entities"),
+		/** Drawing the screen wide effects. */
+		EFFECTS("effects"),
+		/** Drawing the text boxes and the emojis. */
+		TEXT("text"),
+		/** All of the game screen painting. */
+		PAINT("paint");
+
+		private final String label;
+
+		Phase(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * Get the name used in the overlay and the recordings.
+		 *
+		 * @return phase name
+		 */
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	/** Number of frames used for the overlay statistics. */
+	private static final int HISTORY = 100;
+	private static final Phase[] PHASES = Phase.values();
+	/** Index of the frame length in the history entries. */
+	private static final int FRAME = PHASES.length;
+
+	private static final FrameProfiler instance = new FrameProfiler();
+
+	/** Times of the current frame in nanoseconds. */
+	private final AtomicLongArray current = new AtomicLongArray(PHASES.length);
+	/** Frame lengths and phase times of the latest frames. */
+	private final long[][] history = new long[HISTORY][PHASES.length + 1];
+	/** Next history slot. */
+	private int historyIndex;
+	/** Number of filled history slots. */
+	private int historySize;
+	/** Time of the previous frame end, or 0 if there is none. */
+	private long lastFrame;
+
+	private volatile boolean enabled;
+	private volatile boolean overlay;
+
+	/** Destination of the recorded frames, or <code>null</code>. */
+	private Writer recording;
+	/** Name of the recording file. */
+	private String recordingName;
+	/** Number of recorded frames. */
+	private int recordedFrames;
+
+	/**
+	 * Get the profiler instance.
+	 *
+	 * @return profiler
+	 */
+	public static FrameProfiler get() {
+		return instance;
+	}
+
+	/**
+	 * Start timing a phase.
+	 *
+	 * @return start time to be passed to {@link #end(Phase, long)}
+	 */
+	public long start() {
+		if (enabled) {
+			return System.nanoTime();
+		}
+		return 0;
+	}
+
+	/**
+	 * End timing a phase. The time is added to the phase time of the current
+	 * frame.
+	 *
+	 * @param phase phase
+	 * @param start value returned by {@link #start()}
+	 */
+	public void end(Phase phase, long start) {
+		if (start != 0) {
+			current.addAndGet(phase.ordinal(), System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Called at the end of every game loop iteration.
+	 */
+	public void endFrame() {
+		if (!enabled) {
+			lastFrame = 0;
+			return;
+		}
+		long now = System.nanoTime();
+		synchronized (this) {
+			long[] entry = history[historyIndex];
+			for (int i = 0; i < PHASES.length; i++) {
+				entry[i] = current.getAndSet(i, 0);
+			}
+			entry[FRAME] = (lastFrame != 0) ? now - lastFrame : 0;
+			historyIndex = (historyIndex + 1) % HISTORY;
+			historySize = Math.min(historySize + 1, HISTORY);
+			if (recording != null) {
+				record(entry);
+			}
+		}
+		lastFrame = now;
+	}
+
+	/**
+	 * Write a frame to the recording as microseconds.
+	 *
+	 * @param entry phase times and the frame length
+	 */
+	private void record(long[] entry) {
+		StringBuilder line = new StringBuilder();
+		line.append(entry[FRAME] / 1000);
+		for (int i = 0; i < PHASES.length; i++) {
+			line.append(',');
+			line.append(entry[i] / 1000);
+		}
+		line.append('\n');
+		try {
+			recording.write(line.toString());
+			recordedFrames++;
+		} catch (IOException e) {
+			logger.error("Failed to write frame recording " + recordingName, e);
+			closeRecording();
+		}
+	}
+
+	/**
+	 * Toggle showing the timings on the game screen.
+	 *
+	 * @return <code>true</code> if the overlay is now shown
+	 */
+	public boolean toggleOverlay() {
+		overlay = !overlay;
+		updateEnabled();
+		return overlay;
+	}
+
+	/**
+	 * Check if the timings should be shown on the game screen.
+	 *
+	 * @return <code>true</code> if the overlay should be drawn
+	 */
+	public boolean isOverlayShown() {
+		return overlay;
+	}
+
+	/**
+	 * Check if frames are being recorded.
+	 *
+	 * @return <code>true</code> if recording
+	 */
+	public synchronized boolean isRecording() {
+		return recording != null;
+	}
+
+	/**
+	 * Start recording the frames to a new file in the game folder.
+	 *
+	 * @return name of the recording file
+	 * @throws IOException if the file can not be created
+	 */
+	public String startRecording() throws IOException {
+		String time = new SimpleDateFormat("yyyy.MM.dd-HH.mm.ss").format(new Date());
+		File file = new File(stendhal.getGameFolder() + "frames-" + time + ".csv");
+		startRecording(file, stendhal.GAME_NAME + " " + stendhal.VERSION);
+		return file.getPath();
+	}
+
+	/**
+	 * Start recording the frames.
+	 *
+	 * @param file destination file
+	 * @param client client description for the header
+	 * @throws IOException if the file can not be created
+	 */
+	synchronized void startRecording(File file, String client) throws IOException {
+		closeRecording();
+		recording = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+				StandardCharsets.UTF_8));
+		recordingName = file.getPath();
+		recordedFrames = 0;
+		recording.write("# " + client + ", Java " + System.getProperty("java.version")
+				+ ", " + System.getProperty("os.name") + " " + System.getProperty("os.version")
+				+ ", times in microseconds\n");
+		StringBuilder header = new StringBuilder("frame");
+		for (Phase phase : PHASES) {
+			header.append(',');
+			header.append(phase.getLabel());
+		}
+		header.append('\n');
+		recording.write(header.toString());
+		updateEnabled();
+	}
+
+	/**
+	 * Stop recording the frames.
+	 *
+	 * @return description of the finished recording, or <code>null</code>
+	 * 	if there was no recording
+	 */
+	public synchronized String stopRecording() {
+		if (recording == null) {
+			return null;
+		}
+		String result = recordedFrames + " frames recorded to " + recordingName;
+		closeRecording();
+		return result;
+	}
+
+	/**
+	 * Close the recording file.
+	 */
+	private void closeRecording() {
+		if (recording != null) {
+			try {
+				recording.close();
+			} catch (IOException e) {
+				logger.error("Failed to close frame recording " + recordingName, e);
+			}
+			recording = null;
+		}
+		updateEnabled();
+	}
+
+	/**
+	 * Enable measuring if the timings are shown or recorded.
+	 */
+	private synchronized void updateEnabled() {
+		enabled = overlay || (recording != null);
+	}
+
+	/**
+	 * Draw the average and maximum phase times of the latest frames.
+	 *
+	 * @param g graphics
+	 */
+	public void drawOverlay(Graphics2D g) {
+		String[] lines = new String[PHASES.length + 2];
+		synchronized (this) {
+			lines[0] = String.format(Locale.ENGLISH, "%-10s %6s %6s", "ms", "avg", "max");
+			lines[1] = formatLine("frame", FRAME);
+			for (Phase phase : PHASES) {
+				lines[phase.ordinal() + 2] = formatLine(phase.getLabel(), phase.ordinal());
+			}
+		}
+
+		Font oldFont = g.getFont();
+		g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+		FontMetrics metrics = g.getFontMetrics();
+		int lineHeight = metrics.getHeight();
+		int width = 0;
+		for (String line : lines) {
+			width = Math.max(width, metrics.stringWidth(line));
+		}
+		g.setColor(new Color(0, 0, 0, 160));
+		g.fillRect(4, 4, width + 8, lines.length * lineHeight + 8);
+		g.setColor(Color.WHITE);
+		int y = 8 + metrics.getAscent();
+		for (String line : lines) {
+			g.drawString(line, 8, y);
+			y += lineHeight;
+		}
+		g.setFont(oldFont);
+	}
+
+	/**
+	 * Format the average and maximum of a history column.
+	 *
+	 * @param label line label
+	 * @param column history column
+	 * @return formatted line
+	 */
+	private String formatLine(String label, int column) {
+		long sum = 0;
+		long max = 0;
+		for (int i = 0; i < historySize; i++) {
+			long value = history[i][column];
+			sum += value;
+			max = Math.max(max, value);
+		}
+		double average = (historySize > 0) ? sum / (double) historySize : 0;
+		return String.format(Locale.ENGLISH, "%-10s %6.2f %6.2f", label, average / 1000000, max / 1000000.0);
+	}
+}
@@ -18,11 +18,27 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.log4j.Logger;
 
+import games.stendhal.client.sprite.SpriteCache;
+
 /**
  * Game loop thread.
  */
 public class GameLoop {
 	private static final Logger logger = Logger.getLogger(GameLoop.class);
+	/**
+	 * Frame rate cap. Can be changed with -Dstendhal.fps=n.
+	 */
+	private static final int FPS = Integer.getInteger("stendhal.fps", stendhal.FPS_LIMIT).intValue();
+	/**
+	 * Frame rate when the game screen is hidden, or does not change. Can be
+	 * changed with -Dstendhal.fps.idle=n.
+	 */
+	private static final int IDLE_FPS = Integer.getInteger("stendhal.fps.idle", 10).intValue();
+	/**
+	 * Pace the frames with nanosecond deadlines. Can be disabled with
+	 * -Dstendhal.nanopacing=false for comparing with the old timing.
+	 */
+	private static final boolean NANO_PACING = !"false".equals(System.getProperty("stendhal.nanopacing"));
 
 	private static class Holder {
 		static GameLoop instance = new GameLoop();
@@ -41,6 +57,8 @@ public class GameLoop {
 	 * <code>false</code>, when it should continue to the cleanup tasks.
 	 */
 	private volatile boolean running;
+	/** Frame timing. */
+	private final FramePacer pacer = new FramePacer(FPS, IDLE_FPS, NANO_PACING);
 
 	/**
 	 * Create a new GameLoop.
@@ -122,11 +140,20 @@ public class GameLoop {
 		temporaryTasks.add(task);
 	}
 
+	/**
+	 * Set whether the client can run at the slower idle frame rate, for
+	 * example because the game screen is not visible.
+	 *
+	 * @param idle <code>true</code> if the idle frame rate can be used
+	 */
+	public void setIdle(boolean idle) {
+		pacer.setIdle(idle);
+	}
+
 	/**
 	 * The actual game loop.
 	 */
 	private void loop() {
-		final int frameLength = (int) (1000.0 / stendhal.FPS_LIMIT);
 		int fps = 0;
 
 		// keep looping until the game ends
@@ -136,9 +163,8 @@ public class GameLoop {
 		while (running) {
 			try {
 				fps++;
-				final long now = System.currentTimeMillis();
-				final int delta = (int) (now - refreshTime);
-				refreshTime = now;
+				final int delta = pacer.startFrame();
+				refreshTime = System.currentTimeMillis();
 
 				// process the persistent task
 				persistentTask.run(delta);
@@ -150,6 +176,8 @@ public class GameLoop {
 					tempTask = temporaryTasks.poll();
 				}
 
+				FrameProfiler.get().endFrame();
+
 				if (logger.isDebugEnabled()) {
 					reportClientInfo(refreshTime, lastFpsTime, fps);
 					fps = 0;
@@ -157,24 +185,7 @@ public class GameLoop {
 				}
 
 				logger.debug("Start sleeping");
-				// we know how long we want per screen refresh (40ms) then
-				// we add the refresh time and subtract the current time
-				// leaving us with the amount we still need to sleep.
-				long wait = frameLength + refreshTime - System.currentTimeMillis();
-
-				if (wait > 0) {
-					if (wait > 100L) {
-						logger.info("Waiting " + wait + " ms");
-						wait = 100L;
-					}
-
-					try {
-						Thread.sleep(wait);
-					} catch (final InterruptedException e) {
-						logger.error(e, e);
-					}
-				}
-
+				pacer.waitForNextFrame();
 				logger.debug("End sleeping");
 			} catch (RuntimeException e) {
 				logger.error(e, e);
@@ -197,6 +208,9 @@ public class GameLoop {
 
 			logger.debug("Total/Used memory: " + totalMemory + "/"
 					+ (totalMemory - freeMemory));
+			if (logger.isDebugEnabled()) {
+				logger.debug(SpriteCache.get().getStatistics());
+			}
 		}
 	}
 
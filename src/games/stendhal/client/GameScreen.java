@@ -24,6 +24,7 @@ import java.awt.Toolkit;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.KeyEvent;
+import java.awt.geom.Area;
 import java.awt.geom.Point2D;
 import java.awt.image.VolatileImage;
 import java.util.Collection;
@@ -99,6 +100,14 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 	 * indicator icon.
 	 */
 	private static final int OFFLINE_MARGIN = 10;
+	/**
+	 * Keep the drawn scene, and draw again only the parts that changed when
+	 * the view does not move. Can be disabled with
+	 * -Dstendhal.dirtyregions=false.
+	 */
+	private static final boolean DRAW_CHANGES = !"false".equals(System.getProperty("stendhal.dirtyregions"));
+	/** Number of unchanged frames after which the scene is considered static. */
+	private static final int STATIC_FRAMES = 5;
 
 	private static final Sprite offlineIcon;
 
@@ -168,9 +177,26 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 	 */
 	private boolean useTripleBuffer;
 	/**
-	 * Buffer for drawing the ground layers when the screen is scaled.
+	 * Buffer for drawing the ground layers when the screen is scaled, or when
+	 * only the changes are drawn.
 	 */
 	private VolatileImage buffer;
+	/**
+	 * <code>true</code> if the buffer contains the scene drawn at
+	 * bufferViewX, bufferViewY. Cleared when something changes that the views
+	 * do not report, such as the zone.
+	 */
+	private volatile boolean bufferValid;
+	/** Screen view x coordinate of the scene in the buffer. */
+	private int bufferViewX;
+	/** Screen view y coordinate of the scene in the buffer. */
+	private int bufferViewY;
+	/** Changed areas of the scene. */
+	private final DirtyRegion dirtyRegion = new DirtyRegion();
+	/** Number of scene pixels drawn for the latest frame. */
+	private int redrawnPixels;
+	/** Number of the latest frames that did not change the scene. */
+	private volatile int unchangedFrames;
 
 	static {
 		offlineIcon = SpriteStore.get().getSprite("data/gui/offline.png");
@@ -267,6 +293,7 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 		Dimension screenSize = stendhal.getDisplaySize();
 		sw = getWidth();
 		sh = getHeight();
+		bufferValid = false;
 		if (useScaling) {
 			double xScale = sw / screenSize.getWidth();
 			double yScale = sh / screenSize.getHeight();
@@ -548,6 +575,8 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 			return;
 		}
 
+		final FrameProfiler profiler = FrameProfiler.get();
+		final long paintStart = profiler.start();
 		Graphics2D g2d = (Graphics2D) g;
 
 		Graphics2D graphics = (Graphics2D) g2d.create();
@@ -560,26 +589,42 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 		int xAdjust = -GameScreenSpriteHelper.getScreenViewX();
 		int yAdjust = -GameScreenSpriteHelper.getScreenViewY();
 
-		if (useTripleBuffer) {
-			/*
-			 * Do the scaling in one pass to avoid artifacts at tile borders.
-			 */
-			final double scale = GameScreenSpriteHelper.getScale();
-			graphics.scale(scale, scale);
+		if (useTripleBuffer || (DRAW_CHANGES && (sw > 0) && (sh > 0))) {
+			int width = sw;
+			int height = sh;
+			if (useTripleBuffer) {
+				/*
+				 * Do the scaling in one pass to avoid artifacts at tile borders.
+				 */
+				final double scale = GameScreenSpriteHelper.getScale();
+				graphics.scale(scale, scale);
+				graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				width = stendhal.getDisplaySize().width;
+				height = stendhal.getDisplaySize().height;
+			}
 			graphics.translate(xAdjust, yAdjust);
-			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-			int width = stendhal.getDisplaySize().width;
-			int height = stendhal.getDisplaySize().height;
 			do {
 				GraphicsConfiguration gc = getGraphicsConfiguration();
-				if ((buffer == null) || (buffer.validate(gc) == VolatileImage.IMAGE_INCOMPATIBLE)) {
+				int status = VolatileImage.IMAGE_INCOMPATIBLE;
+				if ((buffer != null) && (buffer.getWidth() == width) && (buffer.getHeight() == height)) {
+					status = buffer.validate(gc);
+				}
+				if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
 					buffer = createVolatileImage(width, height);
 				}
+				if (status != VolatileImage.IMAGE_OK) {
+					// The old scene is gone
+					bufferValid = false;
+				}
 				Graphics2D gr = buffer.createGraphics();
-				gr.setColor(Color.BLACK);
-				gr.fillRect(0, 0, width, height);
-				gr.setClip(0, 0, width, height);
-				renderScene(gr, xAdjust, yAdjust, fullRedraw);
+				if (DRAW_CHANGES) {
+					renderChanges(gr, xAdjust, yAdjust, width, height);
+				} else {
+					gr.setColor(Color.BLACK);
+					gr.fillRect(0, 0, width, height);
+					gr.setClip(0, 0, width, height);
+					renderScene(gr, xAdjust, yAdjust, fullRedraw);
+				}
 				graphics.drawImage(buffer, -xAdjust, -yAdjust, null);
 				gr.dispose();
 			} while (buffer.contentsLost());
@@ -588,10 +633,16 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 		}
 
 		// Don't scale text to keep it readable
+		final long textStart = profiler.start();
 		drawText(g2d);
 		drawEmojis(g2d);
+		profiler.end(FrameProfiler.Phase.TEXT, textStart);
 
 		paintOffLineIfNeeded(g2d);
+		profiler.end(FrameProfiler.Phase.PAINT, paintStart);
+		if (profiler.isOverlayShown()) {
+			profiler.drawOverlay(g2d);
+		}
 
 		// Ask window manager to not skip frame drawing
 		Toolkit.getDefaultToolkit().sync();
@@ -613,12 +664,115 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 		// know about converting the position to screen
 		g.translate(xAdjust, yAdjust);
 
+		Rectangle clip = g.getClipBounds();
+		final FrameProfiler profiler = FrameProfiler.get();
+		final long viewsStart = profiler.start();
+		viewManager.prepareViews(clip, fullRedraw);
+		profiler.end(FrameProfiler.Phase.VIEWS, viewsStart);
+		drawScene(g, clip);
+	}
+
+	/**
+	 * Draw the changed parts of the scene to the buffer that contains the
+	 * previous frame. Everything is drawn if the view moved, or the buffer
+	 * is not usable.
+	 *
+	 * @param g buffer graphics
+	 * @param xAdjust x coordinate offset
+	 * @param yAdjust y coordinate offset
+	 * @param width buffer width
+	 * @param height buffer height
+	 */
+	private void renderChanges(Graphics2D g, int xAdjust, int yAdjust, int width, int height) {
+		g.translate(xAdjust, yAdjust);
+		final Rectangle view = new Rectangle(-xAdjust, -yAdjust, width, height);
+
+		final FrameProfiler profiler = FrameProfiler.get();
+		final long viewsStart = profiler.start();
+		viewManager.prepareViews(view, true);
+		dirtyRegion.reset(view);
+		if (!bufferValid || (view.x != bufferViewX) || (view.y != bufferViewY)) {
+			dirtyRegion.setFull();
+		}
+		// Always collect the changes, so that they do not pile up
+		viewManager.reportChanges(dirtyRegion);
+
+		int startTileX = Math.max(0, view.x / IGameScreen.SIZE_UNIT_PIXELS);
+		int startTileY = Math.max(0, view.y / IGameScreen.SIZE_UNIT_PIXELS);
+		int layerWidth = width / IGameScreen.SIZE_UNIT_PIXELS + 2;
+		int layerHeight = height / IGameScreen.SIZE_UNIT_PIXELS + 2;
+		final String set = gameLayers.getAreaName();
+		gameLayers.markAnimatedLayers(dirtyRegion, set, "floor_bundle", startTileX,
+				startTileY, layerWidth, layerHeight, "blend_ground", "0_floor",
+				"1_terrain", "2_object");
+		gameLayers.markAnimatedLayers(dirtyRegion, set, "roof_bundle", startTileX,
+				startTileY, layerWidth, layerHeight, "blend_roof", "3_roof",
+				"4_roof_add");
+		gameLayers.markAnimatedWeather(dirtyRegion, startTileX, startTileY, layerWidth, layerHeight);
+		for (EffectLayer effect : globalEffects) {
+			effect.markAnimated(dirtyRegion, startTileX, startTileY, layerWidth, layerHeight);
+		}
+		profiler.end(FrameProfiler.Phase.VIEWS, viewsStart);
+
+		redrawnPixels = 0;
+		if (dirtyRegion.isFull()) {
+			g.setClip(view);
+			redrawnPixels = width * height;
+		} else if (!dirtyRegion.isEmpty()) {
+			// Draw all the changed areas in one pass, so that views that are
+			// split between them do not get culled
+			Area changed = new Area();
+			for (Rectangle r : dirtyRegion.getRectangles()) {
+				changed.add(new Area(r));
+				redrawnPixels += r.width * r.height;
+			}
+			g.setClip(changed);
+		}
+		if (redrawnPixels > 0) {
+			g.setColor(Color.BLACK);
+			g.fill(g.getClip());
+			drawScene(g, g.getClipBounds());
+			unchangedFrames = 0;
+		} else {
+			unchangedFrames++;
+		}
+		bufferViewX = view.x;
+		bufferViewY = view.y;
+		bufferValid = true;
+	}
+
+	/**
+	 * Get the number of scene pixels that were drawn for the latest frame,
+	 * when only the changed parts of the screen are drawn.
+	 *
+	 * @return number of drawn pixels
+	 */
+	public int getRedrawnPixels() {
+		return redrawnPixels;
+	}
+
+	/**
+	 * Check if the scene has not changed during the latest frames. This is
+	 * known only when the changed parts of the screen are tracked.
+	 *
+	 * @return <code>true</code> if the scene is static
+	 */
+	public boolean isStatic() {
+		return unchangedFrames >= STATIC_FRAMES;
+	}
+
+	/**
+	 * Draw the scene layers and entities within the clip area.
+	 *
+	 * @param g graphics, translated to world pixel coordinates
+	 * @param clip clip bounds
+	 */
+	private void drawScene(Graphics2D g, Rectangle clip) {
 		// Restrict the drawn area by the clip bounds. Smaller than gamescreen
 		// draw requests can come for example from dragging items
 		int startTileX = Math.max(0, (int) getViewX());
 		int startTileY = Math.max(0, (int) getViewY());
 
-		Rectangle clip = g.getClipBounds();
 		startTileX = Math.max(startTileX, clip.x / IGameScreen.SIZE_UNIT_PIXELS);
 		startTileY = Math.max(startTileY, clip.y / IGameScreen.SIZE_UNIT_PIXELS);
 		int layerWidth = getViewWidth();
@@ -627,24 +781,32 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 		layerWidth = Math.min(layerWidth, clip.width / IGameScreen.SIZE_UNIT_PIXELS) + 2;
 		layerHeight = Math.min(layerHeight, clip.height / IGameScreen.SIZE_UNIT_PIXELS) + 2;
 
-		viewManager.prepareViews(clip, fullRedraw);
-
+		final FrameProfiler profiler = FrameProfiler.get();
 		final String set = gameLayers.getAreaName();
+		long start = profiler.start();
 		gameLayers.drawLayers(g, set, "floor_bundle", startTileX,
 				startTileY, layerWidth, layerHeight, "blend_ground", "0_floor",
 				"1_terrain", "2_object");
+		profiler.end(FrameProfiler.Phase.LAYERS, start);
 
+		start = profiler.start();
 		viewManager.draw(g);
+		profiler.end(FrameProfiler.Phase.ENTITIES, start);
 
+		start = profiler.start();
 		gameLayers.drawLayers(g, set, "roof_bundle", startTileX,
 				startTileY, layerWidth, layerHeight, "blend_roof", "3_roof",
 				"4_roof_add");
 		gameLayers.drawWeather(g, startTileX, startTileY, layerWidth, layerHeight);
+		profiler.end(FrameProfiler.Phase.LAYERS, start);
 
 		// Draw the top portion screen entities (such as HP/title bars).
+		start = profiler.start();
 		viewManager.drawTop(g);
+		profiler.end(FrameProfiler.Phase.ENTITIES, start);
 		// Effects get drawn even above title bars, so that darkening and such work
 		// as expected
+		start = profiler.start();
 		Iterator<EffectLayer> it = globalEffects.iterator();
 		while (it.hasNext()) {
 			EffectLayer eff = it.next();
@@ -654,6 +816,7 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 				it.remove();
 			}
 		}
+		profiler.end(FrameProfiler.Phase.EFFECTS, start);
 	}
 
 	/**
@@ -986,17 +1149,20 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 
 	@Override
 	public void onZoneUpdate(Zone zone) {
+		bufferValid = false;
 		viewManager.resetViews();
 	}
 
 	@Override
 	public void onZoneChange(Zone zone) {
 		removeAllObjects();
+		bufferValid = false;
 		SwingUtilities.invokeLater(globalEffects::clear);
 	}
 
 	@Override
 	public void onZoneChangeCompleted(final Zone zone) {
+		bufferValid = false;
 		SwingUtilities.invokeLater(() -> setMaxWorldSize(zone.getWidth(), zone.getHeight()));
 	}
 
@@ -54,6 +54,19 @@ public abstract class LayerRenderer {
 	 */
 	public abstract void draw(Graphics g, int x, int y, int w, int h);
 
+	/**
+	 * Mark the parts of an area that look different on every frame, such as
+	 * animated tiles. By default nothing is marked.
+	 *
+	 * @param region region to be updated
+	 * @param x starting x coordinate in world units
+	 * @param y starting y coordinate in world units
+	 * @param w width in world units
+	 * @param h height in world units
+	 */
+	public void markAnimated(DirtyRegion region, int x, int y, int w, int h) {
+	}
+
 	/**
 	 * Set the tiles used for rendering.
 	 *
@@ -27,6 +27,9 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.log4j.Logger;
 import org.json.simple.JSONArray;
@@ -49,6 +52,14 @@ public class OutfitStore {
 
 	/** outfit directory */
 	private static final String OUTFITS = "data/sprites/outfit";
+	/** outfit code of the failsafe outfit */
+	private static final String FAILSAFE_OUTFIT = "body=0,dress=0,head=0,mouth=0,eyes=0,mask=0,hair=0,hat=0,detail=0";
+	/**
+	 * Compose the outfits of the game screen in a background thread. Can be
+	 * disabled with -Dstendhal.outfitthread=false, in which case the outfits
+	 * are composed when a view first needs them.
+	 */
+	private static final boolean COMPOSE_IN_BACKGROUND = !"false".equals(System.getProperty("stendhal.outfitthread"));
 
 	// these layers should return an empty sprite for index "0"
 	final List<String> emptyForZeroIndex = Arrays.asList("dress", "mouth", "mask", "hair", "hat", "detail");
@@ -69,6 +80,15 @@ public class OutfitStore {
 	 */
 	private SpriteStore store;
 
+	/**
+	 * Outfits waiting to be composed, and the listeners to be notified when
+	 * they are ready.
+	 */
+	private final Map<String, List<Runnable>> pending = new HashMap<>();
+
+	/** Thread composing the outfits. Created when it is first needed. */
+	private ExecutorService composer;
+
 	/**
 	 * Create an outfit store.
 	 *
@@ -122,32 +142,45 @@ public class OutfitStore {
 	}
 
 	/**
-	 * Build an outfit sprite.
+	 * Parse an outfit code.
 	 *
-	 * @param strcode
-	 * @param color
-	 * 		coloring data
-	 * @return A walking state tileset.
+	 * @param strcode outfit code, such as "body=0,dress=5,head=0"
+	 * @return layer indices. Layers missing from the code have index 0
 	 */
-	private Sprite buildOutfit(final String strcode, final OutfitColor color) {
+	static Map<String, Integer> parseOutfit(final String strcode) {
 		final Map<String, Integer> layer_map = new HashMap<>();
 
-		// make a copy of layer names so it can be amended in cases of special layers
-		final List<String> lnames = new LinkedList<>();
-		lnames.addAll(LAYER_NAMES);
-
 		// initialize outfit parts to 0 in case some haven't been specified
-		for (String n: lnames) {
+		for (String n: LAYER_NAMES) {
 			layer_map.put(n, 0);
 		}
 
 		for (String layer: strcode.split(",")) {
-			if (layer.contains("=")) {
-				final String[] key = layer.split("=");
-				layer_map.put(key[0], Integer.parseInt(key[1]));
+			final int split = layer.indexOf('=');
+			if (split >= 0) {
+				layer_map.put(layer.substring(0, split), Integer.parseInt(layer.substring(split + 1)));
 			}
 		}
 
+		return layer_map;
+	}
+
+	/**
+	 * Build an outfit sprite.
+	 *
+	 * @param layers
+	 * 		layer indices
+	 * @param color
+	 * 		coloring data
+	 * @return A walking state tileset.
+	 */
+	private Sprite buildOutfit(final Map<String, Integer> layers, final OutfitColor color) {
+		final Map<String, Integer> layer_map = new HashMap<>(layers);
+
+		// make a copy of layer names so it can be amended in cases of special layers
+		final List<String> lnames = new LinkedList<>();
+		lnames.addAll(LAYER_NAMES);
+
 		ImageSprite sprite;
 
 		Sprite layer;
@@ -273,7 +306,7 @@ public class OutfitStore {
 		}
 
 		ref = OUTFITS + "/" + layer + "/" + ref;
-		if (layer.equals("body") && WtWindowManager.getInstance().getPropertyBoolean("gamescreen.nonude", true)) {
+		if (layer.equals("body") && isNoNude()) {
 			final URL nonudeURL = DataLoader.getResource(ref + "-nonude.png");
 			if (nonudeURL != null) {
 				ref = ref + "-nonude";
@@ -355,9 +388,22 @@ public class OutfitStore {
 	 * @return The failsafe outfit tileset.
 	 */
 	public Sprite getFailsafeOutfit() {
+		return getFailsafeOutfit(null, null);
+	}
+
+	/**
+	 * Get the failsafe outfit with color adjustment. The adjusted outfit is
+	 * cached like the other outfits.
+	 *
+	 * @param adjColor
+	 * 		zone color, or <code>null</code>
+	 * @param blend
+	 * 		zone color blend mode, or <code>null</code>
+	 * @return The failsafe outfit tileset.
+	 */
+	private Sprite getFailsafeOutfit(final Color adjColor, final Composite blend) {
 		try {
-			final String failsafe_str = "body=0,dress=0,head=0,mouth=0,eyes=0,mask=0,hair=0,hat=0,detail=0";
-			return getOutfit(failsafe_str, OutfitColor.PLAIN);
+			return getAdjustedOutfit(FAILSAFE_OUTFIT, OutfitColor.PLAIN, adjColor, blend);
 		} catch (RuntimeException e) {
 			logger.warn("Cannot build failsafe outfit. Trying to use standard failsafe sprite.", e);
 			return store.getFailsafe();
@@ -373,36 +419,25 @@ public class OutfitStore {
 	 * @return outfit
 	 */
 	private Sprite getOutfit(final String strcode, final OutfitColor color) {
-		// Use the normalized string for the reference
-		String colorString = "null";
-		if (color != null) {
-			colorString = color.toString();
-		}
-
-		final String reference = buildReference(strcode, colorString);
-		return getOutfit(strcode, color, reference);
+		return getOutfit(parseOutfit(strcode), color);
 	}
 
 	/**
-	 * Get outfit for a known outfit reference.
+	 * Get an outfit sprite.
 	 *
-	 * @param strcode
+	 * @param layers
+	 * 		layer indices
 	 * @param color
 	 * 		Colors for coloring some outfit parts.
-	 * @param reference
-	 * 		Outfit reference.
 	 * @return outfit
 	 */
-	@SuppressWarnings("null")
-	private Sprite getOutfit(final String strcode, final OutfitColor color, final String reference) {
+	private Sprite getOutfit(final Map<String, Integer> layers, final OutfitColor color) {
 		final SpriteCache cache = SpriteCache.get();
+		final String reference = buildReference(layers, color, isNoNude());
 
-		// FIXME: set sprite to null until reference for extended outfit is fixed
-		//Sprite sprite = cache.get(reference);
-		Sprite sprite = null;
-
+		Sprite sprite = cache.get(reference);
 		if (sprite == null) {
-			sprite = buildOutfit(strcode, color);
+			sprite = buildOutfit(layers, color);
 			cache.add(reference, sprite);
 		}
 
@@ -411,37 +446,210 @@ public class OutfitStore {
 
 	/**
 	 * Get an outfit with color adjustment, such as a player in colored light.
+	 *
+	 * @param strcode
+	 * 		outfit code
+	 * @param color
+	 * 		Colors for coloring some outfit parts.
+	 * @param adjColor
+	 * 		zone color, or <code>null</code>
+	 * @param blend
+	 * 		zone color blend mode, or <code>null</code>
+	 * @return outfit
 	 */
-	@SuppressWarnings("null")
 	public Sprite getAdjustedOutfit(final String strcode, final OutfitColor color, final Color adjColor, final Composite blend) {
-		if (adjColor == null || blend == null) {
-			return getOutfit(strcode, color);
-		} else {
-			final String reference = buildReference(strcode, color.toString());
-			String fullRef = reference + ":" + adjColor.getRGB() + blend.toString();
+		final Map<String, Integer> layers = parseOutfit(strcode);
+		final String reference = buildAdjustedReference(layers, color, adjColor, blend);
+		final Sprite sprite = SpriteCache.get().get(reference);
+		if (sprite != null) {
+			return sprite;
+		}
+		return buildAdjustedOutfit(layers, color, adjColor, blend, reference);
+	}
 
-			// FIXME: set sprite to null until reference for extended outfit is fixed
-			//Sprite sprite = cache.get(fullRef);
-			Sprite sprite = null;
+	/**
+	 * Get an outfit with color adjustment without waiting for it to be
+	 * composed. An outfit that is not in the cache is composed in the
+	 * background, and a placeholder is returned meanwhile.
+	 *
+	 * @param strcode
+	 * 		outfit code
+	 * @param color
+	 * 		Colors for coloring some outfit parts.
+	 * @param adjColor
+	 * 		zone color, or <code>null</code>
+	 * @param blend
+	 * 		zone color blend mode, or <code>null</code>
+	 * @param onReady
+	 * 		Called in the composing thread when the outfit is ready, if a
+	 * 		placeholder was returned
+	 * @return outfit, or a placeholder
+	 */
+	public Sprite getAdjustedOutfit(final String strcode, final OutfitColor color, final Color adjColor,
+			final Composite blend, final Runnable onReady) {
+		if (!COMPOSE_IN_BACKGROUND) {
+			return getAdjustedOutfit(strcode, color, adjColor, blend);
+		}
+		final Map<String, Integer> layers = parseOutfit(strcode);
+		final String reference = buildAdjustedReference(layers, color, adjColor, blend);
+		final Sprite sprite = SpriteCache.get().get(reference);
+		if (sprite != null) {
+			return sprite;
+		}
 
-			if (sprite == null) {
-				Sprite plain = getOutfit(strcode, color);
-				sprite = store.modifySprite(plain, adjColor, blend, fullRef);
+		synchronized (pending) {
+			List<Runnable> listeners = pending.get(reference);
+			if (listeners == null) {
+				listeners = new ArrayList<>();
+				pending.put(reference, listeners);
+				getComposer().execute(new Runnable() {
+					@Override
+					public void run() {
+						compose(layers, color, adjColor, blend, reference);
+					}
+				});
 			}
+			listeners.add(onReady);
+		}
 
-			return sprite;
+		// Use the zone colors also for the placeholder, so that it does not
+		// stand out in dark zones
+		return getFailsafeOutfit(adjColor, blend);
+	}
+
+	/**
+	 * Compose an outfit in the background thread, and notify the listeners
+	 * waiting for it.
+	 *
+	 * @param layers
+	 * 		layer indices
+	 * @param color
+	 * 		Colors for coloring some outfit parts.
+	 * @param adjColor
+	 * 		zone color, or <code>null</code>
+	 * @param blend
+	 * 		zone color blend mode, or <code>null</code>
+	 * @param reference
+	 * 		cache reference of the adjusted outfit
+	 */
+	private void compose(final Map<String, Integer> layers, final OutfitColor color, final Color adjColor,
+			final Composite blend, final String reference) {
+		final SpriteCache cache = SpriteCache.get();
+		try {
+			// It may have been composed already, if it was requested again
+			// just after the previous composition finished
+			if (cache.get(reference) == null) {
+				buildAdjustedOutfit(layers, color, adjColor, blend, reference);
+			}
+		} catch (RuntimeException e) {
+			logger.warn("Cannot build outfit " + reference + ". Using failsafe outfit.", e);
+			// Cache the failsafe outfit so that the listeners do not request
+			// composing the broken outfit again
+			cache.add(reference, getFailsafeOutfit(adjColor, blend));
+		}
+
+		final List<Runnable> listeners;
+		synchronized (pending) {
+			listeners = pending.remove(reference);
+		}
+		for (Runnable listener : listeners) {
+			listener.run();
 		}
 	}
 
 	/**
-	 * Create an unique reference for an outfit.
+	 * Get the thread composing the outfits.
 	 *
-	 * @param code outfit code
-	 * @param colorCode color information for outfit parts
+	 * @return composer thread
+	 */
+	private synchronized ExecutorService getComposer() {
+		if (composer == null) {
+			composer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Outfit composer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return composer;
+	}
+
+	/**
+	 * Compose an outfit with color adjustment.
+	 *
+	 * @param layers
+	 * 		layer indices
+	 * @param color
+	 * 		Colors for coloring some outfit parts.
+	 * @param adjColor
+	 * 		zone color, or <code>null</code>
+	 * @param blend
+	 * 		zone color blend mode, or <code>null</code>
+	 * @param reference
+	 * 		cache reference of the adjusted outfit
+	 * @return outfit
+	 */
+	private Sprite buildAdjustedOutfit(final Map<String, Integer> layers, final OutfitColor color,
+			final Color adjColor, final Composite blend, final String reference) {
+		final Sprite plain = getOutfit(layers, color);
+		if (adjColor == null || blend == null) {
+			return plain;
+		}
+		// modifySprite() caches the adjusted outfit
+		return store.modifySprite(plain, adjColor, blend, reference);
+	}
+
+	/**
+	 * Check if the bodies should be drawn with the no nude images.
+	 *
+	 * @return <code>true</code> if the no nude images should be used
+	 */
+	private boolean isNoNude() {
+		return WtWindowManager.getInstance().getPropertyBoolean("gamescreen.nonude", true);
+	}
+
+	/**
+	 * Create an unique reference for an outfit. The layers are listed in the
+	 * same order regardless of how the outfit code was written.
+	 *
+	 * @param layers layer indices
+	 * @param color color information for outfit parts, or <code>null</code>
+	 * @param nonude <code>true</code> if the body is drawn with the no nude
+	 * 	images
 	 * @return outfit reference
 	 */
-	private String buildReference(final String strcode, final String colorCode) {
-		return "OUTFIT:" + strcode + "@" + colorCode;
+	static String buildReference(final Map<String, Integer> layers, final OutfitColor color,
+			final boolean nonude) {
+		final StringBuilder sb = new StringBuilder("OUTFIT:");
+		for (String name : LAYER_NAMES) {
+			sb.append(name).append('=').append(layers.get(name)).append(',');
+		}
+		sb.setLength(sb.length() - 1);
+		if (nonude) {
+			sb.append(";nonude");
+		}
+		sb.append('@').append(color);
+		return sb.toString();
+	}
+
+	/**
+	 * Create an unique reference for an outfit with color adjustment.
+	 *
+	 * @param layers layer indices
+	 * @param color color information for outfit parts, or <code>null</code>
+	 * @param adjColor zone color, or <code>null</code>
+	 * @param blend zone color blend mode, or <code>null</code>
+	 * @return outfit reference
+	 */
+	private String buildAdjustedReference(final Map<String, Integer> layers, final OutfitColor color,
+			final Color adjColor, final Composite blend) {
+		final String reference = buildReference(layers, color, isNoNude());
+		if (adjColor == null || blend == null) {
+			return reference;
+		}
+		return reference + ":" + adjColor.getRGB() + blend.toString();
 	}
 
 	/*
@@ -22,6 +22,8 @@ import marauroa.common.net.message.MessageS2CPerception;
 class PerceptionDispatcher implements IPerceptionListener {
 
 	private final List<IPerceptionListener> listenerList = new LinkedList<IPerceptionListener>();
+	/** Start time of the perception for the frame profiler. */
+	private long perceptionStart;
 
 	@Override
 	public boolean onAdded(final RPObject object) {
@@ -96,6 +98,7 @@ class PerceptionDispatcher implements IPerceptionListener {
 
 	@Override
 	public void onPerceptionBegin(final byte type, final int timestamp) {
+		perceptionStart = FrameProfiler.get().start();
 		for (final IPerceptionListener l : listenerList) {
 			l.onPerceptionBegin(type, timestamp);
 
@@ -109,6 +112,8 @@ class PerceptionDispatcher implements IPerceptionListener {
 			l.onPerceptionEnd(type, timestamp);
 
 		}
+		FrameProfiler.get().end(FrameProfiler.Phase.PERCEPTION, perceptionStart);
+		perceptionStart = 0;
 
 	}
 
@@ -70,6 +70,8 @@ public class StaticGameLayers {
 		currentZone = zone;
 		if (!zone.getName().equals(area)) {
 			setAreaName(zone.getName());
+			// The layers of the previous zone are not drawn anymore
+			TileChunkCache.releaseAll();
 		}
 	}
 
@@ -158,6 +160,45 @@ public class StaticGameLayers {
 		}
 	}
 
+	/**
+	 * Mark the animated parts of a set of layers.
+	 *
+	 * @param region region to be updated
+	 * @param area Zone name
+	 * @param compositeName A bundle name for the set of layers
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param adjustLayer name of the adjustment layer
+	 * @param layers names of the layer set, starting from the bottom
+	 */
+	void markAnimatedLayers(DirtyRegion region, final String area, final String compositeName,
+			final int x, final int y, final int width, final int height,
+			String adjustLayer, String ... layers) {
+		LayerRenderer lr = getMerged(area, compositeName, adjustLayer, layers);
+		if (lr != null) {
+			lr.markAnimated(region, x, y, width, height);
+		}
+	}
+
+	/**
+	 * Mark the animated parts of the weather layer.
+	 *
+	 * @param region region to be updated
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 */
+	void markAnimatedWeather(DirtyRegion region, int x, int y, int width, int height) {
+		if (currentZone != null) {
+			if (currentZone.getName().equals(area)) {
+				currentZone.getWeather().markAnimated(region, x, y, width, height);
+			}
+		}
+	}
+
 	/**
 	 * Get a composite representation of multiple tile layers.
 	 *
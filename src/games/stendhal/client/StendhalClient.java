@@ -106,6 +106,11 @@ public class StendhalClient extends ClientFramework {
 
 	/** The zone currently under loading. */
 	private Zone currentZone;
+	/**
+	 * Layers of the current zone. They are loaded again from the cache when
+	 * only the zone attributes change.
+	 */
+	private List<TransferContent> zoneContents;
 
 	private JFrame splashScreen;
 
@@ -247,10 +252,20 @@ public class StendhalClient extends ClientFramework {
 			final int i = name.indexOf(".0_floor");
 			if (i > -1) {
 				currentZone = new Zone(name.substring(0, i));
+				zoneContents = getZoneContents(items, currentZone.getName());
 				break;
 			}
 		}
 
+		// Only the attributes changed. Build the zone again from the cached
+		// layers, so that it gets tinted with the new colors
+		if (isAttributeUpdate(items)) {
+			Zone zone = reloadZone();
+			if (zone != null) {
+				currentZone = zone;
+			}
+		}
+
 		// Is it just a reload for new coloring?
 		if (currentZone != null) {
 			boolean isZoneChange = !currentZone.getName().equals(oldZone);
@@ -301,6 +316,63 @@ public class StendhalClient extends ClientFramework {
 		return items;
 	}
 
+	/**
+	 * Get the layers belonging to a zone, excluding the zone attributes.
+	 *
+	 * @param items transferred content
+	 * @param zoneName name of the zone
+	 * @return zone layers
+	 */
+	private List<TransferContent> getZoneContents(final List<TransferContent> items, final String zoneName) {
+		final List<TransferContent> layers = new ArrayList<TransferContent>();
+		for (final TransferContent item : items) {
+			if ((item.name != null) && item.name.startsWith(zoneName + ".")
+					&& !item.name.endsWith(".data_map")) {
+				layers.add(item);
+			}
+		}
+		return layers;
+	}
+
+	/**
+	 * Check if transferred content contains only the attributes of the
+	 * current zone.
+	 *
+	 * @param items transferred content
+	 * @return <code>true</code>, if only the zone attributes changed
+	 */
+	private boolean isAttributeUpdate(final List<TransferContent> items) {
+		return (currentZone != null) && (items.size() == 1)
+				&& (currentZone.getName() + ".data_map").equals(items.get(0).name);
+	}
+
+	/**
+	 * Create the current zone again from the cached layers.
+	 *
+	 * @return new zone, or <code>null</code> if a layer is not available
+	 */
+	private Zone reloadZone() {
+		if (zoneContents == null) {
+			return null;
+		}
+		final Zone zone = new Zone(currentZone.getName());
+		for (final TransferContent item : zoneContents) {
+			final InputStream is = cache.getItem(item);
+			if (is == null) {
+				logger.debug("Content " + item.name + " is not in cache, keeping the old layers");
+				return null;
+			}
+			try {
+				zone.addLayer(item.name.substring(item.name.indexOf('.') + 1), is);
+				is.close();
+			} catch (final Exception e) {
+				logger.error(e, e);
+				return null;
+			}
+		}
+		return zone;
+	}
+
 	/**
 	 * Add a listener to be called when the player changes zone.
 	 *
@@ -0,0 +1,334 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import games.stendhal.client.gui.TransparencyMode;
+import games.stendhal.client.sprite.EmptySprite;
+import games.stendhal.client.sprite.Sprite;
+
+/**
+ * Pre-rendered chunks of a tile layer. The constant tiles of a chunk are
+ * drawn once to an image, so that drawing the layer needs one image per
+ * chunk instead of one sprite per tile. Animated tiles are left out of the
+ * images and drawn separately on top of them.
+ * <p>
+ * The tiles are expected to have their zone coloring applied already, and
+ * not to change. A zone change or a color change creates new layers, and
+ * thus new caches. The layers of a bundle, such as the floor, are already
+ * merged to one layer, so they share one set of chunks.
+ * <p>
+ * The chunks of all layers share one memory budget. It is twice the memory
+ * needed for the currently visible chunks, so it follows the size of the
+ * game screen, but no more than <code>stendhal.tilechunks.memory</code>
+ * MiB. The chunks that have not been drawn for the longest time are dropped
+ * first. A zone change drops all chunks.
+ */
+public final class TileChunkCache {
+	/** Width and height of a chunk in tiles. */
+	private static final int CHUNK_TILES = 16;
+	/** Memory used by an image of a full chunk. */
+	private static final long CHUNK_BYTES = 4L * CHUNK_TILES * CHUNK_TILES
+			* IGameScreen.SIZE_UNIT_PIXELS * IGameScreen.SIZE_UNIT_PIXELS;
+	/**
+	 * Upper limit of the memory used by the chunks of all layers, unless
+	 * the visible chunks alone need more.
+	 */
+	private static final long MAX_BYTES = Long.getLong("stendhal.tilechunks.memory", 48) * 1024 * 1024;
+
+	/** Rendered chunks of all layers, the least recently drawn first. */
+	private static final Map<Chunk, Boolean> allChunks = new LinkedHashMap<Chunk, Boolean>(64, 0.75f, true);
+	/** Memory needed for the visible chunks of each layer. */
+	private static final Map<TileChunkCache, Long> visibleBytes = new IdentityHashMap<TileChunkCache, Long>();
+	/** Memory used by the images in allChunks. */
+	private static long usedBytes;
+
+	/** Tiles of the layer. */
+	private final Sprite[] tiles;
+	/** Width of the layer in tiles. */
+	private final int width;
+	/** Height of the layer in tiles. */
+	private final int height;
+	/** Rendered chunks of this layer. */
+	private final Map<Integer, Chunk> chunks = new HashMap<Integer, Chunk>();
+
+	/**
+	 * A rendered chunk.
+	 */
+	private static final class Chunk {
+		/** Layer the chunk belongs to. */
+		final TileChunkCache owner;
+		/** Key of the chunk in the layer. */
+		final Integer key;
+		/** Image of the constant tiles, or <code>null</code> if there are none. */
+		Image image;
+		/** Memory used by the image. */
+		long bytes;
+		/** Indices of the animated tiles. */
+		int[] animated;
+
+		/**
+		 * Create a new Chunk.
+		 *
+		 * @param owner layer the chunk belongs to
+		 * @param key key of the chunk in the layer
+		 */
+		Chunk(TileChunkCache owner, Integer key) {
+			this.owner = owner;
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Create a new TileChunkCache.
+	 *
+	 * @param tiles tiles of the layer, row by row
+	 * @param width width of the layer in tiles
+	 * @param height height of the layer in tiles
+	 */
+	public TileChunkCache(Sprite[] tiles, int width, int height) {
+		this.tiles = tiles;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Draw an area of the layer.
+	 *
+	 * @param g graphics
+	 * @param x starting x coordinate in world units
+	 * @param y starting y coordinate in world units
+	 * @param w width in world units
+	 * @param h height in world units
+	 */
+	public void draw(Graphics g, int x, int y, int w, int h) {
+		final int startX = Math.max(0, x);
+		final int startY = Math.max(0, y);
+		final int endX = Math.min(x + w, width);
+		final int endY = Math.min(y + h, height);
+		if ((startX >= endX) || (startY >= endY)) {
+			return;
+		}
+
+		final int firstChunkX = startX / CHUNK_TILES;
+		final int lastChunkX = (endX - 1) / CHUNK_TILES;
+		final int firstChunkY = startY / CHUNK_TILES;
+		final int lastChunkY = (endY - 1) / CHUNK_TILES;
+		Long visible = Long.valueOf(CHUNK_BYTES * (lastChunkX - firstChunkX + 1) * (lastChunkY - firstChunkY + 1));
+		if (!visible.equals(visibleBytes.put(this, visible))) {
+			// The screen size changed. Adjust the budget
+			trim();
+		}
+
+		final int size = IGameScreen.SIZE_UNIT_PIXELS;
+		for (int cy = firstChunkY; cy <= lastChunkY; cy++) {
+			for (int cx = firstChunkX; cx <= lastChunkX; cx++) {
+				Chunk chunk = getChunk(g, cx, cy);
+				if (chunk.image != null) {
+					// Only the requested part of the chunk
+					int chunkX = cx * CHUNK_TILES;
+					int chunkY = cy * CHUNK_TILES;
+					int sx1 = (Math.max(startX, chunkX) - chunkX) * size;
+					int sy1 = (Math.max(startY, chunkY) - chunkY) * size;
+					int sx2 = (Math.min(endX, chunkX + CHUNK_TILES) - chunkX) * size;
+					int sy2 = (Math.min(endY, chunkY + CHUNK_TILES) - chunkY) * size;
+					int dx = chunkX * size;
+					int dy = chunkY * size;
+					g.drawImage(chunk.image, dx + sx1, dy + sy1, dx + sx2, dy + sy2, sx1, sy1, sx2, sy2, null);
+				}
+				for (int index : chunk.animated) {
+					int tileX = index % width;
+					int tileY = index / width;
+					if ((tileX >= startX) && (tileX < endX) && (tileY >= startY) && (tileY < endY)) {
+						tiles[index].draw(g, tileX * size, tileY * size);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get a chunk, rendering it if needed.
+	 *
+	 * @param g graphics the chunk will be drawn on
+	 * @param cx x coordinate of the chunk
+	 * @param cy y coordinate of the chunk
+	 * @return chunk
+	 */
+	private Chunk getChunk(Graphics g, int cx, int cy) {
+		Integer key = Integer.valueOf(cy * ((width + CHUNK_TILES - 1) / CHUNK_TILES) + cx);
+		Chunk chunk = chunks.get(key);
+		if (chunk == null) {
+			chunk = render(g, key, cx, cy);
+			chunks.put(key, chunk);
+			allChunks.put(chunk, Boolean.TRUE);
+			usedBytes += chunk.bytes;
+			trim();
+		} else {
+			// Mark as recently drawn
+			allChunks.get(chunk);
+		}
+		return chunk;
+	}
+
+	/**
+	 * Drop the chunks that have not been drawn for the longest time, until
+	 * the chunks of all layers fit in the memory budget.
+	 */
+	private static void trim() {
+		long visible = 0;
+		for (Long bytes : visibleBytes.values()) {
+			visible += bytes.longValue();
+		}
+		// Keep at least the visible chunks, and preferably their neighbors
+		long limit = Math.max(visible, Math.min(MAX_BYTES, 2 * visible));
+		Iterator<Chunk> iter = allChunks.keySet().iterator();
+		while ((usedBytes > limit) && iter.hasNext()) {
+			Chunk old = iter.next();
+			iter.remove();
+			drop(old);
+		}
+	}
+
+	/**
+	 * Drop the chunks of all layers. Called on zone change, when the layers
+	 * of the previous zone will not be drawn anymore.
+	 */
+	static void releaseAll() {
+		for (Chunk chunk : allChunks.keySet()) {
+			drop(chunk);
+		}
+		allChunks.clear();
+		visibleBytes.clear();
+	}
+
+	/**
+	 * Get the memory used by the chunks of all layers.
+	 *
+	 * @return memory in bytes
+	 */
+	static long getUsedBytes() {
+		return usedBytes;
+	}
+
+	/**
+	 * Remove a chunk from its layer and free its image.
+	 *
+	 * @param chunk dropped chunk
+	 */
+	private static void drop(Chunk chunk) {
+		chunk.owner.chunks.remove(chunk.key);
+		if (chunk.image != null) {
+			chunk.image.flush();
+		}
+		usedBytes -= chunk.bytes;
+	}
+
+	/**
+	 * Render a chunk.
+	 *
+	 * @param g graphics the chunk will be drawn on
+	 * @param key key of the chunk in the layer
+	 * @param cx x coordinate of the chunk
+	 * @param cy y coordinate of the chunk
+	 * @return chunk
+	 */
+	private Chunk render(Graphics g, Integer key, int cx, int cy) {
+		final int size = IGameScreen.SIZE_UNIT_PIXELS;
+		final int chunkX = cx * CHUNK_TILES;
+		final int chunkY = cy * CHUNK_TILES;
+		final int endX = Math.min(chunkX + CHUNK_TILES, width);
+		final int endY = Math.min(chunkY + CHUNK_TILES, height);
+
+		Chunk chunk = new Chunk(this, key);
+		int[] animated = new int[(endX - chunkX) * (endY - chunkY)];
+		int numAnimated = 0;
+		Graphics chunkGraphics = null;
+		for (int ty = chunkY; ty < endY; ty++) {
+			for (int tx = chunkX; tx < endX; tx++) {
+				int index = ty * width + tx;
+				Sprite sprite = tiles[index];
+				if ((sprite == null) || (sprite instanceof EmptySprite)) {
+					continue;
+				}
+				if (!sprite.isConstant()) {
+					animated[numAnimated] = index;
+					numAnimated++;
+					continue;
+				}
+				if (chunkGraphics == null) {
+					GraphicsConfiguration gc = ((Graphics2D) g).getDeviceConfiguration();
+					chunk.image = gc.createCompatibleImage((endX - chunkX) * size, (endY - chunkY) * size,
+							TransparencyMode.TRANSPARENCY);
+					chunkGraphics = chunk.image.getGraphics();
+				}
+				sprite.draw(chunkGraphics, (tx - chunkX) * size, (ty - chunkY) * size);
+			}
+		}
+		if (chunkGraphics != null) {
+			chunkGraphics.dispose();
+			chunk.image = toOpaqueIfPossible(g, chunk.image);
+			chunk.bytes = 4L * chunk.image.getWidth(null) * chunk.image.getHeight(null);
+		}
+		chunk.animated = new int[numAnimated];
+		System.arraycopy(animated, 0, chunk.animated, 0, numAnimated);
+		return chunk;
+	}
+
+	/**
+	 * Get an opaque copy of an image that has no transparent pixels. Ground
+	 * layers usually cover everything, and drawing opaque images is much
+	 * cheaper than blending translucent ones.
+	 *
+	 * @param g graphics the chunk will be drawn on
+	 * @param image rendered chunk
+	 * @return opaque copy, or the original image if it has transparent pixels
+	 */
+	private Image toOpaqueIfPossible(Graphics g, Image image) {
+		if (!(image instanceof BufferedImage)) {
+			return image;
+		}
+		BufferedImage buffered = (BufferedImage) image;
+		if (buffered.getTransparency() == Transparency.OPAQUE) {
+			return image;
+		}
+		int w = buffered.getWidth();
+		int h = buffered.getHeight();
+		int[] row = new int[w];
+		for (int y = 0; y < h; y++) {
+			buffered.getRGB(0, y, w, 1, row, 0, w);
+			for (int pixel : row) {
+				if ((pixel >>> 24) != 0xff) {
+					return image;
+				}
+			}
+		}
+		GraphicsConfiguration gc = ((Graphics2D) g).getDeviceConfiguration();
+		Image opaque = gc.createCompatibleImage(w, h, Transparency.OPAQUE);
+		Graphics copy = opaque.getGraphics();
+		copy.drawImage(image, 0, 0, null);
+		copy.dispose();
+		image.flush();
+		return opaque;
+	}
+}
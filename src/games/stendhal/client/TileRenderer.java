@@ -15,6 +15,7 @@ package games.stendhal.client;
 import java.awt.Graphics;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 import org.apache.log4j.Logger;
 
@@ -29,12 +30,27 @@ import games.stendhal.common.tiled.LayerDefinition;
 class TileRenderer extends LayerRenderer {
 	/** the logger instance. */
 	private static final Logger logger = Logger.getLogger(TileRenderer.class);
+	/**
+	 * Draw the layers using pre-rendered chunks. Can be disabled with
+	 * -Dstendhal.tilechunks=false for comparing the frame times.
+	 */
+	private static final boolean USE_CHUNKS = !"false".equals(System.getProperty("stendhal.tilechunks"));
 	/** Tileset used for the map data */
 	protected Tileset tileset;
 	/** Raw map data. Indices of tiles in the tileset. */
 	protected int[] map;
 	/** The map data converted to tile references */
 	protected Sprite[] spriteMap;
+	/**
+	 * Pre-rendered chunks of the layer, or <code>null</code> if they are not
+	 * created yet.
+	 */
+	private TileChunkCache chunks;
+	/**
+	 * Indices of the tiles that change from frame to frame, or
+	 * <code>null</code> if they have not been looked up yet.
+	 */
+	private int[] animatedTiles;
 
 	public TileRenderer() {
 		map = null;
@@ -100,6 +116,13 @@ class TileRenderer extends LayerRenderer {
 		if (!initSpriteMap()) {
 			return;
 		}
+		if (USE_CHUNKS) {
+			if (chunks == null) {
+				chunks = new TileChunkCache(spriteMap, width, height);
+			}
+			chunks.draw(g, x, y, w, h);
+			return;
+		}
 
 		final int endX = Math.min(x + w, getWidth());
 		final int endY= Math.min(y + h, getHeight());
@@ -117,4 +140,41 @@ class TileRenderer extends LayerRenderer {
 			sy += IGameScreen.SIZE_UNIT_PIXELS;
 		}
 	}
+
+	@Override
+	public void markAnimated(DirtyRegion region, int x, int y, int w, int h) {
+		if (!initSpriteMap()) {
+			return;
+		}
+		if (animatedTiles == null) {
+			animatedTiles = findAnimatedTiles();
+		}
+		final int endX = Math.min(x + w, getWidth());
+		final int endY = Math.min(y + h, getHeight());
+		for (int index : animatedTiles) {
+			int tileX = index % width;
+			int tileY = index / width;
+			if ((tileX >= x) && (tileX < endX) && (tileY >= y) && (tileY < endY)) {
+				region.add(tileX * IGameScreen.SIZE_UNIT_PIXELS, tileY * IGameScreen.SIZE_UNIT_PIXELS,
+						IGameScreen.SIZE_UNIT_PIXELS, IGameScreen.SIZE_UNIT_PIXELS);
+			}
+		}
+	}
+
+	/**
+	 * Find the tiles that are not constant.
+	 *
+	 * @return indices of the animated tiles
+	 */
+	private int[] findAnimatedTiles() {
+		int[] found = new int[spriteMap.length];
+		int count = 0;
+		for (int i = 0; i < spriteMap.length; i++) {
+			if ((spriteMap[i] != null) && !spriteMap[i].isConstant()) {
+				found[count] = i;
+				count++;
+			}
+		}
+		return Arrays.copyOf(found, count);
+	}
 }
@@ -96,6 +96,13 @@ public class WeatherLayerRenderer extends LayerRenderer {
 		}
 	}
 
+	@Override
+	public void markAnimated(DirtyRegion region, int x, int y, int w, int h) {
+		if ((weather != null) && !weather.isConstant()) {
+			region.setFull();
+		}
+	}
+
 	@Override
 	public void setTileset(Tileset tileset) {
 		throw new UnsupportedOperationException("Adding tilesets not supported");
@@ -11,7 +11,15 @@
  ***************************************************************************/
 package games.stendhal.client.actions;
 
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+
 import games.stendhal.client.ClientSingletonRepository;
+import games.stendhal.client.FrameProfiler;
+import games.stendhal.client.gui.chatlog.HeaderLessEventLine;
+import games.stendhal.client.sprite.SpriteCache;
+import games.stendhal.common.NotificationType;
 
 /**
  * Query for player position.
@@ -32,10 +40,36 @@ class DebugAction implements SlashAction {
 	public boolean execute(final String[] params, String remainder) {
 		if (params[0].equals("log")) {
 			ClientSingletonRepository.getUserInterface().toggleDebugEnabled();
+		} else if (params[0].equals("sprites")) {
+			ClientSingletonRepository.getUserInterface().addEventLine(
+					new HeaderLessEventLine(SpriteCache.get().getStatistics(), NotificationType.CLIENT));
+		} else if (params[0].equals("frames")) {
+			FrameProfiler.get().toggleOverlay();
+		} else if (params[0].equals("record")) {
+			toggleRecording();
 		}
 		return true;
 	}
 
+	/**
+	 * Start or stop recording the frame timings.
+	 */
+	private void toggleRecording() {
+		final FrameProfiler profiler = FrameProfiler.get();
+		String msg = profiler.stopRecording();
+		if (msg == null) {
+			try {
+				msg = "Recording frame timings to " + profiler.startRecording()
+					+ ". Use /debug record again to stop.";
+			} catch (IOException e) {
+				Logger.getLogger(DebugAction.class).error(e, e);
+				msg = "Failed to start recording frame timings: " + e.getMessage();
+			}
+		}
+		ClientSingletonRepository.getUserInterface().addEventLine(
+				new HeaderLessEventLine(msg, NotificationType.CLIENT));
+	}
+
 	/**
 	 * Get the maximum number of formal parameters.
 	 *
@@ -401,10 +401,29 @@ public class User extends Player {
 
 	private void notifyUserAboutPlayerStatus(RPObject changes, String status, String messageEnd) {
 		if (changes.has(status)) {
-			String[] players = changes.get(status).split(",");
-			for (String playername : players) {
-				notifyUser(playername + messageEnd, NotificationType.INFORMATION);
-			}
+			notifyUserAboutPlayers(changes.get(status), messageEnd);
+		}
+	}
+
+	private void notifyUserAboutPlayers(String names, String messageEnd) {
+		String[] players = names.split(",");
+		for (String playername : players) {
+			notifyUser(playername + messageEnd, NotificationType.INFORMATION);
+		}
+	}
+
+	/**
+	 * Called when players on the buddy list log on or off.
+	 *
+	 * @param names comma separated names of the players
+	 * @param online <code>true</code> if the players logged on,
+	 * 	<code>false</code> if they logged off
+	 */
+	public void onBuddyStatusChanged(String names, boolean online) {
+		if (online) {
+			notifyUserAboutPlayers(names, " has joined Stendhal.");
+		} else {
+			notifyUserAboutPlayers(names, " has left Stendhal.");
 		}
 	}
 
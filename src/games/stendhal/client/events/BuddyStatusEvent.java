@@ -0,0 +1,39 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client.events;
+
+import games.stendhal.client.entity.Entity;
+import games.stendhal.client.entity.User;
+
+/**
+ * Client side event for players on the buddy list logging on or off
+ */
+class BuddyStatusEvent extends Event<Entity> {
+	private final boolean online;
+
+	/**
+	 * Create a new BuddyStatusEvent.
+	 *
+	 * @param online <code>true</code> for logging on, <code>false</code> for
+	 * 	logging off
+	 */
+	BuddyStatusEvent(boolean online) {
+		this.online = online;
+	}
+
+	@Override
+	public void execute() {
+		if (entity instanceof User) {
+			((User) entity).onBuddyStatusChanged(event.get("name"), online);
+		}
+	}
+}
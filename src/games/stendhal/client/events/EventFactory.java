@@ -68,6 +68,8 @@ class EventFactory {
 			event = new PrivateTextEvent();
 		} else if (name.equals(Events.ATTACK)) {
 			event = new AttackEvent();
+		} else if (name.equals(Events.HEALED)) {
+			event = new HealedEvent();
 		} else if (name.equals(Events.CHAT_OPTIONS)) {
 			event = new ChatOptionsEvent();
 		} else if (name.equals(Events.TRADE_STATE_CHANGE)) {
@@ -115,6 +117,10 @@ class EventFactory {
 			event = new PlayerLoggedOnEvent();
 		} else if (name.equals(Events.PLAYER_LOGGED_OUT)) {
 			event = new PlayerLoggedOutEvent();
+		} else if (name.equals(Events.BUDDY_LOGIN)) {
+			event = new BuddyStatusEvent(true);
+		} else if (name.equals(Events.BUDDY_LOGOUT)) {
+			event = new BuddyStatusEvent(false);
 		} else if (name.equals(Events.VIEW_CHANGE)) {
 			event = new ViewChangeEvent();
 		}  else if (name.equals(Events.IMAGE)) {
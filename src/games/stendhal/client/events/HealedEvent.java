@@ -0,0 +1,24 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client.events;
+
+import games.stendhal.client.entity.RPEntity;
+
+/**
+ * Client side healed event
+ */
+class HealedEvent extends Event<RPEntity> {
+	@Override
+	public void execute() {
+		entity.onHealed(event.getInt("amount"));
+	}
+}
@@ -14,6 +14,7 @@ package games.stendhal.client.gui;
 import java.awt.Graphics;
 import java.awt.Transparency;
 
+import games.stendhal.client.DirtyRegion;
 import games.stendhal.client.IGameScreen;
 import games.stendhal.client.LayerRenderer;
 import games.stendhal.client.sprite.Tileset;
@@ -51,6 +52,12 @@ public abstract class EffectLayer extends LayerRenderer {
 		drawScreen(g, x * s, y * s, w * s, h* s);
 	}
 
+	@Override
+	public void markAnimated(DirtyRegion region, int x, int y, int w, int h) {
+		// Effects change with time, and cover the whole screen
+		region.setFull();
+	}
+
 	/**
 	 * A convenience method for drawing in screen coordinates. The parameters
 	 * correspond to drawing the whole game screen. If world units are wanted,
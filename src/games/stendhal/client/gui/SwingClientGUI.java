@@ -347,6 +347,10 @@ class SwingClientGUI implements J2DClientGUI {
 	 */
 	@Override
 	public void triggerPainting() {
+		// Run at the idle frame rate when nothing on the game screen can be
+		// seen to change
+		GameLoop.get().setIdle((frame.getState() == Frame.ICONIFIED) || !screen.isShowing()
+				|| screen.isStatic());
 		if (frame.getState() != Frame.ICONIFIED) {
 			paintCounter++;
 			if (frame.isActive() || "false".equals(System.getProperty("stendhal.skip.inactive", "false")) || paintCounter >= 20) {
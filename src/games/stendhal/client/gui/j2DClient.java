@@ -21,6 +21,7 @@ import javax.swing.JFrame;
 import org.apache.log4j.Logger;
 
 import games.stendhal.client.ClientSingletonRepository;
+import games.stendhal.client.FrameProfiler;
 import games.stendhal.client.GameLoop;
 import games.stendhal.client.GameObjects;
 import games.stendhal.client.PerceptionListenerImpl;
@@ -213,6 +214,8 @@ public class j2DClient implements UserInterface {
 	private void cleanup() {
 		// try to save the window configuration
 		WtWindowManager.getInstance().save();
+		// flush the frame timings, if they are being recorded
+		FrameProfiler.get().stopRecording();
 
 		// Fall back in case sound system hangs. Can happen at least when using
 		// the pulseaudio driver and the sound daemon is shut down while the
@@ -248,7 +251,10 @@ public class j2DClient implements UserInterface {
 		gui.beforePainting();
 
 		logger.debug("Move objects");
+		final FrameProfiler profiler = FrameProfiler.get();
+		final long updateStart = profiler.start();
 		gameObjects.update(delta);
+		profiler.end(FrameProfiler.Phase.OBJECTS, updateStart);
 
 		final User user = User.get();
 
@@ -29,6 +29,7 @@ import org.apache.log4j.Logger;
 //
 //
 
+import games.stendhal.client.DirtyRegion;
 import games.stendhal.client.IGameScreen;
 import games.stendhal.client.stendhal;
 import games.stendhal.client.entity.ActionType;
@@ -84,6 +85,18 @@ public abstract class Entity2DView<T extends IEntity> implements EntityView<T> {
 	 */
 	protected volatile boolean visibilityChanged;
 
+	/**
+	 * Rebuilds the representation when a sprite that was prepared in the
+	 * background is ready. Can be run in any thread.
+	 */
+	protected final Runnable representationReady = new Runnable() {
+		@Override
+		public void run() {
+			representationChanged = true;
+			markChanged();
+		}
+	};
+
 	/**
 	 * The screen X coordinate.
 	 */
@@ -143,6 +156,17 @@ public abstract class Entity2DView<T extends IEntity> implements EntityView<T> {
 	/** determines if sprite animation cycles while idle */
 	private boolean activeIdle = false;
 
+	/**
+	 * Some model value changed since the changes were last reported to the
+	 * game screen.
+	 */
+	private volatile boolean repaintNeeded;
+	/**
+	 * The screen area painted by the view when the changes were last
+	 * reported, or <code>null</code>. Used only in the event dispatch thread.
+	 */
+	private Rectangle paintedArea;
+
 	@Override
 	public void initialize(final T entity) {
 		if (entity == null) {
@@ -162,6 +186,7 @@ public abstract class Entity2DView<T extends IEntity> implements EntityView<T> {
 		contained = false;
 		animatedChanged = false;
 		changed = true;
+		repaintNeeded = true;
 		positionChanged = true;
 		visibilityChanged = true;
 		representationChanged = true;
@@ -287,6 +312,7 @@ public abstract class Entity2DView<T extends IEntity> implements EntityView<T> {
 	 */
 	void markChanged() {
 		changed = true;
+		repaintNeeded = true;
 	}
 
 	/**
@@ -523,6 +549,82 @@ public abstract class Entity2DView<T extends IEntity> implements EntityView<T> {
 		return getArea();
 	}
 
+	/**
+	 * Get the screen area that the view paints, including the parts drawn in
+	 * drawTop().
+	 *
+	 * @return painted area, or <code>null</code> if the view can currently
+	 * 	draw anywhere on the screen
+	 */
+	protected Rectangle getPaintedArea() {
+		final Rectangle painted = new Rectangle(getDrawingArea());
+		final Rectangle r = getArea();
+		painted.add(r);
+		Collection<AttachedSprite> sprites = attachedSprites;
+		if (sprites != null) {
+			for (AttachedSprite sprite : sprites) {
+				painted.add(new Rectangle(r.x + sprite.xOffset, r.y + sprite.yOffset,
+						sprite.sprite.getWidth(), sprite.sprite.getHeight()));
+			}
+		}
+		return painted;
+	}
+
+	/**
+	 * Check if the view looks different on every frame.
+	 *
+	 * @return <code>true</code> if the view is animated
+	 */
+	protected boolean isAnimated() {
+		Sprite current = sprite;
+		if ((current != null) && isChanging(current)) {
+			return true;
+		}
+		Collection<AttachedSprite> sprites = attachedSprites;
+		if (sprites != null) {
+			for (AttachedSprite attached : sprites) {
+				if (isChanging(attached.sprite)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check if a sprite looks different on the next frame. A stopped
+	 * animation keeps showing the same frame.
+	 *
+	 * @param sprite checked sprite
+	 * @return <code>true</code> if the sprite changes
+	 */
+	private static boolean isChanging(Sprite sprite) {
+		if (sprite instanceof AnimatedSprite) {
+			return ((AnimatedSprite) sprite).isAnimating();
+		}
+		return !sprite.isConstant();
+	}
+
+	@Override
+	public void reportChanges(DirtyRegion region) {
+		if (released || isContained()) {
+			if (paintedArea != null) {
+				region.add(paintedArea);
+				paintedArea = null;
+			}
+			return;
+		}
+		final Rectangle painted = getPaintedArea();
+		if (repaintNeeded || (painted == null) || !painted.equals(paintedArea) || isAnimated()) {
+			repaintNeeded = false;
+			if (paintedArea != null) {
+				region.add(paintedArea);
+			}
+			region.add(painted);
+		}
+		paintedArea = painted;
+	}
+
 	/**
 	 * Get the class resource sub-path. The is the base sprite image name,
 	 * relative to <code>translate()</code>.
@@ -15,6 +15,7 @@ package games.stendhal.client.gui.j2d.entity;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 
+import games.stendhal.client.DirtyRegion;
 import games.stendhal.client.entity.ActionType;
 import games.stendhal.client.entity.IEntity;
 import games.stendhal.client.gui.Inspectable;
@@ -92,4 +93,11 @@ public interface EntityView<T extends IEntity> extends Inspectable {
 	 * Update the view with the changes in entity.
 	 */
 	void applyChanges();
+	/**
+	 * Mark the screen areas that the view changed since the previous call.
+	 * A released view marks the area where it was last drawn.
+	 *
+	 * @param region region to be updated
+	 */
+	void reportChanges(DirtyRegion region);
 }
@@ -90,7 +90,8 @@ class NPC2DView<T extends NPC> extends RPEntity2DView<T> {
 			final OutfitColor color = OutfitColor.get(npc.getRPObject());
 
 			if (strcode != null) {
-				sprite = OutfitStore.get().getAdjustedOutfit(strcode, color, info.getZoneColor(), info.getColorMethod());
+				sprite = OutfitStore.get().getAdjustedOutfit(strcode, color, info.getZoneColor(), info.getColorMethod(),
+						representationReady);
 			} else if (code != RPEntity.OUTFIT_UNSET) {
 				final int body = code % 100;
 				final int dress = code / 100 % 100;
@@ -106,7 +107,7 @@ class NPC2DView<T extends NPC> extends RPEntity2DView<T> {
 				sb.append(",detail=" + detail);
 
 				sprite = OutfitStore.get().getAdjustedOutfit(sb.toString(), color, info.getZoneColor(),
-						info.getColorMethod());
+						info.getColorMethod(), representationReady);
 			} else {
 				// This NPC's outfit is read from a single file.
 				sprite = store.getModifiedSprite(translate("npc/"
@@ -164,9 +164,11 @@ class Player2DView<T extends Player> extends RPEntity2DView<T> {
 				sb.append(",hair=" + hair);
 				sb.append(",detail=" + detail);
 
-				outfit = store.getAdjustedOutfit(sb.toString(), color, info.getZoneColor(), info.getColorMethod());
+				outfit = store.getAdjustedOutfit(sb.toString(), color, info.getZoneColor(), info.getColorMethod(),
+						representationReady);
 			} else {
-				outfit = store.getAdjustedOutfit(strcode, color, info.getZoneColor(), info.getColorMethod());
+				outfit = store.getAdjustedOutfit(strcode, color, info.getZoneColor(), info.getColorMethod(),
+						representationReady);
 			}
 
 			if (entity.hasStatus(StatusID.ZOMBIE)) {
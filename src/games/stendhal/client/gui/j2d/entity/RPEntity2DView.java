@@ -58,6 +58,11 @@ abstract class RPEntity2DView<T extends RPEntity> extends ActiveEntity2DView<T>
 
 	private static final int ICON_OFFSET = 8;
 	private static final int HEALTH_BAR_HEIGHT = 4;
+	/**
+	 * How far the floaters rise before they are removed. See drawFloaters()
+	 * and RPEntity.update().
+	 */
+	private static final int MAX_FLOATER_RISE = (int) (2000 * 5L / 300L);
 
 	// Battle icons
 	private static final Sprite blockedSprite;
@@ -920,6 +925,42 @@ abstract class RPEntity2DView<T extends RPEntity> extends ActiveEntity2DView<T>
 		return 8000;
 	}
 
+	@Override
+	protected Rectangle getPaintedArea() {
+		if (isAttacking) {
+			// Distance attacks are drawn all the way to the target
+			return null;
+		}
+		final Rectangle painted = super.getPaintedArea();
+		final Rectangle r = getArea();
+		// The combat rings are drawn slightly outside the entity area
+		painted.grow(2, 2);
+		final int statusY = r.y + statusBarYOffset;
+		if (titleSprite != null) {
+			painted.add(new Rectangle(r.x + (r.width - titleSprite.getWidth()) / 2,
+					statusY - getStatusBarHeight() + titleDrawYOffset,
+					titleSprite.getWidth(), titleSprite.getHeight()));
+		}
+		if (healthBar != null) {
+			painted.add(new Rectangle(r.x + (r.width - healthBar.getWidth()) / 2,
+					statusY - healthBar.getHeight() + titleDrawYOffset,
+					healthBar.getWidth(), healthBar.getHeight()));
+		}
+		for (Map.Entry<TextIndicator, Sprite> floater : floaters.entrySet()) {
+			final Sprite sprite = floater.getValue();
+			painted.add(new Rectangle(r.x + (r.width - sprite.getWidth()) / 2,
+					r.y - MAX_FLOATER_RISE, sprite.getWidth(), sprite.getHeight() + MAX_FLOATER_RISE));
+		}
+		return painted;
+	}
+
+	@Override
+	protected boolean isAnimated() {
+		// Floating texts rise all the time. Status icons and idle animations
+		// are checked by the default implementation
+		return !floaters.isEmpty() || super.isAnimated();
+	}
+
 	@Override
 	public void setVisibleScreenArea(Rectangle area) {
 		Rectangle drawingArea = getDrawingArea();
@@ -308,6 +308,18 @@ public class AnimatedSprite implements Sprite {
 		animating = false;
 	}
 
+	/**
+	 * Check whether the sprite is currently animating. A stopped animation
+	 * keeps showing the same frame until it is started again.
+	 *
+	 * @return <code>true</code> if the animation is running
+	 * @see #start()
+	 * @see #stop()
+	 */
+	public boolean isAnimating() {
+		return animating;
+	}
+
 	/**
 	 * Update the current frame sprite.
 	 */
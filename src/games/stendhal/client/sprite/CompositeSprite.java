@@ -165,11 +165,34 @@ public class CompositeSprite implements Sprite {
 		return slaves.get(0).getHeight();
 	}
 
+	@Override
+	public boolean isConstant() {
+		if (!composited) {
+			composite();
+		}
+		for (int i = 0; i < slaves.size(); i++) {
+			if (!slaves.get(i).isConstant()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	@Override
 	public Object getReference() {
 		return reference;
 	}
 
+	/**
+	 * Get the bottom layer of the composite. The composite image has the same
+	 * size.
+	 *
+	 * @return bottom layer
+	 */
+	Sprite getBottomLayer() {
+		return slaves.get(0);
+	}
+
 	@Override
 	public int getWidth() {
 		return slaves.get(0).getWidth();
@@ -92,7 +92,17 @@ public class ImageSprite implements Sprite {
 	// ImageSprite
 	//
 
+	/**
+	 * Get the graphics configuration for creating images. Without a screen,
+	 * such as when running tools and benchmarks, the images are plain
+	 * BufferedImages.
+	 *
+	 * @return graphics configuration
+	 */
 	protected static GraphicsConfiguration getGC() {
+		if (GraphicsEnvironment.isHeadless()) {
+			return HeadlessGC.GC;
+		}
 		return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
 	}
 
@@ -259,4 +269,12 @@ public class ImageSprite implements Sprite {
 	public Image getImage() {
 		return image;
 	}
+
+	/**
+	 * Holder for the graphics configuration used without a screen.
+	 */
+	private static final class HeadlessGC {
+		private static final GraphicsConfiguration GC = new BufferedImage(1, 1,
+				BufferedImage.TYPE_INT_ARGB).createGraphics().getDeviceConfiguration();
+	}
 }
@@ -1,6 +1,5 @@
-/* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -13,12 +12,31 @@
 package games.stendhal.client.sprite;
 
 
-import org.apache.log4j.Logger;
+import java.awt.Image;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 
-import games.stendhal.client.MemoryCache;
+import org.apache.log4j.Logger;
 
 /**
  * A cache of keyed sprites.
+ * <p>
+ * The sprites are kept in pools with a memory budget. When a pool exceeds
+ * its budget, the least recently used sprites are dropped from it. Dropped
+ * sprites can still be found as long as something else uses them, so a
+ * sprite is never loaded twice while it is in use. The user interface
+ * images are pinned, and never dropped. Sprites derived from them are
+ * not pinned.
+ * <p>
+ * The budgets can be set in megabytes with -Dstendhal.spritecache.base and
+ * -Dstendhal.spritecache.derived.
  */
 public class SpriteCache {
 	/**
@@ -26,22 +44,75 @@ public class SpriteCache {
 	 */
 	private static final Logger LOGGER = Logger.getLogger(SpriteCache.class);
 
+	/** Default budget of a pool in megabytes. */
+	private static final int DEFAULT_BUDGET = 64;
+	/** Approximate size of a sprite that does not have an image of its own. */
+	private static final int SPRITE_OVERHEAD = 64;
+	/** Reference prefix of the base sprites that are never dropped. */
+	private static final String PINNED_PREFIX = "data/gui/";
+
 	/**
 	 * The singleton.
 	 */
-	private static final SpriteCache sharedInstance = new SpriteCache();
+	private static final SpriteCache sharedInstance = new SpriteCache(
+			getBudget("stendhal.spritecache.base"), getBudget("stendhal.spritecache.derived"));
 
 	/**
-	 * The sprite map.
+	 * Sprite pools.
 	 */
-	private MemoryCache<Object, Sprite> sprites;
+	public enum Pool {
+		/** Sprites loaded from image files. */
+		BASE,
+		/**
+		 * Sprites made from other sprites, such as tinted, composite and
+		 * outfit sprites.
+		 */
+		DERIVED
+	}
 
+	/** The pools. */
+	private final Map<Pool, LruPool> pools = new EnumMap<Pool, LruPool>(Pool.class);
+	/** Pinned sprites. */
+	private final Map<Object, Sprite> pinned = new HashMap<Object, Sprite>();
+	/** Sprites dropped from the pools, as long as something else uses them. */
+	private final Map<Object, DroppedSprite> dropped = new HashMap<Object, DroppedSprite>();
+	/** Queue for the dropped sprites that have been collected. */
+	private final ReferenceQueue<Sprite> queue = new ReferenceQueue<Sprite>();
+	/** Size of the pinned sprites. */
+	private long pinnedBytes;
+	/** Number of lookups that found a sprite. */
+	private long hits;
+	/** Number of lookups that found nothing. */
+	private long misses;
+	/** Number of dropped sprites found because they were still in use. */
+	private long revived;
 
 	/**
-	 * Create a sprite cache.
+	 * Create a sprite cache with the default budgets.
 	 */
 	public SpriteCache() {
-		sprites = new MemoryCache<Object, Sprite>();
+		this(DEFAULT_BUDGET * 1024L * 1024L, DEFAULT_BUDGET * 1024L * 1024L);
+	}
+
+	/**
+	 * Create a sprite cache.
+	 *
+	 * @param baseBudget memory budget of the base sprites in bytes
+	 * @param derivedBudget memory budget of the derived sprites in bytes
+	 */
+	SpriteCache(long baseBudget, long derivedBudget) {
+		pools.put(Pool.BASE, new LruPool(Pool.BASE, baseBudget));
+		pools.put(Pool.DERIVED, new LruPool(Pool.DERIVED, derivedBudget));
+	}
+
+	/**
+	 * Get a configured pool budget.
+	 *
+	 * @param property name of the system property
+	 * @return budget in bytes
+	 */
+	private static long getBudget(String property) {
+		return Math.max(0, Integer.getInteger(property, DEFAULT_BUDGET).intValue()) * 1024L * 1024L;
 	}
 
 	//
@@ -62,7 +133,7 @@ public class SpriteCache {
 	}
 
 	/**
-	 * Add a sprite to the cache.
+	 * Add a derived sprite to the cache.
 	 *
 	 * @param key
 	 *            The cache key.
@@ -70,12 +141,51 @@ public class SpriteCache {
 	 *            The sprite to add.
 	 */
 	public void add(final Object key, final Sprite sprite) {
-		if (key != null) {
-			sprites.put(key, sprite);
+		add(key, sprite, Pool.DERIVED);
+	}
+
+	/**
+	 * Add a sprite to the cache.
+	 *
+	 * @param key
+	 *            The cache key.
+	 * @param sprite
+	 *            The sprite to add.
+	 * @param pool
+	 *            The pool of the sprite.
+	 */
+	public synchronized void add(final Object key, final Sprite sprite, final Pool pool) {
+		if ((key != null) && (sprite != null)) {
+			pruneDropped();
+			remove(key);
+			long bytes = estimateSize(sprite);
+			if ((pool == Pool.BASE) && (key instanceof String) && ((String) key).startsWith(PINNED_PREFIX)) {
+				pinned.put(key, sprite);
+				pinnedBytes += bytes;
+			} else {
+				pools.get(pool).put(key, sprite, bytes);
+			}
 			LOGGER.debug("SpriteCache - add: " + key);
 		}
 	}
 
+	/**
+	 * Forget a sprite.
+	 *
+	 * @param key
+	 *            The cache key.
+	 */
+	private void remove(Object key) {
+		Sprite old = pinned.remove(key);
+		if (old != null) {
+			pinnedBytes -= estimateSize(old);
+		}
+		for (LruPool pool : pools.values()) {
+			pool.remove(key);
+		}
+		dropped.remove(key);
+	}
+
 	/**
 	 * Get the shared instance.
 	 *
@@ -93,7 +203,265 @@ public class SpriteCache {
 	 *
 	 * @return A sprite, or <code>null</code> if not found.
 	 */
-	public Sprite get(final Object key) {
-		return sprites.get(key);
+	public synchronized Sprite get(final Object key) {
+		if (key == null) {
+			return null;
+		}
+		Sprite sprite = pinned.get(key);
+		if (sprite == null) {
+			for (LruPool pool : pools.values()) {
+				sprite = pool.get(key);
+				if (sprite != null) {
+					break;
+				}
+			}
+		}
+		if (sprite == null) {
+			sprite = revive(key);
+		}
+		if (sprite != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return sprite;
+	}
+
+	/**
+	 * Get a dropped sprite that is still in use, and put it back to its pool.
+	 *
+	 * @param key
+	 *            The cache key.
+	 * @return sprite, or <code>null</code> if it is not in use anymore
+	 */
+	private Sprite revive(Object key) {
+		pruneDropped();
+		DroppedSprite ref = dropped.remove(key);
+		if (ref != null) {
+			Sprite sprite = ref.get();
+			if (sprite != null) {
+				revived++;
+				pools.get(ref.pool).put(key, sprite, ref.bytes);
+				return sprite;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Forget the dropped sprites that have been collected.
+	 */
+	private void pruneDropped() {
+		Reference<? extends Sprite> ref = queue.poll();
+		while (ref != null) {
+			DroppedSprite sprite = (DroppedSprite) ref;
+			// The key may have been reused for a newer sprite
+			if (dropped.get(sprite.key) == sprite) {
+				dropped.remove(sprite.key);
+			}
+			ref = queue.poll();
+		}
+	}
+
+	/**
+	 * Clear a dropped sprite, like the garbage collector does when nothing
+	 * else uses it anymore. This lets the tests check the behavior without
+	 * depending on when the garbage collector runs.
+	 *
+	 * @param key
+	 *            The cache key.
+	 */
+	synchronized void collectDropped(Object key) {
+		DroppedSprite ref = dropped.get(key);
+		if (ref != null) {
+			ref.clear();
+			ref.enqueue();
+		}
+	}
+
+	/**
+	 * Estimate the memory used by a sprite.
+	 *
+	 * @param sprite sprite
+	 * @return size in bytes
+	 */
+	static long estimateSize(Sprite sprite) {
+		Sprite sized = sprite;
+		if (sprite instanceof CompositeSprite) {
+			// The composite image has the size of the bottom layer
+			sized = ((CompositeSprite) sprite).getBottomLayer();
+			if (!(sized instanceof ImageSprite)) {
+				return 4L * sprite.getWidth() * sprite.getHeight() + SPRITE_OVERHEAD;
+			}
+		}
+		if (sized instanceof ImageSprite) {
+			Image image = ((ImageSprite) sized).getImage();
+			if (image != null) {
+				// Compatible images use 4 bytes per pixel
+				return 4L * image.getWidth(null) * image.getHeight(null) + SPRITE_OVERHEAD;
+			}
+		}
+		return SPRITE_OVERHEAD;
+	}
+
+	/**
+	 * Get a description of the cache state.
+	 *
+	 * @return cache statistics
+	 */
+	public synchronized String getStatistics() {
+		pruneDropped();
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.ENGLISH, "Sprite cache: %d hits, %d misses, %d revived, %d in use elsewhere, pinned %d sprites %.1f MB",
+				hits, misses, revived, dropped.size(), pinned.size(), pinnedBytes / (1024.0 * 1024.0)));
+		for (Map.Entry<Pool, LruPool> entry : pools.entrySet()) {
+			LruPool pool = entry.getValue();
+			sb.append(String.format(Locale.ENGLISH, "\n  %s: %d sprites %.1f/%.1f MB, %d evictions",
+					entry.getKey().name().toLowerCase(Locale.ENGLISH), pool.sprites.size(),
+					pool.bytes / (1024.0 * 1024.0), pool.budget / (1024.0 * 1024.0), pool.evictions));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Get the number of lookups that found a sprite.
+	 *
+	 * @return hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Get the number of lookups that did not find a sprite.
+	 *
+	 * @return misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Get the number of sprites dropped from a pool.
+	 *
+	 * @param pool pool
+	 * @return evictions
+	 */
+	public synchronized long getEvictions(Pool pool) {
+		return pools.get(pool).evictions;
+	}
+
+	/**
+	 * Get the estimated size of the sprites in a pool.
+	 *
+	 * @param pool pool
+	 * @return size in bytes
+	 */
+	public synchronized long getBytes(Pool pool) {
+		return pools.get(pool).bytes;
+	}
+
+	/**
+	 * Sprites of a pool in least recently used order.
+	 */
+	private final class LruPool {
+		/** Pool type. */
+		final Pool pool;
+		/** Memory budget in bytes. */
+		final long budget;
+		/** Cached sprites, the least recently used first. */
+		final LinkedHashMap<Object, Sprite> sprites = new LinkedHashMap<Object, Sprite>(64, 0.75f, true);
+		/** Estimated sizes of the sprites. */
+		final Map<Object, Long> sizes = new HashMap<Object, Long>();
+		/** Estimated size of all sprites. */
+		long bytes;
+		/** Number of dropped sprites. */
+		long evictions;
+
+		/**
+		 * Create a pool.
+		 *
+		 * @param pool pool type
+		 * @param budget memory budget in bytes
+		 */
+		LruPool(Pool pool, long budget) {
+			this.pool = pool;
+			this.budget = budget;
+		}
+
+		/**
+		 * Get a sprite, and mark it recently used.
+		 *
+		 * @param key cache key
+		 * @return sprite, or <code>null</code>
+		 */
+		Sprite get(Object key) {
+			return sprites.get(key);
+		}
+
+		/**
+		 * Add a sprite, and drop old sprites if the pool is over its budget.
+		 *
+		 * @param key cache key
+		 * @param sprite sprite
+		 * @param size estimated size of the sprite
+		 */
+		void put(Object key, Sprite sprite, long size) {
+			sprites.put(key, sprite);
+			sizes.put(key, Long.valueOf(size));
+			bytes += size;
+			Iterator<Map.Entry<Object, Sprite>> it = sprites.entrySet().iterator();
+			// Keep at least the newest sprite, even if it alone is over the budget
+			while ((bytes > budget) && (sprites.size() > 1)) {
+				Map.Entry<Object, Sprite> eldest = it.next();
+				Object eldestKey = eldest.getKey();
+				long eldestSize = sizes.remove(eldestKey).longValue();
+				bytes -= eldestSize;
+				it.remove();
+				evictions++;
+				dropped.put(eldestKey, new DroppedSprite(eldestKey, eldest.getValue(), pool, eldestSize, queue));
+			}
+		}
+
+		/**
+		 * Remove a sprite.
+		 *
+		 * @param key cache key
+		 */
+		void remove(Object key) {
+			if (sprites.remove(key) != null) {
+				bytes -= sizes.remove(key).longValue();
+			}
+		}
+	}
+
+	/**
+	 * A sprite dropped from a pool. Kept only as long as something else uses
+	 * it.
+	 */
+	private static final class DroppedSprite extends WeakReference<Sprite> {
+		/** Cache key. */
+		final Object key;
+		/** Pool the sprite was dropped from. */
+		final Pool pool;
+		/** Estimated size of the sprite. */
+		final long bytes;
+
+		/**
+		 * Create a DroppedSprite.
+		 *
+		 * @param key cache key
+		 * @param sprite dropped sprite
+		 * @param pool pool the sprite was dropped from
+		 * @param bytes estimated size of the sprite
+		 * @param queue queue for the garbage collector to place the reference
+		 * 	when the sprite has been collected
+		 */
+		DroppedSprite(Object key, Sprite sprite, Pool pool, long bytes, ReferenceQueue<? super Sprite> queue) {
+			super(sprite, queue);
+			this.key = key;
+			this.pool = pool;
+			this.bytes = bytes;
+		}
 	}
 }
@@ -17,8 +17,6 @@ import java.awt.Color;
 import java.awt.Composite;
 import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
-import java.awt.GraphicsEnvironment;
-import java.awt.HeadlessException;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
@@ -56,11 +54,7 @@ public class SpriteStore {
 	private GraphicsConfiguration gc;
 
 	protected SpriteStore() {
-		try {
-			gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
-		} catch (HeadlessException e) {
-			logger.warn("Cannot initialize graphic user interface: " + e);
-		}
+		gc = ImageSprite.getGC();
 	}
 
 	/**
@@ -201,7 +195,7 @@ public class SpriteStore {
 
 			sprite = loadSprite(ref);
 			if (sprite != null) {
-				cache.add(ref, sprite);
+				cache.add(ref, sprite, SpriteCache.Pool.BASE);
 			}
 		}
 
@@ -35,6 +35,15 @@ public final class Events {
 	/** attack event during a fight */
 	public static final String ATTACK = "attack";
 
+	/** an entity was healed, the amounts of one turn are summed up */
+	public static final String HEALED = "healed";
+
+	/** players on the buddy list logged on, the names of one turn are joined */
+	public static final String BUDDY_LOGIN = "buddy_login";
+
+	/** players on the buddy list logged off, the names of one turn are joined */
+	public static final String BUDDY_LOGOUT = "buddy_logout";
+
 	/** player to player trade state change event */
 	public static final String TRADE_STATE_CHANGE = "trade_state_change_event";
 
@@ -64,6 +64,13 @@ public class CStatusAction implements ActionListener {
 			nameList.put(pName, cid);
 		}
 
+		// clients which re-tint the zone on their own only need the
+		// changed attributes on daylight and weather changes
+		player.setZoneAttributeUpdates(action.has("zone_attribute_update"));
+		// clients which show heals and buddy logins from events do not need
+		// the attributes, which would be removed again in the next turn
+		player.setTransientEvents(action.has("transient_events"));
+
 		if (action.has("version")) {
 			String clientVersion = action.get("version");
 			player.setClientVersion(clientVersion);
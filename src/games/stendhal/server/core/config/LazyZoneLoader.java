@@ -0,0 +1,427 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.core.config.ZonesXMLLoader.PreparedZone;
+import games.stendhal.server.core.config.ZonesXMLLoader.ZoneDesc;
+import games.stendhal.server.core.config.zone.ConfiguratorDescriptor;
+import games.stendhal.server.core.config.zone.EntitySetupDescriptor;
+import games.stendhal.server.core.config.zone.SetupDescriptor;
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.ZoneAttributes;
+import games.stendhal.server.core.engine.transformer.PlayerTransformer;
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
+import games.stendhal.server.core.rp.DaylightUpdater;
+import games.stendhal.server.core.rp.WeatherUpdater;
+import games.stendhal.server.entity.item.Corpse;
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.mapstuff.spawner.CreatureRespawnPoint;
+import games.stendhal.server.entity.mapstuff.spawner.PassiveEntityRespawnPoint;
+import games.stendhal.server.entity.npc.SpeakerNPC;
+import marauroa.common.game.RPObject;
+import marauroa.server.db.command.DBCommandPriority;
+import marauroa.server.db.command.DBCommandQueue;
+import marauroa.server.db.command.ResultHandle;
+import marauroa.server.game.Statistics;
+import marauroa.server.game.dbcommand.StoreZoneCommand;
+
+/**
+ * Loads zones on first access and unloads them again after they have been
+ * idle for some time. This mode is enabled with -Dstendhal.zone.lazy=true.
+ *
+ * <p>Only interior zones which are not configured by code in
+ * games.stendhal.server.maps are loaded on demand, because NPCs and quests
+ * expect their zones to exist. Exterior zones are always loaded because the
+ * neighbour lookup only knows about loaded zones. Additional zones can be
+ * kept resident with -Dstendhal.zone.resident=zone1,zone2. The entry zones
+ * of PlayerTransformer, and zones which are accessed while the server
+ * starts, stay resident, too.</p>
+ *
+ * <p>A zone is unloaded after it had no players, pets, corpses, NPCs or items
+ * dropped on the ground for -Dstendhal.zone.idle seconds (default 1800).
+ * Unloading first saves the storable objects to the database. The zone stays
+ * in the world until they have been written, so that loading it again always
+ * reads the saved content. If a player enters the zone in the meantime, or
+ * the save fails, the zone stays loaded.</p>
+ */
+public class LazyZoneLoader implements TurnListener {
+	private static Logger logger = Logger.getLogger(LazyZoneLoader.class);
+
+	/** seconds between idle checks */
+	private static final int CHECK_INTERVAL = 60;
+
+	/** package of the zone configurators which set up NPCs and quests */
+	private static final String MAPS_PACKAGE = "games.stendhal.server.maps.";
+
+	private static LazyZoneLoader instance;
+
+	private final boolean enabled;
+	private final long idleMillis;
+	private final Set<String> residentZones = new HashSet<String>();
+
+	/** zones which can be loaded on demand */
+	private final Map<String, ZoneDesc> descriptors = new HashMap<String, ZoneDesc>();
+	/** zones which were loaded on demand and the time they were last in use */
+	private final Map<String, Long> lastActive = new HashMap<String, Long>();
+	/** zones which are being unloaded, waiting for their content to be stored */
+	private final Map<String, PendingUnload> unloading = new HashMap<String, PendingUnload>();
+	/** finishes the unloads once their content has been stored */
+	private final TurnListener unloadFinisher = new TurnListener() {
+		@Override
+		public void onTurnReached(final int currentTurn) {
+			if (finishUnloads()) {
+				SingletonRepository.getTurnNotifier().notifyInTurns(1, this);
+			}
+		}
+	};
+	private ZoneCache cache;
+	private boolean started;
+
+	private int loads;
+	private long loadNanos;
+	private int unloads;
+	private long unloadNanos;
+
+	/**
+	 * gets the LazyZoneLoader
+	 *
+	 * @return LazyZoneLoader
+	 */
+	public static synchronized LazyZoneLoader get() {
+		if (instance == null) {
+			instance = new LazyZoneLoader(Boolean.getBoolean("stendhal.zone.lazy"),
+					Long.getLong("stendhal.zone.idle", 1800).longValue() * 1000L,
+					System.getProperty("stendhal.zone.resident", ""));
+		}
+		return instance;
+	}
+
+	/**
+	 * creates a new LazyZoneLoader
+	 *
+	 * @param enabled true, if zones should be loaded on demand
+	 * @param idleMillis time after which idle zones are unloaded
+	 * @param resident comma separated list of zones which are always loaded
+	 */
+	LazyZoneLoader(final boolean enabled, final long idleMillis, final String resident) {
+		this.enabled = enabled;
+		this.idleMillis = idleMillis;
+		// players are placed into the entry zones when their last zone can
+		// not be used, for example because loading it on demand failed
+		residentZones.add(PlayerTransformer.DEFAULT_ENTRY_ZONE);
+		residentZones.add(PlayerTransformer.RESET_ENTRY_ZONE);
+		for (final String zone : resident.split(",")) {
+			if (!zone.trim().isEmpty()) {
+				residentZones.add(zone.trim());
+			}
+		}
+	}
+
+	/**
+	 * is loading on demand enabled?
+	 *
+	 * @return true, if zones are loaded on demand
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * keeps a zone loaded all the time. This has to be called before the
+	 * zones are loaded.
+	 *
+	 * @param name name of zone
+	 */
+	public synchronized void addResidentZone(final String name) {
+		residentZones.add(name);
+	}
+
+	/**
+	 * registers a zone to be loaded on demand, if it is suitable
+	 *
+	 * @param desc zone descriptor
+	 * @param zoneCache cache of prepared zones
+	 * @return true, if the zone is loaded on demand; false if it has to be loaded now
+	 */
+	synchronized boolean register(final ZoneDesc desc, final ZoneCache zoneCache) {
+		if (!enabled || !isSuitable(desc)) {
+			return false;
+		}
+		descriptors.put(desc.getName(), desc);
+		cache = zoneCache;
+		if (!started && (descriptors.size() == 1)) {
+			SingletonRepository.getTurnNotifier().notifyInTurns(1, this);
+		}
+		return true;
+	}
+
+	/**
+	 * checks whether a zone may be loaded on demand
+	 *
+	 * @param desc zone descriptor
+	 * @return true, if the zone may be loaded on demand
+	 */
+	boolean isSuitable(final ZoneDesc desc) {
+		if (!desc.isInterior() || (desc.getImplementation() != null)
+				|| residentZones.contains(desc.getName())) {
+			return false;
+		}
+		final Iterator<SetupDescriptor> itr = desc.getDescriptors();
+		while (itr.hasNext()) {
+			final SetupDescriptor setup = itr.next();
+			String className = null;
+			if (setup instanceof ConfiguratorDescriptor) {
+				className = ((ConfiguratorDescriptor) setup).getClassName();
+			} else if (setup instanceof EntitySetupDescriptor) {
+				className = ((EntitySetupDescriptor) setup).getImplementation();
+			}
+			if ((className != null) && className.startsWith(MAPS_PACKAGE)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * checks whether a zone is known, but currently not loaded
+	 *
+	 * @param name name of zone
+	 * @return true, if the zone will be loaded on next access
+	 */
+	public synchronized boolean isUnloaded(final String name) {
+		return descriptors.containsKey(name) && !lastActive.containsKey(name);
+	}
+
+	/**
+	 * loads a zone which is not loaded yet
+	 *
+	 * @param name name of zone
+	 * @return the zone, or <code>null</code> if it is not known to this loader
+	 */
+	public synchronized StendhalRPZone load(final String name) {
+		final ZoneDesc desc = descriptors.get(name);
+		if ((desc == null) || lastActive.containsKey(name)) {
+			return null;
+		}
+
+		final long start = System.nanoTime();
+		lastActive.put(name, Long.valueOf(System.currentTimeMillis()));
+		final PreparedZone prepared = ZonesXMLLoader.prepare(desc, cache);
+		final StendhalRPZone zone = ZonesXMLLoader.setup(prepared);
+		if (zone == null) {
+			lastActive.remove(name);
+			descriptors.remove(name);
+			return null;
+		}
+		final long duration = System.nanoTime() - start;
+		loads++;
+		loadNanos += duration;
+		logger.info("Loaded zone " + name + " on demand in "
+				+ TimeUnit.NANOSECONDS.toMillis(duration) + " ms");
+		return zone;
+	}
+
+	/**
+	 * starts unloading a zone by storing its content. The zone is removed
+	 * from the world by finishUnloads() once the content has been stored.
+	 *
+	 * @param zone zone to unload
+	 */
+	private void startUnload(final StendhalRPZone zone) {
+		final long start = System.nanoTime();
+		// always store, so that items which were removed since the last
+		// store do not come back on the next load
+		final PendingUnload pending = new PendingUnload(store(zone));
+		if (unloading.isEmpty()) {
+			SingletonRepository.getTurnNotifier().notifyInTurns(1, unloadFinisher);
+		}
+		unloading.put(zone.getName(), pending);
+		pending.nanos = System.nanoTime() - start;
+	}
+
+	/**
+	 * finishes the unloads whose content has been stored. Zones which were
+	 * used while they were stored, or whose store failed, stay loaded.
+	 *
+	 * @return true, if there are unloads still waiting for their store
+	 */
+	synchronized boolean finishUnloads() {
+		final Iterator<Map.Entry<String, PendingUnload>> itr = unloading.entrySet().iterator();
+		while (itr.hasNext()) {
+			final Map.Entry<String, PendingUnload> entry = itr.next();
+			final String name = entry.getKey();
+			final PendingUnload pending = entry.getValue();
+			final StendhalRPZone zone = SingletonRepository.getRPWorld().getZone(name);
+			if (isInUse(zone)) {
+				pending.used = true;
+			}
+			final StoreZoneCommand command = DBCommandQueue.get().getOneResult(StoreZoneCommand.class, pending.handle);
+			if (command == null) {
+				continue;
+			}
+			itr.remove();
+			if (command.getException() != null) {
+				logger.error("Failed to store idle zone " + name + ", keeping it loaded", command.getException());
+				lastActive.put(name, Long.valueOf(System.currentTimeMillis()));
+			} else if (pending.used) {
+				lastActive.put(name, Long.valueOf(System.currentTimeMillis()));
+			} else {
+				unload(zone, pending.nanos);
+			}
+		}
+		return !unloading.isEmpty();
+	}
+
+	/**
+	 * removes a zone, whose content has been stored, from the world
+	 *
+	 * @param zone zone to unload
+	 * @param storeNanos time spent on starting the store
+	 */
+	private void unload(final StendhalRPZone zone, final long storeNanos) {
+		final long start = System.nanoTime();
+		// respawn points and growers are not entities which get onRemoved()
+		final TurnNotifier turnNotifier = SingletonRepository.getTurnNotifier();
+		for (final CreatureRespawnPoint point : zone.getRespawnPointList()) {
+			turnNotifier.dontNotify(point);
+		}
+		for (final PassiveEntityRespawnPoint grower : zone.getPlantGrowers()) {
+			turnNotifier.dontNotify(grower);
+		}
+
+		final ZoneAttributes attributes = zone.getAttributes();
+		if (attributes != null) {
+			WeatherUpdater.get().releaseAttributes(attributes);
+			DaylightUpdater.get().releaseAttributes(attributes);
+		}
+		zone.onRemoved();
+		SingletonRepository.getRPWorld().removeZone(zone);
+		lastActive.remove(zone.getName());
+
+		final long duration = storeNanos + System.nanoTime() - start;
+		unloads++;
+		unloadNanos += duration;
+		logger.info("Unloaded idle zone " + zone.getName() + " in "
+				+ TimeUnit.NANOSECONDS.toMillis(duration) + " ms");
+	}
+
+	/**
+	 * checks whether a zone is in use or contains state which would be
+	 * lost by unloading it
+	 *
+	 * @param zone zone to check
+	 * @return true, if the zone must not be unloaded
+	 */
+	boolean isInUse(final StendhalRPZone zone) {
+		if (!zone.getPlayerAndFriends().isEmpty()) {
+			return true;
+		}
+		for (final RPObject object : zone) {
+			if ((object instanceof Corpse) || (object instanceof SpeakerNPC)) {
+				return true;
+			}
+			if ((object instanceof Item) && (((Item) object).getPlantGrower() == null)
+					&& !object.isStorable()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * stores the content of a zone like StendhalRPZone.storeToDatabase(), but
+	 * keeps track of the store, so that the unload can wait for it.
+	 *
+	 * @param zone zone to store
+	 * @return handle for the result of the store
+	 */
+	private ResultHandle store(final StendhalRPZone zone) {
+		final List<RPObject> content = new LinkedList<RPObject>();
+		for (final RPObject object : zone) {
+			content.add((RPObject) object.clone());
+		}
+		final ResultHandle handle = new ResultHandle();
+		DBCommandQueue.get().enqueueAndAwaitResult(new StoreZoneCommand(zone, content),
+				DBCommandPriority.CRITICAL, handle);
+		return handle;
+	}
+
+	@Override
+	public synchronized void onTurnReached(final int currentTurn) {
+		if (!started) {
+			// zones which were needed to start the server stay loaded
+			for (final String name : lastActive.keySet()) {
+				descriptors.remove(name);
+			}
+			lastActive.clear();
+			started = true;
+		}
+
+		final long now = System.currentTimeMillis();
+		final List<String> names = new ArrayList<String>(lastActive.keySet());
+		for (final String name : names) {
+			if (unloading.containsKey(name)) {
+				continue;
+			}
+			final StendhalRPZone zone = SingletonRepository.getRPWorld().getZone(name);
+			if (isInUse(zone)) {
+				lastActive.put(name, Long.valueOf(now));
+			} else if (now - lastActive.get(name).longValue() >= idleMillis) {
+				startUnload(zone);
+			}
+		}
+
+		final Statistics stats = Statistics.getStatistics();
+		stats.set("Zones loaded on demand", lastActive.size());
+		stats.set("Zone loads", loads);
+		stats.set("Zone load ms", (int) TimeUnit.NANOSECONDS.toMillis(loadNanos / Math.max(1, loads)));
+		stats.set("Zone unloads", unloads);
+		stats.set("Zone unload ms", (int) TimeUnit.NANOSECONDS.toMillis(unloadNanos / Math.max(1, unloads)));
+
+		SingletonRepository.getTurnNotifier().notifyInSeconds(CHECK_INTERVAL, this);
+	}
+
+	/**
+	 * a zone which is being unloaded
+	 */
+	private static final class PendingUnload {
+		/** handle for the result of storing the zone content */
+		final ResultHandle handle;
+		/** time spent on starting the store */
+		long nanos;
+		/** true, if the zone was used while its content was stored */
+		boolean used;
+
+		/**
+		 * creates a new PendingUnload
+		 *
+		 * @param handle handle for the result of storing the zone content
+		 */
+		PendingUnload(final ResultHandle handle) {
+			this.handle = handle;
+		}
+	}
+}
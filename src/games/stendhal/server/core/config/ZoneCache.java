@@ -0,0 +1,277 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.hash.Hashing;
+
+import games.stendhal.common.CollisionDetection;
+import games.stendhal.common.tiled.LayerDefinition;
+import games.stendhal.common.tiled.StendhalMapStructure;
+import games.stendhal.common.tiled.TileSetDefinition;
+import games.stendhal.server.core.config.ZonesXMLLoader.PreparedZone;
+import games.stendhal.server.core.config.ZonesXMLLoader.ZoneDesc;
+import marauroa.common.net.InputSerializer;
+
+/**
+ * On-disk cache of prepared zones. For each map file the cache stores the
+ * encoded layers and tilesets which are sent to the client, the collision
+ * and protection maps and the objects layer, so that unchanged maps can be
+ * loaded without parsing the XML and without compressing the layers again.
+ *
+ * <p>An entry is only used if the hash of the map file matches the hash
+ * stored in the entry. The cache directory can be set with
+ * -Dstendhal.zone.cache=directory, an empty value disables the cache.</p>
+ */
+class ZoneCache {
+	private static Logger logger = Logger.getLogger(ZoneCache.class);
+
+	/** "SZC" and the version of the file format */
+	private static final int MAGIC = 0x535A4301;
+
+	private static final String DEFAULT_DIRECTORY = "cache" + File.separator + "zones";
+
+	private final Path directory;
+
+	/**
+	 * creates a new ZoneCache
+	 *
+	 * @param directory cache directory, <code>null</code> to disable the cache
+	 */
+	ZoneCache(final Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * creates a ZoneCache for the configured directory
+	 *
+	 * @return ZoneCache
+	 */
+	static ZoneCache create() {
+		final String dir = System.getProperty("stendhal.zone.cache", DEFAULT_DIRECTORY);
+		if (dir.trim().isEmpty()) {
+			return new ZoneCache(null);
+		}
+		return new ZoneCache(Paths.get(dir));
+	}
+
+	/**
+	 * calculates the hash of the content of a map file
+	 *
+	 * @param source content of the map file
+	 * @return hash
+	 */
+	static String hash(final byte[] source) {
+		return Hashing.sha256().hashBytes(source).toString();
+	}
+
+	/**
+	 * reads a prepared zone from the cache
+	 *
+	 * @param desc zone descriptor
+	 * @param hash hash of the map file
+	 * @return prepared zone or <code>null</code>, if there is no valid entry
+	 */
+	PreparedZone read(final ZoneDesc desc, final String hash) {
+		if (directory == null) {
+			return null;
+		}
+		final Path file = getFile(desc);
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if ((buffer.getInt() != MAGIC) || !hash.equals(readString(buffer))) {
+				return null;
+			}
+
+			final PreparedZone prepared = new PreparedZone(desc);
+			final int width = buffer.getInt();
+			final int height = buffer.getInt();
+			final StendhalMapStructure zonedata = new StendhalMapStructure(width, height);
+			final int tilesetCount = buffer.getInt();
+			for (int i = 0; i < tilesetCount; i++) {
+				final TileSetDefinition tileset = new TileSetDefinition(null, null, 0);
+				tileset.readObject(new InputSerializer(new ByteArrayInputStream(readBytes(buffer))));
+				zonedata.addTileset(tileset);
+			}
+
+			prepared.tilesets = readBytes(buffer);
+			final int layerCount = buffer.getInt();
+			for (int i = 0; i < layerCount; i++) {
+				final String name = readString(buffer);
+				prepared.layers.put(name, readBytes(buffer));
+			}
+			prepared.collisionLayer = readBytes(buffer);
+			prepared.collision = readCollision(buffer);
+			prepared.protectionLayer = readBytes(buffer);
+			prepared.protection = readCollision(buffer);
+
+			final LayerDefinition objects = new LayerDefinition(buffer.getInt(), buffer.getInt());
+			objects.setName("objects");
+			buffer.get(objects.exposeRaw());
+			zonedata.addLayer(objects);
+
+			prepared.zonedata = zonedata;
+			prepared.cached = true;
+			return prepared;
+		} catch (final IOException | RuntimeException e) {
+			logger.warn("Ignoring invalid zone cache entry " + file + ": " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * writes a prepared zone to the cache
+	 *
+	 * @param prepared prepared zone
+	 * @param hash hash of the map file
+	 */
+	void write(final PreparedZone prepared, final String hash) {
+		if (directory == null) {
+			return;
+		}
+		final Path file = getFile(prepared.desc);
+		Path temp = null;
+		try {
+			Files.createDirectories(directory);
+			temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+			try (OutputStream stream = Files.newOutputStream(temp);
+					DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+				write(out, prepared, hash);
+			}
+			// several zones may use the same map file, so the entry is
+			// replaced atomically
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			logger.warn("Cannot write zone cache entry " + file + ": " + e);
+			if (temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (final IOException e2) {
+					logger.debug(e2, e2);
+				}
+			}
+		}
+	}
+
+	private void write(final DataOutputStream out, final PreparedZone prepared, final String hash)
+			throws IOException {
+		final StendhalMapStructure zonedata = prepared.zonedata;
+		out.writeInt(MAGIC);
+		writeString(out, hash);
+		out.writeInt(zonedata.getWidth());
+		out.writeInt(zonedata.getHeight());
+		final List<TileSetDefinition> tilesets = zonedata.getTilesets();
+		out.writeInt(tilesets.size());
+		for (final TileSetDefinition tileset : tilesets) {
+			writeBytes(out, tileset.encode());
+		}
+
+		writeBytes(out, prepared.tilesets);
+		out.writeInt(prepared.layers.size());
+		for (final Map.Entry<String, byte[]> layer : prepared.layers.entrySet()) {
+			writeString(out, layer.getKey());
+			writeBytes(out, layer.getValue());
+		}
+		writeBytes(out, prepared.collisionLayer);
+		writeCollision(out, zonedata.getLayer("collision"));
+		writeBytes(out, prepared.protectionLayer);
+		writeCollision(out, zonedata.getLayer("protection"));
+
+		final LayerDefinition objects = zonedata.getLayer("objects");
+		out.writeInt(objects.getWidth());
+		out.writeInt(objects.getHeight());
+		out.write(objects.exposeRaw());
+	}
+
+	/**
+	 * gets the cache file for a zone
+	 *
+	 * @param desc zone descriptor
+	 * @return cache file
+	 */
+	private Path getFile(final ZoneDesc desc) {
+		return directory.resolve(desc.getFile().replaceAll("[^A-Za-z0-9._-]", "_") + ".cache");
+	}
+
+	/**
+	 * writes a collision map as bit set. The layer must have been built.
+	 */
+	private void writeCollision(final DataOutputStream out, final LayerDefinition layer) throws IOException {
+		final int width = layer.getWidth();
+		final int height = layer.getHeight();
+		out.writeInt(width);
+		out.writeInt(height);
+		final BitSet bits = new BitSet(width * height);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (layer.getTileAt(x, y) != 0) {
+					bits.set(y * width + x);
+				}
+			}
+		}
+		writeBytes(out, bits.toByteArray());
+	}
+
+	private CollisionDetection readCollision(final ByteBuffer buffer) {
+		final int width = buffer.getInt();
+		final int height = buffer.getInt();
+		final BitSet bits = BitSet.valueOf(readBytes(buffer));
+		final CollisionDetection collision = new CollisionDetection();
+		collision.init(width, height);
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+			collision.setCollide(i % width, i / width);
+		}
+		return collision;
+	}
+
+	private void writeBytes(final DataOutputStream out, final byte[] data) throws IOException {
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	private byte[] readBytes(final ByteBuffer buffer) {
+		final byte[] data = new byte[buffer.getInt()];
+		buffer.get(data);
+		return data;
+	}
+
+	private void writeString(final DataOutputStream out, final String string) throws IOException {
+		writeBytes(out, string.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String readString(final ByteBuffer buffer) {
+		return new String(readBytes(buffer), StandardCharsets.UTF_8);
+	}
+}
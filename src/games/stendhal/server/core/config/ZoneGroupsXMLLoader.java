@@ -18,6 +18,7 @@ package games.stendhal.server.core.config;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
@@ -57,19 +58,25 @@ public class ZoneGroupsXMLLoader extends DefaultHandler {
 		final GroupsXMLLoader groupsLoader = new GroupsXMLLoader(uri);
 		final List<URI> zoneGroups = groupsLoader.load();
 
-		// Load each group
+		// Read each group, the zones of all groups are loaded together
+		final List<ZonesXMLLoader.ZoneDesc> zones = new ArrayList<ZonesXMLLoader.ZoneDesc>();
 		for (final URI tempUri : zoneGroups) {
 			LOGGER.debug("Loading zone group [" + tempUri + "]");
 
 			final ZonesXMLLoader loader = new ZonesXMLLoader(tempUri);
 
 			try {
-				loader.load();
+				zones.addAll(loader.readZones());
 			} catch (final SAXException ex) {
 				LOGGER.error("Error loading zone group: " + tempUri, ex);
 			} catch (final IOException ex) {
 				LOGGER.error("Error loading zone group: " + tempUri, ex);
 			}
 		}
+
+		final long start = System.currentTimeMillis();
+		ZonesXMLLoader.loadZones(zones);
+		LOGGER.info("Loaded " + zones.size() + " zones in "
+				+ (System.currentTimeMillis() - start) + " ms");
 	}
 }
@@ -22,9 +22,17 @@ import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.w3c.dom.Document;
@@ -34,6 +42,7 @@ import org.xml.sax.SAXException;
 //
 //
 
+import games.stendhal.common.CollisionDetection;
 import games.stendhal.common.tiled.LayerDefinition;
 import games.stendhal.common.tiled.StendhalMapStructure;
 import games.stendhal.server.core.config.zone.AttributesXMLReader;
@@ -103,6 +112,22 @@ public final class ZonesXMLLoader {
 	 *             If the resource was not found.
 	 */
 	public void load() throws SAXException, IOException {
+		loadZones(readZones());
+	}
+
+	/**
+	 * Reads the descriptors of the zones in the group without loading them.
+	 *
+	 * @return zone descriptors in the order of the configuration file
+	 *
+	 * @throws SAXException
+	 *             If a SAX error occurred.
+	 * @throws IOException
+	 *             If an I/O error occurred.
+	 * @throws FileNotFoundException
+	 *             If the resource was not found.
+	 */
+	public List<ZoneDesc> readZones() throws SAXException, IOException {
 		final InputStream in = ZonesXMLLoader.class.getResourceAsStream(uri.getPath());
 
 		if (in == null) {
@@ -110,7 +135,7 @@ public final class ZonesXMLLoader {
 		}
 
 		try {
-			load(in);
+			return readZones(in);
 		} finally {
 			in.close();
 		}
@@ -128,6 +153,22 @@ public final class ZonesXMLLoader {
 	 *             If an I/O error occurred.
 	 */
 	protected void load(final InputStream in) throws SAXException, IOException {
+		loadZones(readZones(in));
+	}
+
+	/**
+	 * Reads the descriptors of the zones in a config file.
+	 *
+	 * @param in
+	 *            The config file stream.
+	 * @return zone descriptors in the order of the configuration file
+	 *
+	 * @throws SAXException
+	 *             If a SAX error occurred.
+	 * @throws IOException
+	 *             If an I/O error occurred.
+	 */
+	protected List<ZoneDesc> readZones(final InputStream in) throws SAXException, IOException {
 		final Document doc = XMLUtil.parse(in);
 
 		// just to speed up starting of the server in while developing
@@ -137,9 +178,7 @@ public final class ZonesXMLLoader {
 		// if there is a problem with the zone
 		final String regex = System.getProperty("stendhal.zone.regex", ".*");
 
-		/*
-		 * Load each zone
-		 */
+		final List<ZoneDesc> zones = new ArrayList<ZoneDesc>();
 		for (final Element element : XMLUtil.getElements(doc.getDocumentElement(), "zone")) {
 			final ZoneDesc zdesc = readZone(element);
 
@@ -151,38 +190,139 @@ public final class ZonesXMLLoader {
 			if (!name.matches(regex) && !name.equals("int_semos_townhall") && !name.equals("int_semos_guard_house")) {
 				continue;
 			}
+			zones.add(zdesc);
+		}
+		return zones;
+	}
 
-			logger.info("Loading zone: " + name);
-
-			try {
-				final StendhalMapStructure zonedata = TMXLoader.load(StendhalRPWorld.MAPS_FOLDER
-						+ zdesc.getFile());
+	/**
+	 * Loads zones into the world. The map files are decoded and the layers
+	 * are compressed in parallel, while the zones are added to the world and
+	 * configured one after another in the specified order. The number of
+	 * threads can be set with -Dstendhal.zone.threads=n.
+	 *
+	 * @param zones descriptors of the zones to load
+	 */
+	static void loadZones(final List<ZoneDesc> zones) {
+		final int threads = Math.max(1, Integer.getInteger("stendhal.zone.threads",
+				Runtime.getRuntime().availableProcessors()).intValue());
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		final ZoneCache cache = ZoneCache.create();
+		try {
+			final Queue<ForkJoinTask<PreparedZone>> tasks = new ArrayDeque<ForkJoinTask<PreparedZone>>(zones.size());
+			final LazyZoneLoader lazyLoader = LazyZoneLoader.get();
+			for (final ZoneDesc zdesc : zones) {
+				if (lazyLoader.register(zdesc, cache)) {
+					continue;
+				}
+				tasks.add(pool.submit(new Callable<PreparedZone>() {
+					@Override
+					public PreparedZone call() {
+						return prepare(zdesc, cache);
+					}
+				}));
+			}
 
-				if (verifyMap(zdesc, zonedata)) {
-					final StendhalRPZone zone = load(zdesc, zonedata);
+			// take the tasks off the queue, so that the map data of each
+			// zone can be collected as soon as the zone has been set up
+			ForkJoinTask<PreparedZone> task = tasks.poll();
+			while (task != null) {
+				setup(task.join());
+				task = tasks.poll();
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
 
-					/*
-					 * Setup Descriptors
-					 */
-					final Iterator<SetupDescriptor> diter = zdesc.getDescriptors();
+	/**
+	 * Reads the map of a zone and prepares the data which does not depend
+	 * on the world. This is executed in parallel for several zones. If the
+	 * map file did not change since it was cached, the prepared data is read
+	 * from the cache.
+	 *
+	 * @param zdesc zone descriptor
+	 * @param cache cache of prepared zones
+	 * @return prepared zone
+	 */
+	static PreparedZone prepare(final ZoneDesc zdesc, final ZoneCache cache) {
+		final long start = System.nanoTime();
+		PreparedZone prepared = new PreparedZone(zdesc);
+		try {
+			final String filename = StendhalRPWorld.MAPS_FOLDER + zdesc.getFile();
+			final byte[] source = TMXLoader.readFile(filename);
+			final String hash = ZoneCache.hash(source);
+			final PreparedZone cached = cache.read(zdesc, hash);
+			if (cached != null) {
+				prepared = cached;
+			} else {
+				final StendhalMapStructure zonedata = TMXLoader.load(filename, source);
 
-					while (diter.hasNext()) {
-						diter.next().setup(zone);
-					}
-					// Zone configurators can add creatures, so this should be
-					// done after them
-					zone.calculateDangerLevel();
+				if (verifyMap(zdesc, zonedata)) {
+					prepared.prepare(zonedata);
+					cache.write(prepared, hash);
 				}
-			} catch (final Exception ex) {
-				logger.error("Error loading zone: " + name, ex);
 			}
+		} catch (final Exception ex) {
+			prepared.error = ex;
 		}
+		prepared.prepareNanos = System.nanoTime() - start;
+		return prepared;
+	}
+
+	/**
+	 * Adds a prepared zone to the world and configures it.
+	 *
+	 * @param prepared prepared zone
+	 * @return the zone, or <code>null</code> if it could not be loaded
+	 */
+	static StendhalRPZone setup(final PreparedZone prepared) {
+		final String name = prepared.desc.getName();
+		if (prepared.error != null) {
+			logger.error("Error loading zone: " + name, prepared.error);
+			return null;
+		}
+		if (prepared.zonedata == null) {
+			return null;
+		}
+
+		final long start = System.nanoTime();
+		StendhalRPZone zone = null;
+		try {
+			zone = load(prepared);
+
+			/*
+			 * Setup Descriptors
+			 */
+			final Iterator<SetupDescriptor> diter = prepared.desc.getDescriptors();
+
+			while (diter.hasNext()) {
+				diter.next().setup(zone);
+			}
+			// Zone configurators can add creatures, so this should be
+			// done after them
+			zone.calculateDangerLevel();
+		} catch (final Exception ex) {
+			logger.error("Error loading zone: " + name, ex);
+		}
+		logger.info("Loaded zone " + name + " (map: "
+				+ TimeUnit.NANOSECONDS.toMillis(prepared.prepareNanos) + " ms"
+				+ (prepared.cached ? " from cache" : "") + ", setup: "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms)");
+		return zone;
 	}
 
 	private static final String[] REQUIRED_LAYERS = { "0_floor", "1_terrain",
 			"2_object", "objects", "collision", "protection" };
 
-	private boolean verifyMap(final ZoneDesc zdesc, final StendhalMapStructure zonedata) {
+	/** layers which are transferred to the client */
+	private static final String[] CLIENT_LAYERS = { "0_floor", "1_terrain", "2_object",
+			// Roof layers are optional
+			"3_roof", "4_roof_add",
+			// Effect layers are optional too
+			"blend_ground", "blend_roof" };
+
+	private static boolean verifyMap(final ZoneDesc zdesc, final StendhalMapStructure zonedata) {
 		for (final String layer : REQUIRED_LAYERS) {
 			if (!zonedata.hasLayer(layer)) {
 				logger.error("Required layer " + layer + " missing in zone "
@@ -196,16 +336,11 @@ public final class ZonesXMLLoader {
 	/**
 	 * Load zone data and create a new zone from it. Most of this should be moved
 	 * directly into ZoneXMLLoader.
-	 * @param desc the zone's descriptor
-	 * @param zonedata to be loaded
+	 * @param prepared the prepared zone data
 	 * @return the created zone
-	 * @throws SAXException if any xml parsing error happened
-	 * @throws IOException if any IO error happened
-	 *
-	 *
 	 */
-	protected StendhalRPZone load(final ZoneDesc desc, final StendhalMapStructure zonedata)
-			throws SAXException, IOException {
+	protected static StendhalRPZone load(final PreparedZone prepared) {
+		final ZoneDesc desc = prepared.desc;
 		final String name = desc.getName();
 
 		final StendhalRPZone zone;
@@ -215,22 +350,15 @@ public final class ZonesXMLLoader {
 			zone = createZone(desc, name);
 		}
 
-		zone.addTilesets(name + ".tilesets", zonedata.getTilesets());
-		zone.addLayer(name + ".0_floor", zonedata.getLayer("0_floor"));
-		zone.addLayer(name + ".1_terrain", zonedata.getLayer("1_terrain"));
-		zone.addLayer(name + ".2_object", zonedata.getLayer("2_object"));
-
-		// Roof layers are optional
-		loadOptionalLayer(zone, zonedata, "3_roof");
-		loadOptionalLayer(zone, zonedata, "4_roof_add");
-		// Effect layers are optional too
-		loadOptionalLayer(zone, zonedata, "blend_ground");
-		loadOptionalLayer(zone, zonedata, "blend_roof");
+		zone.addEncodedLayer(name + ".tilesets", prepared.tilesets);
+		for (final Map.Entry<String, byte[]> layer : prepared.layers.entrySet()) {
+			zone.addEncodedLayer(name + "." + layer.getKey(), layer.getValue());
+		}
 
-		zone.addCollisionLayer(name + ".collision",
-				zonedata.getLayer("collision"));
-		zone.addProtectionLayer(name + ".protection",
-				zonedata.getLayer("protection"));
+		zone.addCollisionLayer(name + ".collision", prepared.collisionLayer,
+				prepared.collision);
+		zone.addProtectionLayer(name + ".protection", prepared.protectionLayer,
+				prepared.protection);
 
 		if (desc.isInterior()) {
 			zone.setPosition();
@@ -253,29 +381,13 @@ public final class ZonesXMLLoader {
 			logger.error(e, e);
 		}
 
-		zone.populate(zonedata.getLayer("objects"));
+		zone.populate(prepared.zonedata.getLayer("objects"));
 
 		return zone;
 	}
 
-	/**
-	 * Load an optional layer, if present, to a zone.
-	 *
-	 * @param zone
-	 * @param zonedata
-	 * @param layerName
-	 * @throws IOException
-	 */
-	private void loadOptionalLayer(StendhalRPZone zone,
-			StendhalMapStructure zonedata, String layerName) throws IOException {
-		LayerDefinition layer = zonedata.getLayer(layerName);
-		if (layer != null) {
-			zone.addLayer(zone.getName() + "." + layerName, layer);
-		}
-	}
-
 	@SuppressWarnings("unchecked")
-	private StendhalRPZone createZone(final ZoneDesc desc, final String name)  {
+	private static StendhalRPZone createZone(final ZoneDesc desc, final String name)  {
 		try {
 			Class<StendhalRPZone> zoneclass = (Class<StendhalRPZone>) Class.forName(desc.getImplementation());
 			Constructor<StendhalRPZone> constr = zoneclass.getConstructor(String.class);
@@ -480,6 +592,67 @@ public final class ZonesXMLLoader {
 	//
 	//
 
+	/**
+	 * Zone data which has been read and encoded before the zone is created.
+	 */
+	protected static class PreparedZone {
+		protected final ZoneDesc desc;
+
+		protected StendhalMapStructure zonedata;
+
+		protected byte[] tilesets;
+
+		/** encoded layers for the client by layer name */
+		protected final Map<String, byte[]> layers = new LinkedHashMap<String, byte[]>();
+
+		protected byte[] collisionLayer;
+
+		protected CollisionDetection collision;
+
+		protected byte[] protectionLayer;
+
+		protected CollisionDetection protection;
+
+		protected long prepareNanos;
+
+		/** true, if the data was read from the zone cache */
+		protected boolean cached;
+
+		protected Exception error;
+
+		public PreparedZone(final ZoneDesc desc) {
+			this.desc = desc;
+		}
+
+		/**
+		 * Encodes the layers and builds the collision and protection maps.
+		 *
+		 * @param zonedata map of the zone
+		 * @throws IOException in case of an encoding error
+		 */
+		void prepare(final StendhalMapStructure zonedata) throws IOException {
+			tilesets = StendhalRPZone.encodeTilesets(zonedata.getTilesets());
+			for (final String layerName : CLIENT_LAYERS) {
+				final LayerDefinition layer = zonedata.getLayer(layerName);
+				if (layer != null) {
+					layers.put(layerName, layer.encode());
+				}
+			}
+
+			final LayerDefinition collisionData = zonedata.getLayer("collision");
+			collisionLayer = collisionData.encode();
+			collision = new CollisionDetection();
+			collision.setCollisionData(collisionData);
+
+			final LayerDefinition protectionData = zonedata.getLayer("protection");
+			protectionLayer = protectionData.encode();
+			protection = new CollisionDetection();
+			protection.setCollisionData(protectionData);
+
+			this.zonedata = zonedata;
+		}
+	}
+
 	/**
 	 * A zone descriptor.
 	 */
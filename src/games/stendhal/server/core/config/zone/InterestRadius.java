@@ -0,0 +1,62 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config.zone;
+
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.core.config.ZoneConfigurator;
+import games.stendhal.server.core.engine.StendhalRPZone;
+
+/**
+ * Sends only the entities near a player to its client. This is meant for
+ * large zones with many creatures. Far away players and creatures are not
+ * shown on the minimap of the client.
+ *
+ * <pre>
+ * &lt;configurator class-name="games.stendhal.server.core.config.zone.InterestRadius"&gt;
+ *   &lt;parameter name="radius"&gt;40&lt;/parameter&gt;
+ * &lt;/configurator&gt;
+ * </pre>
+ */
+public class InterestRadius implements ZoneConfigurator {
+	private static final Logger logger = Logger.getLogger(InterestRadius.class);
+
+	/** the radius has to cover the screen of the clients */
+	private static final int MIN_RADIUS = 32;
+
+	/**
+	 * Configure a zone.
+	 *
+	 * @param	zone		The zone to be configured.
+	 * @param	attributes	Configuration attributes.
+	 */
+	@Override
+	public void configureZone(final StendhalRPZone zone, final Map<String, String> attributes) {
+		int radius = 48;
+		final String value = attributes.get("radius");
+		if (value != null) {
+			try {
+				radius = Integer.parseInt(value);
+			} catch (final NumberFormatException e) {
+				logger.error("Invalid interest radius for " + zone.getName() + ": " + value);
+				return;
+			}
+		}
+		if (radius < MIN_RADIUS) {
+			logger.warn("Interest radius of " + zone.getName() + " increased to " + MIN_RADIUS);
+			radius = MIN_RADIUS;
+		}
+		zone.setInterestRadius(radius);
+	}
+}
@@ -14,6 +14,7 @@ package games.stendhal.server.core.config.zone;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -32,6 +33,8 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import com.google.common.io.ByteStreams;
+
 import games.stendhal.common.Base64;
 import games.stendhal.common.tiled.LayerDefinition;
 import games.stendhal.common.tiled.StendhalMapStructure;
@@ -250,10 +253,40 @@ public class TMXLoader {
 	}
 
 	public StendhalMapStructure readMap(final String filename) throws Exception {
+		return readMap(filename, readFile(filename));
+	}
+
+	/**
+	 * Parses a map from the already read content of the map file.
+	 *
+	 * @param filename name of the map file
+	 * @param data content of the map file
+	 * @return map
+	 * @throws Exception in case the map cannot be parsed
+	 */
+	public StendhalMapStructure readMap(final String filename, final byte[] data) throws Exception {
 		xmlPath = filename.substring(0,
 				filename.lastIndexOf(File.separatorChar) + 1);
 
-		InputStream is = getClass().getClassLoader().getResourceAsStream(
+		InputStream is = new ByteArrayInputStream(data);
+
+		// Wrap with GZIP decoder for .tmx.gz files
+		if (filename.endsWith(".gz")) {
+			is = new GZIPInputStream(is);
+		}
+
+		return unmarshal(is);
+	}
+
+	/**
+	 * Reads the content of a map file.
+	 *
+	 * @param filename name of the map file
+	 * @return content of the file
+	 * @throws IOException in case of an input/output error
+	 */
+	public static byte[] readFile(final String filename) throws IOException {
+		InputStream is = TMXLoader.class.getClassLoader().getResourceAsStream(
 				filename);
 
 		if (is == null) {
@@ -264,12 +297,11 @@ public class TMXLoader {
 			is = url.openStream();
 		}
 
-		// Wrap with GZIP decoder for .tmx.gz files
-		if (filename.endsWith(".gz")) {
-			is = new GZIPInputStream(is);
+		try {
+			return ByteStreams.toByteArray(is);
+		} finally {
+			is.close();
 		}
-
-		return unmarshal(is);
 	}
 
 	public static void main(final String[] args) throws Exception {
@@ -321,4 +353,8 @@ public class TMXLoader {
 	public static StendhalMapStructure load(final String filename) throws Exception {
 		return new TMXLoader().readMap(filename);
 	}
+
+	public static StendhalMapStructure load(final String filename, final byte[] data) throws Exception {
+		return new TMXLoader().readMap(filename, data);
+	}
 }
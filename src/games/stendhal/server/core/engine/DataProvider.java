@@ -14,7 +14,7 @@ package games.stendhal.server.core.engine;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -63,7 +63,7 @@ public class DataProvider {
 			content.name = file.getName();
 			content.cacheable = true;
 			content.data = IO.readFileContent(file.getAbsolutePath());
-			data.put(entry.getKey().toString(), Arrays.asList(content));
+			data.put(entry.getKey().toString(), Collections.singletonList(content));
 		}
 	}
 
@@ -88,7 +88,7 @@ public class DataProvider {
 	 * gets the data
 	 *
 	 * @param version version
-	 * @return content
+	 * @return unmodifiable content, or <code>null</code> if there is no data for the version
 	 */
 	public List<TransferContent> getData(String version) {
 		if (data == null) {
@@ -0,0 +1,289 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import games.stendhal.server.entity.Entity;
+import marauroa.common.game.IRPZone;
+import marauroa.common.game.Perception;
+import marauroa.common.game.RPObject;
+
+/**
+ * Restricts the perceptions of the players on a large zone to the entities
+ * near them. Entities which come closer than the interest radius are sent
+ * as added objects, entities which move further away than the radius and a
+ * small margin are sent as deleted objects. Changes of entities which are
+ * out of range are not sent at all.
+ *
+ * <p>The entities are sorted into a grid once per turn, so that only the
+ * cells near a player need to be looked at.</p>
+ */
+final class InterestManager {
+	/** size of a grid cell in tiles */
+	private static final int CELL_SIZE = 16;
+	/** entities are kept until they are this much further away than the radius */
+	private static final int MARGIN = 4;
+
+	private final StendhalRPZone zone;
+	private final int radius;
+
+	/** ids of the objects each player's client knows about */
+	private final Map<RPObject, Set<RPObject.ID>> visible = new IdentityHashMap<RPObject, Set<RPObject.ID>>();
+
+	/** grid of the entities of this turn, <code>null</code> until it is needed */
+	private Map<Long, List<Entity>> grid;
+	/** size of the largest entity in the grid */
+	private int maxSize;
+	/** objects without a position, which are always of interest */
+	private final List<RPObject> unplaced = new ArrayList<RPObject>();
+
+	/**
+	 * Zone id of a perception for a single player. Marauroa caches the
+	 * encoded perception of a zone for all its players by the zone id, so
+	 * every filtered perception needs its own id.
+	 */
+	private static final class PlayerZoneID extends IRPZone.ID {
+		PlayerZoneID(final String id) {
+			super(id);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			return this == obj;
+		}
+
+		@Override
+		public int hashCode() {
+			return super.hashCode();
+		}
+	}
+
+	/**
+	 * creates a new InterestManager
+	 *
+	 * @param zone zone
+	 * @param radius interest radius in tiles
+	 */
+	InterestManager(final StendhalRPZone zone, final int radius) {
+		this.zone = zone;
+		this.radius = radius;
+	}
+
+	/**
+	 * gets the interest radius
+	 *
+	 * @return radius in tiles
+	 */
+	int getRadius() {
+		return radius;
+	}
+
+	/**
+	 * restricts the perception of the zone to the entities near a player
+	 *
+	 * @param player player who receives the perception
+	 * @param type Perception.SYNC or Perception.DELTA
+	 * @param perception perception of the whole zone
+	 * @return perception for the player
+	 */
+	Perception filter(final RPObject player, final byte type, final Perception perception) {
+		final Perception result = new Perception(type, new PlayerZoneID(zone.getName()));
+		Set<RPObject.ID> known = visible.get(player);
+		if ((known == null) && (type == Perception.DELTA)) {
+			// the client got the complete zone before the filter was used
+			known = new HashSet<RPObject.ID>();
+			for (final RPObject object : zone) {
+				if (!object.isHidden()) {
+					known.add(object.getID());
+				}
+			}
+			visible.put(player, known);
+		}
+
+		if (type == Perception.SYNC) {
+			known = new HashSet<RPObject.ID>();
+			visible.put(player, known);
+			for (final RPObject object : perception.addedList) {
+				if (isInterested(player, object, false)) {
+					result.addedList.add(object);
+					known.add(object.getID());
+				}
+			}
+			return result;
+		}
+
+		final Set<RPObject.ID> near = findNear(player, known);
+		for (final RPObject object : perception.deletedList) {
+			if (known.remove(object.getID())) {
+				result.deletedList.add(object);
+			}
+		}
+		for (final RPObject object : perception.modifiedAddedList) {
+			if (known.contains(object.getID()) && near.contains(object.getID())) {
+				result.modifiedAddedList.add(object);
+			}
+		}
+		for (final RPObject object : perception.modifiedDeletedList) {
+			if (known.contains(object.getID()) && near.contains(object.getID())) {
+				result.modifiedDeletedList.add(object);
+			}
+		}
+		for (final RPObject object : perception.addedList) {
+			if (near.contains(object.getID()) && known.add(object.getID())) {
+				result.addedList.add(object);
+			}
+		}
+
+		// entities which left the area of interest
+		final Iterator<RPObject.ID> it = known.iterator();
+		while (it.hasNext()) {
+			final RPObject.ID id = it.next();
+			if (!near.contains(id)) {
+				it.remove();
+				final RPObject object = zone.get(id);
+				if (object != null) {
+					result.deletedList.add(object);
+				}
+			}
+		}
+		// entities which entered it
+		for (final RPObject.ID id : near) {
+			if (known.add(id)) {
+				result.addedList.add(zone.get(id));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * finds the entities a player is interested in
+	 *
+	 * @param player player
+	 * @param known ids of the objects the client knows about
+	 * @return ids of the entities
+	 */
+	private Set<RPObject.ID> findNear(final RPObject player, final Set<RPObject.ID> known) {
+		if (grid == null) {
+			buildGrid();
+		}
+		final Set<RPObject.ID> near = new HashSet<RPObject.ID>();
+		near.add(player.getID());
+		if (!(player instanceof Entity)) {
+			return near;
+		}
+		final Entity center = (Entity) player;
+		final int range = radius + MARGIN;
+		final int minX = cell(center.getX() - range - maxSize);
+		final int maxX = cell(center.getX() + range);
+		final int minY = cell(center.getY() - range - maxSize);
+		final int maxY = cell(center.getY() + range);
+		for (int x = minX; x <= maxX; x++) {
+			for (int y = minY; y <= maxY; y++) {
+				final List<Entity> entities = grid.get(key(x, y));
+				if (entities == null) {
+					continue;
+				}
+				for (final Entity entity : entities) {
+					if (isInterested(center, entity, known.contains(entity.getID()))) {
+						near.add(entity.getID());
+					}
+				}
+			}
+		}
+		for (final RPObject object : unplaced) {
+			near.add(object.getID());
+		}
+		return near;
+	}
+
+	/**
+	 * checks whether a player is interested in an object
+	 *
+	 * @param player player
+	 * @param object object
+	 * @param known <code>true</code>, if the client already knows the object
+	 * @return <code>true</code>, if the object should be sent to the player
+	 */
+	private boolean isInterested(final RPObject player, final RPObject object, final boolean known) {
+		if ((object == player) || !(player instanceof Entity) || !(object instanceof Entity)) {
+			return true;
+		}
+		final Entity center = (Entity) player;
+		final Entity entity = (Entity) object;
+		final double dx = Math.max(0, Math.max(entity.getX() - center.getX(),
+				center.getX() - (entity.getX() + entity.getWidth())));
+		final double dy = Math.max(0, Math.max(entity.getY() - center.getY(),
+				center.getY() - (entity.getY() + entity.getHeight())));
+		final double distance = Math.max(dx, dy);
+		if (known) {
+			return distance <= radius + MARGIN;
+		}
+		return distance <= radius;
+	}
+
+	private void buildGrid() {
+		grid = new HashMap<Long, List<Entity>>();
+		maxSize = 0;
+		unplaced.clear();
+		for (final RPObject object : zone) {
+			if (object.isHidden()) {
+				continue;
+			}
+			if (!(object instanceof Entity)) {
+				unplaced.add(object);
+			} else {
+				final Entity entity = (Entity) object;
+				final Long key = key(cell(entity.getX()), cell(entity.getY()));
+				List<Entity> entities = grid.get(key);
+				if (entities == null) {
+					entities = new ArrayList<Entity>();
+					grid.put(key, entities);
+				}
+				entities.add(entity);
+				maxSize = Math.max(maxSize, (int) Math.ceil(Math.max(entity.getWidth(), entity.getHeight())));
+			}
+		}
+	}
+
+	private static int cell(final int coordinate) {
+		return Math.floorDiv(coordinate, CELL_SIZE);
+	}
+
+	private static Long key(final int x, final int y) {
+		return Long.valueOf(((long) x << 32) | (y & 0xFFFFFFFFL));
+	}
+
+	/**
+	 * forgets what the client of a player knows, when the player leaves the zone
+	 *
+	 * @param player player
+	 */
+	void removePlayer(final RPObject player) {
+		visible.remove(player);
+	}
+
+	/**
+	 * discards the grid at the end of the turn
+	 */
+	void nextTurn() {
+		grid = null;
+		unplaced.clear();
+	}
+}
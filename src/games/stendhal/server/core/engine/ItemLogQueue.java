@@ -0,0 +1,209 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import games.stendhal.server.core.engine.dbcommand.AbstractLogItemEventCommand;
+import games.stendhal.server.core.engine.dbcommand.FlushItemLogCommand;
+import marauroa.server.db.command.DBCommandPriority;
+import marauroa.server.db.command.DBCommandQueue;
+import marauroa.server.game.Statistics;
+
+/**
+ * Buffers item log events, so that they can be written to the database
+ * in batches.
+ *
+ * <p>The turn thread only appends to a lock-free queue. At most one
+ * FlushItemLogCommand is pending on the DBCommandQueue at any time; it
+ * drains the buffer on the database thread.</p>
+ */
+public class ItemLogQueue {
+	/** maximum number of events written in one transaction */
+	public static final int MAX_BATCH_SIZE = 500;
+
+	private static ItemLogQueue instance;
+
+	private final ConcurrentLinkedQueue<AbstractLogItemEventCommand> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger depth = new AtomicInteger();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+	private final AtomicLong eventsWritten = new AtomicLong();
+	private final AtomicLong rowsWritten = new AtomicLong();
+	private final AtomicLong flushes = new AtomicLong();
+	private final AtomicLong totalFlushNanos = new AtomicLong();
+	private final AtomicLong maxFlushNanos = new AtomicLong();
+	private volatile long lastFlushNanos;
+
+	/**
+	 * gets the ItemLogQueue
+	 *
+	 * @return ItemLogQueue
+	 */
+	public static synchronized ItemLogQueue get() {
+		if (instance == null) {
+			instance = new ItemLogQueue();
+		}
+		return instance;
+	}
+
+	/**
+	 * adds an item log event to the buffer
+	 *
+	 * @param command event to log
+	 */
+	public void add(final AbstractLogItemEventCommand command) {
+		command.setEnqueueTime(new Timestamp(System.currentTimeMillis()));
+		queue.add(command);
+		depth.incrementAndGet();
+		scheduleFlush();
+	}
+
+	/**
+	 * enqueues a FlushItemLogCommand unless there is already one pending.
+	 */
+	private void scheduleFlush() {
+		if (flushScheduled.compareAndSet(false, true)) {
+			DBCommandQueue.get().enqueue(new FlushItemLogCommand(this), DBCommandPriority.LOW);
+		}
+	}
+
+	/**
+	 * removes up to maxSize events from the buffer
+	 *
+	 * @param maxSize maximum number of events
+	 * @return list of events in the order they have been added
+	 */
+	public List<AbstractLogItemEventCommand> drain(int maxSize) {
+		List<AbstractLogItemEventCommand> res = new ArrayList<>();
+		AbstractLogItemEventCommand command = queue.poll();
+		while (command != null) {
+			depth.decrementAndGet();
+			res.add(command);
+			if (res.size() >= maxSize) {
+				break;
+			}
+			command = queue.poll();
+		}
+		return res;
+	}
+
+	/**
+	 * called by the FlushItemLogCommand after it completed, regardless of success.
+	 * Schedules another flush, if events have been added in the meantime.
+	 *
+	 * @param events number of events written
+	 * @param rows   number of database rows written
+	 * @param nanos  duration of the flush in nanoseconds
+	 */
+	public void onFlushCompleted(int events, int rows, long nanos) {
+		eventsWritten.addAndGet(events);
+		rowsWritten.addAndGet(rows);
+		flushes.incrementAndGet();
+		totalFlushNanos.addAndGet(nanos);
+		lastFlushNanos = nanos;
+		long max = maxFlushNanos.get();
+		while (nanos > max && !maxFlushNanos.compareAndSet(max, nanos)) {
+			max = maxFlushNanos.get();
+		}
+
+		flushScheduled.set(false);
+		if (!queue.isEmpty()) {
+			scheduleFlush();
+		}
+	}
+
+	/**
+	 * gets the number of events waiting to be written
+	 *
+	 * @return queue depth
+	 */
+	public int getQueueDepth() {
+		return depth.get();
+	}
+
+	/**
+	 * gets the number of events written since server start
+	 *
+	 * @return number of events
+	 */
+	public long getEventsWritten() {
+		return eventsWritten.get();
+	}
+
+	/**
+	 * gets the number of database rows written since server start
+	 *
+	 * @return number of rows
+	 */
+	public long getRowsWritten() {
+		return rowsWritten.get();
+	}
+
+	/**
+	 * gets the number of flushes since server start
+	 *
+	 * @return number of flushes
+	 */
+	public long getFlushCount() {
+		return flushes.get();
+	}
+
+	/**
+	 * gets the duration of the last flush
+	 *
+	 * @return duration in milliseconds
+	 */
+	public double getLastFlushMillis() {
+		return lastFlushNanos / 1000000.0;
+	}
+
+	/**
+	 * gets the longest duration of a flush
+	 *
+	 * @return duration in milliseconds
+	 */
+	public double getMaxFlushMillis() {
+		return maxFlushNanos.get() / 1000000.0;
+	}
+
+	/**
+	 * gets the average duration of a flush
+	 *
+	 * @return duration in milliseconds
+	 */
+	public double getAverageFlushMillis() {
+		long count = flushes.get();
+		if (count == 0) {
+			return 0;
+		}
+		return totalFlushNanos.get() / 1000000.0 / count;
+	}
+
+	/**
+	 * publishes the metrics to the marauroa statistics. This method has to be
+	 * called on the turn thread.
+	 */
+	public void updateStatistics() {
+		Statistics stats = Statistics.getStatistics();
+		stats.set("Item log queue", getQueueDepth());
+		stats.set("Item log flush ms", (int) Math.round(getLastFlushMillis()));
+		stats.set("Item log max flush ms", (int) Math.round(getMaxFlushMillis()));
+		stats.set("Item log events written", (int) getEventsWritten());
+	}
+}
@@ -24,8 +24,6 @@ import games.stendhal.server.entity.item.Item;
 import games.stendhal.server.entity.player.Player;
 import marauroa.common.game.RPObject;
 import marauroa.common.game.RPSlot;
-import marauroa.server.db.command.DBCommandPriority;
-import marauroa.server.db.command.DBCommandQueue;
 
 /**
  * Item Logger.
@@ -35,8 +33,13 @@ import marauroa.server.db.command.DBCommandQueue;
 public class ItemLogger {
 
 
+	/**
+	 * adds an item event to the buffer of the item log writer.
+	 *
+	 * @param command item event
+	 */
 	public void addLogItemEventCommand(final AbstractLogItemEventCommand command) {
-		DBCommandQueue.get().enqueue(command, DBCommandPriority.LOW);
+		ItemLogQueue.get().add(command);
 	}
 
 
@@ -0,0 +1,349 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.core.events.TurnListener;
+import marauroa.common.game.Perception;
+import marauroa.common.game.RPEvent;
+import marauroa.common.game.RPObject;
+import marauroa.common.game.RPSlot;
+
+/**
+ * Accounts the perceptions which are sent to the players: how many objects
+ * and approximately how many bytes each zone, entity class, attribute and
+ * player is responsible for.
+ *
+ * <p>The accounting is enabled with -Dstendhal.perception.stats=true or with
+ * "/script PerceptionStats.class on". While it is enabled, a summary is
+ * logged every -Dstendhal.perception.report seconds (default 300).</p>
+ *
+ * <p>Sizes are estimated from the length of the attribute names and values,
+ * they do not include the compression and the private part of the player's
+ * own object.</p>
+ */
+public class PerceptionStatistics implements TurnListener {
+	private static Logger logger = Logger.getLogger(PerceptionStatistics.class);
+
+	/** attributes which are part of every changed object */
+	private static final String[] IDENTIFIERS = {"id", "zoneid"};
+
+	private static PerceptionStatistics instance;
+
+	/** objects and bytes of one zone, class, attribute or player */
+	static final class Counter {
+		long objects;
+		long bytes;
+	}
+
+	/** estimated size of a perception, which is shared by a zone's players */
+	private static final class Estimate {
+		final int objects;
+		final long bytes;
+
+		Estimate(int objects, long bytes) {
+			this.objects = objects;
+			this.bytes = bytes;
+		}
+	}
+
+	private volatile boolean enabled;
+	private final int reportInterval;
+	private boolean scheduled;
+
+	private final Map<Perception, Estimate> estimates = new WeakHashMap<Perception, Estimate>();
+	private final Map<String, Counter> zones = new HashMap<String, Counter>();
+	private final Map<String, Counter> classes = new HashMap<String, Counter>();
+	private final Map<String, Counter> attributes = new HashMap<String, Counter>();
+	private final Map<String, Counter> players = new HashMap<String, Counter>();
+	private long start = System.currentTimeMillis();
+
+	/**
+	 * gets the PerceptionStatistics
+	 *
+	 * @return PerceptionStatistics
+	 */
+	public static synchronized PerceptionStatistics get() {
+		if (instance == null) {
+			instance = new PerceptionStatistics(Integer.getInteger("stendhal.perception.report", 300).intValue());
+			if (Boolean.getBoolean("stendhal.perception.stats")) {
+				instance.setEnabled(true);
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * creates a new PerceptionStatistics
+	 *
+	 * @param reportInterval seconds between log summaries, 0 to disable them
+	 */
+	PerceptionStatistics(int reportInterval) {
+		this.reportInterval = reportInterval;
+	}
+
+	/**
+	 * is the accounting enabled?
+	 *
+	 * @return true, if perceptions are accounted
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * enables or disables the accounting
+	 *
+	 * @param enabled true to account perceptions
+	 */
+	public synchronized void setEnabled(boolean enabled) {
+		if (enabled && !this.enabled) {
+			reset();
+			if ((reportInterval > 0) && !scheduled) {
+				SingletonRepository.getTurnNotifier().notifyInSeconds(reportInterval, this);
+				scheduled = true;
+			}
+		}
+		this.enabled = enabled;
+	}
+
+	/**
+	 * accounts a perception which is sent to a player
+	 *
+	 * @param zone zone of the player
+	 * @param player player who receives the perception
+	 * @param perception perception
+	 */
+	public synchronized void record(StendhalRPZone zone, RPObject player, Perception perception) {
+		if (!enabled) {
+			return;
+		}
+		Counter counter = counter(zones, zone.getName());
+		Estimate estimate = estimates.get(perception);
+		if (estimate == null) {
+			// the delta perception of a zone is the same object for all its
+			// players, so the content is accounted only once
+			estimate = account(perception);
+			estimates.put(perception, estimate);
+			counter.objects += estimate.objects;
+		}
+		counter.bytes += estimate.bytes;
+
+		String name = player.get("name");
+		if (name != null) {
+			counter = counter(players, name);
+			counter.objects += estimate.objects;
+			counter.bytes += estimate.bytes;
+		}
+	}
+
+	private Estimate account(Perception perception) {
+		int objects = 0;
+		long bytes = 0;
+		for (List<RPObject> list : Arrays.asList(perception.addedList, perception.modifiedAddedList,
+				perception.modifiedDeletedList, perception.deletedList)) {
+			for (RPObject object : list) {
+				int size = estimateSize(object);
+				objects++;
+				bytes += size;
+				Counter counter = counter(classes, getClassName(object));
+				counter.objects++;
+				counter.bytes += size;
+			}
+		}
+		accountAttributes(perception.modifiedAddedList);
+		accountAttributes(perception.modifiedDeletedList);
+		return new Estimate(objects, bytes);
+	}
+
+	/**
+	 * counts the attributes of changed objects
+	 */
+	private void accountAttributes(List<RPObject> list) {
+		for (RPObject object : list) {
+			for (String attribute : object) {
+				if (isIdentifier(attribute)) {
+					continue;
+				}
+				Counter counter = counter(attributes, attribute);
+				counter.objects++;
+				counter.bytes += estimateAttribute(attribute, object.get(attribute));
+			}
+			for (RPEvent event : object.events()) {
+				Counter counter = counter(attributes, "event " + event.getName());
+				counter.objects++;
+				counter.bytes += estimateEvent(event);
+			}
+		}
+	}
+
+	private static boolean isIdentifier(String attribute) {
+		for (String identifier : IDENTIFIERS) {
+			if (identifier.equals(attribute)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String getClassName(RPObject object) {
+		if (object.getRPClass() != null) {
+			return object.getRPClass().getName();
+		}
+		return "unknown";
+	}
+
+	/**
+	 * estimates the serialized size of an object
+	 *
+	 * @param object object
+	 * @return size in bytes
+	 */
+	public static int estimateSize(RPObject object) {
+		// class and id
+		int size = 8;
+		for (String attribute : object) {
+			size += estimateAttribute(attribute, object.get(attribute));
+		}
+		for (RPEvent event : object.events()) {
+			size += estimateEvent(event);
+		}
+		for (RPSlot slot : object.slots()) {
+			size += slot.getName().length() + 4;
+			for (RPObject child : slot) {
+				size += estimateSize(child);
+			}
+		}
+		return size;
+	}
+
+	private static int estimateAttribute(String name, String value) {
+		int size = name.length() + 2;
+		if (value != null) {
+			size += value.length();
+		}
+		return size;
+	}
+
+	private static int estimateEvent(RPEvent event) {
+		int size = event.getName().length() + 4;
+		for (String attribute : event) {
+			size += estimateAttribute(attribute, event.get(attribute));
+		}
+		return size;
+	}
+
+	private static Counter counter(Map<String, Counter> map, String key) {
+		Counter counter = map.get(key);
+		if (counter == null) {
+			counter = new Counter();
+			map.put(key, counter);
+		}
+		return counter;
+	}
+
+	/**
+	 * clears the statistics
+	 */
+	public synchronized void reset() {
+		estimates.clear();
+		zones.clear();
+		classes.clear();
+		attributes.clear();
+		players.clear();
+		start = System.currentTimeMillis();
+	}
+
+	/**
+	 * gets the statistics of a zone
+	 *
+	 * @param zone name of zone
+	 * @return counter, or <code>null</code> if nothing was sent for the zone
+	 */
+	synchronized Counter getZone(String zone) {
+		return zones.get(zone);
+	}
+
+	/**
+	 * gets the statistics of an attribute of changed objects
+	 *
+	 * @param attribute name of attribute
+	 * @return counter, or <code>null</code> if the attribute was not changed
+	 */
+	synchronized Counter getAttribute(String attribute) {
+		return attributes.get(attribute);
+	}
+
+	/**
+	 * creates a report of the zones, classes, attributes and players which
+	 * caused the most traffic
+	 *
+	 * @param limit number of entries in each list
+	 * @return report
+	 */
+	public synchronized String report(int limit) {
+		double seconds = Math.max(1, System.currentTimeMillis() - start) / 1000.0;
+		long total = 0;
+		for (Counter counter : zones.values()) {
+			total += counter.bytes;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.ENGLISH, "Perceptions in the last %.0f s: %d bytes (%.0f bytes/s)",
+				seconds, total, total / seconds));
+		appendTop(sb, "Zones (objects, bytes sent to all players)", zones, limit, seconds);
+		appendTop(sb, "Entity classes (objects, bytes per perception)", classes, limit, seconds);
+		appendTop(sb, "Changed attributes (changes, bytes per perception)", attributes, limit, seconds);
+		appendTop(sb, "Players (objects, bytes received)", players, limit, seconds);
+		return sb.toString();
+	}
+
+	private void appendTop(StringBuilder sb, String title, Map<String, Counter> map, int limit, double seconds) {
+		List<Map.Entry<String, Counter>> entries = new ArrayList<Map.Entry<String, Counter>>(map.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<String, Counter>>() {
+			@Override
+			public int compare(Map.Entry<String, Counter> o1, Map.Entry<String, Counter> o2) {
+				return Long.compare(o2.getValue().bytes, o1.getValue().bytes);
+			}
+		});
+		sb.append("\n").append(title).append(":");
+		for (Map.Entry<String, Counter> entry : entries.subList(0, Math.min(limit, entries.size()))) {
+			Counter counter = entry.getValue();
+			sb.append(String.format(Locale.ENGLISH, "\n  %-30s %8d %10d (%.0f bytes/s)",
+					entry.getKey(), counter.objects, counter.bytes, counter.bytes / seconds));
+		}
+	}
+
+	@Override
+	public void onTurnReached(int currentTurn) {
+		synchronized (this) {
+			scheduled = false;
+			if (!enabled) {
+				return;
+			}
+			logger.info(report(10));
+			reset();
+			SingletonRepository.getTurnNotifier().notifyInSeconds(reportInterval, this);
+			scheduled = true;
+		}
+	}
+}
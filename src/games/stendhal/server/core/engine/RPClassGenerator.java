@@ -273,16 +273,16 @@ public class RPClassGenerator {
 		if (!RPClass.hasRPClass(Events.ATTACK)) {
 			AttackEvent.generateRPClass();
 		}
-		if (!RPClass.hasRPClass("buddy_login")) {
+		if (!RPClass.hasRPClass(Events.BUDDY_LOGIN)) {
 			BuddyLoginEvent.generateRPClass();
 		}
-		if (!RPClass.hasRPClass("buddy_logout")) {
+		if (!RPClass.hasRPClass(Events.BUDDY_LOGOUT)) {
 			BuddyLogoutEvent.generateRPClass();
 		}
 		if (!RPClass.hasRPClass("examine")) {
 			ExamineEvent.generateRPClass();
 		}
-		if (!RPClass.hasRPClass("healed")) {
+		if (!RPClass.hasRPClass(Events.HEALED)) {
 			HealedEvent.generateRPClass();
 		}
 		if (!RPClass.hasRPClass(Events.CHAT_OPTIONS)) {
@@ -249,6 +249,11 @@ public class StendhalPlayerDatabase {
 		if (!transaction.doesColumnExist("npcs", "hide_location")) {
 			transaction.execute("ALTER TABLE npcs ADD COLUMN (hide_location TINYINT DEFAULT 0);", null);
 		}
+
+		// 1.45: id of the last save of the website tables
+		if (!transaction.doesColumnExist("character_snapshot", "save_id")) {
+			transaction.execute("ALTER TABLE character_snapshot ADD COLUMN (save_id BIGINT);", null);
+		}
 	}
 
 
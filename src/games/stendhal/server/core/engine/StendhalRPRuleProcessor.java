@@ -34,6 +34,7 @@ import games.stendhal.server.actions.CommandCenter;
 import games.stendhal.server.actions.admin.AdministrationAction;
 import games.stendhal.server.core.account.AccountCreator;
 import games.stendhal.server.core.account.CharacterCreator;
+import games.stendhal.server.core.engine.db.DirtyWriteStatistics;
 import games.stendhal.server.core.engine.db.StendhalWebsiteDAO;
 import games.stendhal.server.core.engine.dbcommand.SetOnlineStatusCommand;
 import games.stendhal.server.core.engine.transformer.PlayerTransformer;
@@ -295,6 +296,12 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 			logger.error("error in beginTurn", e);
 		}
 
+		try {
+			logDatabaseStatistics();
+		} catch (final Exception e) {
+			logger.error("error in beginTurn", e);
+		}
+
 		try {
 			handleKilledEntities();
 		} catch (final Exception e) {
@@ -336,6 +343,14 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 		Statistics.getStatistics().set("Players logged", getOnlinePlayers().size());
 	}
 
+	/**
+	 * publishes the metrics of the database writers to the statistics.
+	 */
+	protected void logDatabaseStatistics() {
+		ItemLogQueue.get().updateStatistics();
+		DirtyWriteStatistics.get().updateStatistics();
+	}
+
 	protected void handlePlayersRmTexts() {
 		for (final Player player : playersRmText) {
 			if (player.has("text")) {
@@ -23,6 +23,7 @@ import java.util.TreeSet;
 import org.apache.log4j.Logger;
 
 import games.stendhal.common.parser.WordList;
+import games.stendhal.server.core.config.LazyZoneLoader;
 import games.stendhal.server.core.config.ZoneGroupsXMLLoader;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.mapstuff.portal.OneWayPortalDestination;
@@ -208,6 +209,11 @@ public class StendhalRPWorld extends RPWorld {
 			return;
 		}
 
+		if (LazyZoneLoader.get().isUnloaded(id)) {
+			// do not load the zone just to check the portal
+			return;
+		}
+
 		final StendhalRPZone zone = getZone(id);
 
 		if (zone == null) {
@@ -232,6 +238,29 @@ public class StendhalRPWorld extends RPWorld {
 		return getRPZone(new IRPZone.ID(zone));
 	}
 
+	/**
+	 * Finds a zone by its id. Zones which are loaded on demand are loaded
+	 * on first access.
+	 *
+	 * @param zoneid
+	 *            The zone's id
+	 *
+	 * @return The matching zone, or <code>null</code> if not found.
+	 */
+	@Override
+	public IRPZone getRPZone(final ID zoneid) {
+		final IRPZone zone = super.getRPZone(zoneid);
+		if (zone == null) {
+			return LazyZoneLoader.get().load(zoneid.getID());
+		}
+		return zone;
+	}
+
+	@Override
+	public boolean hasRPZone(final ID zoneid) {
+		return super.hasRPZone(zoneid) || LazyZoneLoader.get().isUnloaded(zoneid.getID());
+	}
+
 	/**
 	 * Finds a zone by its id.
 	 *
@@ -21,6 +21,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -28,6 +29,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -73,6 +75,7 @@ import games.stendhal.server.entity.npc.TrainingDummyFactory;
 import games.stendhal.server.entity.player.Player;
 import games.stendhal.server.util.StringUtils;
 import marauroa.common.game.IRPZone;
+import marauroa.common.game.Perception;
 import marauroa.common.game.RPObject;
 import marauroa.common.game.RPSlot;
 import marauroa.common.net.OutputSerializer;
@@ -98,6 +101,30 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 	private final List<TransferContent> contents;
 
+	/**
+	 * Transfer content as sent to the clients, <code>null</code> if the
+	 * contents or the attributes changed since it was created.
+	 */
+	private volatile ContentBundle contentBundle;
+
+	/** restricts the perceptions to nearby entities, <code>null</code> on most zones */
+	private InterestManager interest;
+
+	/**
+	 * Immutable content of the zone as it is sent to the clients, and the
+	 * same content combined with the data for specific client versions.
+	 * Bundles are replaced instead of modified, so they can be shared by all
+	 * players and by the network thread.
+	 */
+	private static final class ContentBundle {
+		private final List<TransferContent> contents;
+		private final Map<String, List<TransferContent>> byVersion = new ConcurrentHashMap<String, List<TransferContent>>();
+
+		ContentBundle(final List<TransferContent> contents) {
+			this.contents = contents;
+		}
+	}
+
 	/** Data layer for zone attributes. */
 	private ZoneAttributes attributes;
 
@@ -120,6 +147,9 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 	private final List<Player> players;
 
+	/** number of players whose client does not understand the transient events */
+	private int playersWithoutTransientEvents;
+
 	/**
 	 * The blood spills.
 	 */
@@ -403,11 +433,32 @@ public class StendhalRPZone extends MarauroaRPZone {
 		addToContent(name, byteContents);
 	}
 
+	/**
+	 * Adds already encoded layer or tileset data which is transferred to the
+	 * client.
+	 *
+	 * @param name name of the content
+	 * @param encoded encoded data as created by {@link LayerDefinition#encode()}
+	 * 	or {@link #encodeTilesets(List)}
+	 */
+	public void addEncodedLayer(final String name, final byte[] encoded) {
+		addToContent(name, encoded);
+	}
+
 	public void addTilesets(final String name, final List<TileSetDefinition> tilesets)
 			throws IOException {
-		/*
-		 * Serialize the tileset data to send it to client.
-		 */
+		addToContent(name, encodeTilesets(tilesets));
+	}
+
+	/**
+	 * Serializes the tileset data to send it to client.
+	 *
+	 * @param tilesets tilesets of the zone
+	 * @return serialized tilesets
+	 * @throws IOException in case of an serialization error
+	 */
+	public static byte[] encodeTilesets(final List<TileSetDefinition> tilesets)
+			throws IOException {
 		final ByteArrayOutputStream array = new ByteArrayOutputStream();
 		final OutputSerializer out = new OutputSerializer(array);
 
@@ -427,7 +478,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 			}
 		}
 
-		addToContent(name, array.toByteArray());
+		return array.toByteArray();
 	}
 
 	/**
@@ -454,6 +505,15 @@ public class StendhalRPZone extends MarauroaRPZone {
 		content.timestamp = CRC.cmpCRC(content.data);
 
 		contents.add(content);
+		contentsChanged();
+	}
+
+	/**
+	 * Discards the cached transfer content after the contents or the
+	 * attributes of the zone changed.
+	 */
+	void contentsChanged() {
+		contentBundle = null;
 	}
 
 	/**
@@ -463,17 +523,91 @@ public class StendhalRPZone extends MarauroaRPZone {
 	public void notifyOnlinePlayers() {
 		// Notify resident players about the changed weather
 		if (!getPlayers().isEmpty()) {
-			List<TransferContent> newContents = getContents();
 			for (Player player : getPlayers()) {
 				// Old clients do not understand content transfer that just
 				// update the old map, and end up with no entities on the screen
 				if (!player.isDisconnected() && player.isClientNewerThan("0.97")) {
-					StendhalRPAction.transferContent(player, newContents);
+					StendhalRPAction.transferContent(player);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Sends changed zone attributes to the players on the zone. Clients which
+	 * cannot apply the attributes without the rest of the zone data get all
+	 * of it.
+	 *
+	 * @return number of players who were notified
+	 */
+	public int notifyAttributesChanged() {
+		if ((attributes == null) || getPlayers().isEmpty()) {
+			return 0;
+		}
+		final TransferContent content = attributes.getContents();
+		int count = 0;
+		for (Player player : getPlayers()) {
+			if (!player.isDisconnected() && player.isClientNewerThan("0.97")) {
+				StendhalRPAction.transferZoneAttributes(player, content);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Restricts the perceptions of the players to the entities near them.
+	 * This is meant for large zones, and has to be set before players enter
+	 * the zone. The radius has to be larger than the screen of the clients.
+	 *
+	 * @param radius interest radius in tiles, or 0 to send all entities
+	 */
+	public void setInterestRadius(final int radius) {
+		if (radius > 0) {
+			interest = new InterestManager(this, radius);
+		} else {
+			interest = null;
+		}
+	}
+
+	/**
+	 * Gets the interest radius of the zone.
+	 *
+	 * @return radius in tiles, or 0 if all entities are sent to the players
+	 */
+	public int getInterestRadius() {
+		if (interest == null) {
+			return 0;
+		}
+		return interest.getRadius();
+	}
+
+	/**
+	 * Checks whether all players on the zone understand the healed event.
+	 * Otherwise the entities on the zone have to use the old attributes.
+	 *
+	 * @return <code>true</code>, if events can be used
+	 */
+	public boolean supportsTransientEvents() {
+		return playersWithoutTransientEvents == 0;
+	}
+
+	/**
+	 * Updates the transient event support of the zone after a player on it
+	 * changed its support.
+	 *
+	 * @param player player whose support changed
+	 */
+	public synchronized void transientEventsChanged(Player player) {
+		if (players.contains(player)) {
+			if (player.supportsTransientEvents()) {
+				playersWithoutTransientEvents--;
+			} else {
+				playersWithoutTransientEvents++;
+			}
+		}
+	}
+
 	/**
 	 * Set zone attributes that should be passed to the client.
 	 *
@@ -484,6 +618,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 			attr.put("readable_name", readableName);
 		}
 		attributes = attr;
+		contentsChanged();
 	}
 
 	public void addCollisionLayer(final String name, final LayerDefinition collisionLayer)
@@ -498,6 +633,34 @@ public class StendhalRPZone extends MarauroaRPZone {
 		protectionMap.setCollisionData(protectionLayer);
 	}
 
+	/**
+	 * Adds an already encoded collision layer together with the collision
+	 * map created from it.
+	 *
+	 * @param name name of the layer
+	 * @param encoded encoded layer
+	 * @param collision collision map of the layer
+	 */
+	public void addCollisionLayer(final String name, final byte[] encoded,
+			final CollisionDetection collision) {
+		addToContent(name, encoded);
+		collisionMap = collision;
+	}
+
+	/**
+	 * Adds an already encoded protection layer together with the protection
+	 * map created from it.
+	 *
+	 * @param name name of the layer
+	 * @param encoded encoded layer
+	 * @param protection protection map of the layer
+	 */
+	public void addProtectionLayer(final String name, final byte[] encoded,
+			final CollisionDetection protection) {
+		addToContent(name, encoded);
+		protectionMap = protection;
+	}
+
 	public void setPosition(final int level, final int x, final int y) {
 		this.interior = false;
 		this.level = level;
@@ -858,18 +1021,54 @@ public class StendhalRPZone extends MarauroaRPZone {
 		return collisionMap.getHeight();
 	}
 
+	/**
+	 * Gets the content which is sent to the clients when they enter the zone.
+	 *
+	 * @return unmodifiable list of the attributes and the layers
+	 */
 	public List<TransferContent> getContents() {
-		if (attributes != null) {
-			TransferContent attr = attributes.getContents();
-			// Remove old attributes, if needed
-			if (!contents.isEmpty() && (contents.get(0).name.equals(attr.name))) {
-				contents.remove(0);
+		return getContentBundle().contents;
+	}
+
+	/**
+	 * Gets the content which is sent to a client when it enters the zone,
+	 * including the data for the version of that client.
+	 *
+	 * @param provider provider of data for specific client versions
+	 * @param clientVersion version of the client
+	 * @return unmodifiable list of the attributes, the layers and the data
+	 */
+	public List<TransferContent> getContents(final DataProvider provider, final String clientVersion) {
+		final ContentBundle bundle = getContentBundle();
+		final List<TransferContent> data = provider.getData(clientVersion);
+		if (data == null) {
+			return bundle.contents;
+		}
+		List<TransferContent> result = bundle.byVersion.get(clientVersion);
+		if (result == null) {
+			final List<TransferContent> combined = new ArrayList<TransferContent>(bundle.contents.size() + data.size());
+			combined.addAll(bundle.contents);
+			combined.addAll(data);
+			result = Collections.unmodifiableList(combined);
+			bundle.byVersion.put(clientVersion, result);
+		}
+		return result;
+	}
+
+	private ContentBundle getContentBundle() {
+		ContentBundle bundle = contentBundle;
+		if (bundle == null) {
+			final List<TransferContent> list = new ArrayList<TransferContent>(contents.size() + 1);
+			if (attributes != null) {
+				// Ensure the attributes comes first, so that the client has
+				// coloring information
+				list.add(attributes.getContents());
 			}
-			// Ensure the attributes comes first, so that the client has coloring
-			// information
-			contents.add(0, attr);
+			list.addAll(contents);
+			bundle = new ContentBundle(Collections.unmodifiableList(list));
+			contentBundle = bundle;
 		}
-		return contents;
+		return bundle;
 	}
 
 	public boolean isInProtectionArea(final Entity entity) {
@@ -951,6 +1150,9 @@ public class StendhalRPZone extends MarauroaRPZone {
 		} else if (object instanceof Player) {
 			Player playerObject = (Player) object;
 			players.add(playerObject);
+			if (!playerObject.supportsTransientEvents()) {
+				playersWithoutTransientEvents++;
+			}
 			playersAndFriends.add(playerObject);
 			/*
 			 * super.add() clears the events, so this needs to be after it for
@@ -1022,8 +1224,13 @@ public class StendhalRPZone extends MarauroaRPZone {
 		if (object instanceof Blood) {
 			bloods.remove(object);
 		} else if (object instanceof Player) {
-			players.remove(object);
+			if (players.remove(object) && !((Player) object).supportsTransientEvents()) {
+				playersWithoutTransientEvents--;
+			}
 			playersAndFriends.remove(object);
+			if (interest != null) {
+				interest.removePlayer(object);
+			}
 		} else if (object instanceof AttackableCreature) {
 			playersAndFriends.remove(object);
 		} else if (object instanceof Sheep) {
@@ -1535,10 +1742,26 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 
 
+	@Override
+	public Perception getPerception(final RPObject player, final byte type) {
+		Perception perception = super.getPerception(player, type);
+		if (interest != null) {
+			perception = interest.filter(player, type, perception);
+		}
+		final PerceptionStatistics statistics = PerceptionStatistics.get();
+		if (statistics.isEnabled()) {
+			statistics.record(this, player, perception);
+		}
+		return perception;
+	}
+
 	@Override
 	@SuppressWarnings("unused")
 	public void nextTurn() {
 		super.nextTurn();
+		if (interest != null) {
+			interest.nextTurn();
+		}
 
 		debugturn++;
 
@@ -32,8 +32,14 @@ import marauroa.common.net.message.TransferContent;
 public class ZoneAttributes {
 	private static final Logger logger = Logger.getLogger(ZoneAttributes.class);
 
-	/** Container to wrap the contents to pass as a layer. */
-	private final TransferContent content = new TransferContent();
+	/**
+	 * Container to wrap the contents to pass as a layer. A new container is
+	 * created when the attributes change, because the old one may still be
+	 * waiting to be sent.
+	 */
+	private TransferContent content;
+	/** Name of the layer. */
+	private String name;
 	/** An object for storing the attributes. */
 	private final RPObject attr = new RPObject();
 	/**
@@ -53,9 +59,8 @@ public class ZoneAttributes {
 	 */
 	public ZoneAttributes(StendhalRPZone zone) {
 		attr.setID(RPObject.INVALID_ID);
-		setBaseName(zone.getName());
-		content.cacheable = false;
 		this.zone = zone;
+		setBaseName(zone.getName());
 	}
 
 	/**
@@ -70,7 +75,8 @@ public class ZoneAttributes {
 	 */
 	public final void setBaseName(String name) {
 		// old client ignore layers ending in _map, thus the odd choice of name
-		content.name = name + ".data_map";
+		this.name = name + ".data_map";
+		invalidate();
 	}
 
 	/**
@@ -163,6 +169,7 @@ public class ZoneAttributes {
 	 */
 	private void invalidate() {
 		valid = false;
+		zone.contentsChanged();
 	}
 
 	/**
@@ -177,8 +184,12 @@ public class ZoneAttributes {
 			logger.error("Failed to set attributes", e);
 		}
 
-		content.data = array.toByteArray();
-		content.timestamp = CRC.cmpCRC(content.data);
+		final TransferContent updated = new TransferContent();
+		updated.name = name;
+		updated.cacheable = false;
+		updated.data = array.toByteArray();
+		updated.timestamp = CRC.cmpCRC(updated.data);
+		content = updated;
 		valid = true;
 	}
 
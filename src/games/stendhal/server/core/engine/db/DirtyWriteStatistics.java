@@ -0,0 +1,166 @@
+/***************************************************************************
+ *                 (C) Copyright 2007-2023 - Faiumoni e. V.                *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import marauroa.server.game.Statistics;
+
+/**
+ * counts how many writes of character data and to the website tables were
+ * performed or skipped because nothing had changed since the last save of
+ * a character.
+ */
+public class DirtyWriteStatistics {
+	private static final DirtyWriteStatistics instance = new DirtyWriteStatistics();
+
+	private final AtomicLong statsWritten = new AtomicLong();
+	private final AtomicLong statsSkipped = new AtomicLong();
+	private final AtomicLong relationsWritten = new AtomicLong();
+	private final AtomicLong relationsSkipped = new AtomicLong();
+	private final AtomicLong objectsWritten = new AtomicLong();
+	private final AtomicLong objectsSkipped = new AtomicLong();
+	private final AtomicLong savesCoalesced = new AtomicLong();
+
+	/**
+	 * gets the DirtyWriteStatistics
+	 *
+	 * @return DirtyWriteStatistics
+	 */
+	public static DirtyWriteStatistics get() {
+		return instance;
+	}
+
+	/**
+	 * counts a character_stats write
+	 *
+	 * @param skipped true, if the write was skipped because nothing changed
+	 */
+	void countStats(boolean skipped) {
+		if (skipped) {
+			statsSkipped.incrementAndGet();
+		} else {
+			statsWritten.incrementAndGet();
+		}
+	}
+
+	/**
+	 * counts a buddy/ignore list write
+	 *
+	 * @param skipped true, if the write was skipped because nothing changed
+	 */
+	void countRelations(boolean skipped) {
+		if (skipped) {
+			relationsSkipped.incrementAndGet();
+		} else {
+			relationsWritten.incrementAndGet();
+		}
+	}
+
+	/**
+	 * counts a write of the serialized character object
+	 *
+	 * @param skipped true, if the write was skipped because nothing changed
+	 */
+	void countObjects(boolean skipped) {
+		if (skipped) {
+			objectsSkipped.incrementAndGet();
+		} else {
+			objectsWritten.incrementAndGet();
+		}
+	}
+
+	/**
+	 * counts a save which was dropped because a newer one is pending
+	 */
+	void countCoalesced() {
+		savesCoalesced.incrementAndGet();
+	}
+
+	/**
+	 * gets the number of performed character_stats writes
+	 *
+	 * @return number of writes
+	 */
+	public long getStatsWritten() {
+		return statsWritten.get();
+	}
+
+	/**
+	 * gets the number of skipped character_stats writes
+	 *
+	 * @return number of writes
+	 */
+	public long getStatsSkipped() {
+		return statsSkipped.get();
+	}
+
+	/**
+	 * gets the number of performed buddy/ignore list writes
+	 *
+	 * @return number of writes
+	 */
+	public long getRelationsWritten() {
+		return relationsWritten.get();
+	}
+
+	/**
+	 * gets the number of skipped buddy/ignore list writes
+	 *
+	 * @return number of writes
+	 */
+	public long getRelationsSkipped() {
+		return relationsSkipped.get();
+	}
+
+	/**
+	 * gets the number of performed character object writes
+	 *
+	 * @return number of writes
+	 */
+	public long getObjectsWritten() {
+		return objectsWritten.get();
+	}
+
+	/**
+	 * gets the number of skipped character object writes
+	 *
+	 * @return number of writes
+	 */
+	public long getObjectsSkipped() {
+		return objectsSkipped.get();
+	}
+
+	/**
+	 * gets the number of saves which were dropped in favour of a newer one
+	 *
+	 * @return number of saves
+	 */
+	public long getSavesCoalesced() {
+		return savesCoalesced.get();
+	}
+
+	/**
+	 * publishes the counters to the marauroa statistics. This method has to be
+	 * called on the turn thread.
+	 */
+	public void updateStatistics() {
+		Statistics stats = Statistics.getStatistics();
+		stats.set("Character stats written", (int) getStatsWritten());
+		stats.set("Character stats skipped", (int) getStatsSkipped());
+		stats.set("Buddy lists written", (int) getRelationsWritten());
+		stats.set("Buddy lists skipped", (int) getRelationsSkipped());
+		stats.set("Character objects written", (int) getObjectsWritten());
+		stats.set("Character objects skipped", (int) getObjectsSkipped());
+		stats.set("Character saves coalesced", (int) getSavesCoalesced());
+	}
+}
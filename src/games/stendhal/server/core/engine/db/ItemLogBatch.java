@@ -0,0 +1,231 @@
+/***************************************************************************
+ *                 (C) Copyright 2007-2023 - Faiumoni e. V.                *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.entity.RPEntity;
+import games.stendhal.server.util.StringUtils;
+import marauroa.common.game.RPObject;
+import marauroa.server.db.DBTransaction;
+
+/**
+ * collects rows for the itemlog table and writes them as one JDBC batch.
+ * New items are inserted into the item table right away, because their
+ * id is assigned by the database. If the batch fails, the rows which were
+ * not written are written one by one, so that a bad row does not take the
+ * others with it.
+ */
+public class ItemLogBatch {
+	private static Logger logger = Logger.getLogger(ItemLogBatch.class);
+
+	private static final String SQL_INSERT_ITEM = "INSERT INTO item (name, timedate) VALUES (?, ?)";
+	private static final String SQL_INSERT_ITEMLOG = "INSERT INTO itemlog (itemid, source, event, "
+			+ "param1, param2, param3, param4, timedate) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+	private final DBTransaction transaction;
+	private PreparedStatement itemStatement;
+	private PreparedStatement itemLogStatement;
+	private int itemRows;
+	/** parameters of the rows in the itemlog batch */
+	private final List<Object[]> itemLogRows = new ArrayList<Object[]>();
+
+	/**
+	 * creates a new ItemLogBatch
+	 *
+	 * @param transaction DBTransaction
+	 */
+	ItemLogBatch(DBTransaction transaction) {
+		this.transaction = transaction;
+	}
+
+	/**
+	 * Assigns the next logid to the specified item in case it does not already have one.
+	 *
+	 * @param item item
+	 * @param timestamp timestamp
+	 * @throws SQLException in case of a database error
+	 */
+	public void assignIDIfNotPresent(final RPObject item, Timestamp timestamp) throws SQLException {
+		if (item.has(StendhalItemDAO.ATTR_ITEM_LOGID)) {
+			return;
+		}
+
+		if (itemStatement == null) {
+			itemStatement = transaction.prepareStatement(SQL_INSERT_ITEM, null);
+		}
+		itemStatement.setString(1, item.get("name"));
+		itemStatement.setTimestamp(2, timestamp);
+		itemStatement.executeUpdate();
+		itemRows++;
+		int itemid = transaction.getLastInsertId("item", "id");
+
+		item.put(StendhalItemDAO.ATTR_ITEM_LOGID, itemid);
+		writeEntry(timestamp, itemid, null, "register", getAttribute(item, "name"), getAttribute(item, "quantity"), getAttribute(item, "itemdata"), getAttribute(item, "bound"));
+	}
+
+	/**
+	 * adds a log entry to the batch
+	 *
+	 * @param timestamp timestamp
+	 * @param item item
+	 * @param player player object
+	 * @param event  name of event
+	 * @param param1 param 1
+	 * @param param2 param 2
+	 * @param param3 param 3
+	 * @param param4 param 4
+	 * @throws SQLException in case of an database error
+	 */
+	public void writeEntry(Timestamp timestamp, final RPObject item, final RPEntity player, final String event, final String param1, final String param2, final String param3, final String param4) throws SQLException {
+		writeEntry(timestamp, item.getInt(StendhalItemDAO.ATTR_ITEM_LOGID), player, event, param1, param2, param3, param4);
+	}
+
+	/**
+	 * adds a log entry to the batch
+	 *
+	 * @param timestamp timestamp
+	 * @param itemid itemid of item
+	 * @param player player object
+	 * @param event  name of event
+	 * @param param1 param 1
+	 * @param param2 param 2
+	 * @param param3 param 3
+	 * @param param4 param 4
+	 * @throws SQLException in case of an database error
+	 */
+	public void writeEntry(Timestamp timestamp, final int itemid, final RPEntity player, final String event, final String param1, final String param2, final String param3, final String param4) throws SQLException {
+		String playerName = null;
+		if (player != null) {
+			playerName = player.getName();
+		}
+		if (itemLogStatement == null) {
+			itemLogStatement = transaction.prepareStatement(SQL_INSERT_ITEMLOG, null);
+		}
+		Object[] row = new Object[] {Integer.valueOf(itemid), trim(playerName), trim(event),
+				trim(param1), trim(param2), trim(param3), trim(param4), timestamp};
+		setParameters(itemLogStatement, row);
+		itemLogStatement.addBatch();
+		itemLogRows.add(row);
+	}
+
+	private void setParameters(PreparedStatement statement, Object[] row) throws SQLException {
+		for (int i = 0; i < row.length; i++) {
+			statement.setObject(i + 1, row[i]);
+		}
+	}
+
+	/**
+	 * executes the collected log entries.
+	 *
+	 * @return number of rows written, including the item rows
+	 * @throws SQLException in case of an database error
+	 */
+	public int flush() throws SQLException {
+		int rows = itemRows + itemLogRows.size();
+		try {
+			if (itemLogStatement != null) {
+				try {
+					itemLogStatement.executeBatch();
+				} catch (BatchUpdateException e) {
+					rows = itemRows + writeRemainingRows(e.getUpdateCounts(), e);
+				}
+			}
+		} finally {
+			close(itemStatement);
+			close(itemLogStatement);
+			itemStatement = null;
+			itemLogStatement = null;
+			itemRows = 0;
+			itemLogRows.clear();
+		}
+		return rows;
+	}
+
+	/**
+	 * writes the rows of a failed batch, which were not written, one by one.
+	 * Rows which fail again are logged and skipped.
+	 *
+	 * @param updateCounts update counts of the failed batch. Depending on the
+	 * 	driver, they cover all rows, or only the rows before the failed one
+	 * @param cause exception of the failed batch
+	 * @return number of itemlog rows written
+	 * @throws SQLException in case of an database error
+	 */
+	private int writeRemainingRows(int[] updateCounts, BatchUpdateException cause) throws SQLException {
+		logger.warn("Writing " + itemLogRows.size() + " item log rows one by one after the batch failed: " + cause);
+		itemLogStatement.clearBatch();
+		int written = 0;
+		for (int i = 0; i < itemLogRows.size(); i++) {
+			if ((i < updateCounts.length) && (updateCounts[i] != Statement.EXECUTE_FAILED)) {
+				written++;
+				continue;
+			}
+			Object[] row = itemLogRows.get(i);
+			try {
+				setParameters(itemLogStatement, row);
+				itemLogStatement.executeUpdate();
+				written++;
+			} catch (SQLException e) {
+				if (transaction.isConnectionError(e)) {
+					throw e;
+				}
+				logger.error("Lost item log row " + Arrays.toString(row), e);
+			}
+		}
+		return written;
+	}
+
+	private void close(PreparedStatement statement) throws SQLException {
+		if (statement != null) {
+			statement.close();
+		}
+	}
+
+	/**
+	 * trims a parameter to the column size. Like the template based queries,
+	 * <code>null</code> is stored as empty string.
+	 *
+	 * @param value value
+	 * @return trimmed value
+	 */
+	private static String trim(String value) {
+		if (value == null) {
+			return "";
+		}
+		return StringUtils.trimTo(value, 64);
+	}
+
+	/**
+	 * gets an optional attribute .
+	 *
+	 * @param object object to read the optional attribute from
+	 * @param attribute
+	 * @return attribute name of attribute
+	 */
+	private static String getAttribute(final RPObject object, final String attribute) {
+		if (object.has(attribute)) {
+			return object.get(attribute);
+		} else {
+			return "null";
+		}
+	}
+}
@@ -22,6 +22,7 @@ import java.util.TreeSet;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
+import games.stendhal.server.entity.player.PersistedCharacterState;
 import games.stendhal.server.entity.player.Player;
 import marauroa.server.db.DBTransaction;
 
@@ -79,12 +80,43 @@ public class StendhalBuddyDAO {
 	 * @throws SQLException in case of an database error
 	 */
 	public void saveRelations(DBTransaction transaction, String charname, Player player) throws SQLException {
-		Multimap<String, String> oldList = loadRelations(transaction, charname);
+		saveRelations(transaction, charname, player, System.currentTimeMillis());
+	}
 
+	/**
+	 * saves the buddy list for the specified charname. The database is only
+	 * read and written, if the lists differ from the ones remembered in the
+	 * PersistedCharacterState of the player.
+	 *
+	 * @param transaction transaction
+	 * @param charname name of char
+	 * @param player player
+	 * @param now current time
+	 * @throws SQLException in case of an database error
+	 */
+	public void saveRelations(DBTransaction transaction, String charname, Player player, long now) throws SQLException {
 		Set<String> buddies = player.getBuddies();
 		buddies.add(charname);
-		syncBuddyListToDB(transaction, charname, "buddy", oldList.get("buddy"), buddies);
-		syncBuddyListToDB(transaction, charname, "ignore", oldList.get("ignore"), player.getIgnores());
+		Set<String> ignores = player.getIgnores();
+
+		PersistedCharacterState state = player.getPersistedState();
+		Collection<String> oldBuddies = state.getPersistedBuddies(now);
+		Collection<String> oldIgnores = state.getPersistedIgnores(now);
+		if ((oldBuddies != null) && (oldIgnores != null)) {
+			if (oldBuddies.equals(buddies) && oldIgnores.equals(ignores)) {
+				DirtyWriteStatistics.get().countRelations(true);
+				return;
+			}
+		} else {
+			Multimap<String, String> oldList = loadRelations(transaction, charname);
+			oldBuddies = oldList.get("buddy");
+			oldIgnores = oldList.get("ignore");
+		}
+
+		syncBuddyListToDB(transaction, charname, "buddy", oldBuddies, buddies);
+		syncBuddyListToDB(transaction, charname, "ignore", oldIgnores, ignores);
+		state.setPersistedRelations(buddies, ignores, now);
+		DirtyWriteStatistics.get().countRelations(false);
 	}
 
 
@@ -1,5 +1,5 @@
 /***************************************************************************
- *                    (C) Copyright 2003-2020 - Stendhal                   *
+ *                    (C) Copyright 2003-2023 - Stendhal                   *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -12,13 +12,26 @@
 package games.stendhal.server.core.engine.db;
 
 import java.io.IOException;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
+import com.google.common.base.Joiner;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import games.stendhal.server.entity.player.PersistedCharacterState;
 import games.stendhal.server.entity.player.Player;
+import marauroa.common.game.DetailLevel;
 import marauroa.common.game.RPObject;
+import marauroa.common.net.OutputSerializer;
 import marauroa.server.db.DBTransaction;
 import marauroa.server.game.db.CharacterDAO;
 import marauroa.server.game.db.DAORegister;
@@ -26,10 +39,30 @@ import marauroa.server.game.db.DAORegister;
 /**
  * Stendhal specific extensions to the normal CharacterDAO which will update
  * the redundant tables for the web application.
+ *
+ * <p>Saves are skipped, if the character object has not changed since the
+ * last save. This is no delta: A changed object is written completely. To
+ * find out whether it changed, a digest of the serialized object is compared
+ * to the one of the last written object. The digest is not computed, if the
+ * player already reported changes to the data shown on the website. The
+ * digest is stored in the table character_snapshot in the same transaction
+ * as the object itself, so a save which is rolled back cannot cause a later
+ * change to be lost. The table also holds the id of the last save of the
+ * website tables, so that the PersistedCharacterState of the player can tell
+ * whether that save was committed.</p>
+ *
+ * <p>Saves are skipped, too, if a newer snapshot of the same player is
+ * already waiting to be saved. Only snapshots taken with
+ * {@link Player#createSaveSnapshot()}, for example by
+ * StoreCharacterSnapshotCommand, know about newer ones. The periodic saves
+ * of marauroa copy the player without a generation and are always
+ * processed.</p>
  */
 public class StendhalCharacterDAO extends CharacterDAO {
 	private static Logger logger = Logger.getLogger(StendhalCharacterDAO.class);
 
+	private static final String ATTR_DB_ID = "#db_id";
+
 	@Override
 	public void addCharacter(final DBTransaction transaction, final String username,
 			final String character, final RPObject player, Timestamp timestamp) throws SQLException, IOException {
@@ -56,24 +89,206 @@ public class StendhalCharacterDAO extends CharacterDAO {
 	public void storeCharacter(final DBTransaction transaction, final String username,
 			final String character, final RPObject player, Timestamp timestamp) throws SQLException, IOException {
 
-		super.storeCharacter(transaction, username, character, player, timestamp);
+		if (player instanceof Player) {
+			final Player instance = (Player) player;
+			if (instance.getPersistedState().isSuperseded(instance.getSnapshotGeneration())) {
+				logger.debug("Skipping save of " + character + " because a newer one is pending");
+				DirtyWriteStatistics.get().countCoalesced();
+				return;
+			}
+		}
+
+		final Timestamp saveTime = timestamp != null ? timestamp : new Timestamp(System.currentTimeMillis());
+		final Snapshot snapshot = loadSnapshot(transaction, player);
+		if (player instanceof Player) {
+			// the website tables are only trusted, if the last save was committed
+			((Player) player).getPersistedState().confirmSave(snapshot != null ? snapshot.saveId : 0);
+		}
+
+		final String digest;
+		final boolean unchanged;
+		if (isKnownChanged(player, saveTime)) {
+			// no need for a digest. The next save computes it.
+			digest = "";
+			unchanged = false;
+		} else {
+			digest = computeDigest(player);
+			unchanged = isUnchanged(snapshot, digest, saveTime);
+		}
+		if (unchanged) {
+			DirtyWriteStatistics.get().countObjects(true);
+		} else {
+			super.storeCharacter(transaction, username, character, player, timestamp);
+			DirtyWriteStatistics.get().countObjects(false);
+		}
 
 		// Here goes the Stendhal specific code.
 		if (player instanceof Player) {
 			try {
 				final Player instance = (Player) player;
-				final int count = DAORegister.get().get(StendhalWebsiteDAO.class).updateCharStats(transaction, instance, timestamp);
-				if (count == 0) {
-					DAORegister.get().get(StendhalWebsiteDAO.class).insertIntoCharStats(transaction, instance, timestamp);
-				}
-				DAORegister.get().get(StendhalBuddyDAO.class).saveRelations(transaction, character, instance);
+				DAORegister.get().get(StendhalWebsiteDAO.class).storeCharStats(transaction, instance, saveTime);
+				DAORegister.get().get(StendhalBuddyDAO.class).saveRelations(transaction, character, instance, saveTime.getTime());
 			} catch (final SQLException sqle) {
+				((Player) player).getPersistedState().invalidate();
 				logger.warn("error storing character", sqle);
 				throw sqle;
 			}
 		} else {
 			logger.error("player no instance of Player but: " + player, new Throwable());
 		}
+
+		if (unchanged) {
+			storeSnapshot(transaction, player, null, null);
+		} else {
+			storeSnapshot(transaction, player, digest, saveTime);
+		}
+	}
+
+	/**
+	 * calculates a digest of the serialized form of an object
+	 *
+	 * @param object RPObject
+	 * @return digest as hex string
+	 * @throws IOException in case of an serialization error
+	 */
+	String computeDigest(final RPObject object) throws IOException {
+		final Hasher hasher = Hashing.murmur3_128().newHasher();
+		final OutputSerializer serializer = new OutputSerializer(Funnels.asOutputStream(hasher));
+		object.writeObject(serializer, DetailLevel.FULL);
+		return hasher.hash().toString();
+	}
+
+	/**
+	 * loads what is known about the last save of an object
+	 *
+	 * @param transaction DBTransaction
+	 * @param object RPObject
+	 * @return Snapshot or <code>null</code>, if nothing is known
+	 * @throws SQLException in case of an database error
+	 */
+	private Snapshot loadSnapshot(final DBTransaction transaction, final RPObject object) throws SQLException {
+		if (!object.has(ATTR_DB_ID)) {
+			return null;
+		}
+
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("object_id", object.getInt(ATTR_DB_ID));
+		final ResultSet resultSet = transaction.query("SELECT digest, timedate, save_id FROM character_snapshot WHERE object_id=[object_id]", params);
+		try {
+			if (!resultSet.next()) {
+				return null;
+			}
+			return new Snapshot(resultSet.getString(1), resultSet.getTimestamp(2), resultSet.getLong(3));
+		} finally {
+			resultSet.close();
+		}
+	}
+
+	/**
+	 * checks whether the player reported changes of the data shown on the
+	 * website since the last save. In that case the object has changed, too.
+	 *
+	 * @param object RPObject
+	 * @param timestamp time of the save
+	 * @return true, if the object has changed; false if it is unknown
+	 */
+	private boolean isKnownChanged(final RPObject object, final Timestamp timestamp) {
+		if (!(object instanceof Player)) {
+			return false;
+		}
+		final Player player = (Player) object;
+		final PersistedCharacterState state = player.getPersistedState();
+		if (state.getPersistedStats(timestamp.getTime()) == null) {
+			return false;
+		}
+		return (state.getPersistedStatsVersion() != player.getStatsVersion())
+				|| (state.getPersistedItemsVersion() != player.getItemsVersion());
+	}
+
+	/**
+	 * checks whether the stored object is identical to the specified one.
+	 * An object which was written before RESYNC_INTERVAL is always written
+	 * again as a fallback.
+	 *
+	 * @param snapshot last save of the object, may be <code>null</code>
+	 * @param digest digest of the object
+	 * @param timestamp time of the save
+	 * @return true, if the object does not need to be written
+	 */
+	private boolean isUnchanged(final Snapshot snapshot, final String digest, final Timestamp timestamp) {
+		if ((snapshot == null) || (snapshot.written == null)) {
+			return false;
+		}
+		if (timestamp.getTime() - snapshot.written.getTime() >= PersistedCharacterState.RESYNC_INTERVAL) {
+			return false;
+		}
+		return digest.equals(snapshot.digest);
+	}
+
+	/**
+	 * remembers the digest of the written object and the id of the save of
+	 * the website tables
+	 *
+	 * @param transaction DBTransaction
+	 * @param object RPObject
+	 * @param digest digest of the object, an empty string if it is unknown or
+	 *        <code>null</code> if the object was not written
+	 * @param timestamp time of the save, <code>null</code> if the object was not written
+	 * @throws SQLException in case of an database error
+	 */
+	private void storeSnapshot(final DBTransaction transaction, final RPObject object,
+			final String digest, final Timestamp timestamp) throws SQLException {
+		long saveId = 0;
+		if (object instanceof Player) {
+			saveId = ((Player) object).getPersistedState().getPendingSaveId();
+		}
+		if (((digest == null) && (saveId == 0)) || !object.has(ATTR_DB_ID)) {
+			return;
+		}
+
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("object_id", object.getInt(ATTR_DB_ID));
+		params.put("digest", digest);
+		params.put("timedate", timestamp);
+		params.put("save_id", saveId);
+		final List<String> columns = new LinkedList<String>();
+		final List<String> values = new LinkedList<String>();
+		if (digest != null) {
+			columns.add("digest");
+			values.add("'[digest]'");
+			columns.add("timedate");
+			values.add("'[timedate]'");
+		}
+		if (saveId != 0) {
+			columns.add("save_id");
+			values.add("[save_id]");
+		}
+
+		final List<String> assignments = new LinkedList<String>();
+		for (int i = 0; i < columns.size(); i++) {
+			assignments.add(columns.get(i) + "=" + values.get(i));
+		}
+		final int count = transaction.execute("UPDATE character_snapshot SET " + Joiner.on(", ").join(assignments)
+				+ " WHERE object_id=[object_id]", params);
+		if (count == 0) {
+			transaction.execute("INSERT INTO character_snapshot (object_id, " + Joiner.on(", ").join(columns)
+					+ ") VALUES ([object_id], " + Joiner.on(", ").join(values) + ")", params);
+		}
+	}
+
+	/**
+	 * what is known about the last save of an object
+	 */
+	private static final class Snapshot {
+		final String digest;
+		final Timestamp written;
+		final long saveId;
+
+		Snapshot(String digest, Timestamp written, long saveId) {
+			this.digest = digest;
+			this.written = written;
+			this.saveId = saveId;
+		}
 	}
 
 }
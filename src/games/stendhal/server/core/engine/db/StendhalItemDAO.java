@@ -26,7 +26,6 @@ import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.rule.EntityManager;
 import games.stendhal.server.core.rule.defaultruleset.DefaultItem;
 import games.stendhal.server.entity.RPEntity;
-import games.stendhal.server.util.StringUtils;
 import marauroa.common.game.RPObject;
 import marauroa.server.db.DBTransaction;
 
@@ -40,6 +39,16 @@ public class StendhalItemDAO {
 	public static final String ATTR_ITEM_LOGID = "logid";
 	private static final Logger logger = Logger.getLogger(StendhalItemDAO.class);
 
+	/**
+	 * creates a batch for writing item log entries using prepared statements.
+	 *
+	 * @param transaction database transaction
+	 * @return ItemLogBatch
+	 */
+	public ItemLogBatch createItemLogBatch(final DBTransaction transaction) {
+		return new ItemLogBatch(transaction);
+	}
+
 	/**
 	 * Assigns the next logid to the specified item in case it does not already have one.
 	 *
@@ -52,31 +61,11 @@ public class StendhalItemDAO {
 		if (item.has(ATTR_ITEM_LOGID)) {
 			return;
 		}
-
-		// insert row into
-		String sql = "INSERT INTO item (name, timedate) VALUES ('[name]', '[timedate]')";
-		Map<String, Object> params = new HashMap<String, Object>();
-		params.put("name", item.get("name"));
-		params.put("timedate", timestamp);
-		transaction.execute(sql, params);
-
-		// get the insert id and store it into the item
-		item.put(ATTR_ITEM_LOGID, transaction.getLastInsertId("item", "id"));
-		itemLogInsertName(transaction, item, timestamp);
+		ItemLogBatch batch = createItemLogBatch(transaction);
+		batch.assignIDIfNotPresent(item, timestamp);
+		batch.flush();
 	}
 
-
-	/**
-	 * Logs the name of the item on first.
-	 *
-	 * @param transaction
-	 * @param item
-	 * @param timestamp timestamp
-	 * @throws SQLException
-	 */
-	private void itemLogInsertName(final DBTransaction transaction, final RPObject item, Timestamp timestamp) throws SQLException {
-		itemLogWriteEntry(transaction, timestamp, item, null, "register", getAttribute(item, "name"), getAttribute(item, "quantity"), getAttribute(item, "itemdata"), getAttribute(item, "bound"));
-	}
 	/**
 	 * writes a log entry
 	 *
@@ -111,41 +100,11 @@ public class StendhalItemDAO {
 	 * @throws SQLException in case of an database error
 	 */
 	public void itemLogWriteEntry(final DBTransaction transaction, Timestamp timestamp, final int itemid, final RPEntity player, final String event, final String param1, final String param2, final String param3, final String param4) throws SQLException {
-		String playerName = null;
-		if (player != null) {
-			playerName = player.getName();
-		}
-		final String query = "INSERT INTO itemlog (itemid, source, event, "
-			+ "param1, param2, param3, param4, timedate) VALUES ("
-			+ "[itemid], '[source]', '[event]', '[param1]', '[param2]', '[param3]', '[param4]', '[timedate]');";
-
-		Map<String, Object> params = new HashMap<String, Object>();
-		params.put("itemid", itemid);
-		params.put("source", StringUtils.trimTo(playerName, 64));
-		params.put("event", StringUtils.trimTo(event, 64));
-		params.put("param1", StringUtils.trimTo(param1, 64));
-		params.put("param2", StringUtils.trimTo(param2, 64));
-		params.put("param3", StringUtils.trimTo(param3, 64));
-		params.put("param4", StringUtils.trimTo(param4, 64));
-		params.put("timedate", timestamp);
-
-		transaction.execute(query, params);
+		ItemLogBatch batch = createItemLogBatch(transaction);
+		batch.writeEntry(timestamp, itemid, player, event, param1, param2, param3, param4);
+		batch.flush();
 	}
 
-	/**
-	 * gets an optional attribute .
-	 *
-	 * @param object object to read the optional attribute from
-	 * @param attribute
-	 * @return attribute name of attribute
-	 */
-	private String getAttribute(final RPObject object, final String attribute) {
-		if (object.has(attribute)) {
-			return object.get(attribute);
-		} else {
-			return "null";
-		}
-	}
 	/**
 	 * Dumps the properties of the specified object into the prepared statement as an operation in
 	 * a batch.
@@ -14,79 +14,146 @@ package games.stendhal.server.core.engine.db;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import games.stendhal.server.core.rp.searchindex.SearchIndexEntry;
+import games.stendhal.server.core.rp.searchindex.SearchIndexManager;
 import marauroa.server.db.DBTransaction;
 
 /**
- * database base access for the searchindex used on the website
+ * database base access for the searchindex used on the website.
+ *
+ * The search index is maintained incrementally: For each indexed entity a
+ * fingerprint of its source data is stored, so that only entities which
+ * changed need to be rewritten.
  *
  * @author hendrik
  */
 public class StendhalSearchIndexDAO {
 
+	/** maximum number of ids in a single DELETE statement */
+	private static final int DELETE_BATCH_SIZE = 500;
+
 	/**
-	 * reads existing search index entries from the database
+	 * reads the fingerprints of the indexed entities from the database
 	 *
 	 * @param transaction DBTransaction
-	 * @return set of existing search index entries
+	 * @return fingerprints by key of entity
 	 * @throws SQLException in case a database error is thrown.
 	 */
-	private Set<SearchIndexEntry> readExistingEntries(DBTransaction transaction) throws SQLException {
-		Set<SearchIndexEntry> res = Sets.newHashSet();
-		String query = "SELECT id, searchterm, entitytype, entityname, searchscore FROM searchindex";
+	public Map<String, String> readFingerprints(DBTransaction transaction) throws SQLException {
+		Map<String, String> res = Maps.newHashMap();
+		String query = "SELECT entitytype, entityname, fingerprint FROM searchindex_fingerprint";
 		ResultSet resultSet = transaction.query(query, null);
 		while (resultSet.next()) {
-			res.add(new SearchIndexEntry(resultSet.getString(2), resultSet.getString(3).charAt(0), resultSet.getString(4), resultSet.getInt(5), resultSet.getInt(1)));
+			res.put(SearchIndexManager.getKey(resultSet.getString(1).charAt(0), resultSet.getString(2)), resultSet.getString(3));
 		}
+		resultSet.close();
 		return res;
 	}
 
 	/**
-	 * writes an entry to the search index table
+	 * reads the keys of all entities which have entries in the search index
 	 *
-	 * @param stmt PreparedStatement in batch mode
-	 * @param entry SearchEntry
+	 * @param transaction DBTransaction
+	 * @return keys of entities
 	 * @throws SQLException in case a database error is thrown.
 	 */
-	private void writeEntry(PreparedStatement stmt, SearchIndexEntry entry) throws SQLException {
-		stmt.setString(1, entry.getSearchTerm());
-		stmt.setString(2, String.valueOf(entry.getEntityType()));
-		stmt.setString(3, entry.getEntityName());
-		stmt.setInt(4, entry.getSearchScore());
-		stmt.addBatch();
+	public Set<String> readIndexedKeys(DBTransaction transaction) throws SQLException {
+		Set<String> res = Sets.newLinkedHashSet();
+		String query = "SELECT DISTINCT entitytype, entityname FROM searchindex";
+		ResultSet resultSet = transaction.query(query, null);
+		while (resultSet.next()) {
+			res.add(SearchIndexManager.getKey(resultSet.getString(1).charAt(0), resultSet.getString(2)));
+		}
+		resultSet.close();
+		return res;
 	}
 
 	/**
-	 * deletes obsolte entries
+	 * replaces the search index entries and fingerprints of the specified entities
 	 *
-	 * @param transaction DBTransactions
-	 * @param toDelete entries to delete
-	 * @throws SQLException
+	 * @param transaction DBTransaction
+	 * @param keys keys of entities, which changed or were removed
+	 * @param entries new search index entries of these entities
+	 * @param fingerprints new fingerprints of these entities, removed entities are missing
+	 * @throws SQLException in case a database error is thrown.
 	 */
-	private void deleteObsoleteEntries(DBTransaction transaction, Set<SearchIndexEntry> toDelete) throws SQLException {
-		StringBuilder sql = new StringBuilder();
-		sql.append("DELETE FROM searchindex WHERE id IN (");
-		boolean first = true;
-		for (SearchIndexEntry entry : toDelete) {
-			if (first) {
-				first = false;
-			} else {
-				sql.append(",");
+	public void replaceEntities(DBTransaction transaction, Collection<String> keys,
+			Set<SearchIndexEntry> entries, Map<String, String> fingerprints) throws SQLException {
+		deleteByIds(transaction, "searchindex", findIds(transaction, "searchindex", keys));
+		deleteByIds(transaction, "searchindex_fingerprint", findIds(transaction, "searchindex_fingerprint", keys));
+		addNewEntries(transaction, entries);
+		addFingerprints(transaction, keys, fingerprints);
+	}
+
+	/**
+	 * finds the ids of the rows belonging to the specified entities
+	 *
+	 * @param transaction DBTransaction
+	 * @param table name of table
+	 * @param keys keys of entities
+	 * @return list of ids
+	 * @throws SQLException in case a database error is thrown.
+	 */
+	private List<Integer> findIds(DBTransaction transaction, String table, Collection<String> keys) throws SQLException {
+		List<Integer> res = Lists.newArrayList();
+		PreparedStatement stmt = transaction.prepareStatement("SELECT id, entityname FROM " + table
+				+ " WHERE entitytype=? AND entityname=?", null);
+		for (String key : keys) {
+			String entityName = key.substring(1);
+			stmt.setString(1, key.substring(0, 1));
+			stmt.setString(2, entityName);
+			ResultSet resultSet = stmt.executeQuery();
+			while (resultSet.next()) {
+				// the database may compare case insensitive
+				if (entityName.equals(resultSet.getString(2))) {
+					res.add(Integer.valueOf(resultSet.getInt(1)));
+				}
 			}
-			sql.append(String.valueOf(entry.getDbId()));
+			resultSet.close();
 		}
-		sql.append(")");
+		stmt.close();
+		return res;
+	}
 
-		// if there is at least one entry to delete
-		if (!first) {
-			transaction.execute(sql.toString(), null);
+	/**
+	 * deletes rows in bounded batches
+	 *
+	 * @param transaction DBTransactions
+	 * @param table name of table
+	 * @param ids ids of rows to delete
+	 * @throws SQLException in case a database error is thrown.
+	 */
+	private void deleteByIds(DBTransaction transaction, String table, List<Integer> ids) throws SQLException {
+		for (List<Integer> batch : Lists.partition(ids, DELETE_BATCH_SIZE)) {
+			transaction.execute("DELETE FROM " + table + " WHERE id IN (" + Joiner.on(',').join(batch) + ")", null);
 		}
 	}
 
+	/**
+	 * writes an entry to the search index table
+	 *
+	 * @param stmt PreparedStatement in batch mode
+	 * @param entry SearchEntry
+	 * @throws SQLException in case a database error is thrown.
+	 */
+	private void writeEntry(PreparedStatement stmt, SearchIndexEntry entry) throws SQLException {
+		stmt.setString(1, entry.getSearchTerm());
+		stmt.setString(2, String.valueOf(entry.getEntityType()));
+		stmt.setString(3, entry.getEntityName());
+		stmt.setInt(4, entry.getSearchScore());
+		stmt.addBatch();
+	}
+
 	/**
 	 * insert new entries
 	 *
@@ -106,20 +173,28 @@ public class StendhalSearchIndexDAO {
 	}
 
 	/**
-	 * dumps the search index
+	 * insert fingerprints
 	 *
-	 * @param transaction DBTransaction
-	 * @param entries required entries
-	 * @throws SQLException in case of an database error
+	 * @param transaction DBTransactions
+	 * @param keys keys of entities
+	 * @param fingerprints fingerprints by key, removed entities are missing
+	 * @throws SQLException
 	 */
-	public void updateSearchIndex(DBTransaction transaction, Set<SearchIndexEntry> entries) throws SQLException {
-		Set<SearchIndexEntry> oldEntries = readExistingEntries(transaction);
-
-		Set<SearchIndexEntry> toDelete = Sets.difference(oldEntries, entries);
-		Set<SearchIndexEntry> toAdd = Sets.difference(entries, oldEntries);
-
-		deleteObsoleteEntries(transaction, toDelete);
-		addNewEntries(transaction, toAdd);
+	private void addFingerprints(DBTransaction transaction, Collection<String> keys, Map<String, String> fingerprints) throws SQLException {
+		PreparedStatement stmt = transaction.prepareStatement("INSERT INTO searchindex_fingerprint"
+				+ " (entitytype, entityname, fingerprint)"
+				+ " VALUES (?, ?, ?)", null);
+		for (String key : keys) {
+			String fingerprint = fingerprints.get(key);
+			if (fingerprint == null) {
+				continue;
+			}
+			stmt.setString(1, key.substring(0, 1));
+			stmt.setString(2, key.substring(1));
+			stmt.setString(3, fingerprint);
+			stmt.addBatch();
+		}
+		stmt.executeBatch();
+		stmt.close();
 	}
-
 }
@@ -13,14 +13,21 @@ package games.stendhal.server.core.engine.db;
 
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 
 import games.stendhal.common.MathHelper;
 import games.stendhal.server.core.engine.StendhalRPZone;
 import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.player.PersistedCharacterState;
 import games.stendhal.server.entity.player.Player;
 import marauroa.common.game.RPObject;
 import marauroa.common.game.RPSlot;
@@ -34,6 +41,12 @@ import marauroa.server.db.TransactionPool;
 public class StendhalWebsiteDAO {
 	private static Logger logger = Logger.getLogger(StendhalWebsiteDAO.class);
 
+	/** character_stats columns which are written without quotes */
+	private static final Set<String> NUMERIC_COLUMNS = new HashSet<String>(Arrays.asList("admin", "age", "level", "outfit", "xp"));
+
+	/** character_stats columns which are taken from the items of the player */
+	private static final List<String> ITEM_COLUMNS = Arrays.asList("money", "head", "armor", "lhand", "rhand", "legs", "feet", "cloak", "finger");
+
 	/**
 	 * clears the online status of all players (used on server startup)
 	 *
@@ -53,18 +66,38 @@ public class StendhalWebsiteDAO {
 	 * @throws SQLException in case of an database error
 	 */
 	public void setOnlineStatus(final DBTransaction transaction, final String playerName, final boolean online) throws SQLException {
+		setOnlineStatus(transaction, playerName, online, null);
+	}
+
+	/**
+	 * sets the online status of a particular player. When a player goes offline,
+	 * lastseen is updated as well, because unchanged character_stats are not
+	 * written on every save.
+	 *
+	 * @param transaction DBTransaction
+	 * @param playerName name of player
+	 * @param online true, if the player is online; false otherwise
+	 * @param timestamp timestamp of the status change, may be <code>null</code>
+	 * @throws SQLException in case of an database error
+	 */
+	public void setOnlineStatus(final DBTransaction transaction, final String playerName, final boolean online, Timestamp timestamp) throws SQLException {
 		String onlinestate;
 		if (online) {
 			onlinestate = "1";
 		} else {
 			onlinestate = "0";
 		}
+		String lastseen = "";
+		if (!online && (timestamp != null)) {
+			lastseen = ", lastseen='[lastseen]'";
+		}
 		// first try an update
-		final String query = "UPDATE character_stats SET online='[onlinestate]'"
+		final String query = "UPDATE character_stats SET online='[onlinestate]'" + lastseen
 			+ " WHERE name='[name]'";
 		Map<String, Object> params = new HashMap<String, Object>();
 		params.put("onlinestate", onlinestate);
 		params.put("name", playerName);
+		params.put("lastseen", timestamp);
 		logger.debug("setOnlineStatus is running: " + query);
 
 		transaction.execute(query, params);
@@ -121,6 +154,19 @@ public class StendhalWebsiteDAO {
 	 * @throws SQLException in case of an database error
 	 */
 	protected int updateCharStats(final DBTransaction transaction, final Player player, Timestamp timestamp) throws SQLException {
+		return updateCharStats(transaction, getParamsFromPlayer(player), timestamp);
+	}
+
+	/**
+	 * updates the statistics information about a player
+	 *
+	 * @param transaction DBTransaction
+	 * @param playerParams column values
+	 * @param timestamp timestamp
+	 * @return number of updates rows
+	 * @throws SQLException in case of an database error
+	 */
+	private int updateCharStats(final DBTransaction transaction, final Map<String, Object> playerParams, Timestamp timestamp) throws SQLException {
 		final String query = "UPDATE character_stats SET "
 			+ " admin=[admin], sentence='[sentence]', age=[age], level=[level],"
 			+ " outfit=[outfit], outfit_colors='[outfit_colors]', outfit_layers='[outfit_layers]', xp=[xp], money='[money]',"
@@ -130,13 +176,92 @@ public class StendhalWebsiteDAO {
 			+ " finger='[finger]', zone='[zone]'"
 			+ " WHERE name='[name]'";
 
-		Map<String, Object> params = getParamsFromPlayer(player);
+		Map<String, Object> params = new HashMap<String, Object>(playerParams);
 		params.put("lastseen", timestamp);
 		logger.debug("storeCharacter is running: " + query);
 		final int count = transaction.execute(query, params);
 		return count;
 	}
 
+	/**
+	 * stores the statistics information about a player. Only columns which
+	 * changed since the last save are written. If nothing changed, the write
+	 * is skipped completely, unless the remembered state has to be verified
+	 * again. In that case all columns are written. The columns are not even
+	 * collected, if the player reports no changes since the last save, and
+	 * the items are not looked at, if only attributes changed.
+	 *
+	 * @param transaction DBTransaction
+	 * @param player Player
+	 * @param timestamp timestamp
+	 * @throws SQLException in case of an database error
+	 */
+	public void storeCharStats(final DBTransaction transaction, final Player player, Timestamp timestamp) throws SQLException {
+		PersistedCharacterState state = player.getPersistedState();
+		Map<String, Object> oldParams = state.getPersistedStats(timestamp.getTime());
+		boolean itemsUnchanged = (oldParams != null) && (state.getPersistedItemsVersion() == player.getItemsVersion());
+		if (itemsUnchanged && (state.getPersistedStatsVersion() == player.getStatsVersion())) {
+			DirtyWriteStatistics.get().countStats(true);
+			return;
+		}
+
+		Map<String, Object> params = getParamsFromPlayer(player, itemsUnchanged ? oldParams : null);
+
+		if (oldParams == null) {
+			final int count = updateCharStats(transaction, params, timestamp);
+			if (count == 0) {
+				insertIntoCharStats(transaction, params, timestamp);
+			}
+		} else {
+			List<String> changed = new LinkedList<String>();
+			for (Map.Entry<String, Object> entry : params.entrySet()) {
+				if (!Objects.equals(entry.getValue(), oldParams.get(entry.getKey()))) {
+					changed.add(entry.getKey());
+				}
+			}
+			if (changed.isEmpty()) {
+				state.setPersistedVersions(player.getStatsVersion(), player.getItemsVersion());
+				DirtyWriteStatistics.get().countStats(true);
+				return;
+			}
+			final int count = updateCharStatsColumns(transaction, params, changed, timestamp);
+			if (count == 0) {
+				insertIntoCharStats(transaction, params, timestamp);
+			}
+		}
+		state.setPersistedStats(params, player.getStatsVersion(), player.getItemsVersion(), timestamp.getTime());
+		DirtyWriteStatistics.get().countStats(false);
+	}
+
+	/**
+	 * updates the specified columns of the statistics information about a player
+	 *
+	 * @param transaction DBTransaction
+	 * @param params column values
+	 * @param columns names of columns to update
+	 * @param timestamp timestamp
+	 * @return number of updates rows
+	 * @throws SQLException in case of an database error
+	 */
+	private int updateCharStatsColumns(final DBTransaction transaction, final Map<String, Object> params,
+			final List<String> columns, Timestamp timestamp) throws SQLException {
+		final StringBuilder query = new StringBuilder("UPDATE character_stats SET ");
+		for (String column : columns) {
+			query.append(column);
+			if (NUMERIC_COLUMNS.contains(column)) {
+				query.append("=[").append(column).append("], ");
+			} else {
+				query.append("='[").append(column).append("]', ");
+			}
+		}
+		query.append("lastseen='[lastseen]' WHERE name='[name]'");
+
+		Map<String, Object> queryParams = new HashMap<String, Object>(params);
+		queryParams.put("lastseen", timestamp);
+		logger.debug("storeCharacter is running: " + query);
+		return transaction.execute(query.toString(), queryParams);
+	}
+
 	/**
 	 * gets the attributes from a player object.
 	 *
@@ -144,6 +269,18 @@ public class StendhalWebsiteDAO {
 	 * @return Map with key value pairs
 	 */
 	private Map<String, Object> getParamsFromPlayer(final Player player) {
+		return getParamsFromPlayer(player, null);
+	}
+
+	/**
+	 * gets the attributes from a player object.
+	 *
+	 * @param player Player
+	 * @param itemParams values of the item columns, which are known to be
+	 *        unchanged, or <code>null</code> to read them from the player
+	 * @return Map with key value pairs
+	 */
+	private Map<String, Object> getParamsFromPlayer(final Player player, final Map<String, Object> itemParams) {
 		Map<String, Object> params = new HashMap<String, Object>();
 		params.put("admin", player.getAdminLevel());
 		params.put("sentence", player.getSentence());
@@ -153,20 +290,26 @@ public class StendhalWebsiteDAO {
 		params.put("outfit_colors", getOutfitColors(player));
 		params.put("outfit_layers", player.getOutfit().getData(player.getOutfitColors()));
 		params.put("xp", player.getXP());
-		params.put("money", player.getTotalNumberOf("money"));
 		params.put("married", extractSpouseOrNull(player));
 		params.put("atk", player.getAtk());
 		params.put("def", player.getDef());
 		params.put("hp", player.getHP());
 		params.put("karma", (int) player.getKarma());
-		params.put("head", extractName(player.getHelmet()));
-		params.put("armor", extractName(player.getArmor()));
-		params.put("lhand", extractHandName(player, "lhand"));
-		params.put("rhand", extractHandName(player, "rhand"));
-		params.put("legs", extractName(player.getLegs()));
-		params.put("feet", extractName(player.getBoots()));
-		params.put("cloak", extractName(player.getCloak()));
-		params.put("finger", extractHandName(player, "finger"));
+		if (itemParams != null) {
+			for (String column : ITEM_COLUMNS) {
+				params.put(column, itemParams.get(column));
+			}
+		} else {
+			params.put("money", player.getTotalNumberOf("money"));
+			params.put("head", extractName(player.getHelmet()));
+			params.put("armor", extractName(player.getArmor()));
+			params.put("lhand", extractHandName(player, "lhand"));
+			params.put("rhand", extractHandName(player, "rhand"));
+			params.put("legs", extractName(player.getLegs()));
+			params.put("feet", extractName(player.getBoots()));
+			params.put("cloak", extractName(player.getCloak()));
+			params.put("finger", extractHandName(player, "finger"));
+		}
 		params.put("name", player.getName());
 		String zoneName = "";
 		StendhalRPZone zone = player.getZone();
@@ -186,6 +329,20 @@ public class StendhalWebsiteDAO {
 	 * @throws SQLException in case of an database error
 	 */
 	protected void insertIntoCharStats(final DBTransaction transaction, final Player player, Timestamp timestamp) throws SQLException {
+		Map<String, Object> params = getParamsFromPlayer(player);
+		insertIntoCharStats(transaction, params, timestamp);
+		player.getPersistedState().setPersistedStats(params, player.getStatsVersion(), player.getItemsVersion(), timestamp.getTime());
+	}
+
+	/**
+	 * Insert statistics information about a new player
+	 *
+	 * @param transaction DBTransaction
+	 * @param playerParams column values
+	 * @param timestamp timestamp
+	 * @throws SQLException in case of an database error
+	 */
+	private void insertIntoCharStats(final DBTransaction transaction, final Map<String, Object> playerParams, Timestamp timestamp) throws SQLException {
 		final String query = "INSERT INTO character_stats"
 			+ " (name, admin, sentence, age, level,"
 			+ " outfit, outfit_colors, outfit_layers, xp, money, married, atk, def, hp,"
@@ -196,7 +353,7 @@ public class StendhalWebsiteDAO {
 			+ " '[atk]', '[atk]', '[hp]', '[karma]', '[head]', '[armor]',"
 			+ " '[lhand]', '[rhand]', '[legs]', '[feet]', '[cloak]', '[finger]',"
 			+ " '[zone]', '[lastseen]')";
-		Map<String, Object> params = getParamsFromPlayer(player);
+		Map<String, Object> params = new HashMap<String, Object>(playerParams);
 		params.put("lastseen", timestamp);
 		logger.debug("storeCharacter is running: " + query);
 		transaction.execute(query, params);
@@ -0,0 +1,100 @@
+/***************************************************************************
+ *                    (C) Copyright 2007-2023 - Stendhal                   *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.dbcommand;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.base.MoreObjects;
+
+import games.stendhal.server.core.engine.ItemLogQueue;
+import games.stendhal.server.core.engine.db.ItemLogBatch;
+import games.stendhal.server.core.engine.db.StendhalItemDAO;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.command.AbstractDBCommand;
+import marauroa.server.game.db.DAORegister;
+
+/**
+ * writes the buffered item log events in one batch.
+ */
+public class FlushItemLogCommand extends AbstractDBCommand {
+	private static Logger logger = Logger.getLogger(FlushItemLogCommand.class);
+
+	private final ItemLogQueue itemLogQueue;
+
+	/**
+	 * creates a new FlushItemLogCommand
+	 *
+	 * @param itemLogQueue queue to drain
+	 */
+	public FlushItemLogCommand(ItemLogQueue itemLogQueue) {
+		this.itemLogQueue = itemLogQueue;
+	}
+
+	@Override
+	public void execute(DBTransaction transaction) throws SQLException {
+		long start = System.nanoTime();
+		int events = 0;
+		int rows = 0;
+		try {
+			List<AbstractLogItemEventCommand> commands = itemLogQueue.drain(ItemLogQueue.MAX_BATCH_SIZE);
+			try {
+				ItemLogBatch batch = DAORegister.get().get(StendhalItemDAO.class).createItemLogBatch(transaction);
+				for (AbstractLogItemEventCommand command : commands) {
+					try {
+						command.log(batch);
+					} catch (SQLException e) {
+						if (transaction.isConnectionError(e)) {
+							throw e;
+						}
+						logger.error("Failed to log item event " + command, e);
+					} catch (RuntimeException e) {
+						logger.error("Failed to log item event " + command, e);
+					}
+				}
+				rows = batch.flush();
+				events = commands.size();
+			} catch (SQLException e) {
+				// the transaction is rolled back, so none of the events are written
+				logFailed(commands);
+				throw e;
+			}
+		} finally {
+			itemLogQueue.onFlushCompleted(events, rows, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * logs the events of a batch which could not be written, so that they
+	 * are not lost silently.
+	 *
+	 * @param commands events
+	 */
+	private void logFailed(List<AbstractLogItemEventCommand> commands) {
+		logger.error("Failed to write " + commands.size() + " item log events");
+		for (AbstractLogItemEventCommand command : commands) {
+			logger.error("Lost item event " + command + " from " + command.getEnqueueTime());
+		}
+	}
+
+	/**
+	 * returns a string suitable for debug output of this DBCommand.
+	 *
+	 * @return debug string
+	 */
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("queued", itemLogQueue.getQueueDepth()).toString();
+	}
+}
@@ -41,7 +41,7 @@ public class SetOnlineStatusCommand extends AbstractDBCommand {
 
 	@Override
 	public void execute(DBTransaction transaction) throws SQLException, IOException {
-		DAORegister.get().get(StendhalWebsiteDAO.class).setOnlineStatus(transaction, playerName, online);
+		DAORegister.get().get(StendhalWebsiteDAO.class).setOnlineStatus(transaction, playerName, online, getEnqueueTime());
 	}
 
 }
@@ -0,0 +1,56 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.dbcommand;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import games.stendhal.server.entity.player.Player;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.command.AbstractDBCommand;
+import marauroa.server.game.db.CharacterDAO;
+import marauroa.server.game.db.DAORegister;
+
+/**
+ * Stores a save snapshot of a player. Unlike marauroa's StoreCharacterCommand
+ * the snapshot carries a generation, so that it can be skipped, if a newer
+ * snapshot of the same player is already waiting to be saved.
+ */
+public class StoreCharacterSnapshotCommand extends AbstractDBCommand {
+	private final String username;
+	private final String character;
+	private final Player frozenPlayer;
+
+	/**
+	 * Creates a new StoreCharacterSnapshotCommand. The snapshot is taken
+	 * immediately, so this has to be called on the turn thread.
+	 *
+	 * @param username name of account
+	 * @param character name of character
+	 * @param player player to save
+	 */
+	public StoreCharacterSnapshotCommand(String username, String character, Player player) {
+		this.username = username;
+		this.character = character;
+		this.frozenPlayer = player.createSaveSnapshot();
+	}
+
+	@Override
+	public void execute(DBTransaction transaction) throws SQLException, IOException {
+		DAORegister.get().get(CharacterDAO.class).storeCharacter(transaction, username, character, frozenPlayer, getEnqueueTime());
+	}
+
+	@Override
+	public String toString() {
+		return "StoreCharacterSnapshotCommand [username=" + username + ", character=" + character + "]";
+	}
+}
@@ -13,36 +13,81 @@ package games.stendhal.server.core.engine.dbcommand;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
 import games.stendhal.server.core.engine.db.StendhalSearchIndexDAO;
 import games.stendhal.server.core.rp.searchindex.SearchIndexEntry;
 import games.stendhal.server.core.rp.searchindex.SearchIndexManager;
 import marauroa.server.db.DBTransaction;
 import marauroa.server.db.command.AbstractDBCommand;
+import marauroa.server.db.command.DBCommandPriority;
+import marauroa.server.db.command.DBCommandQueue;
 import marauroa.server.game.db.DAORegister;
 
 /**
- * updates the search index
+ * updates the search index. Only entities whose fingerprint changed are
+ * written. The writes are split into chunks, each processed by its own
+ * WriteSearchIndexChunkCommand, so that no long running transaction is held.
  *
  * @author hendrik
  */
 public class UpdateSearchIndexCommand extends AbstractDBCommand {
 	private static Logger logger = Logger.getLogger(UpdateSearchIndexCommand.class);
 
+	/** maximum number of entities written in one transaction */
+	private static final int CHUNK_SIZE = 200;
+
 	@Override
 	public void execute(DBTransaction transaction) throws SQLException, IOException {
 		long start = System.currentTimeMillis();
 
 		SearchIndexManager manager = new SearchIndexManager();
-		Set<SearchIndexEntry> index = manager.generateIndex();
+		Map<String, String> fingerprints = manager.generateFingerprints();
 
 		StendhalSearchIndexDAO dao = DAORegister.get().get(StendhalSearchIndexDAO.class);
-		dao.updateSearchIndex(transaction, index);
+		Map<String, String> oldFingerprints = dao.readFingerprints(transaction);
+
+		List<String> dirty = Lists.newArrayList();
+		for (Map.Entry<String, String> entry : fingerprints.entrySet()) {
+			if (!entry.getValue().equals(oldFingerprints.get(entry.getKey()))) {
+				dirty.add(entry.getKey());
+			}
+		}
+		Set<String> oldKeys = oldFingerprints.keySet();
+		if (oldFingerprints.isEmpty()) {
+			// the index was created without fingerprints, so all entities are
+			// rewritten. Entities which do not exist anymore are found in the
+			// index itself, so that their rows are deleted chunk by chunk, too,
+			// instead of emptying the whole index first.
+			oldKeys = dao.readIndexedKeys(transaction);
+		}
+		for (String key : oldKeys) {
+			if (!fingerprints.containsKey(key)) {
+				dirty.add(key);
+			}
+		}
+
+		for (List<String> chunk : Lists.partition(dirty, CHUNK_SIZE)) {
+			List<String> keys = Lists.newArrayList(chunk);
+			Set<SearchIndexEntry> entries = manager.generateIndex(keys);
+			Map<String, String> chunkFingerprints = Maps.newHashMap();
+			for (String key : keys) {
+				if (fingerprints.containsKey(key)) {
+					chunkFingerprints.put(key, fingerprints.get(key));
+				}
+			}
+			DBCommandQueue.get().enqueue(new WriteSearchIndexChunkCommand(keys, entries, chunkFingerprints), DBCommandPriority.LOW);
+		}
 
-		logger.info("Completed dumping of search index in " + (System.currentTimeMillis() - start) + " milliseconds.");
+		logger.info("Completed checking of search index in " + (System.currentTimeMillis() - start) + " milliseconds, "
+				+ dirty.size() + " of " + fingerprints.size() + " entities changed.");
 	}
 
 }
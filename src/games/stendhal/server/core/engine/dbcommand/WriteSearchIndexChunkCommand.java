@@ -0,0 +1,63 @@
+/***************************************************************************
+ *                 (C) Copyright 2014-2023 - Faiumoni e. V.                *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.dbcommand;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.MoreObjects;
+
+import games.stendhal.server.core.engine.db.StendhalSearchIndexDAO;
+import games.stendhal.server.core.rp.searchindex.SearchIndexEntry;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.command.AbstractDBCommand;
+import marauroa.server.game.db.DAORegister;
+
+/**
+ * replaces the search index entries of a bounded number of entities
+ */
+public class WriteSearchIndexChunkCommand extends AbstractDBCommand {
+	private final List<String> keys;
+	private final Set<SearchIndexEntry> entries;
+	private final Map<String, String> fingerprints;
+
+	/**
+	 * creates a new WriteSearchIndexChunkCommand
+	 *
+	 * @param keys keys of entities, which changed or were removed
+	 * @param entries new search index entries of these entities
+	 * @param fingerprints new fingerprints of these entities, removed entities are missing
+	 */
+	public WriteSearchIndexChunkCommand(List<String> keys, Set<SearchIndexEntry> entries, Map<String, String> fingerprints) {
+		this.keys = keys;
+		this.entries = entries;
+		this.fingerprints = fingerprints;
+	}
+
+	@Override
+	public void execute(DBTransaction transaction) throws SQLException, IOException {
+		DAORegister.get().get(StendhalSearchIndexDAO.class).replaceEntities(transaction, keys, entries, fingerprints);
+	}
+
+	/**
+	 * returns a string suitable for debug output of this DBCommand.
+	 *
+	 * @return debug string
+	 */
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("entities", keys.size()).add("entries", entries.size()).toString();
+	}
+}
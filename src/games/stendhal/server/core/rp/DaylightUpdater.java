@@ -69,6 +69,15 @@ public class DaylightUpdater implements TurnListener {
 		setZoneColor(attr, currentColor);
 	}
 
+	/**
+	 * Stop managing the color of a zone which is removed from the world.
+	 *
+	 * @param attr attributes of the zone
+	 */
+	public void releaseAttributes(ZoneAttributes attr) {
+		zones.remove(attr);
+	}
+
 	@Override
 	public void onTurnReached(int currentTurn) {
 		updateDaytimeColor();
@@ -120,6 +129,6 @@ public class DaylightUpdater implements TurnListener {
 			attr.put("blend_method", "bleach");
 		}
 		// Notify resident players about the changed color
-		attr.getZone().notifyOnlinePlayers();
+		ZoneAttributeNotifier.get().attributesChanged(attr.getZone());
 	}
 }
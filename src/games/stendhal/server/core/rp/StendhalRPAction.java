@@ -17,8 +17,11 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.Shape;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 
@@ -510,12 +513,23 @@ public class StendhalRPAction {
 	 *     Player for whom content is sent.
 	 */
 	public static void transferContent(final Player player) {
-		transferContent(player, player.getZone().getContents());
+		if (rpman != null) {
+			// the bundle is shared by all players on the zone, marauroa
+			// copies it before changing anything
+			rpman.transferContent(player, player.getZone().getContents(dataProvider, player.getClientVersion()));
+			markTransferred(player);
+		} else {
+			logger.warn("rpmanager not found");
+		}
 	}
 
 
 	private static DataProvider dataProvider = new DataProvider();
 
+	/** players which got content in the current turn */
+	private static final Set<Player> transferred = Collections.newSetFromMap(new IdentityHashMap<Player, Boolean>());
+	private static int transferTurn = -1;
+
 	/**
 	 * Transfers arbritary content.
 	 *
@@ -532,11 +546,50 @@ public class StendhalRPAction {
 				allContent.addAll(temp);
 			}
 			rpman.transferContent(player, allContent);
+			markTransferred(player);
 		} else {
 			logger.warn("rpmanager not found");
 		}
 	}
 
+	/**
+	 * Transfers changed zone attributes. Clients which cannot apply the
+	 * attributes on their own get the complete zone content.
+	 *
+	 * @param player
+	 *     Player for whom content is sent.
+	 * @param attributes
+	 *     Attributes of the zone the player is in.
+	 */
+	public static void transferZoneAttributes(final Player player, final TransferContent attributes) {
+		if (rpman == null) {
+			logger.warn("rpmanager not found");
+			return;
+		}
+		// marauroa keeps only the last transfer of a turn for each player, so
+		// the attributes must not replace a zone change or login transfer
+		if (!player.supportsZoneAttributeUpdates() || isTransferred(player)) {
+			transferContent(player);
+			return;
+		}
+		final List<TransferContent> contents = new LinkedList<TransferContent>();
+		contents.add(attributes);
+		rpman.transferContent(player, contents);
+		markTransferred(player);
+	}
+
+	private static void markTransferred(final Player player) {
+		if (transferTurn != rpman.getTurn()) {
+			transferred.clear();
+			transferTurn = rpman.getTurn();
+		}
+		transferred.add(player);
+	}
+
+	private static boolean isTransferred(final Player player) {
+		return (transferTurn == rpman.getTurn()) && transferred.contains(player);
+	}
+
 	/**
 	 * Change an entity's zone based on its global world coordinates.
 	 *
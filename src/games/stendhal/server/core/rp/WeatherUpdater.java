@@ -14,6 +14,7 @@ package games.stendhal.server.core.rp;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -145,6 +146,20 @@ public class WeatherUpdater implements TurnListener {
 		updateAndNotify(data, weather);
 	}
 
+	/**
+	 * Stop managing the weather of a zone which is removed from the world.
+	 *
+	 * @param attr attributes of the zone
+	 */
+	public void releaseAttributes(ZoneAttributes attr) {
+		Iterator<ZoneData> it = zones.iterator();
+		while (it.hasNext()) {
+			if (it.next().attributes == attr) {
+				it.remove();
+			}
+		}
+	}
+
 	@Override
 	public final void onTurnReached(int currentTurn) {
 		updateWeatherStates();
@@ -244,7 +259,7 @@ public class WeatherUpdater implements TurnListener {
 				attr.remove(WEATHER);
 			}
 			// Notify resident players about the changed weather
-			attr.getZone().notifyOnlinePlayers();
+			ZoneAttributeNotifier.get().attributesChanged(attr.getZone());
 		}
 	}
 
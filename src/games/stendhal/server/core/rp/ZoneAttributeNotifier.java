@@ -0,0 +1,97 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.rp;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.events.TurnListener;
+
+/**
+ * Sends changed zone attributes to the players. A daylight change affects
+ * all outdoor zones at once, so the notifications are spread over several
+ * turns: in each turn only the zones of about
+ * -Dstendhal.zone.attribute_updates players (default 50) are notified.
+ * Zones without players do not count.
+ */
+public class ZoneAttributeNotifier implements TurnListener {
+
+	/** The singleton instance. */
+	private static ZoneAttributeNotifier instance;
+
+	/** Maximum number of players notified in one turn */
+	private final int playersPerTurn;
+
+	/** Zones with changed attributes, in the order of the changes */
+	private final Set<StendhalRPZone> pending = new LinkedHashSet<StendhalRPZone>();
+
+	/**
+	 * Get the ZoneAttributeNotifier instance.
+	 *
+	 * @return singleton instance
+	 */
+	public static ZoneAttributeNotifier get() {
+		if (instance == null) {
+			instance = new ZoneAttributeNotifier(Integer.getInteger("stendhal.zone.attribute_updates", 50).intValue());
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Create a new ZoneAttributeNotifier.
+	 *
+	 * @param playersPerTurn maximum number of players notified in one turn
+	 */
+	ZoneAttributeNotifier(int playersPerTurn) {
+		this.playersPerTurn = Math.max(1, playersPerTurn);
+	}
+
+	/**
+	 * Notify the players on a zone about changed attributes. A zone which
+	 * is already waiting for its notification is not notified twice.
+	 *
+	 * @param zone zone with changed attributes
+	 */
+	public void attributesChanged(StendhalRPZone zone) {
+		if (pending.isEmpty()) {
+			SingletonRepository.getTurnNotifier().notifyInTurns(0, this);
+		}
+		pending.add(zone);
+	}
+
+	/**
+	 * Get the number of zones waiting for their notification.
+	 *
+	 * @return number of zones
+	 */
+	int getPendingCount() {
+		return pending.size();
+	}
+
+	@Override
+	public void onTurnReached(int currentTurn) {
+		int notified = 0;
+		Iterator<StendhalRPZone> it = pending.iterator();
+		while (it.hasNext() && (notified < playersPerTurn)) {
+			StendhalRPZone zone = it.next();
+			it.remove();
+			notified += zone.notifyAttributesChanged();
+		}
+		if (!pending.isEmpty()) {
+			SingletonRepository.getTurnNotifier().notifyInTurns(0, this);
+		}
+	}
+}
@@ -11,12 +11,20 @@
  ***************************************************************************/
 package games.stendhal.server.core.rp.searchindex;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.rp.achievement.Achievement;
@@ -31,7 +39,16 @@ import games.stendhal.server.entity.npc.SpeakerNPC;
  * @author hendrik
  */
 public class SearchIndexManager {
-	private final Set<SearchIndexEntry> index = Sets.newHashSet();
+	/**
+	 * version of the index generation rules. It is part of the fingerprints,
+	 * so it has to be increased whenever the rules, scores or stop words change.
+	 */
+	private static final int GENERATOR_VERSION = 1;
+
+	private Set<SearchIndexEntry> index = Sets.newHashSet();
+
+	/** source data of the indexed entities by key */
+	private final Map<String, EntitySource> sources = Maps.newLinkedHashMap();
 
 	// keep in sync with search.php
 	private final ImmutableSet<String> STOP_WORDS =
@@ -43,42 +60,114 @@ public class SearchIndexManager {
 	 * @return searchIndex
 	 */
 	public Set<SearchIndexEntry> generateIndex() {
-		achievements();
-		creatures();
-		items();
-		npcs();
+		return generateIndex(collectSources().keySet());
+	}
+
+	/**
+	 * generates the search index entries for the specified entities only
+	 *
+	 * @param keys keys of entities as returned by {@link #getKey(char, String)}
+	 * @return search index entries of these entities
+	 */
+	public Set<SearchIndexEntry> generateIndex(Collection<String> keys) {
+		Map<String, EntitySource> allSources = collectSources();
+		index = Sets.newHashSet();
+		for (String key : keys) {
+			EntitySource source = allSources.get(key);
+			if (source == null) {
+				continue;
+			}
+			addName(source.name, source.type);
+			for (String description : source.descriptions) {
+				addDescription(source.name, description, source.type, 1000);
+			}
+		}
 		return index;
 	}
 
+	/**
+	 * calculates a fingerprint of the source data of each indexed entity. The
+	 * fingerprint changes, whenever the search index entries of an entity change.
+	 *
+	 * @return fingerprints by key of entity
+	 */
+	public Map<String, String> generateFingerprints() {
+		Map<String, String> res = Maps.newLinkedHashMap();
+		for (Map.Entry<String, EntitySource> entry : collectSources().entrySet()) {
+			res.put(entry.getKey(), entry.getValue().getFingerprint());
+		}
+		return res;
+	}
+
+	/**
+	 * gets the key of an indexed entity
+	 *
+	 * @param entityType type of entity
+	 * @param entityName name of entity
+	 * @return key
+	 */
+	public static String getKey(char entityType, String entityName) {
+		return entityType + entityName;
+	}
+
+	/**
+	 * collects the source data of all entities, which are part of the search index
+	 *
+	 * @return source data by key
+	 */
+	private Map<String, EntitySource> collectSources() {
+		if (sources.isEmpty()) {
+			achievements();
+			creatures();
+			items();
+			npcs();
+		}
+		return sources;
+	}
+
 	private void achievements() {
 		for (Achievement achievement : AchievementNotifier.get().getAchievements()) {
 			if (!achievement.isActive()) {
 				continue;
 			}
-			addName(achievement.getTitle(), SearchIndexEntryType.ACHIEVEMENT);
-			addDescription(achievement.getTitle(), achievement.getDescription(), SearchIndexEntryType.ACHIEVEMENT, 1000);
+			addSource(achievement.getTitle(), SearchIndexEntryType.ACHIEVEMENT, achievement.getDescription());
 		}
 	}
 
 	private void npcs() {
 		for (SpeakerNPC npc : SingletonRepository.getNPCList()) {
-			addName(npc.getName(), SearchIndexEntryType.NPC);
-			addDescription(npc.getName(), npc.getDescription(), SearchIndexEntryType.NPC, 1000);
-			addDescription(npc.getName(), npc.getJob(), SearchIndexEntryType.NPC, 1000);
+			addSource(npc.getName(), SearchIndexEntryType.NPC, npc.getDescription(), npc.getJob());
 		}
 	}
 
 	private void items() {
 		for (DefaultItem item : SingletonRepository.getEntityManager().getDefaultItems()) {
-			addName(item.getItemName(), SearchIndexEntryType.ITEM);
-			addDescription(item.getItemName(), item.getDescription(), SearchIndexEntryType.ITEM, 1000);
+			addSource(item.getItemName(), SearchIndexEntryType.ITEM, item.getDescription());
 		}
 	}
 
 	private void creatures() {
 		for (DefaultCreature creature : SingletonRepository.getEntityManager().getDefaultCreatures()) {
-			addName(creature.getCreatureName(), SearchIndexEntryType.CREATURE);
-			addDescription(creature.getCreatureName(), creature.getDescription(), SearchIndexEntryType.CREATURE, 1000);
+			addSource(creature.getCreatureName(), SearchIndexEntryType.CREATURE, creature.getDescription());
+		}
+	}
+
+	/**
+	 * remembers the source data of an entity
+	 *
+	 * @param name name of entity
+	 * @param type type of entity
+	 * @param descriptions descriptions of entity, may contain <code>null</code>
+	 */
+	private void addSource(String name, SearchIndexEntryType type, String... descriptions) {
+		String key = getKey(type.getEntityType(), name);
+		EntitySource source = sources.get(key);
+		if (source == null) {
+			source = new EntitySource(name, type);
+			sources.put(key, source);
+		}
+		for (String description : descriptions) {
+			source.descriptions.add(description);
 		}
 	}
 
@@ -130,4 +219,40 @@ public class SearchIndexManager {
 			index.add(new SearchIndexEntry(token, type.getEntityType(), name, baseScore + type.getMinorScore()));
 		}
 	}
+
+	/**
+	 * source data of an indexed entity
+	 */
+	private static class EntitySource {
+		private final String name;
+		private final SearchIndexEntryType type;
+		private final List<String> descriptions = new LinkedList<String>();
+
+		EntitySource(String name, SearchIndexEntryType type) {
+			this.name = name;
+			this.type = type;
+		}
+
+		/**
+		 * calculates the fingerprint of this entity
+		 *
+		 * @return fingerprint
+		 */
+		String getFingerprint() {
+			Hasher hasher = Hashing.sha256().newHasher();
+			hasher.putInt(GENERATOR_VERSION);
+			hasher.putString(type.name(), StandardCharsets.UTF_8);
+			hasher.putChar('\0');
+			hasher.putString(name, StandardCharsets.UTF_8);
+			for (String description : descriptions) {
+				hasher.putChar('\0');
+				if (description != null) {
+					hasher.putString(description, StandardCharsets.UTF_8);
+				} else {
+					hasher.putChar('\1');
+				}
+			}
+			return hasher.hash().toString();
+		}
+	}
 }
@@ -24,6 +24,8 @@ import java.util.Map.Entry;
 import org.apache.log4j.Logger;
 import org.codehaus.groovy.control.CompilationFailedException;
 
+import com.google.common.collect.ImmutableList;
+
 import games.stendhal.common.constants.Nature;
 import games.stendhal.server.core.rule.EntityManager;
 import games.stendhal.server.entity.creature.Creature;
@@ -39,6 +41,14 @@ public class DefaultCreature {
 	/** the logger instance. */
 	private static final Logger logger = Logger.getLogger(DefaultCreature.class);
 
+	/** orders drops by ascending probability */
+	private static final Comparator<DropItem> DROP_ORDER = new Comparator<DropItem>() {
+		@Override
+		public int compare(final DropItem o1, final DropItem o2) {
+			return Double.compare(o1.probability, o2.probability);
+		}
+	};
+
 	/** Creature class. */
 	private String clazz;
 
@@ -112,6 +122,8 @@ public class DefaultCreature {
 	/** Status attack types */
 	private String statusAttack;
 	private double statusAttackProbability;
+	/** attacker created from statusAttack, shared by all creatures */
+	private ImmutableList<StatusAttacker> statusAttackers;
 
 	/** Type of damage caused by the creature */
 	private Nature damageType;
@@ -336,18 +348,10 @@ public class DefaultCreature {
 	/** @return a creature-instance.
 	 */
 	public Creature getCreature() {
-		Collections.sort(dropsItems, new Comparator<DropItem>() {
-			@Override
-			public int compare(final DropItem o1, final DropItem o2) {
-				if (o1.probability < o2.probability) {
-					return -1;
-				} else if (o1.probability > o2.probability) {
-					return 1;
-				} else {
-					return 0;
-				}
-			}
-		});
+		// the list is usually sorted already, except if drops were added
+		if (!isSorted(dropsItems)) {
+			Collections.sort(dropsItems, DROP_ORDER);
+		}
 
 		final Creature creature = new Creature(clazz, subclass, name, hp, atk, ratk, def,
 				level, xp, width, height, speed, dropsItems, aiProfiles,
@@ -368,18 +372,43 @@ public class DefaultCreature {
 
 		// Status attack types
 		if (statusAttack != null) {
+			creature.setStatusAttackers(getStatusAttackers());
+		}
+
+		return creature;
+	}
+
+	/**
+	 * Gets the status attackers of this creature type. The status attack
+	 * is evaluated once and the attacker is shared by all creatures of this
+	 * type.
+	 *
+	 * @return status attackers
+	 */
+	private ImmutableList<StatusAttacker> getStatusAttackers() {
+		if (statusAttackers == null) {
 			Binding groovyBinding = new Binding();
 			final GroovyShell interp = new GroovyShell(groovyBinding);
 			try {
 				String code = "import games.stendhal.server.entity.status.*;\r\n" + statusAttack;
 				StatusAttacker attacker = new StatusAttacker((Status) interp.evaluate(code), statusAttackProbability);
-				creature.addStatusAttacker(attacker);
+				statusAttackers = ImmutableList.of(attacker);
 			} catch (CompilationFailedException e) {
 				throw new IllegalArgumentException(e);
 			}
 		}
+		return statusAttackers;
+	}
 
-		return creature;
+	private static boolean isSorted(final List<DropItem> drops) {
+		DropItem previous = null;
+		for (final DropItem drop : drops) {
+			if ((previous != null) && (DROP_ORDER.compare(previous, drop) > 0)) {
+				return false;
+			}
+			previous = drop;
+		}
+		return true;
 	}
 
 	/** @return the tileid. */
@@ -452,6 +481,7 @@ public class DefaultCreature {
 	public void setStatusAttack(final String name, final double probability) {
 		statusAttack = name;
 		statusAttackProbability = probability;
+		statusAttackers = null;
 	}
 
 	/**
@@ -15,8 +15,10 @@ package games.stendhal.server.core.rule.defaultruleset;
 import java.net.URI;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 
@@ -54,6 +56,13 @@ public class DefaultEntityManager implements EntityManager {
 	/** lists all items that are being used at least once . */
 	private final Map<String, Item> createdItem;
 
+	/**
+	 * names of creatures and items that have been used, but whose instance
+	 * for createdCreature or createdItem has not been created yet.
+	 */
+	private final Set<String> requestedCreatures = new LinkedHashSet<String>();
+	private final Set<String> requestedItems = new LinkedHashSet<String>();
+
 	/** lists all spell that are being used at least once . */
 	private final Map<String, Spell> createdSpell;
 
@@ -214,6 +223,10 @@ public class DefaultEntityManager implements EntityManager {
 	 */
 	@Override
 	public Collection<Creature> getCreatures() {
+		for (final String clazz : requestedCreatures) {
+			createdCreature.put(clazz, classToCreature.get(clazz).getCreature());
+		}
+		requestedCreatures.clear();
 		return createdCreature.values();
 	}
 
@@ -222,6 +235,10 @@ public class DefaultEntityManager implements EntityManager {
 	 */
 	@Override
 	public Collection<Item> getItems() {
+		for (final String clazz : requestedItems) {
+			createdItem.put(clazz, classToItem.get(clazz).getItem());
+		}
+		requestedItems.clear();
 		return createdItem.values();
 	}
 
@@ -288,8 +305,9 @@ public class DefaultEntityManager implements EntityManager {
 		// Lookup the clazz in the creature table
 		final DefaultCreature creature = classToCreature.get(clazz);
 		if (creature != null) {
-			if (createdCreature.get(clazz) == null) {
-				createdCreature.put(clazz, creature.getCreature());
+			// the listed instance is created when the list is requested
+			if (!createdCreature.containsKey(clazz)) {
+				requestedCreatures.add(clazz);
 			}
 			return creature.getCreature();
 		}
@@ -366,8 +384,9 @@ public class DefaultEntityManager implements EntityManager {
 		// Lookup the clazz in the item table
 		final DefaultItem item = classToItem.get(clazz);
 		if (item != null) {
-			if (createdItem.get(clazz) == null) {
-				createdItem.put(clazz, item.getItem());
+			// the listed instance is created when the list is requested
+			if (!createdItem.containsKey(clazz)) {
+				requestedItems.add(clazz);
 			}
 			return item.getItem();
 		}
@@ -18,6 +18,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import com.google.common.collect.ImmutableList;
+
 import games.stendhal.common.constants.Nature;
 import games.stendhal.server.core.rule.defaultruleset.creator.AbstractCreator;
 import games.stendhal.server.core.rule.defaultruleset.creator.AttributesItemCreator;
@@ -78,6 +80,9 @@ public class DefaultItem {
 
 	private String[] statusAttacks;
 
+	/** status attackers created from statusAttacks, shared by all items */
+	private ImmutableList<StatusAttacker> statusAttackers;
+
 	/* Slots where SlotActivatedItem can be activated when equipped. */
 	private List<String> activeSlotsList;
 
@@ -150,6 +155,7 @@ public class DefaultItem {
 
 	public void setStatusAttacks(final String statusAttacks) {
 		this.statusAttacks = statusAttacks.split(";");
+		this.statusAttackers = null;
 	}
 
 	/**
@@ -283,17 +289,7 @@ public class DefaultItem {
 
 			// status attackers
 			if (statusAttacks != null) {
-				for (final String statk: statusAttacks) {
-					StatusAttacker statusAttacker;
-					if (statk.contains("poison") || statk.contains("cobra venom") || statk.contains("fierywater")) {
-						statusAttacker = PoisonAttackerFactory.get(statk);
-					} else {
-						statusAttacker = StatusAttackerFactory.get(statk);
-					}
-					if (statusAttacker != null) {
-						item.addStatusAttacker(statusAttacker);
-					}
-				}
+				item.setStatusAttackers(getStatusAttackers());
 			}
 
 			/* Set a list of status resistances for StatusResistantItem. */
@@ -313,6 +309,32 @@ public class DefaultItem {
 		return item;
 	}
 
+	/**
+	 * Gets the status attackers of this item type. They are created on first
+	 * use because poison attackers look up other items, and are shared by
+	 * all items of this type.
+	 *
+	 * @return status attackers
+	 */
+	private ImmutableList<StatusAttacker> getStatusAttackers() {
+		if (statusAttackers == null) {
+			final ImmutableList.Builder<StatusAttacker> builder = ImmutableList.builder();
+			for (final String statk: statusAttacks) {
+				StatusAttacker statusAttacker;
+				if (statk.contains("poison") || statk.contains("cobra venom") || statk.contains("fierywater")) {
+					statusAttacker = PoisonAttackerFactory.get(statk);
+				} else {
+					statusAttacker = StatusAttackerFactory.get(statk);
+				}
+				if (statusAttacker != null) {
+					builder.add(statusAttacker);
+				}
+			}
+			statusAttackers = builder.build();
+		}
+		return statusAttackers;
+	}
+
 	/** @return the tile id .*/
 	public int getTileId() {
 		return tileid;
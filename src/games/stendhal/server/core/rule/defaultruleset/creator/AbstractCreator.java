@@ -54,6 +54,11 @@ public abstract class AbstractCreator<T> {
 			 * Wrong type (i.e. not [subclass of])
 			 */
 			logger.error("Implementation for is no an subclass of "+creatorFor );
+		} catch (final RuntimeException ex) {
+			/*
+			 * Thrown by a constructor which was called through a factory
+			 */
+			logger.error("Error creating object: Exception thrown during constructor call.", ex);
 		}
 
 		return null;
@@ -14,6 +14,7 @@ package games.stendhal.server.core.rule.defaultruleset.creator;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
 
 import games.stendhal.server.core.rule.defaultruleset.DefaultItem;
 import games.stendhal.server.entity.item.Item;
@@ -23,13 +24,24 @@ import games.stendhal.server.entity.item.Item;
  */
 public class AttributesItemCreator extends AbstractItemCreator {
 
+	/** calls the <em>attributes</em> constructor */
+	interface Factory {
+		Object create(Map<String, String> attributes);
+	}
+
+	private final Factory factory;
+
 	public AttributesItemCreator(DefaultItem defaultItem, final Constructor< ? > construct) {
 		super(defaultItem, construct);
+		factory = ConstructorFactory.create(Factory.class, construct);
 	}
 
 	@Override
 	protected Item createObject() throws IllegalAccessException,
 			InstantiationException, InvocationTargetException {
+		if (factory != null) {
+			return (Item) factory.create(this.defaultItem.getAttributes());
+		}
 		return (Item) construct.newInstance(new Object[] { this.defaultItem.getAttributes() });
 	}
 }
@@ -0,0 +1,70 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.rule.defaultruleset.creator;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Generates implementations of functional interfaces which call a
+ * constructor directly, so that creating an object does not go through
+ * reflection.
+ */
+final class ConstructorFactory {
+	private static final Logger logger = Logger.getLogger(ConstructorFactory.class);
+
+	private ConstructorFactory() {
+		// utility class
+	}
+
+	/**
+	 * creates a factory for a constructor
+	 *
+	 * @param type functional interface whose method takes the same
+	 * 	parameters as the constructor
+	 * @param construct constructor
+	 * @return factory, or <code>null</code> if the constructor cannot be
+	 * 	bound; the caller has to use reflection in that case
+	 */
+	static <F> F create(final Class<F> type, final Constructor<?> construct) {
+		final Method method = getFunctionalMethod(type);
+		try {
+			final MethodHandles.Lookup lookup = MethodHandles.lookup();
+			final MethodHandle handle = lookup.unreflectConstructor(construct);
+			final MethodType samType = MethodType.methodType(method.getReturnType(), method.getParameterTypes());
+			final CallSite site = LambdaMetafactory.metafactory(lookup, method.getName(),
+					MethodType.methodType(type), samType, handle, handle.type());
+			return type.cast(site.getTarget().invoke());
+		} catch (final Throwable e) {
+			// for example, the class is not public
+			logger.debug("Using reflection for " + construct + ": " + e);
+			return null;
+		}
+	}
+
+	private static Method getFunctionalMethod(final Class<?> type) {
+		for (final Method method : type.getMethods()) {
+			if (Modifier.isAbstract(method.getModifiers())) {
+				return method;
+			}
+		}
+		throw new IllegalArgumentException(type + " is not a functional interface");
+	}
+}
@@ -23,13 +23,24 @@ import games.stendhal.server.entity.item.Item;
  */
 public class DefaultItemCreator extends AbstractItemCreator {
 
+	/** calls the default constructor */
+	interface Factory {
+		Object create();
+	}
+
+	private final Factory factory;
+
 	public DefaultItemCreator(DefaultItem defaultItem, final Constructor< ? > construct) {
 		super(defaultItem, construct);
+		factory = ConstructorFactory.create(Factory.class, construct);
 	}
 
 	@Override
 	protected Item createObject() throws IllegalAccessException,
 			InstantiationException, InvocationTargetException {
+		if (factory != null) {
+			return (Item) factory.create();
+		}
 		return (Item) construct.newInstance(new Object[] {});
 	}
 }
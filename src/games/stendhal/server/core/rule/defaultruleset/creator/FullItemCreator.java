@@ -13,6 +13,7 @@ package games.stendhal.server.core.rule.defaultruleset.creator;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
@@ -28,14 +29,28 @@ public class FullItemCreator extends AbstractItemCreator {
 
 	private static final Logger logger = Logger.getLogger(FullItemCreator.class);
 
+	/** calls the full arguments constructor */
+	interface Factory {
+		Object create(String name, String clazz, String subclazz, Map<String, String> attributes);
+	}
+
+	private final Factory factory;
+
 	public FullItemCreator(DefaultItem defaultItem, final Constructor< ? > construct) {
 		super(defaultItem, construct);
+		factory = ConstructorFactory.create(Factory.class, construct);
 	}
 
 	@Override
 	protected Item createObject() throws IllegalAccessException,
 			InstantiationException, InvocationTargetException {
 		try {
+			if (factory != null) {
+				return (Item) factory.create(this.defaultItem.getItemName(),
+						this.defaultItem.getItemClass(),
+						this.defaultItem.getItemSubclass(),
+						this.defaultItem.getAttributes());
+			}
 			return (Item) construct.newInstance(new Object[] {
 					this.defaultItem.getItemName(),
 					this.defaultItem.getItemClass(),
@@ -15,18 +15,37 @@ package games.stendhal.server.core.rule.defaultruleset.creator;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 
+import games.stendhal.common.constants.Nature;
 import games.stendhal.server.core.rule.defaultruleset.DefaultSpell;
 import games.stendhal.server.entity.spell.Spell;
 
 public class FullSpellCreator extends AbstractSpellCreator {
 
+	/** calls the full arguments constructor */
+	interface Factory {
+		Object create(String name, Nature nature, int amount, int atk, int cooldown, int def,
+				double lifesteal, int mana, int minimumLevel, int range, int rate, int regen,
+				double modifier);
+	}
+
+	private final Factory factory;
+
 	public FullSpellCreator(DefaultSpell defaultSpell, Constructor<?> construct) {
 		super(defaultSpell, construct);
+		factory = ConstructorFactory.create(Factory.class, construct);
 	}
 
 	@Override
 	protected Spell createObject() throws IllegalAccessException,
 			InstantiationException, InvocationTargetException {
+		if (factory != null) {
+			return (Spell) factory.create(defaultSpell.getName(), defaultSpell.getNature(), defaultSpell.getAmount(),
+									defaultSpell.getAtk(), defaultSpell.getCooldown(),
+									defaultSpell.getDef(), defaultSpell.getLifesteal(),
+									defaultSpell.getMana(),
+									defaultSpell.getMinimumLevel(), defaultSpell.getRange(),
+									defaultSpell.getRate(), defaultSpell.getRegen(), defaultSpell.getModifier());
+		}
 		return (Spell) construct.newInstance(defaultSpell.getName(), defaultSpell.getNature(), defaultSpell.getAmount(),
 									defaultSpell.getAtk(), defaultSpell.getCooldown(),
 									defaultSpell.getDef(), defaultSpell.getLifesteal(),
@@ -0,0 +1,137 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.scripting;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyCodeSource;
+import groovy.lang.Script;
+
+/**
+ * Compiled groovy scripts. A script is compiled again, if its file was
+ * changed since it was compiled, so that reloading a script with /script
+ * picks up the changes. Each version of a script gets its own class loader,
+ * so that the classes of replaced versions can be unloaded.
+ */
+final class GroovyScriptCache {
+	private static Logger logger = Logger.getLogger(GroovyScriptCache.class);
+
+	private static GroovyScriptCache instance;
+
+	/** a compiled script */
+	private static final class Entry {
+		final long lastModified;
+		final long length;
+		final Class<? extends Script> scriptClass;
+
+		Entry(long lastModified, long length, Class<? extends Script> scriptClass) {
+			this.lastModified = lastModified;
+			this.length = length;
+			this.scriptClass = scriptClass;
+		}
+	}
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	/** one lock per file, so that a file is not compiled twice at the same time */
+	private final Map<String, Object> locks = new ConcurrentHashMap<String, Object>();
+
+	/**
+	 * gets the GroovyScriptCache
+	 *
+	 * @return GroovyScriptCache
+	 */
+	static synchronized GroovyScriptCache get() {
+		if (instance == null) {
+			instance = new GroovyScriptCache();
+		}
+		return instance;
+	}
+
+	/**
+	 * gets the compiled class of a script, compiling it if needed
+	 *
+	 * @param file script file
+	 * @return script class
+	 * @throws IOException in case of an input/output error
+	 */
+	Class<? extends Script> getScriptClass(File file) throws IOException {
+		String key = file.getAbsolutePath();
+		synchronized (lockFor(key)) {
+			long lastModified = file.lastModified();
+			long length = file.length();
+			Entry entry = entries.get(key);
+			if ((entry != null) && (entry.lastModified == lastModified) && (entry.length == length)) {
+				return entry.scriptClass;
+			}
+			long start = System.nanoTime();
+			GroovyClassLoader classLoader = new GroovyClassLoader(GroovyScriptCache.class.getClassLoader());
+			Class<?> parsedClass = classLoader.parseClass(new GroovyCodeSource(file, "UTF-8"), false);
+			Class<? extends Script> scriptClass = parsedClass.asSubclass(Script.class);
+			entries.put(key, new Entry(lastModified, length, scriptClass));
+			logger.debug("Compiled " + file + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+			return scriptClass;
+		}
+	}
+
+	/**
+	 * checks whether the current version of a script is compiled
+	 *
+	 * @param file script file
+	 * @return <code>true</code>, if getScriptClass does not need to compile it
+	 */
+	boolean isCompiled(File file) {
+		Entry entry = entries.get(file.getAbsolutePath());
+		return (entry != null) && (entry.lastModified == file.lastModified()) && (entry.length == file.length());
+	}
+
+	private Object lockFor(String key) {
+		Object lock = locks.get(key);
+		if (lock == null) {
+			locks.putIfAbsent(key, new Object());
+			lock = locks.get(key);
+		}
+		return lock;
+	}
+
+	/**
+	 * compiles scripts in a background thread, so that they are ready when
+	 * they are loaded
+	 *
+	 * @param files script files
+	 */
+	void precompile(List<File> files) {
+		final List<File> todo = new ArrayList<File>(files);
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (File file : todo) {
+					try {
+						getScriptClass(file);
+					} catch (Exception | LinkageError e) {
+						// reported when the script is loaded
+						logger.debug("Precompiling " + file + " failed", e);
+					}
+				}
+			}
+		}, "groovy precompiler");
+		thread.setDaemon(true);
+		thread.start();
+	}
+}
@@ -16,11 +16,12 @@ import java.util.HashMap;
 import java.util.List;
 
 import org.apache.log4j.Logger;
+import org.codehaus.groovy.runtime.InvokerHelper;
 
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.entity.player.Player;
 import groovy.lang.Binding;
-import groovy.lang.GroovyShell;
+import groovy.lang.Script;
 
 /**
  * manages a script written in groovy
@@ -68,13 +69,20 @@ public class ScriptInGroovy extends ScriptingSandbox {
 		} else {
 			groovyBinding.setVariable("args", new String[0]);
 		}
-		final GroovyShell interp = new GroovyShell(groovyBinding);
 		boolean ret = true;
 
 		preExecute(player, args);
 		try {
 			final File f = new File(groovyScript);
-			interp.evaluate(f);
+			final GroovyScriptCache cache = GroovyScriptCache.get();
+			final boolean cached = cache.isCompiled(f);
+			final long start = System.nanoTime();
+			final Script script = InvokerHelper.createScript(cache.getScriptClass(f), groovyBinding);
+			final long compiled = System.nanoTime();
+			script.run();
+			logger.info("Groovy script " + groovyScript + ": compiling "
+					+ (cached ? "cached" : (compiled - start) / 1000000 + " ms")
+					+ ", running " + (System.nanoTime() - compiled) / 1000000 + " ms");
 		} catch (final Exception e) {
 			logger.error("Exception while sourcing file " + groovyScript, e);
 			setMessage(e.getMessage());
@@ -104,12 +104,34 @@ public class ScriptRunner extends StendhalServerExtension implements
 				return;
 			}
 
+			// same order on every start, as the scripts change the world
+			Collections.sort(strs);
+
+			// compile the scripts ahead, they are executed one by one below
+			final List<String> luaScripts = new ArrayList<>();
+			final List<File> groovyScripts = new ArrayList<>();
+			for (final String filepath: strs) {
+				if (filepath.endsWith(".lua")) {
+					luaScripts.add(scriptDir + filepath);
+				} else if (filepath.endsWith(".groovy")) {
+					groovyScripts.add(new File(scriptDir + filepath));
+				}
+			}
+			if (!groovyScripts.isEmpty()) {
+				GroovyScriptCache.get().precompile(groovyScripts);
+			}
+			if (!luaScripts.isEmpty()) {
+				LuaLoader.get().precompile(luaScripts);
+			}
+
 			for (int i = 0; i < strs.size(); i++) {
+				final long start = System.currentTimeMillis();
 				try {
 					perform(strs.get(i));
 				} catch (final Exception e) {
 					logger.error("Error while loading " + strs.get(i) + ":", e);
 				}
+				logger.info("Loaded script " + strs.get(i) + " in " + (System.currentTimeMillis() - start) + " ms");
 			}
 		}
 
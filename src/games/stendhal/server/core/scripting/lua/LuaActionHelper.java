@@ -73,8 +73,8 @@ public class LuaActionHelper {
 		return new ChatAction() {
 			@Override
 			public void fire(final Player player, final Sentence sentence, final EventRaiser npc) {
-				lf.invoke(new LuaValue[] {CoerceJavaToLua.coerce(player),
-					CoerceJavaToLua.coerce(sentence), CoerceJavaToLua.coerce(npc)});
+				LuaProfiler.get().invoke(lf, LuaValue.varargsOf(new LuaValue[] {CoerceJavaToLua.coerce(player),
+					CoerceJavaToLua.coerce(sentence), CoerceJavaToLua.coerce(npc)}));
 			}
 		};
 	}
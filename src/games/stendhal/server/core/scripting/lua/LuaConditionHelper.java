@@ -78,7 +78,7 @@ public class LuaConditionHelper {
 				final LuaValue luaSentence = CoerceJavaToLua.coerce(sentence);
 				final LuaValue luaNPC = CoerceJavaToLua.coerce(npc);
 
-				final LuaValue result = lf.call(luaPlayer, luaSentence, luaNPC);
+				final LuaValue result = LuaProfiler.get().call(lf, luaPlayer, luaSentence, luaNPC);
 				if (!result.isboolean()) {
 					logger.warn("Lua function did not return boolean value");
 					return false;
@@ -1094,7 +1094,7 @@ public class LuaEntityHelper {
 					SingletonRepository.getTurnNotifier().notifyInTurns(1, new TurnListener() {
 						@Override
 						public void onTurnReached(final int currentTurn) {
-							idleAction.call(CoerceJavaToLua.coerce(thisNPC));
+							LuaProfiler.get().call(idleAction, CoerceJavaToLua.coerce(thisNPC));
 						}
 					});
 				}
@@ -1109,7 +1109,7 @@ public class LuaEntityHelper {
 		@Override
 		public void onRejectedAttackStart(final RPEntity attacker) {
 			if (attackRejectedAction != null) {
-				attackRejectedAction.call(CoerceJavaToLua.coerce(this), CoerceJavaToLua.coerce(attacker));
+				LuaProfiler.get().call(attackRejectedAction, CoerceJavaToLua.coerce(this), CoerceJavaToLua.coerce(attacker));
 			} else if (!ignorePlayers) {
 				super.onRejectedAttackStart(attacker);
 			}
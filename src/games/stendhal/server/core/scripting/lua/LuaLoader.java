@@ -11,7 +11,9 @@
  ***************************************************************************/
 package games.stendhal.server.core.scripting.lua;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -20,6 +22,12 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -30,6 +38,7 @@ import org.luaj.vm2.LuaError;
 import org.luaj.vm2.LuaFunction;
 import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Prototype;
 import org.luaj.vm2.lib.PackageLib;
 import org.luaj.vm2.lib.jse.CoerceJavaToLua;
 import org.luaj.vm2.lib.jse.JseBaseLib;
@@ -55,6 +64,10 @@ public class LuaLoader {
 	private static LuaFunction dofileOrig;
 	/** Script that is currently loaded. */
 	private LuaScript currentScript;
+	/** Cache of compiled scripts. */
+	private final LuaPrototypeCache cache = LuaPrototypeCache.create();
+	/** Scripts compiled ahead of time which have not been executed yet. */
+	private final Map<String, Prototype> precompiled = new ConcurrentHashMap<String, Prototype>();
 
 	/** Singleton instance. */
 	private static LuaLoader instance;
@@ -92,6 +105,8 @@ public class LuaLoader {
 		globals.load(new JseBaseLib());
 		globals.load(new PackageLib());
 		globals.load(new LuajavaLib());
+		// count instructions of functions called by the game
+		LuaProfiler.get().install(globals);
 
 		// store original 'dofile' function
 		dofileOrig = globals.get("dofile").checkfunction();
@@ -190,6 +205,89 @@ public class LuaLoader {
 		return new LuaScript(filename);
 	}
 
+	/**
+	 * Compiles scripts in parallel, so that executing them later does not
+	 * need to wait for the compiler. The scripts are not executed.
+	 *
+	 * The number of threads can be set with -Dstendhal.lua.threads=n.
+	 *
+	 * @param filenames
+	 *     Paths to Lua scripts.
+	 */
+	public void precompile(final List<String> filenames) {
+		final long start = System.currentTimeMillis();
+		final ForkJoinPool pool = new ForkJoinPool(Math.max(1,
+				Integer.getInteger("stendhal.lua.threads", Runtime.getRuntime().availableProcessors())));
+		try {
+			final List<Future<Prototype>> tasks = new ArrayList<Future<Prototype>>();
+			for (final String filename : filenames) {
+				tasks.add(pool.submit(new Callable<Prototype>() {
+					@Override
+					public Prototype call() throws IOException {
+						return compile(filename);
+					}
+				}));
+			}
+			for (int i = 0; i < filenames.size(); i++) {
+				try {
+					precompiled.put(filenames.get(i), tasks.get(i).get());
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				} catch (final ExecutionException e) {
+					// reported when the script is executed
+					logger.debug("Precompiling " + filenames.get(i) + " failed", e.getCause());
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		logger.info("Compiled " + precompiled.size() + " Lua scripts in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * Retrieves the compiled form of a script.
+	 *
+	 * @param filename
+	 *     Path to Lua script.
+	 * @return
+	 *     Compiled script.
+	 * @throws IOException
+	 *     If the script cannot be read.
+	 */
+	Prototype getPrototype(final String filename) throws IOException {
+		final Prototype prototype = precompiled.remove(filename);
+		if (prototype != null) {
+			return prototype;
+		}
+		return compile(filename);
+	}
+
+	/**
+	 * Compiles a script or reads it from the cache.
+	 */
+	private Prototype compile(final String filename) throws IOException {
+		final long start = System.nanoTime();
+		final byte[] source;
+		try (InputStream is = globals.finder.findResource(filename)) {
+			if (is == null) {
+				throw new FileNotFoundException(filename);
+			}
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			for (int len = is.read(buffer); len > -1; len = is.read(buffer)) {
+				out.write(buffer, 0, len);
+			}
+			source = out.toByteArray();
+		}
+		final Prototype prototype = cache.get("@" + filename, source);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Compiled " + filename + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+		}
+		return prototype;
+	}
+
 	/**
 	 * Retrieves Lua global objects.
 	 */
@@ -264,7 +362,10 @@ public class LuaLoader {
 	 */
 	@SuppressWarnings("unused")
 	private void initMods() {
-		for (final String modpath: getMods()) {
+		final List<String> mods = getMods();
+		precompile(mods);
+		// executed one after the other, as they change the world
+		for (final String modpath: mods) {
 			new LuaScript(modpath).load();
 		}
 	}
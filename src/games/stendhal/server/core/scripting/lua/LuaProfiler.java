@@ -0,0 +1,354 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.scripting.lua;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaClosure;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaFunction;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Prototype;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.DebugLib;
+
+
+/**
+ * Runs Lua functions which are called by the game during a turn, such as
+ * chat conditions, chat actions and turn listeners.
+ *
+ * Each call gets a budget of Lua instructions and optionally of time. A
+ * call which exceeds its budget is stopped, so that a looping script does
+ * not stall the server. The calls, time and instructions of every function
+ * are recorded and can be listed with "/script LuaProfile.class".
+ *
+ * The limits are set with -Dstendhal.lua.budget=instructions (default
+ * 1000000, 0 for no limit) and -Dstendhal.lua.timelimit=milliseconds
+ * (default 0, no limit).
+ *
+ * All methods are meant to be used by the turn thread.
+ */
+public class LuaProfiler {
+
+	private static final Logger logger = Logger.getLogger(LuaProfiler.class);
+
+	/** The time limit is checked after this many instructions. */
+	private static final int TIME_CHECK_INTERVAL = 1024;
+
+	/** Singleton instance. */
+	private static LuaProfiler instance;
+
+	/** Costs of a function or script. */
+	static final class Stats {
+		final String name;
+		final String script;
+		long calls;
+		long nanos;
+		long maxNanos;
+		long instructions;
+		long aborted;
+
+		Stats(final String name, final String script) {
+			this.name = name;
+			this.script = script;
+		}
+
+		void add(final Stats other) {
+			calls += other.calls;
+			nanos += other.nanos;
+			maxNanos = Math.max(maxNanos, other.maxNanos);
+			instructions += other.instructions;
+			aborted += other.aborted;
+		}
+	}
+
+	/**
+	 * Debug hook which counts the executed instructions. It keeps no call
+	 * stack, so it is cheap enough to be always installed.
+	 */
+	private final class Hook extends DebugLib {
+		@Override
+		public void onCall(final LuaFunction f) {
+			// not tracked
+		}
+
+		@Override
+		public void onCall(final LuaClosure c, final Varargs varargs, final LuaValue[] stack) {
+			// not tracked
+		}
+
+		@Override
+		public void onReturn() {
+			// not tracked
+		}
+
+		@Override
+		public void onInstruction(final int pc, final Varargs v, final int top) {
+			if (depth == 0) {
+				return;
+			}
+			instructions++;
+			if (exceeded || (budget > 0 && instructions > budget)
+					|| (deadline != 0 && instructions % TIME_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0)) {
+				// keep failing, so that the error cannot be caught with pcall
+				exceeded = true;
+				throw new LuaError("execution budget exceeded");
+			}
+		}
+
+		@Override
+		public String traceback(final int level) {
+			return "in " + (current != null ? current.name : "?");
+		}
+	}
+
+	/** Instruction budget of a call, 0 for no limit. */
+	private long budget;
+	/** Time limit of a call in milliseconds, 0 for no limit. */
+	private int timeLimit;
+
+	/** Number of nested calls which are running. */
+	private int depth;
+	/** Instructions executed by the outermost running call. */
+	private long instructions;
+	/** Time when the outermost running call is stopped, 0 for none. */
+	private long deadline;
+	/** Whether the outermost running call exceeded its budget. */
+	private boolean exceeded;
+	/** Function of the outermost running call. */
+	private Stats current;
+
+	private final Map<Prototype, Stats> functions = new IdentityHashMap<Prototype, Stats>();
+	private final Map<String, Stats> others = new HashMap<String, Stats>();
+	private long start = System.currentTimeMillis();
+
+
+	/**
+	 * Retrieves the singleton instance.
+	 */
+	public static LuaProfiler get() {
+		if (instance == null) {
+			instance = new LuaProfiler(Long.getLong("stendhal.lua.budget", 1000000L).longValue(),
+					Integer.getInteger("stendhal.lua.timelimit", 0).intValue());
+		}
+		return instance;
+	}
+
+	/**
+	 * Creates a profiler.
+	 *
+	 * @param budget
+	 *   Instruction budget of a call, 0 for no limit.
+	 * @param timeLimit
+	 *   Time limit of a call in milliseconds, 0 for no limit.
+	 */
+	LuaProfiler(final long budget, final int timeLimit) {
+		setLimits(budget, timeLimit);
+	}
+
+	/**
+	 * Installs the instruction counter.
+	 *
+	 * @param globals
+	 *   Lua environment of the functions.
+	 */
+	void install(final Globals globals) {
+		globals.debuglib = new Hook();
+	}
+
+	/**
+	 * Sets the limits of each call.
+	 *
+	 * @param budget
+	 *   Instruction budget, 0 for no limit.
+	 * @param timeLimit
+	 *   Time limit in milliseconds, 0 for no limit.
+	 */
+	public void setLimits(final long budget, final int timeLimit) {
+		this.budget = Math.max(0, budget);
+		this.timeLimit = Math.max(0, timeLimit);
+	}
+
+	/**
+	 * Retrieves the instruction budget of each call.
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Retrieves the time limit of each call in milliseconds.
+	 */
+	public int getTimeLimit() {
+		return timeLimit;
+	}
+
+	/**
+	 * Calls a Lua function with the budget.
+	 *
+	 * @param function
+	 *   Function to be called.
+	 * @param args
+	 *   Parameters.
+	 * @return
+	 *   First return value or <code>LuaValue.NIL</code> if the budget was exceeded.
+	 */
+	public LuaValue call(final LuaValue function, final LuaValue... args) {
+		return invoke(function, LuaValue.varargsOf(args)).arg1();
+	}
+
+	/**
+	 * Invokes a Lua function with the budget. Errors other than an
+	 * exceeded budget are passed on to the caller.
+	 *
+	 * @param function
+	 *   Function to be invoked.
+	 * @param args
+	 *   Parameters.
+	 * @return
+	 *   Return values or <code>LuaValue.NONE</code> if the budget was exceeded.
+	 */
+	public Varargs invoke(final LuaValue function, final Varargs args) {
+		final Stats stats = getStats(function);
+		final boolean outermost = depth == 0;
+		if (outermost) {
+			instructions = 0;
+			exceeded = false;
+			current = stats;
+			deadline = 0;
+		}
+		final long startInstructions = instructions;
+		final long startTime = System.nanoTime();
+		if (outermost && timeLimit > 0) {
+			// never 0, which means no deadline
+			deadline = (startTime + timeLimit * 1000000L) | 1;
+		}
+
+		depth++;
+		try {
+			return function.invoke(args);
+		} catch (final LuaError e) {
+			if (!outermost || !exceeded) {
+				throw e;
+			}
+			stats.aborted++;
+			logger.error("Stopped Lua function " + stats.name + " after " + instructions + " instructions and "
+					+ (System.nanoTime() - startTime) / 1000000 + " ms, it exceeded its execution budget");
+			return LuaValue.NONE;
+		} finally {
+			depth--;
+			final long nanos = System.nanoTime() - startTime;
+			stats.calls++;
+			stats.nanos += nanos;
+			stats.maxNanos = Math.max(stats.maxNanos, nanos);
+			stats.instructions += instructions - startInstructions;
+			if (outermost) {
+				current = null;
+				deadline = 0;
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the record of a function.
+	 */
+	private Stats getStats(final LuaValue function) {
+		if (function instanceof LuaClosure) {
+			final Prototype p = ((LuaClosure) function).p;
+			Stats stats = functions.get(p);
+			if (stats == null) {
+				String script = p.source.tojstring();
+				if (script.startsWith("@")) {
+					script = script.substring(1);
+				}
+				stats = new Stats(script + ":" + p.linedefined, script);
+				functions.put(p, stats);
+			}
+			return stats;
+		}
+		final String name = function.tojstring();
+		Stats stats = others.get(name);
+		if (stats == null) {
+			stats = new Stats(name, "?");
+			others.put(name, stats);
+		}
+		return stats;
+	}
+
+	/**
+	 * Forgets the recorded costs.
+	 */
+	public void reset() {
+		functions.clear();
+		others.clear();
+		start = System.currentTimeMillis();
+	}
+
+	/**
+	 * Lists the most expensive scripts and functions.
+	 *
+	 * @param limit
+	 *   Maximum number of scripts and functions.
+	 * @return
+	 *   Report.
+	 */
+	public String report(final int limit) {
+		final List<Stats> all = new ArrayList<Stats>(functions.values());
+		all.addAll(others.values());
+		final Map<String, Stats> scripts = new HashMap<String, Stats>();
+		final Stats total = new Stats("total", "total");
+		for (final Stats stats : all) {
+			Stats script = scripts.get(stats.script);
+			if (script == null) {
+				script = new Stats(stats.script, stats.script);
+				scripts.put(stats.script, script);
+			}
+			script.add(stats);
+			total.add(stats);
+		}
+
+		final double seconds = Math.max(1, System.currentTimeMillis() - start) / 1000.0;
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.ENGLISH,
+				"Lua calls in the last %.0f s: %d calls, %.1f ms, %d stopped (budget %d instructions, %d ms)",
+				seconds, total.calls, total.nanos / 1000000.0, total.aborted, budget, timeLimit));
+		appendTop(sb, "Scripts", scripts.values(), limit);
+		appendTop(sb, "Functions", all, limit);
+		return sb.toString();
+	}
+
+	private void appendTop(final StringBuilder sb, final String title, final Collection<Stats> values, final int limit) {
+		final List<Stats> entries = new ArrayList<Stats>(values);
+		Collections.sort(entries, new Comparator<Stats>() {
+			@Override
+			public int compare(final Stats o1, final Stats o2) {
+				return Long.compare(o2.nanos, o1.nanos);
+			}
+		});
+		sb.append("\n").append(title).append(" (calls, ms, max ms, instructions, stopped):");
+		for (final Stats stats : entries.subList(0, Math.min(limit, entries.size()))) {
+			sb.append(String.format(Locale.ENGLISH, "\n  %-40s %8d %10.1f %8.2f %12d %4d",
+					stats.name, stats.calls, stats.nanos / 1000000.0, stats.maxNanos / 1000000.0,
+					stats.instructions, stats.aborted));
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.scripting.lua;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.log4j.Logger;
+import org.luaj.vm2.LoadState;
+import org.luaj.vm2.Prototype;
+import org.luaj.vm2.compiler.DumpState;
+import org.luaj.vm2.compiler.LuaC;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * On-disk cache of compiled Lua scripts. An entry is named after the hash
+ * of the script name and its source, so changed scripts are compiled again.
+ * Compiling and reading entries does not touch the Lua globals and can be
+ * done in parallel.
+ *
+ * <p>The cache directory can be set with -Dstendhal.lua.cache=directory, an
+ * empty value disables the cache.</p>
+ */
+class LuaPrototypeCache {
+	private static Logger logger = Logger.getLogger(LuaPrototypeCache.class);
+
+	private static final String DEFAULT_DIRECTORY = "cache" + File.separator + "lua";
+
+	private final Path directory;
+
+	/**
+	 * creates a new LuaPrototypeCache
+	 *
+	 * @param directory cache directory, <code>null</code> to disable the cache
+	 */
+	LuaPrototypeCache(final Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * creates a LuaPrototypeCache for the configured directory
+	 *
+	 * @return LuaPrototypeCache
+	 */
+	static LuaPrototypeCache create() {
+		final String dir = System.getProperty("stendhal.lua.cache", DEFAULT_DIRECTORY);
+		if (dir.trim().isEmpty()) {
+			return new LuaPrototypeCache(null);
+		}
+		return new LuaPrototypeCache(Paths.get(dir));
+	}
+
+	/**
+	 * gets the compiled script, from the cache if the source did not change
+	 *
+	 * @param chunkname name of the script, as used in error messages
+	 * @param source source of the script
+	 * @return compiled script
+	 * @throws IOException in case of an input/output error
+	 */
+	Prototype get(final String chunkname, final byte[] source) throws IOException {
+		if (directory == null) {
+			return compile(chunkname, source);
+		}
+		final Path file = directory.resolve(hash(chunkname, source) + ".luac");
+		if (Files.isRegularFile(file)) {
+			try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+				final Prototype prototype = LoadState.undump(in, chunkname);
+				if (prototype != null) {
+					return prototype;
+				}
+				logger.warn("Ignoring invalid Lua cache entry " + file);
+			} catch (final IOException | RuntimeException e) {
+				logger.warn("Ignoring invalid Lua cache entry " + file + ": " + e);
+			}
+		}
+		final Prototype prototype = compile(chunkname, source);
+		write(file, prototype);
+		return prototype;
+	}
+
+	private static Prototype compile(final String chunkname, final byte[] source) throws IOException {
+		return LuaC.instance.compile(new ByteArrayInputStream(source), chunkname);
+	}
+
+	private void write(final Path file, final Prototype prototype) {
+		Path temp = null;
+		try {
+			Files.createDirectories(directory);
+			temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+			try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+				// keep the debug information for the line numbers in errors
+				DumpState.dump(prototype, out, false);
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			logger.warn("Cannot write Lua cache entry " + file + ": " + e);
+			if (temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (final IOException e2) {
+					logger.debug(e2, e2);
+				}
+			}
+		}
+	}
+
+	/**
+	 * calculates the key of a script
+	 *
+	 * @param chunkname name of the script
+	 * @param source source of the script
+	 * @return hash
+	 */
+	static String hash(final String chunkname, final byte[] source) {
+		final Hasher hasher = Hashing.sha256().newHasher();
+		hasher.putString(chunkname, StandardCharsets.UTF_8);
+		hasher.putByte((byte) 0);
+		hasher.putBytes(source);
+		return hasher.hash().toString();
+	}
+}
@@ -474,7 +474,7 @@ public class LuaQuestHelper {
 		 *   Returned value of the called Lua function.
 		 */
 		private boolean checkBoolFunction(final LuaFunction lf) {
-			final LuaValue result = lf.call();
+			final LuaValue result = LuaProfiler.get().call(lf);
 			if (result.isboolean()) {
 				return result.toboolean();
 			}
@@ -525,7 +525,7 @@ public class LuaQuestHelper {
 				return ret;
 			}
 
-			final LuaValue result = history.call(CoerceJavaToLua.coerce(player));
+			final LuaValue result = LuaProfiler.get().call(history, CoerceJavaToLua.coerce(player));
 			if (result.istable()) {
 				for (final LuaValue key: result.checktable().keys()) {
 					if (key.isstring()) {
@@ -544,7 +544,7 @@ public class LuaQuestHelper {
 			}
 
 			final List<String> ret = new LinkedList<>();
-			final LuaValue result = history.call(CoerceJavaToLua.coerce(player));
+			final LuaValue result = LuaProfiler.get().call(history, CoerceJavaToLua.coerce(player));
 			if (result.istable()) {
 				for (final LuaValue key: result.checktable().keys()) {
 					if (key.isstring()) {
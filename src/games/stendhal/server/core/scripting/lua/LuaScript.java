@@ -19,7 +19,10 @@ import java.nio.file.Paths;
 import java.util.List;
 
 import org.apache.log4j.Logger;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
 import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Prototype;
 
 import games.stendhal.server.core.scripting.ScriptingSandbox;
 import games.stendhal.server.entity.player.Player;
@@ -191,8 +194,17 @@ public class LuaScript extends ScriptingSandbox {
 	 *   LuaValue result returned by the executed script.
 	 */
 	LuaValue loadFile() {
+		final Globals globals = LuaLoader.get().getGlobals();
+		final LuaValue chunk;
+		try {
+			// compiled ahead of time or read from the cache if possible
+			final Prototype prototype = LuaLoader.get().getPrototype(filename);
+			chunk = globals.loader.load(prototype, "@" + filename, globals);
+		} catch (final IOException e) {
+			throw new LuaError("cannot open " + filename);
+		}
 		// run script
-		return LuaLoader.get().getGlobals().loadfile(filename).call();
+		return chunk.call();
 	}
 
 	/**
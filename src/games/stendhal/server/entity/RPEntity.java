@@ -61,6 +61,7 @@ import games.stendhal.server.entity.status.StatusAttacker;
 import games.stendhal.server.entity.status.StatusList;
 import games.stendhal.server.entity.status.StatusType;
 import games.stendhal.server.events.AttackEvent;
+import games.stendhal.server.events.HealedEvent;
 import games.stendhal.server.events.SoundEvent;
 import games.stendhal.server.events.TextEvent;
 import games.stendhal.server.util.CounterMap;
@@ -369,13 +370,30 @@ public abstract class RPEntity extends CombatEntity {
 		final int given = baseHP - getHP();
 
 		if (given != 0) {
-			put("heal", given);
+			tellHealed(given);
 			setHP(baseHP);
 		}
 
 		return given;
 	}
 
+	/**
+	 * Shows a heal to the players who can see this entity. The heals of one
+	 * turn are summed up in a single event. Old clients get the "heal"
+	 * attribute instead, which is removed again in the next turn.
+	 *
+	 * @param amount amount healed
+	 */
+	private void tellHealed(final int amount) {
+		final StendhalRPZone zone = getZone();
+		if ((zone != null) && !zone.supportsTransientEvents()) {
+			put("heal", amount);
+		} else {
+			HealedEvent.add(this, amount);
+		}
+		notifyWorldAboutChanges();
+	}
+
 	/**
 	 * Heal this entity.
 	 *
@@ -410,7 +428,7 @@ public abstract class RPEntity extends CombatEntity {
 				tempHp += given;
 
 				if (tell) {
-					put("heal", given);
+					tellHealed(given);
 				}
 
 				setHP(tempHp);
@@ -3358,6 +3376,16 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 		statusAttackers = builder.addAll(statusAttackers).add(statusAttacker).build();
 	}
 
+	/**
+	 * Replaces the status attackers with a list which is shared by all
+	 * entities of the same kind.
+	 *
+	 * @param statusAttackers status attackers
+	 */
+	public void setStatusAttackers(final ImmutableList<StatusAttacker> statusAttackers) {
+		this.statusAttackers = statusAttackers;
+	}
+
 	/**
 	 * gets the status list
 	 *
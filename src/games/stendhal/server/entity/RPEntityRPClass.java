@@ -14,6 +14,7 @@ package games.stendhal.server.entity;
 
 import static games.stendhal.common.constants.General.PATHSET;
 
+import games.stendhal.common.constants.Events;
 import marauroa.common.game.Definition;
 import marauroa.common.game.Definition.Type;
 import marauroa.common.game.RPClass;
@@ -77,5 +78,8 @@ public class RPEntityRPClass {
 		entity.addRPSlot("keyring", 12, Definition.PRIVATE);
 
 		entity.addRPSlot("portfolio", 9, Definition.VOLATILE);
+
+		// summed up heals of a turn, for clients that support transient events
+		entity.addRPEvent(Events.HEALED, Definition.VOLATILE);
 	}
 }
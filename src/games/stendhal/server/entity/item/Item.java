@@ -702,6 +702,16 @@ public class Item extends PassiveEntity implements TurnListener, EquipListener,
 		statusAttackers = builder.addAll(statusAttackers).add(statusAttacker).build();
 	}
 
+	/**
+	 * Replaces the status attackers with a list which is shared by all
+	 * items of the same kind.
+	 *
+	 * @param statusAttackers status attackers
+	 */
+	public void setStatusAttackers(final ImmutableList<StatusAttacker> statusAttackers) {
+		this.statusAttackers = statusAttackers;
+	}
+
 	public List<StatusAttacker> getStatusAttackers() {
 		return statusAttackers;
 	}
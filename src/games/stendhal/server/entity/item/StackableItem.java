@@ -20,6 +20,7 @@ import java.util.Map;
 import org.apache.log4j.Logger;
 
 import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.entity.player.Player;
 import marauroa.common.game.RPObject;
 import marauroa.server.game.rp.DebugInterface;
 
@@ -89,6 +90,10 @@ public class StackableItem extends Item implements Stackable<StackableItem> {
 			quantity = amount;
 		}
 		put("quantity", getQuantity());
+		final RPObject base = getBaseContainer();
+		if (base instanceof Player) {
+			((Player) base).onItemsChanged();
+		}
 	}
 
 	/**
@@ -0,0 +1,249 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.player;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers what was last written to the redundant website tables
+ * (buddy and character_stats) for a player, so that a save can tell
+ * which parts are dirty.
+ *
+ * <p>The frozen copy of a player which is stored on the database thread
+ * shares this object with the live player. What a save writes is only
+ * remembered as pending together with a save id. The save id is written
+ * in the same transaction, so the next save can check whether that
+ * transaction was committed: If it was, the pending state is confirmed;
+ * otherwise everything is forgotten and the next save writes all data.
+ * A confirmed state is only trusted for a limited time, so that changes
+ * to the database behind the back of the server are corrected.</p>
+ */
+public class PersistedCharacterState {
+
+	/** time in milliseconds after which the remembered state is verified again */
+	public static final long RESYNC_INTERVAL = 10 * 60 * 1000L;
+
+	/** save ids, unique across restarts unless there are more than 1000 saves per millisecond */
+	private static final AtomicLong saveIds = new AtomicLong(System.currentTimeMillis() * 1000);
+
+	private Set<String> buddies;
+	private Set<String> ignores;
+	private long relationsTimestamp;
+
+	private Map<String, Object> stats;
+	private int statsVersion;
+	private int itemsVersion;
+	private long statsTimestamp;
+
+	private Set<String> pendingBuddies;
+	private Set<String> pendingIgnores;
+	private Map<String, Object> pendingStats;
+	private int pendingStatsVersion;
+	private int pendingItemsVersion;
+	private long pendingTimestamp;
+	private long pendingSaveId;
+
+	private long snapshotGeneration;
+
+	/**
+	 * gets the buddy list which was last written to the database
+	 *
+	 * @param now current time
+	 * @return buddy list or <code>null</code>, if it is unknown
+	 */
+	public synchronized Set<String> getPersistedBuddies(long now) {
+		if (!isFresh(relationsTimestamp, now)) {
+			return null;
+		}
+		return buddies;
+	}
+
+	/**
+	 * gets the ignore list which was last written to the database
+	 *
+	 * @param now current time
+	 * @return ignore list or <code>null</code>, if it is unknown
+	 */
+	public synchronized Set<String> getPersistedIgnores(long now) {
+		if (!isFresh(relationsTimestamp, now)) {
+			return null;
+		}
+		return ignores;
+	}
+
+	/**
+	 * remembers the buddy and ignore lists which are written by the current
+	 * save. They are used after the save is confirmed.
+	 *
+	 * @param buddies buddy list
+	 * @param ignores ignore list
+	 * @param now current time
+	 */
+	public synchronized void setPersistedRelations(Collection<String> buddies, Collection<String> ignores, long now) {
+		this.pendingBuddies = new HashSet<String>(buddies);
+		this.pendingIgnores = new HashSet<String>(ignores);
+		stage(now);
+	}
+
+	/**
+	 * gets the character_stats columns which were last written to the database
+	 *
+	 * @param now current time
+	 * @return column values or <code>null</code>, if they are unknown
+	 */
+	public synchronized Map<String, Object> getPersistedStats(long now) {
+		if (!isFresh(statsTimestamp, now)) {
+			return null;
+		}
+		return stats;
+	}
+
+	/**
+	 * gets the version of the player attributes, from which the remembered
+	 * character_stats columns were taken
+	 *
+	 * @return Player.getStatsVersion() at that time
+	 */
+	public synchronized int getPersistedStatsVersion() {
+		return statsVersion;
+	}
+
+	/**
+	 * gets the version of the player items, from which the remembered
+	 * character_stats columns were taken
+	 *
+	 * @return Player.getItemsVersion() at that time
+	 */
+	public synchronized int getPersistedItemsVersion() {
+		return itemsVersion;
+	}
+
+	/**
+	 * remembers the character_stats columns which are written by the current
+	 * save. They are used after the save is confirmed.
+	 *
+	 * @param stats column values
+	 * @param statsVersion version of the player attributes
+	 * @param itemsVersion version of the player items
+	 * @param now current time
+	 */
+	public synchronized void setPersistedStats(Map<String, Object> stats, int statsVersion, int itemsVersion, long now) {
+		this.pendingStats = new HashMap<String, Object>(stats);
+		this.pendingStatsVersion = statsVersion;
+		this.pendingItemsVersion = itemsVersion;
+		stage(now);
+	}
+
+	/**
+	 * remembers that the character_stats columns in the database still match
+	 * the specified versions of the player, because nothing had to be written.
+	 *
+	 * @param statsVersion version of the player attributes
+	 * @param itemsVersion version of the player items
+	 */
+	public synchronized void setPersistedVersions(int statsVersion, int itemsVersion) {
+		this.statsVersion = statsVersion;
+		this.itemsVersion = itemsVersion;
+	}
+
+	private void stage(long now) {
+		pendingTimestamp = now;
+		if (pendingSaveId == 0) {
+			pendingSaveId = saveIds.incrementAndGet();
+		}
+	}
+
+	/**
+	 * gets the id of the current save, which has to be written to the
+	 * database in the same transaction
+	 *
+	 * @return save id, 0 if nothing was written
+	 */
+	public synchronized long getPendingSaveId() {
+		return pendingSaveId;
+	}
+
+	/**
+	 * checks the pending state of the last save against the save id found
+	 * in the database. This has to be called at the beginning of a save.
+	 *
+	 * @param savedId save id read from the database, 0 if there is none
+	 */
+	public synchronized void confirmSave(long savedId) {
+		if (pendingSaveId == 0) {
+			return;
+		}
+		if (pendingSaveId == savedId) {
+			if (pendingStats != null) {
+				stats = pendingStats;
+				statsVersion = pendingStatsVersion;
+				itemsVersion = pendingItemsVersion;
+				statsTimestamp = pendingTimestamp;
+			}
+			if (pendingBuddies != null) {
+				buddies = pendingBuddies;
+				ignores = pendingIgnores;
+				relationsTimestamp = pendingTimestamp;
+			}
+			clearPending();
+		} else {
+			invalidate();
+		}
+	}
+
+	/**
+	 * registers a new snapshot of the player which is about to be saved
+	 *
+	 * @return generation of the snapshot, a positive number
+	 */
+	public synchronized long nextSnapshotGeneration() {
+		snapshotGeneration++;
+		return snapshotGeneration;
+	}
+
+	/**
+	 * checks whether a newer snapshot of the player has been taken, so that
+	 * saving the specified one is not necessary anymore.
+	 *
+	 * @param generation generation of the snapshot, 0 if the object is not a snapshot
+	 * @return true, if there is a newer snapshot; false otherwise
+	 */
+	public synchronized boolean isSuperseded(long generation) {
+		return (generation > 0) && (generation < snapshotGeneration);
+	}
+
+	/**
+	 * forgets everything, so that the next save writes all data
+	 */
+	public synchronized void invalidate() {
+		buddies = null;
+		ignores = null;
+		stats = null;
+		clearPending();
+	}
+
+	private void clearPending() {
+		pendingBuddies = null;
+		pendingIgnores = null;
+		pendingStats = null;
+		pendingSaveId = 0;
+	}
+
+	private boolean isFresh(long timestamp, long now) {
+		return now - timestamp < RESYNC_INTERVAL;
+	}
+}
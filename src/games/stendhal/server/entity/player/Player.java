@@ -71,6 +71,8 @@ import games.stendhal.server.entity.item.RingOfLife;
 import games.stendhal.server.entity.npc.behaviour.impl.OutfitChangerBehaviour.ExpireOutfit;
 import games.stendhal.server.entity.slot.Slots;
 import games.stendhal.server.entity.status.StatusType;
+import games.stendhal.server.events.BuddyLoginEvent;
+import games.stendhal.server.events.BuddyLogoutEvent;
 import games.stendhal.server.events.PrivateTextEvent;
 import games.stendhal.server.events.SoundEvent;
 import marauroa.common.game.RPEvent;
@@ -82,6 +84,13 @@ public class Player extends DressedEntity implements UseListener {
 
 	private static final String LAST_PLAYER_KILL_TIME = "last_player_kill_time";
 
+	/** attributes which are removed again in the turn after they were set */
+	private static final String[] TRANSIENT_ATTRIBUTES = {"risk", "damage", "heal", "dead", "online", "offline"};
+
+	/** attributes which are copied to the website tables */
+	private static final Set<String> STATS_ATTRIBUTES = new HashSet<String>(Arrays.asList(
+			ADMINLEVEL, "sentence", "age", "level", "outfit", "outfit_ext", "xp", "atk", "def", "hp", "karma"));
+
 	/** the logger instance. */
 	private static final Logger logger = Logger.getLogger(Player.class);
 
@@ -117,6 +126,24 @@ public class Player extends DressedEntity implements UseListener {
 	private final PlayerLootedItemsHandler itemCounter = new PlayerLootedItemsHandler(
 			this);
 
+	/**
+	 * data last written to the website tables, shared with the copies stored on
+	 * the database thread
+	 */
+	private final PersistedCharacterState persistedState = new PersistedCharacterState();
+
+	/**
+	 * generation of this snapshot, 0 for the live player and copies which are
+	 * not saved
+	 */
+	private long snapshotGeneration;
+
+	/** counts changes of the attributes which are copied to the website tables */
+	private int statsVersion;
+
+	/** counts changes of the items carried by the player */
+	private int itemsVersion;
+
 	/**
 	 * The number of minutes that this player has been logged in on the server.
 	 */
@@ -145,6 +172,17 @@ public class Player extends DressedEntity implements UseListener {
 	 * version of the client
 	 */
 	private String clientVersion;
+	/**
+	 * <code>true</code>, if the client can apply changed zone attributes
+	 * without receiving the zone content again
+	 */
+	private boolean zoneAttributeUpdates;
+	/**
+	 * <code>true</code>, if the client understands the healed and buddy
+	 * events, which replace the attributes that are removed again in the
+	 * next turn
+	 */
+	private boolean transientEvents;
 	/**
 	 * The turn when the player last time pushed something.
 	 */
@@ -911,6 +949,9 @@ public class Player extends DressedEntity implements UseListener {
 	 */
 	public boolean setKeyedSlot(final String name, final String key,
 			final String value) {
+		if ("!quests".equals(name) && "spouse".equals(key)) {
+			statsVersion++;
+		}
 		return KeyedSlotUtil.setKeyedSlot(this, name, key, value);
 	}
 
@@ -1220,11 +1261,14 @@ public class Player extends DressedEntity implements UseListener {
 			found = true;
 		}
 		if (found) {
-			if (has("online")) {
+			if (supportsTransientEvents()) {
+				BuddyLoginEvent.add(this, who);
+			} else if (has("online")) {
 				put("online", get("online") + "," + who);
 			} else {
 				put("online", who);
 			}
+			notifyWorldAboutChanges();
 		}
 	}
 
@@ -1241,11 +1285,14 @@ public class Player extends DressedEntity implements UseListener {
 			found = true;
 		}
 		if (found) {
-			if (has("offline")) {
+			if (supportsTransientEvents()) {
+				BuddyLogoutEvent.add(this, who);
+			} else if (has("offline")) {
 				put("offline", get("offline") + "," + who);
 			} else {
 				put("offline", who);
 			}
+			notifyWorldAboutChanges();
 		}
 	}
 
@@ -2008,42 +2055,29 @@ public class Player extends DressedEntity implements UseListener {
 	//
 
 	/**
-	 * Perform cycle logic.
+	 * Removes the attributes which old clients get instead of the healed,
+	 * buddy and attack events. They are only valid for the turn in which
+	 * they were set.
 	 */
-	@Override
-	public void logic() {
-		/*
-		 * TODO: Refactor Most of these things can be handled as RPEvents
-		 */
-		if (has("risk")) {
-			remove("risk");
-			notifyWorldAboutChanges();
-		}
-
-		if (has("damage")) {
-			remove("damage");
-			notifyWorldAboutChanges();
-		}
-
-		if (has("heal")) {
-			remove("heal");
-			notifyWorldAboutChanges();
-		}
-
-		if (has("dead")) {
-			remove("dead");
-			notifyWorldAboutChanges();
+	public void clearTransientAttributes() {
+		boolean changed = false;
+		for (final String attribute : TRANSIENT_ATTRIBUTES) {
+			if (has(attribute)) {
+				remove(attribute);
+				changed = true;
+			}
 		}
-
-		if (has("online")) {
-			remove("online");
+		if (changed) {
 			notifyWorldAboutChanges();
 		}
+	}
 
-		if (has("offline")) {
-			remove("offline");
-			notifyWorldAboutChanges();
-		}
+	/**
+	 * Perform cycle logic.
+	 */
+	@Override
+	public void logic() {
+		clearTransientAttributes();
 
 		applyMovement();
 
@@ -2133,6 +2167,7 @@ public class Player extends DressedEntity implements UseListener {
 	@Override
 	public void onAdded(final StendhalRPZone zone) {
 		super.onAdded(zone);
+		statsVersion++;
 
 		final String zoneName = zone.getID().getID();
 
@@ -2167,6 +2202,7 @@ public class Player extends DressedEntity implements UseListener {
 		}
 
 		super.onRemoved(zone);
+		statsVersion++;
 	}
 
 	//
@@ -2244,6 +2280,52 @@ public class Player extends DressedEntity implements UseListener {
 		this.clientVersion = version;
 	}
 
+	/**
+	 * checks whether the client can apply changed zone attributes without
+	 * receiving the zone content again
+	 *
+	 * @return <code>true</code>, if only the attributes need to be sent
+	 */
+	public boolean supportsZoneAttributeUpdates() {
+		return zoneAttributeUpdates;
+	}
+
+	/**
+	 * sets whether the client can apply changed zone attributes without
+	 * receiving the zone content again
+	 *
+	 * @param supported <code>true</code>, if only the attributes need to be sent
+	 */
+	public void setZoneAttributeUpdates(boolean supported) {
+		this.zoneAttributeUpdates = supported;
+	}
+
+	/**
+	 * checks whether the client understands the healed and buddy events.
+	 * Older clients get the "heal", "online" and "offline" attributes
+	 * instead.
+	 *
+	 * @return <code>true</code>, if events should be used
+	 */
+	public boolean supportsTransientEvents() {
+		return transientEvents;
+	}
+
+	/**
+	 * sets whether the client understands the healed and buddy events
+	 *
+	 * @param supported <code>true</code>, if events should be used
+	 */
+	public void setTransientEvents(boolean supported) {
+		if (transientEvents != supported) {
+			this.transientEvents = supported;
+			final StendhalRPZone zone = getZone();
+			if (zone != null) {
+				zone.transientEventsChanged(this);
+			}
+		}
+	}
+
 	/**
 	 * checks if the client is newer than the requested version
 	 *
@@ -2410,6 +2492,98 @@ public class Player extends DressedEntity implements UseListener {
 		return petOwner;
 	}
 
+	/**
+	 * gets the data which was last written to the website tables
+	 *
+	 * @return PersistedCharacterState
+	 */
+	public PersistedCharacterState getPersistedState() {
+		return persistedState;
+	}
+
+	/**
+	 * gets the generation of this snapshot
+	 *
+	 * @return generation, 0 if this is not a snapshot
+	 */
+	public long getSnapshotGeneration() {
+		return snapshotGeneration;
+	}
+
+	/**
+	 * creates a copy of this player to be saved on the database thread. Each
+	 * save snapshot gets a new generation, so that an older pending save can
+	 * be skipped in favour of a newer one. Other copies, for example the ones
+	 * for the kill log, keep generation 0, so that they never cause a real
+	 * save to be skipped.
+	 *
+	 * @return copy of this player
+	 */
+	public Player createSaveSnapshot() {
+		final Player snapshot = (Player) clone();
+		snapshot.snapshotGeneration = persistedState.nextSnapshotGeneration();
+		return snapshot;
+	}
+
+	/**
+	 * gets the number of changes of the attributes which are copied to the
+	 * website tables. Items are counted separately.
+	 *
+	 * @return version, which changes on every change
+	 */
+	public int getStatsVersion() {
+		return statsVersion;
+	}
+
+	/**
+	 * gets the number of changes of the items carried by the player
+	 *
+	 * @return version, which changes on every change
+	 */
+	public int getItemsVersion() {
+		return itemsVersion;
+	}
+
+	/**
+	 * tells the player that an item was added, removed or changed somewhere
+	 * in its slots
+	 */
+	public void onItemsChanged() {
+		itemsVersion++;
+	}
+
+	@Override
+	public void put(final String attribute, final String value) {
+		super.put(attribute, value);
+		if (STATS_ATTRIBUTES.contains(attribute)) {
+			statsVersion++;
+		}
+	}
+
+	@Override
+	public String remove(final String attribute) {
+		if (STATS_ATTRIBUTES.contains(attribute)) {
+			statsVersion++;
+		}
+		return super.remove(attribute);
+	}
+
+	@Override
+	public void put(final String map, final String key, final String value) {
+		super.put(map, key, value);
+		if ("outfit_colors".equals(map)) {
+			statsVersion++;
+		}
+	}
+
+	@Override
+	public String remove(final String map, final String key) {
+		if ("outfit_colors".equals(map)) {
+			statsVersion++;
+		}
+		return super.remove(map, key);
+	}
+
 	public boolean isBoundTo(final Item item) {
 		return getName().equals(item.getBoundTo());
 	}
@@ -66,7 +66,10 @@ public class PlayerDieer {
 
 
 	public void onDead(final Killer killer) {
-		player.put("dead", "");
+		if (!player.supportsTransientEvents()) {
+			// old clients; newer ones see the death from the hp and the corpse
+			player.put("dead", "");
+		}
 		logger.debug("ondeadstart");
 		abondonPetsAndSheep();
 
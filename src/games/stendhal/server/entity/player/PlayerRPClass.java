@@ -47,6 +47,8 @@ public class PlayerRPClass {
 		player.addRPEvent(Events.TRADE_STATE_CHANGE, Definition.PRIVATE);
 		player.addRPEvent(Events.REACHED_ACHIEVEMENT, Definition.PRIVATE);
 		player.addRPEvent(Events.BESTIARY, Definition.PRIVATE);
+		player.addRPEvent(Events.BUDDY_LOGIN, Definition.PRIVATE);
+		player.addRPEvent(Events.BUDDY_LOGOUT, Definition.PRIVATE);
 
 		player.addAttribute("dead", Type.FLAG, Definition.PRIVATE);
 
@@ -13,7 +13,10 @@
 package games.stendhal.server.entity.slot;
 
 import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.player.Player;
+import marauroa.common.game.RPObject;
 import marauroa.common.game.RPSlot;
+import marauroa.common.game.SlotOwner;
 
 /**
  * Stendhal specific information about this slot.
@@ -43,6 +46,41 @@ public class EntitySlot extends RPSlot implements Slot {
 		this.contentSlotName = contentSlotName;
 	}
 
+	@Override
+	protected int add(final RPObject object, final boolean assignId) {
+		final int result = super.add(object, assignId);
+		notifyItemsChanged();
+		return result;
+	}
+
+	@Override
+	public RPObject remove(final RPObject.ID id) {
+		final RPObject removed = super.remove(id);
+		if (removed != null) {
+			notifyItemsChanged();
+		}
+		return removed;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		notifyItemsChanged();
+	}
+
+	/**
+	 * tells the player carrying this slot, that its items changed
+	 */
+	private void notifyItemsChanged() {
+		final SlotOwner owner = getOwner();
+		if (owner instanceof RPObject) {
+			final RPObject base = ((RPObject) owner).getBaseContainer();
+			if (base instanceof Player) {
+				((Player) base).onItemsChanged();
+			}
+		}
+	}
+
 	@Override
 	public boolean isReachableForTakingThingsOutOfBy(final Entity entity) {
 		setErrorMessage("The " + getName() + " of " + ((Entity) getOwner()).getDescriptionName(true) + " is too far away.");
@@ -98,6 +98,17 @@ public class Earning extends Entity implements Dateable {
 		return (getInt(REWARD_ATTRIBUTE) != 0);
 	}
 
+	/**
+	 * Keeps the age index of the market in order when the timestamp changes.
+	 */
+	@Override
+	public void put(final String attr, final String value) {
+		super.put(attr, value);
+		if (TIMESTAMP_ATTRIBUTE.equals(attr)) {
+			MarketSlot.timestampChanged(this);
+		}
+	}
+
 	@Override
 	public long getTimestamp() {
 		long timeStamp = 0;
@@ -12,10 +12,11 @@
  ***************************************************************************/
 package games.stendhal.server.entity.trade;
 
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.log4j.Logger;
 
@@ -39,6 +40,10 @@ import marauroa.common.game.RPSlot;
  * permanently from the market after another period of time. When an offer has
  * been accepted, the offering Player can come and fetch his earnings for that
  * sale.
+ * <p>
+ * The slots are the persistent storage of the market. They are mirrored by
+ * in-memory indexes by player, by item and by age, so that lookups do not
+ * need to scan all offers.
  *
  * @author madmetzger, kiheru
  */
@@ -62,6 +67,10 @@ public class Market extends PassiveEntity {
 	 */
 	public static final String EXPIRED_OFFERS_SLOT_NAME = "expired_offers";
 
+	private final MarketIndex<Offer> offerIndex = createOfferIndex();
+	private final MarketIndex<Offer> expiredOfferIndex = createOfferIndex();
+	private final MarketIndex<Earning> earningIndex = new MarketIndex<Earning>(Earning::getSeller, null);
+
 	/**
 	 * Generate the RPClass for the Market
 	 */
@@ -88,17 +97,17 @@ public class Market extends PassiveEntity {
 		if (hasSlot(OFFERS_SLOT_NAME)) {
 			removeSlot(OFFERS_SLOT_NAME);
 		}
-		addSlot(OFFERS_SLOT_NAME);
+		addSlot(new MarketSlot<Offer>(OFFERS_SLOT_NAME, Offer.class, offerIndex));
 
 		if (hasSlot(EARNINGS_SLOT_NAME)) {
 			removeSlot(EARNINGS_SLOT_NAME);
 		}
-		addSlot(EARNINGS_SLOT_NAME);
+		addSlot(new MarketSlot<Earning>(EARNINGS_SLOT_NAME, Earning.class, earningIndex));
 
 		if (hasSlot(EXPIRED_OFFERS_SLOT_NAME)) {
 			removeSlot(EXPIRED_OFFERS_SLOT_NAME);
 		}
-		addSlot(EXPIRED_OFFERS_SLOT_NAME);
+		addSlot(new MarketSlot<Offer>(EXPIRED_OFFERS_SLOT_NAME, Offer.class, expiredOfferIndex));
 
 		// copy the contents from the old slots
 		if (object.hasSlot(OFFERS_SLOT_NAME)) {
@@ -154,16 +163,50 @@ public class Market extends PassiveEntity {
 		super();
 		setRPClass(MARKET_RPCLASS_NAME);
 		hide();
-		if (!this.hasSlot(OFFERS_SLOT_NAME)) {
-			addSlot(OFFERS_SLOT_NAME);
-		}
-		if (!this.hasSlot(EARNINGS_SLOT_NAME)) {
-			addSlot(EARNINGS_SLOT_NAME);
+		addSlot(new MarketSlot<Offer>(OFFERS_SLOT_NAME, Offer.class, offerIndex));
+		addSlot(new MarketSlot<Earning>(EARNINGS_SLOT_NAME, Earning.class, earningIndex));
+		addSlot(new MarketSlot<Offer>(EXPIRED_OFFERS_SLOT_NAME, Offer.class, expiredOfferIndex));
+		store();
+	}
+
+	private static MarketIndex<Offer> createOfferIndex() {
+		return new MarketIndex<Offer>(Offer::getOfferer, offer -> offer.hasItem() ? offer.getItem().getName() : null);
+	}
+
+	private <T> List<T> getSlotContent(String slotName, Class<T> clazz) {
+		List<T> content = new ArrayList<T>();
+		for (RPObject object : getSlot(slotName)) {
+			content.add(clazz.cast(object));
 		}
-		if (!this.hasSlot(EXPIRED_OFFERS_SLOT_NAME)) {
-			addSlot(EXPIRED_OFFERS_SLOT_NAME);
+		return content;
+	}
+
+	/**
+	 * gets an index, rebuilding it if its slot could not keep it up to date
+	 *
+	 * @param index index of the slot
+	 * @param slotName name of the slot
+	 * @param clazz type of the slot content
+	 * @return index
+	 */
+	private <T extends Dateable> MarketIndex<T> getIndex(MarketIndex<T> index, String slotName, Class<T> clazz) {
+		if (!index.isValid()) {
+			logger.debug("Rebuilding index of market slot " + slotName);
+			index.rebuild(getSlotContent(slotName, clazz));
 		}
-		store();
+		return index;
+	}
+
+	private MarketIndex<Offer> offers() {
+		return getIndex(offerIndex, OFFERS_SLOT_NAME, Offer.class);
+	}
+
+	private MarketIndex<Offer> expiredOffers() {
+		return getIndex(expiredOfferIndex, EXPIRED_OFFERS_SLOT_NAME, Offer.class);
+	}
+
+	private MarketIndex<Earning> earnings() {
+		return getIndex(earningIndex, EARNINGS_SLOT_NAME, Earning.class);
 	}
 
 	/**
@@ -278,13 +321,7 @@ public class Market extends PassiveEntity {
 	 * @return the fetched earnings
 	 */
 	public Set<Earning> fetchEarnings(final Player earner) {
-		Set<Earning> earningsToRemove = new HashSet<Earning>();
-		for (RPObject earningRPObject : this.getSlot(EARNINGS_SLOT_NAME)) {
-			Earning earning = (Earning) earningRPObject;
-			if (earning.getSeller().equals(earner.getName())) {
-				earningsToRemove.add(earning);
-			}
-		}
+		Set<Earning> earningsToRemove = new HashSet<Earning>(earnings().getByOwner(earner.getName()));
 
 		if(!earningsToRemove.isEmpty()) {
 			int summedUpEarnings = 0;
@@ -332,14 +369,68 @@ public class Market extends PassiveEntity {
 	 * @return the number of offers
 	 */
 	public int countOffersOfPlayer(Player offerer) {
-		int count = 0;
-		for (RPObject object : this.getSlot(OFFERS_SLOT_NAME)) {
-			Offer offer = (Offer) object;
-			if (offer.getOfferer().equals(offerer.getName())) {
-				count = count + 1;
+		return offers().countByOwner(offerer.getName());
+	}
+
+	/**
+	 * gets all active offers
+	 *
+	 * @return list of offers in the order they were placed
+	 */
+	public List<Offer> getOffers() {
+		return offers().getAll();
+	}
+
+	/**
+	 * gets the active offers of a player
+	 *
+	 * @param offerer
+	 * @return list of offers in the order they were placed
+	 */
+	public List<Offer> getOffersOfPlayer(Player offerer) {
+		return offers().getByOwner(offerer.getName());
+	}
+
+	/**
+	 * gets the expired offers of a player
+	 *
+	 * @param offerer
+	 * @return list of expired offers in the order they expired
+	 */
+	public List<Offer> getExpiredOffersOfPlayer(Player offerer) {
+		return expiredOffers().getByOwner(offerer.getName());
+	}
+
+	/**
+	 * gets the active offers for items whose name contains a word or
+	 * whose item class is that word
+	 *
+	 * @param word word to look for
+	 * @return list of offers in the order they were placed
+	 */
+	public List<Offer> getOffersMatching(final String word) {
+		return offers().getByItem(offer -> {
+			if (!offer.hasItem()) {
+				return true;
+			}
+			Item item = offer.getItem();
+			return item.getName().indexOf(word) != -1 || word.equals(item.getItemClass());
+		});
+	}
+
+	/**
+	 * gets the names of all items for which active offers exist
+	 *
+	 * @return alphabetically sorted set of item names
+	 */
+	public Set<String> getOfferedItemNames() {
+		Set<String> names = new TreeSet<String>();
+		for (String name : offers().getItemNames()) {
+			if (name != null) {
+				names.add(name);
 			}
 		}
-		return count;
+		return names;
 	}
 
 	/**
@@ -358,8 +449,6 @@ public class Market extends PassiveEntity {
 		p.equipOrPutOnGround(item);
 
 		getSlot(OFFERS_SLOT_NAME).remove(o.getID());
-
-		getExpiredOffers().remove(o);
 		getSlot(EXPIRED_OFFERS_SLOT_NAME).remove(o.getID());
 
 		getZone().storeToDatabase();
@@ -398,11 +487,7 @@ public class Market extends PassiveEntity {
 	 * @return all currently expired offers in the market
 	 */
 	public List<Offer> getExpiredOffers() {
-		List<Offer> expiredOffers = new LinkedList<Offer>();
-		for(RPObject o : getSlot(EXPIRED_OFFERS_SLOT_NAME)) {
-			expiredOffers.add((Offer) o);
-		}
-		return expiredOffers;
+		return expiredOffers().getAll();
 	}
 
 	/**
@@ -453,11 +538,7 @@ public class Market extends PassiveEntity {
 	 * @return list of offers that are older than the specified time
 	 */
 	public List<Offer> getOffersOlderThan(int seconds) {
-		List<Offer> offers = new LinkedList<Offer>();
-		for (RPObject o : getSlot(OFFERS_SLOT_NAME)) {
-			offers.add((Offer) o);
-		}
-		return getOlderThan(offers, seconds);
+		return getOlderThan(offers(), seconds);
 	}
 
 	/**
@@ -468,7 +549,7 @@ public class Market extends PassiveEntity {
 	 * @return list of expired offers that are older than the specified time
 	 */
 	public List<Offer> getExpiredOffersOlderThan(int seconds) {
-		return getOlderThan(getExpiredOffers(), seconds);
+		return getOlderThan(expiredOffers(), seconds);
 	}
 
 	/**
@@ -479,35 +560,22 @@ public class Market extends PassiveEntity {
 	 * @return list of earnings that are older than the specified time
 	 */
 	public List<Earning> getEarningsOlderThan(int seconds) {
-		RPSlot slot = this.getSlot(EARNINGS_SLOT_NAME);
-		List<Earning> earnings = new LinkedList<Earning>();
-		for (RPObject o : slot) {
-			earnings.add((Earning) o);
-		}
-		return getOlderThan(earnings, seconds);
+		return getOlderThan(earnings(), seconds);
 	}
 
 	/**
-	 * retrieves Dateable objects older than seconds from a given Iterable
+	 * retrieves Dateable objects older than seconds from an index
 	 *
 	 * @param <T>
-	 * @param set
-	 *            the set to search in
+	 * @param index
+	 *            the index to search in
 	 * @param seconds
 	 *            the maximum age
-	 * @return the filtered list
+	 * @return the filtered list, oldest first
 	 */
-	private <T extends Dateable> List<T> getOlderThan(Iterable<T> set,
+	private <T extends Dateable> List<T> getOlderThan(MarketIndex<T> index,
 			int seconds) {
-		List<T> old = new LinkedList<T>();
-		for (T obj : set) {
-			if (System.currentTimeMillis() > obj.getTimestamp() + 1000L
-					* seconds) {
-				old.add(obj);
-			}
-		}
-
-		return old;
+		return index.getNotAfter(System.currentTimeMillis() - 1000L * seconds - 1);
 	}
 
 	/**
@@ -538,12 +606,6 @@ public class Market extends PassiveEntity {
 	 * @return true iff there are earnings for this player in the market
 	 */
 	public boolean hasEarningsFor(Player player) {
-		for(RPObject o : this.getSlot(EARNINGS_SLOT_NAME)) {
-			Earning e = (Earning) o;
-			if(e.getSeller().equals(player.getName())) {
-				return true;
-			}
-		}
-		return false;
+		return earnings().countByOwner(player.getName()) > 0;
 	}
 }
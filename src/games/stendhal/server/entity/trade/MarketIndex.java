@@ -0,0 +1,310 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.trade;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * In-memory index of the offers or earnings stored in one slot of the
+ * market. The slot stays the persistent storage, the index only speeds up
+ * lookups by owner, by item and by age.
+ *
+ * <p>Entries are ordered by the time they were added, which matches the
+ * order of the slot. The age index remembers the timestamp at the time the
+ * entry was added, so {@link #updateTimestamp(Dateable)} has to be called
+ * when the timestamp of an entry is updated.</p>
+ *
+ * <p>The index is kept up to date by the {@link MarketSlot} holding the
+ * objects, including the timestamp updates. Changes it can not follow mark
+ * the index invalid, and it has to be rebuilt before it is used again.</p>
+ *
+ * @param <T> Offer or Earning
+ */
+class MarketIndex<T extends Dateable> {
+
+	/** position of an object in the index */
+	private static final class Entry implements Comparable<Entry> {
+		private final long sequence;
+		private final long timestamp;
+		private final String owner;
+		private final String item;
+
+		Entry(long sequence, long timestamp, String owner, String item) {
+			this.sequence = sequence;
+			this.timestamp = timestamp;
+			this.owner = owner;
+			this.item = item;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int res = Long.compare(timestamp, other.timestamp);
+			if (res == 0) {
+				res = Long.compare(sequence, other.sequence);
+			}
+			return res;
+		}
+	}
+
+	private final Function<T, String> ownerKey;
+	private final Function<T, String> itemKey;
+
+	private long nextSequence;
+	private boolean valid = true;
+	private final Map<T, Entry> entries = new IdentityHashMap<T, Entry>();
+	private final TreeMap<Long, T> bySequence = new TreeMap<Long, T>();
+	private final TreeMap<Entry, T> byAge = new TreeMap<Entry, T>();
+	private final Map<String, TreeMap<Long, T>> byOwner = new HashMap<String, TreeMap<Long, T>>();
+	private final Map<String, TreeMap<Long, T>> byItem = new HashMap<String, TreeMap<Long, T>>();
+
+	/**
+	 * creates a new MarketIndex
+	 *
+	 * @param ownerKey function returning the name of the owning player
+	 * @param itemKey function returning the item name, may be <code>null</code>
+	 */
+	MarketIndex(Function<T, String> ownerKey, Function<T, String> itemKey) {
+		this.ownerKey = ownerKey;
+		this.itemKey = itemKey;
+	}
+
+	/**
+	 * replaces the content of the index. The objects are added ordered by
+	 * their timestamp.
+	 *
+	 * @param objects objects to index
+	 */
+	void rebuild(Collection<T> objects) {
+		clear();
+		List<T> sorted = new ArrayList<T>(objects);
+		Collections.sort(sorted, new Comparator<T>() {
+			@Override
+			public int compare(T o1, T o2) {
+				return Long.compare(o1.getTimestamp(), o2.getTimestamp());
+			}
+		});
+		for (T object : sorted) {
+			add(object);
+		}
+		valid = true;
+	}
+
+	/**
+	 * marks the index as not matching the slot content anymore
+	 */
+	void invalidate() {
+		valid = false;
+	}
+
+	/**
+	 * checks if the index matches the slot content
+	 *
+	 * @return false, if the index has to be rebuilt
+	 */
+	boolean isValid() {
+		return valid;
+	}
+
+	/**
+	 * adds an object to the index
+	 *
+	 * @param object object to add
+	 */
+	void add(T object) {
+		if (entries.containsKey(object)) {
+			remove(object);
+		}
+		String item = null;
+		if (itemKey != null) {
+			item = itemKey.apply(object);
+		}
+		Entry entry = new Entry(nextSequence++, object.getTimestamp(), ownerKey.apply(object), item);
+		entries.put(object, entry);
+		bySequence.put(entry.sequence, object);
+		byAge.put(entry, object);
+		put(byOwner, entry.owner, entry.sequence, object);
+		if (itemKey != null) {
+			put(byItem, entry.item, entry.sequence, object);
+		}
+	}
+
+	/**
+	 * removes an object from the index
+	 *
+	 * @param object object to remove
+	 * @return true, if the object was indexed
+	 */
+	boolean remove(T object) {
+		Entry entry = entries.remove(object);
+		if (entry == null) {
+			return false;
+		}
+		bySequence.remove(entry.sequence);
+		byAge.remove(entry);
+		delete(byOwner, entry.owner, entry.sequence);
+		if (itemKey != null) {
+			delete(byItem, entry.item, entry.sequence);
+		}
+		return true;
+	}
+
+	/**
+	 * moves an object in the age index after its timestamp was changed. The
+	 * position in the other indexes is kept.
+	 *
+	 * @param object object whose timestamp was changed
+	 */
+	void updateTimestamp(T object) {
+		Entry entry = entries.get(object);
+		if (entry == null) {
+			return;
+		}
+		byAge.remove(entry);
+		Entry updated = new Entry(entry.sequence, object.getTimestamp(), entry.owner, entry.item);
+		entries.put(object, updated);
+		byAge.put(updated, object);
+	}
+
+	/**
+	 * removes all objects from the index
+	 */
+	void clear() {
+		entries.clear();
+		bySequence.clear();
+		byAge.clear();
+		byOwner.clear();
+		byItem.clear();
+	}
+
+	/**
+	 * gets the number of indexed objects
+	 *
+	 * @return number of objects
+	 */
+	int size() {
+		return entries.size();
+	}
+
+	/**
+	 * gets all objects
+	 *
+	 * @return objects in the order they were added
+	 */
+	List<T> getAll() {
+		return new ArrayList<T>(bySequence.values());
+	}
+
+	/**
+	 * gets the objects owned by a player
+	 *
+	 * @param owner name of player
+	 * @return objects in the order they were added
+	 */
+	List<T> getByOwner(String owner) {
+		TreeMap<Long, T> objects = byOwner.get(owner);
+		if (objects == null) {
+			return new ArrayList<T>();
+		}
+		return new ArrayList<T>(objects.values());
+	}
+
+	/**
+	 * counts the objects owned by a player
+	 *
+	 * @param owner name of player
+	 * @return number of objects
+	 */
+	int countByOwner(String owner) {
+		TreeMap<Long, T> objects = byOwner.get(owner);
+		if (objects == null) {
+			return 0;
+		}
+		return objects.size();
+	}
+
+	/**
+	 * gets the names of all indexed items
+	 *
+	 * @return item names
+	 */
+	Set<String> getItemNames() {
+		return Collections.unmodifiableSet(byItem.keySet());
+	}
+
+	/**
+	 * gets the objects of all items for which the filter accepts a
+	 * representative object. All objects for one item name share the
+	 * filter result, so the filter must only depend on the item.
+	 *
+	 * @param filter filter which is checked once per item name
+	 * @return objects in the order they were added
+	 */
+	List<T> getByItem(Predicate<T> filter) {
+		TreeMap<Long, T> result = new TreeMap<Long, T>();
+		for (TreeMap<Long, T> objects : byItem.values()) {
+			if (filter.test(objects.firstEntry().getValue())) {
+				result.putAll(objects);
+			}
+		}
+		return new ArrayList<T>(result.values());
+	}
+
+	/**
+	 * gets the objects whose recorded timestamp is not after the specified
+	 * time
+	 *
+	 * @param timestamp time in milliseconds
+	 * @return objects ordered by age
+	 */
+	List<T> getNotAfter(long timestamp) {
+		List<T> result = new ArrayList<T>();
+		// compare the recorded timestamps, which define the order of the
+		// age index
+		for (Map.Entry<Entry, T> entry : byAge.entrySet()) {
+			if (entry.getKey().timestamp > timestamp) {
+				break;
+			}
+			result.add(entry.getValue());
+		}
+		return result;
+	}
+
+	private void put(Map<String, TreeMap<Long, T>> index, String key, long sequence, T object) {
+		TreeMap<Long, T> objects = index.get(key);
+		if (objects == null) {
+			objects = new TreeMap<Long, T>();
+			index.put(key, objects);
+		}
+		objects.put(sequence, object);
+	}
+
+	private void delete(Map<String, TreeMap<Long, T>> index, String key, long sequence) {
+		TreeMap<Long, T> objects = index.get(key);
+		if (objects != null) {
+			objects.remove(sequence);
+			if (objects.isEmpty()) {
+				index.remove(key);
+			}
+		}
+	}
+}
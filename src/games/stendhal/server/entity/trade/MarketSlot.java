@@ -0,0 +1,116 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.trade;
+
+import marauroa.common.game.RPObject;
+import marauroa.common.game.RPSlot;
+
+/**
+ * A slot of the market that keeps its {@link MarketIndex} up to date. Every
+ * object added to or removed from the slot is added to or removed from the
+ * index, and the offers and earnings report changes of their timestamps,
+ * so code modifying the slot directly can not leave the index stale.
+ * Changes the index can not follow mark it invalid, so that it is rebuilt
+ * on the next use.
+ *
+ * <p>Copies of the slot are not connected to the index.</p>
+ *
+ * @param <T> Offer or Earning
+ */
+class MarketSlot<T extends Dateable> extends RPSlot {
+	private final Class<T> clazz;
+	private MarketIndex<T> index;
+
+	/**
+	 * creates a new MarketSlot
+	 *
+	 * @param name name of the slot
+	 * @param clazz type of the slot content
+	 * @param index index to maintain
+	 */
+	MarketSlot(String name, Class<T> clazz, MarketIndex<T> index) {
+		super(name);
+		this.clazz = clazz;
+		this.index = index;
+	}
+
+	/**
+	 * moves an object in the age index of its slot after its timestamp was
+	 * changed
+	 *
+	 * @param object offer or earning whose timestamp was changed
+	 */
+	static void timestampChanged(RPObject object) {
+		RPSlot slot = object.getContainerSlot();
+		if (slot instanceof MarketSlot) {
+			((MarketSlot<?>) slot).updateTimestamp(object);
+		}
+	}
+
+	private void updateTimestamp(RPObject object) {
+		if ((index != null) && clazz.isInstance(object)) {
+			index.updateTimestamp(clazz.cast(object));
+		}
+	}
+
+	@Override
+	protected int add(RPObject object, boolean assignId) {
+		int result = super.add(object, assignId);
+		if (index != null) {
+			if (clazz.isInstance(object)) {
+				index.add(clazz.cast(object));
+			} else {
+				index.invalidate();
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public RPObject remove(RPObject.ID id) {
+		RPObject removed = super.remove(id);
+		if ((removed != null) && (index != null)) {
+			if (clazz.isInstance(removed)) {
+				index.remove(clazz.cast(removed));
+			} else {
+				index.invalidate();
+			}
+		}
+		return removed;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		if (index != null) {
+			index.clear();
+		}
+	}
+
+	@Override
+	public void clearVisible(boolean sync) {
+		super.clearVisible(sync);
+		if (index != null) {
+			index.invalidate();
+		}
+	}
+
+	@Override
+	public Object clone() {
+		@SuppressWarnings("unchecked")
+		MarketSlot<T> slot = (MarketSlot<T>) super.clone();
+		if (slot != null) {
+			slot.index = null;
+		}
+		return slot;
+	}
+}
@@ -172,6 +172,17 @@ public class Offer extends Entity implements Dateable {
 		return timeStamp;
 	}
 
+	/**
+	 * Keeps the age index of the market in order when the timestamp changes.
+	 */
+	@Override
+	public void put(final String attr, final String value) {
+		super.put(attr, value);
+		if (TIMESTAMP.equals(attr)) {
+			MarketSlot.timestampChanged(this);
+		}
+	}
+
 	/**
 	 * Update the timestamp of the offer to the current moment.
 	 */
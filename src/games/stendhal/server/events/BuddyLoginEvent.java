@@ -12,36 +12,53 @@
  ***************************************************************************/
 package games.stendhal.server.events;
 
-import games.stendhal.server.entity.player.Player;
+import games.stendhal.common.constants.Events;
 import marauroa.common.game.Definition.DefinitionClass;
 import marauroa.common.game.Definition.Type;
 import marauroa.common.game.RPClass;
 import marauroa.common.game.RPEvent;
+import marauroa.common.game.RPObject;
 
 /**
- * An online event.
+ * An online event. The buddies who logged in in the same turn are sent as one
+ * event with a comma separated list of names.
  *
  * @author hendrik
  */
 public class BuddyLoginEvent extends RPEvent {
-	private static final String RPCLASS_NAME = "buddy_login";
 	private static final String NAME = "name";
 
 	/**
 	 * Creates the rpclass.
 	 */
 	public static void generateRPClass() {
-		final RPClass rpclass = new RPClass(RPCLASS_NAME);
+		final RPClass rpclass = new RPClass(Events.BUDDY_LOGIN);
 		rpclass.add(DefinitionClass.ATTRIBUTE, NAME, Type.STRING);
 	}
 
 	/**
 	 * Creates a new online event.
 	 *
-	 * @param player Player who just logged in
+	 * @param name name of the player who just logged in
 	 */
-	public BuddyLoginEvent(final Player player) {
-		super(RPCLASS_NAME);
-		put(NAME, player.getName());
+	public BuddyLoginEvent(final String name) {
+		super(Events.BUDDY_LOGIN);
+		put(NAME, name);
+	}
+
+	/**
+	 * Adds a buddy to the online event of this turn, or creates the event.
+	 *
+	 * @param object player to notify
+	 * @param name name of the player who just logged in
+	 */
+	public static void add(final RPObject object, final String name) {
+		for (final RPEvent event : object.events()) {
+			if (event instanceof BuddyLoginEvent) {
+				event.put(NAME, event.get(NAME) + "," + name);
+				return;
+			}
+		}
+		object.addEvent(new BuddyLoginEvent(name));
 	}
 }
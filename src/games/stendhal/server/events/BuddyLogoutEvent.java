@@ -12,36 +12,53 @@
  ***************************************************************************/
 package games.stendhal.server.events;
 
-import games.stendhal.server.entity.player.Player;
+import games.stendhal.common.constants.Events;
 import marauroa.common.game.Definition.DefinitionClass;
 import marauroa.common.game.Definition.Type;
 import marauroa.common.game.RPClass;
 import marauroa.common.game.RPEvent;
+import marauroa.common.game.RPObject;
 
 /**
- * An offline event.
+ * An offline event. The buddies who logged out in the same turn are sent as one
+ * event with a comma separated list of names.
  *
  * @author hendrik
  */
 public class BuddyLogoutEvent extends RPEvent {
-	private static final String RPCLASS_NAME = "buddy_logout";
 	private static final String NAME = "name";
 
 	/**
 	 * Creates the rpclass.
 	 */
 	public static void generateRPClass() {
-		final RPClass rpclass = new RPClass(RPCLASS_NAME);
+		final RPClass rpclass = new RPClass(Events.BUDDY_LOGOUT);
 		rpclass.add(DefinitionClass.ATTRIBUTE, NAME, Type.STRING);
 	}
 
 	/**
 	 * Creates a new offline event.
 	 *
-	 * @param player Player who just logged out
+	 * @param name name of the player who just logged out
 	 */
-	public BuddyLogoutEvent(final Player player) {
-		super(RPCLASS_NAME);
-		put(NAME, player.getName());
+	public BuddyLogoutEvent(final String name) {
+		super(Events.BUDDY_LOGOUT);
+		put(NAME, name);
+	}
+
+	/**
+	 * Adds a buddy to the offline event of this turn, or creates the event.
+	 *
+	 * @param object player to notify
+	 * @param name name of the player who just logged out
+	 */
+	public static void add(final RPObject object, final String name) {
+		for (final RPEvent event : object.events()) {
+			if (event instanceof BuddyLogoutEvent) {
+				event.put(NAME, event.get(NAME) + "," + name);
+				return;
+			}
+		}
+		object.addEvent(new BuddyLogoutEvent(name));
 	}
 }
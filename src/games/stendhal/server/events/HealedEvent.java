@@ -1,6 +1,5 @@
-/* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -12,25 +11,27 @@
  ***************************************************************************/
 package games.stendhal.server.events;
 
+import games.stendhal.common.constants.Events;
 import marauroa.common.game.Definition.DefinitionClass;
 import marauroa.common.game.Definition.Type;
 import marauroa.common.game.RPClass;
 import marauroa.common.game.RPEvent;
+import marauroa.common.game.RPObject;
 
 /**
- * A healed event.
+ * A healed event. Several heals of an entity in the same turn are sent as
+ * one event with the sum of the amounts.
  *
  * @author hendrik
  */
 public class HealedEvent extends RPEvent {
-	private static final String RPCLASS_NAME = "healed";
 	private static final String AMOUNT = "amount";
 
 	/**
 	 * Creates the rpclass.
 	 */
 	public static void generateRPClass() {
-		final RPClass rpclass = new RPClass(RPCLASS_NAME);
+		final RPClass rpclass = new RPClass(Events.HEALED);
 		rpclass.add(DefinitionClass.ATTRIBUTE, AMOUNT, Type.INT);
 	}
 
@@ -40,7 +41,23 @@ public class HealedEvent extends RPEvent {
 	 * @param amount amount of hp healed
 	 */
 	public HealedEvent(final int amount) {
-		super(RPCLASS_NAME);
+		super(Events.HEALED);
 		put(AMOUNT, amount);
 	}
+
+	/**
+	 * Adds a heal to the healed event of this turn, or creates the event.
+	 *
+	 * @param object healed object
+	 * @param amount amount of hp healed
+	 */
+	public static void add(final RPObject object, final int amount) {
+		for (final RPEvent event : object.events()) {
+			if (event instanceof HealedEvent) {
+				event.put(AMOUNT, event.getInt(AMOUNT) + amount);
+				return;
+			}
+		}
+		object.addEvent(new HealedEvent(amount));
+	}
 }
@@ -0,0 +1,62 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.script;
+
+import java.util.List;
+
+import games.stendhal.server.core.scripting.ScriptImpl;
+import games.stendhal.server.core.scripting.lua.LuaProfiler;
+import games.stendhal.server.entity.player.Player;
+
+/**
+ * shows the Lua scripts and functions which use the most time during the
+ * turns and sets the execution budget of each call
+ *
+ * <p>Usage: /script LuaProfile.class [report [limit]|reset|budget instructions [milliseconds]]</p>
+ */
+public class LuaProfile extends ScriptImpl {
+	private static final String USAGE = "Usage: /script LuaProfile.class [report [limit]|reset|budget instructions [milliseconds]]";
+
+	@Override
+	public void execute(Player admin, List<String> args) {
+		LuaProfiler profiler = LuaProfiler.get();
+		String command = "report";
+		if (!args.isEmpty()) {
+			command = args.get(0);
+		}
+
+		try {
+			if ("reset".equals(command)) {
+				profiler.reset();
+				admin.sendPrivateText("Lua profile cleared.");
+			} else if ("report".equals(command)) {
+				int limit = 10;
+				if (args.size() > 1) {
+					limit = Integer.parseInt(args.get(1));
+				}
+				admin.sendPrivateText(profiler.report(limit));
+			} else if ("budget".equals(command) && args.size() > 1) {
+				int timeLimit = profiler.getTimeLimit();
+				if (args.size() > 2) {
+					timeLimit = Integer.parseInt(args.get(2));
+				}
+				profiler.setLimits(Long.parseLong(args.get(1)), timeLimit);
+				admin.sendPrivateText("Lua calls are stopped after " + profiler.getBudget() + " instructions and "
+						+ profiler.getTimeLimit() + " ms (0 means no limit).");
+			} else {
+				admin.sendPrivateText(USAGE);
+			}
+		} catch (NumberFormatException e) {
+			admin.sendPrivateText("Invalid number: " + e.getMessage());
+		}
+	}
+}
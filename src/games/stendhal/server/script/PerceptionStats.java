@@ -0,0 +1,64 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.script;
+
+import java.util.List;
+
+import games.stendhal.server.core.engine.PerceptionStatistics;
+import games.stendhal.server.core.scripting.ScriptImpl;
+import games.stendhal.server.entity.player.Player;
+
+/**
+ * shows which zones, entity classes, attributes and players cause the most
+ * perception traffic
+ *
+ * <p>Usage: /script PerceptionStats.class [on|off|reset|report] [limit]</p>
+ */
+public class PerceptionStats extends ScriptImpl {
+
+	@Override
+	public void execute(Player admin, List<String> args) {
+		PerceptionStatistics statistics = PerceptionStatistics.get();
+		String command = "report";
+		if (!args.isEmpty()) {
+			command = args.get(0);
+		}
+
+		if ("on".equals(command)) {
+			statistics.setEnabled(true);
+			admin.sendPrivateText("Perception statistics enabled.");
+		} else if ("off".equals(command)) {
+			statistics.setEnabled(false);
+			admin.sendPrivateText("Perception statistics disabled.");
+		} else if ("reset".equals(command)) {
+			statistics.reset();
+			admin.sendPrivateText("Perception statistics cleared.");
+		} else if ("report".equals(command)) {
+			if (!statistics.isEnabled()) {
+				admin.sendPrivateText("Perception statistics are disabled, use \"/script PerceptionStats.class on\".");
+				return;
+			}
+			int limit = 10;
+			if (args.size() > 1) {
+				try {
+					limit = Integer.parseInt(args.get(1));
+				} catch (NumberFormatException e) {
+					admin.sendPrivateText("Invalid limit: " + args.get(1));
+					return;
+				}
+			}
+			admin.sendPrivateText(statistics.report(limit));
+		} else {
+			admin.sendPrivateText("Usage: /script PerceptionStats.class [on|off|reset|report] [limit]");
+		}
+	}
+}
@@ -18,8 +18,11 @@ import java.util.List;
 
 import org.apache.log4j.Logger;
 
+import games.stendhal.server.core.engine.dbcommand.StoreCharacterSnapshotCommand;
 import games.stendhal.server.core.scripting.ScriptImpl;
 import games.stendhal.server.entity.player.Player;
+import marauroa.server.db.command.DBCommandPriority;
+import marauroa.server.db.command.DBCommandQueue;
 import marauroa.server.game.container.PlayerEntry;
 import marauroa.server.game.container.PlayerEntryContainer;
 
@@ -35,12 +38,17 @@ public class SaveAllPlayers extends ScriptImpl {
 	public void execute(Player admin, List<String> args) {
 		super.execute(admin, args);
 		for (PlayerEntry entry : PlayerEntryContainer.getContainer()) {
-			try {
-				entry.storeRPObject(entry.object);
-			} catch (SQLException e) {
-				logger.error(e, e);
-			} catch (IOException e) {
-				logger.error(e, e);
+			if (entry.object instanceof Player) {
+				DBCommandQueue.get().enqueue(new StoreCharacterSnapshotCommand(entry.username, entry.character, (Player) entry.object),
+						DBCommandPriority.CRITICAL);
+			} else {
+				try {
+					entry.storeRPObject(entry.object);
+				} catch (SQLException e) {
+					logger.error(e, e);
+				} catch (IOException e) {
+					logger.error(e, e);
+				}
 			}
 		}
 	}
@@ -413,6 +413,27 @@ CREATE TABLE IF NOT EXISTS searchindex
 CREATE INDEX IF NOT EXISTS i_searchindex_searchterm ON searchindex(searchterm);
 CREATE INDEX IF NOT EXISTS i_searchindex_entitytype_entityname ON searchindex(entitytype, entityname);
 
+CREATE TABLE IF NOT EXISTS searchindex_fingerprint
+  (
+  id          INTEGER auto_increment NOT NULL,
+  entitytype  CHAR(1),
+  entityname  VARCHAR(64),
+  fingerprint VARCHAR(64),
+  PRIMARY KEY(id)
+  );
+
+CREATE INDEX IF NOT EXISTS i_searchindex_fingerprint_entitytype_entityname ON searchindex_fingerprint(entitytype, entityname);
+
+
+CREATE TABLE IF NOT EXISTS character_snapshot
+  (
+  object_id   INTEGER NOT NULL,
+  digest      VARCHAR(64),
+  timedate    TIMESTAMP,
+  save_id     BIGINT,
+  PRIMARY KEY(object_id)
+  );
+
 
 CREATE TABLE IF NOT EXISTS group_quest
   (
@@ -0,0 +1,131 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import games.stendhal.server.core.engine.RPClassGenerator;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.transformer.PlayerTransformer;
+import games.stendhal.server.entity.player.Player;
+import marauroa.common.Log4J;
+import marauroa.common.game.Perception;
+import marauroa.common.game.RPObject;
+
+/**
+ * Counts the objects in the delta perceptions of a zone during a fight, in
+ * which players are healed and buddies log on and off.
+ *
+ * <p>Old clients get heals and buddy logins as attributes, which have to be
+ * removed again in the next turn. Newer clients get events, which do not
+ * cause a second change.</p>
+ *
+ * <p>Usage: ant benchmark_combat -Dturns=1000</p>
+ */
+public class CombatPerceptionBenchmark {
+	private static final int PLAYERS = 20;
+	/** players healed in each turn */
+	private static final int HEALS_PER_TURN = 4;
+
+	private final int turns;
+
+	/**
+	 * creates a new CombatPerceptionBenchmark
+	 *
+	 * @param turns number of simulated turns
+	 */
+	public CombatPerceptionBenchmark(int turns) {
+		this.turns = turns;
+	}
+
+	/**
+	 * runs the benchmark
+	 */
+	public void run() {
+		new RPClassGenerator().createRPClasses();
+		System.out.println(String.format(Locale.ENGLISH, "%-30s %10s %16s %16s",
+				"variant", "turns", "objects/turn", "changes/turn"));
+		measure("attributes (old clients)", false);
+		measure("events", true);
+	}
+
+	private void measure(String name, boolean events) {
+		final StendhalRPZone zone = new StendhalRPZone("benchmark_combat_" + events, 64, 64);
+		final List<Player> players = new ArrayList<Player>();
+		for (int i = 0; i < PLAYERS; i++) {
+			final RPObject object = new RPObject();
+			object.put("name", "fighter" + i);
+			final Player player = (Player) new PlayerTransformer().transform(object);
+			player.setTransientEvents(events);
+			player.setPosition(i, i);
+			player.setBaseHP(1000);
+			player.setHP(1000);
+			player.put("buddies", "fighter" + ((i + 1) % PLAYERS), false);
+			zone.add(player);
+			players.add(player);
+		}
+		final Player observer = players.get(0);
+		zone.getPerception(observer, Perception.DELTA);
+		zone.nextTurn();
+
+		long objects = 0;
+		long changes = 0;
+		for (int turn = 0; turn < turns; turn++) {
+			// what Player.logic() does first in every turn
+			for (final Player player : players) {
+				player.clearTransientAttributes();
+			}
+			for (int i = 0; i < HEALS_PER_TURN; i++) {
+				final Player player = players.get((turn * HEALS_PER_TURN + i) % PLAYERS);
+				player.setHP(900);
+				player.heal(100, true);
+			}
+			if (turn % 10 == 0) {
+				final Player buddy = players.get(turn / 10 % PLAYERS);
+				players.get((turn / 10 + PLAYERS - 1) % PLAYERS).notifyOnline(buddy.getName());
+			}
+
+			final Perception perception = zone.getPerception(observer, Perception.DELTA);
+			final Set<String> ids = new HashSet<String>();
+			for (final RPObject object : perception.modifiedAddedList) {
+				ids.add(object.get("id"));
+			}
+			for (final RPObject object : perception.modifiedDeletedList) {
+				ids.add(object.get("id"));
+			}
+			objects += ids.size();
+			changes += perception.modifiedAddedList.size() + perception.modifiedDeletedList.size();
+			zone.nextTurn();
+		}
+		System.out.println(String.format(Locale.ENGLISH, "%-30s %10d %16.2f %16.2f",
+				name, turns, objects / (double) turns, changes / (double) turns));
+	}
+
+	/**
+	 * starts the benchmark
+	 *
+	 * @param args number of turns
+	 */
+	public static void main(String[] args) {
+		Log4J.init();
+		int turns = 1000;
+		if (args.length > 0) {
+			turns = Integer.parseInt(args[0]);
+		}
+		new CombatPerceptionBenchmark(turns).run();
+		System.exit(0);
+	}
+}
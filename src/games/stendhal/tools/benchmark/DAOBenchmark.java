@@ -0,0 +1,459 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Lists;
+
+import games.stendhal.server.core.engine.ItemLogQueue;
+import games.stendhal.server.core.engine.RPClassGenerator;
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.db.AchievementDAO;
+import games.stendhal.server.core.engine.db.ItemLogBatch;
+import games.stendhal.server.core.engine.db.PostmanDAO;
+import games.stendhal.server.core.engine.db.StendhalHallOfFameDAO;
+import games.stendhal.server.core.engine.db.StendhalItemDAO;
+import games.stendhal.server.core.engine.db.StendhalKillLogDAO;
+import games.stendhal.server.core.engine.dbcommand.DeletePendingAchievementDetailsCommand;
+import games.stendhal.server.core.engine.dbcommand.DumpCreaturesCommand;
+import games.stendhal.server.core.engine.dbcommand.DumpItemsCommand;
+import games.stendhal.server.core.engine.dbcommand.DumpShopsCommand;
+import games.stendhal.server.core.engine.dbcommand.DumpSpeakerNPCsCommand;
+import games.stendhal.server.core.engine.dbcommand.DumpZonesCommand;
+import games.stendhal.server.core.engine.dbcommand.GetCharacterCreationDateCommand;
+import games.stendhal.server.core.engine.dbcommand.GetPostmanMessagesCommand;
+import games.stendhal.server.core.engine.dbcommand.LogKillEventCommand;
+import games.stendhal.server.core.engine.dbcommand.LogMergeItemEventCommand;
+import games.stendhal.server.core.engine.dbcommand.LogSimpleItemEventCommand;
+import games.stendhal.server.core.engine.dbcommand.LogSplitItemEventCommand;
+import games.stendhal.server.core.engine.dbcommand.LogTradeEventCommand;
+import games.stendhal.server.core.engine.dbcommand.QueryCanonicalCharacterNamesCommand;
+import games.stendhal.server.core.engine.dbcommand.ReadAchievementsForPlayerCommand;
+import games.stendhal.server.core.engine.dbcommand.ReadCharactersFromHallOfFameCommand;
+import games.stendhal.server.core.engine.dbcommand.ReadGroupQuestCommand;
+import games.stendhal.server.core.engine.dbcommand.ReadHallOfFamePointsCommand;
+import games.stendhal.server.core.engine.dbcommand.ReadPendingAchievementDetailsCommand;
+import games.stendhal.server.core.engine.dbcommand.SetOnlineStatusCommand;
+import games.stendhal.server.core.engine.dbcommand.StoreMessageCommand;
+import games.stendhal.server.core.engine.dbcommand.UpdateGroupQuestCommand;
+import games.stendhal.server.core.engine.dbcommand.UpdateSearchIndexCommand;
+import games.stendhal.server.core.engine.dbcommand.WriteHallOfFamePointsCommand;
+import games.stendhal.server.core.engine.dbcommand.WriteReachedAchievementCommand;
+import games.stendhal.server.core.engine.dbcommand.WriteSearchIndexChunkCommand;
+import games.stendhal.server.core.engine.transformer.PlayerTransformer;
+import games.stendhal.server.core.rp.achievement.Achievement;
+import games.stendhal.server.core.rp.achievement.Category;
+import games.stendhal.server.core.rp.searchindex.SearchIndexEntry;
+import games.stendhal.server.core.rp.searchindex.SearchIndexManager;
+import games.stendhal.server.core.rule.EntityManager;
+import games.stendhal.server.entity.creature.Creature;
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.player.Player;
+import marauroa.common.Configuration;
+import marauroa.common.Log4J;
+import marauroa.common.game.RPObject;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.db.command.DBCommand;
+import marauroa.server.db.command.DBCommandQueue;
+import marauroa.server.game.db.AccountDAO;
+import marauroa.server.game.db.CharacterDAO;
+import marauroa.server.game.db.DAORegister;
+import marauroa.server.game.db.DatabaseFactory;
+import marauroa.server.game.dbcommand.StoreCharacterCommand;
+
+/**
+ * Measures the database side cost of the Stendhal DAOs.
+ *
+ * <p>The benchmark starts StendhalPlayerDatabase on an in-memory H2 database,
+ * fills it with synthetic players, kills, items and messages and then
+ * executes every DBCommand of games.stendhal.server.core.engine.dbcommand
+ * repeatedly, each in its own transaction. Throughput and latency
+ * percentiles are printed as a table.</p>
+ *
+ * <p>Usage: ant benchmark_db -Dplayers=1000 -Diterations=500</p>
+ */
+public class DAOBenchmark {
+	private static Logger logger = Logger.getLogger(DAOBenchmark.class);
+
+	private static final String JDBC_URL = "jdbc:h2:mem:stendhalbenchmark;DB_CLOSE_DELAY=-1";
+	private static final String[] FAME_TYPES = {"A", "B", "D", "F", "M", "P", "R", "T", "W", "X"};
+	private static final String[] ITEMS = {"money", "dagger", "leather armor", "potion", "carrot"};
+	private static final String[] CREATURES = {"rat", "wolf", "orc", "goblin", "troll"};
+	private static final String GROUP_QUEST = "benchmark_group_quest";
+
+	/** number of kills logged per player during setup */
+	private static final int KILLS_PER_PLAYER = 20;
+	/** number of item events logged per player during setup */
+	private static final int ITEM_EVENTS_PER_PLAYER = 50;
+	/** number of messages stored per player during setup */
+	private static final int MESSAGES_PER_PLAYER = 5;
+	/** number of buddies per player */
+	private static final int BUDDIES_PER_PLAYER = 10;
+	/** number of players which are created in one transaction during setup */
+	private static final int SETUP_CHUNK_SIZE = 100;
+
+	private final int playerCount;
+	private final int iterations;
+	private final Random random = new Random(42);
+	private final List<Player> players = new ArrayList<Player>();
+	private final List<LatencyRecorder> results = new ArrayList<LatencyRecorder>();
+	private List<Integer> achievementIds;
+	private EntityManager entityManager;
+
+	/**
+	 * creates a command for one iteration of a scenario
+	 */
+	private interface CommandFactory {
+		/**
+		 * creates a command
+		 *
+		 * @param iteration number of the iteration
+		 * @return DBCommand
+		 * @throws Exception in case of an unexpected error
+		 */
+		DBCommand create(int iteration) throws Exception;
+	}
+
+	/**
+	 * creates a new DAOBenchmark
+	 *
+	 * @param playerCount number of synthetic players
+	 * @param iterations number of measured executions per command
+	 */
+	public DAOBenchmark(int playerCount, int iterations) {
+		this.playerCount = playerCount;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * configures marauroa to use an in-memory H2 database and initializes it
+	 *
+	 * @throws Exception in case of an unexpected error
+	 */
+	private void initializeDatabase() throws Exception {
+		Configuration.setConfigurationPersitance(false);
+		Configuration configuration = Configuration.getConfiguration();
+		configuration.set("database_implementation", "games.stendhal.server.core.engine.StendhalPlayerDatabase");
+		configuration.set("factory_implementation", "games.stendhal.server.core.engine.StendhalRPObjectFactory");
+		configuration.set("database_adapter", "marauroa.server.db.adapter.H2DatabaseAdapter");
+		configuration.set("jdbc_url", JDBC_URL);
+		configuration.set("jdbc_class", "org.h2.Driver");
+
+		new RPClassGenerator().createRPClasses();
+		new DatabaseFactory().initializeDatabase();
+		entityManager = SingletonRepository.getEntityManager();
+	}
+
+	/**
+	 * fills the database with synthetic data
+	 *
+	 * @throws Exception in case of an unexpected error
+	 */
+	private void populate() throws Exception {
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < playerCount; i++) {
+			players.add(createPlayer("bench" + i));
+		}
+
+		for (List<Player> chunk : Lists.partition(players, SETUP_CHUNK_SIZE)) {
+			DBTransaction transaction = TransactionPool.get().beginWork();
+			try {
+				for (Player player : chunk) {
+					populatePlayer(transaction, player);
+				}
+				TransactionPool.get().commit(transaction);
+			} catch (Exception e) {
+				TransactionPool.get().rollback(transaction);
+				throw e;
+			}
+		}
+
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			AchievementDAO achievementDAO = DAORegister.get().get(AchievementDAO.class);
+			achievementIds = new ArrayList<Integer>();
+			for (int i = 0; i < 50; i++) {
+				Achievement achievement = new Achievement("benchmark." + i, "Benchmark " + i, Category.EXPERIENCE,
+						"benchmark achievement", 10, true, null);
+				achievementIds.add(Integer.valueOf(achievementDAO.insertAchievement(transaction, achievement)));
+			}
+			TransactionPool.get().commit(transaction);
+		} catch (Exception e) {
+			TransactionPool.get().rollback(transaction);
+			throw e;
+		}
+		System.out.println("Created " + playerCount + " players in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * writes the character and its history
+	 *
+	 * @param transaction DBTransaction
+	 * @param player player
+	 * @throws Exception in case of an unexpected error
+	 */
+	private void populatePlayer(DBTransaction transaction, Player player) throws Exception {
+		Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+		String name = player.getName();
+		DAORegister.get().get(AccountDAO.class).addPlayer(transaction, name, new byte[] {1, 2, 3}, name + "@example.com", timestamp);
+		DAORegister.get().get(CharacterDAO.class).addCharacter(transaction, name, name, player, timestamp);
+
+		StendhalHallOfFameDAO hallOfFameDAO = DAORegister.get().get(StendhalHallOfFameDAO.class);
+		for (String fametype : FAME_TYPES) {
+			hallOfFameDAO.setHallOfFamePoints(transaction, name, fametype, random.nextInt(10000));
+		}
+
+		StendhalKillLogDAO killLogDAO = DAORegister.get().get(StendhalKillLogDAO.class);
+		for (int i = 0; i < KILLS_PER_PLAYER; i++) {
+			killLogDAO.logKill(transaction, randomCreature(), player, new Timestamp(timestamp.getTime() - random.nextInt(30) * 86400000L));
+		}
+
+		ItemLogBatch batch = DAORegister.get().get(StendhalItemDAO.class).createItemLogBatch(transaction);
+		for (int i = 0; i < ITEM_EVENTS_PER_PLAYER; i++) {
+			Item item = randomItem();
+			batch.assignIDIfNotPresent(item, timestamp);
+			batch.writeEntry(timestamp, item, player, "ground-to-slot", "int_semos_bank", "1 1", "bag", "1");
+		}
+		batch.flush();
+
+		PostmanDAO postmanDAO = DAORegister.get().get(PostmanDAO.class);
+		for (int i = 0; i < MESSAGES_PER_PLAYER; i++) {
+			postmanDAO.storeMessage(transaction, randomPlayer().getName(), name, "benchmark message " + i, "P", timestamp);
+		}
+	}
+
+	/**
+	 * creates a synthetic player
+	 *
+	 * @param name name of the player
+	 * @return Player
+	 */
+	private Player createPlayer(String name) {
+		RPObject object = new RPObject();
+		object.put("name", name);
+		Player player = (Player) new PlayerTransformer().transform(object);
+		player.setName(name);
+		player.setLevel(random.nextInt(300));
+		player.setXP(random.nextInt(1000000));
+		for (int i = 0; i < BUDDIES_PER_PLAYER; i++) {
+			player.addBuddy("bench" + random.nextInt(playerCount), false);
+		}
+		for (int i = 0; i < 20; i++) {
+			player.setQuest("benchmark_quest_" + i, "done;" + random.nextInt(100));
+		}
+		return player;
+	}
+
+	private Player randomPlayer() {
+		if (players.isEmpty()) {
+			return null;
+		}
+		return players.get(random.nextInt(players.size()));
+	}
+
+	private Item randomItem() {
+		return entityManager.getItem(ITEMS[random.nextInt(ITEMS.length)]);
+	}
+
+	private Creature randomCreature() {
+		return entityManager.getCreature(CREATURES[random.nextInt(CREATURES.length)]);
+	}
+
+	/**
+	 * executes a scenario
+	 *
+	 * @param name name of the scenario
+	 * @param count number of measured executions
+	 * @param factory factory for the commands
+	 */
+	private void run(String name, int count, CommandFactory factory) {
+		LatencyRecorder recorder = new LatencyRecorder(name);
+		int warmup = Math.max(1, count / 10);
+		for (int i = 0; i < warmup + count; i++) {
+			DBTransaction transaction = TransactionPool.get().beginWork();
+			try {
+				DBCommand command = factory.create(i);
+				command.setEnqueueTime(new Timestamp(System.currentTimeMillis()));
+				long start = System.nanoTime();
+				command.execute(transaction);
+				TransactionPool.get().commit(transaction);
+				long duration = System.nanoTime() - start;
+				if (i >= warmup) {
+					recorder.record(duration);
+				}
+			} catch (Exception e) {
+				logger.warn("Error executing " + name, e);
+				TransactionPool.get().rollback(transaction);
+				recorder.recordError();
+			}
+		}
+		results.add(recorder);
+		System.out.println(recorder.format());
+	}
+
+	/**
+	 * measures the time it takes to write item log events through the
+	 * ItemLogQueue, including the hand over to the database thread
+	 *
+	 * @param count number of measured flushes
+	 * @throws InterruptedException if the benchmark is interrupted
+	 */
+	private void runItemLogQueue(int count) throws InterruptedException {
+		LatencyRecorder recorder = new LatencyRecorder("FlushItemLogCommand (via ItemLogQueue)");
+		ItemLogQueue queue = ItemLogQueue.get();
+		for (int i = 0; i < count; i++) {
+			long expected = queue.getEventsWritten() + ItemLogQueue.MAX_BATCH_SIZE;
+			long start = System.nanoTime();
+			for (int j = 0; j < ItemLogQueue.MAX_BATCH_SIZE; j++) {
+				queue.add(new LogSimpleItemEventCommand(randomItem(), randomPlayer(), "ground-to-slot", "int_semos_bank", "1 1", "bag", "1"));
+			}
+			while (queue.getEventsWritten() < expected) {
+				Thread.sleep(1);
+			}
+			recorder.record(System.nanoTime() - start);
+		}
+		results.add(recorder);
+		System.out.println(recorder.format());
+	}
+
+	/**
+	 * waits until the database thread has processed all commands
+	 *
+	 * @throws InterruptedException if the benchmark is interrupted
+	 */
+	private void awaitDBCommandQueue() throws InterruptedException {
+		while (DBCommandQueue.get().size() > 0) {
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * executes all scenarios
+	 *
+	 * @throws Exception in case of an unexpected error
+	 */
+	private void runScenarios() throws Exception {
+		System.out.println(LatencyRecorder.formatHeader());
+		final int heavy = Math.max(3, iterations / 50);
+
+		// reads
+		run("GetCharacterCreationDateCommand", iterations, i -> new GetCharacterCreationDateCommand(randomPlayer().getName()));
+		run("ReadHallOfFamePointsCommand", iterations, i -> new ReadHallOfFamePointsCommand(randomPlayer().getName(), FAME_TYPES[i % FAME_TYPES.length]));
+		run("ReadCharactersFromHallOfFameCommand", iterations, i -> new ReadCharactersFromHallOfFameCommand(FAME_TYPES[i % FAME_TYPES.length], 10, i % 2 == 0));
+		run("ReadAchievementsForPlayerCommand", iterations, i -> new ReadAchievementsForPlayerCommand(randomPlayer()));
+		run("ReadPendingAchievementDetailsCommand", iterations, i -> new ReadPendingAchievementDetailsCommand(randomPlayer()));
+		run("ReadGroupQuestCommand", iterations, i -> new ReadGroupQuestCommand(GROUP_QUEST));
+		run("QueryCanonicalCharacterNamesCommand", iterations, i -> new QueryCanonicalCharacterNamesCommand(randomPlayer(),
+				Arrays.asList(randomPlayer().getName().toUpperCase(), randomPlayer().getName(), "unknown" + i)));
+
+		// writes
+		run("SetOnlineStatusCommand", iterations, i -> new SetOnlineStatusCommand(randomPlayer().getName(), i % 2 == 0));
+		run("WriteHallOfFamePointsCommand", iterations, i -> new WriteHallOfFamePointsCommand(randomPlayer().getName(), FAME_TYPES[i % FAME_TYPES.length], 1, true));
+		run("WriteReachedAchievementCommand", iterations, i -> new WriteReachedAchievementCommand(
+				achievementIds.get(i % achievementIds.size()), randomPlayer().getName(), true));
+		run("DeletePendingAchievementDetailsCommand", iterations, i -> new DeletePendingAchievementDetailsCommand(randomPlayer()));
+		run("UpdateGroupQuestCommand", iterations, i -> new UpdateGroupQuestCommand(GROUP_QUEST, ITEMS[i % ITEMS.length], randomPlayer().getName(), Integer.valueOf(1)));
+		run("StoreMessageCommand", iterations, i -> new StoreMessageCommand(randomPlayer().getName(), randomPlayer().getName(), "benchmark message " + i, "P"));
+		run("GetPostmanMessagesCommand", iterations, i -> new GetPostmanMessagesCommand(randomPlayer()));
+		run("LogKillEventCommand", iterations, i -> new LogKillEventCommand(randomCreature(), randomPlayer()));
+		run("LogTradeEventCommand", iterations, i -> new LogTradeEventCommand(randomPlayer(), randomItem(), 1, random.nextInt(1000)));
+		run("LogSimpleItemEventCommand", iterations, i -> new LogSimpleItemEventCommand(randomItem(), randomPlayer(), "ground-to-slot", "int_semos_bank", "1 1", "bag", "1"));
+		run("LogMergeItemEventCommand", iterations, i -> new LogMergeItemEventCommand(randomPlayer(), randomItem(), randomItem()));
+		run("LogSplitItemEventCommand", iterations, i -> new LogSplitItemEventCommand(randomPlayer(), randomItem(), randomItem()));
+		run("StoreCharacterCommand (marauroa)", iterations, i -> {
+			Player player = randomPlayer();
+			if (i % 2 == 0) {
+				player.setXP(player.getXP() + 1);
+			}
+			return new StoreCharacterCommand(player.getName(), player.getName(), player);
+		});
+		runItemLogQueue(heavy);
+
+		// dumps of game data
+		SearchIndexManager searchIndexManager = new SearchIndexManager();
+		final Map<String, String> fingerprints = searchIndexManager.generateFingerprints();
+		final List<List<String>> chunks = Lists.partition(new ArrayList<String>(fingerprints.keySet()), 200);
+		run("WriteSearchIndexChunkCommand", Math.max(1, Math.min(heavy, chunks.size())), i -> {
+			List<String> keys = chunks.get(i % chunks.size());
+			Set<SearchIndexEntry> entries = searchIndexManager.generateIndex(keys);
+			return new WriteSearchIndexChunkCommand(keys, entries, fingerprints);
+		});
+		run("UpdateSearchIndexCommand", heavy, i -> new UpdateSearchIndexCommand());
+		awaitDBCommandQueue();
+		run("DumpCreaturesCommand", heavy, i -> new DumpCreaturesCommand());
+		run("DumpItemsCommand", heavy, i -> new DumpItemsCommand());
+		run("DumpShopsCommand", heavy, i -> new DumpShopsCommand());
+		run("DumpSpeakerNPCsCommand", heavy, i -> new DumpSpeakerNPCsCommand());
+		run("DumpZonesCommand", heavy, i -> new DumpZonesCommand());
+	}
+
+	/**
+	 * prints the summary
+	 */
+	private void printSummary() {
+		System.out.println();
+		System.out.println("Summary (" + playerCount + " players, " + iterations + " iterations):");
+		System.out.println(LatencyRecorder.formatHeader());
+		int errors = 0;
+		for (LatencyRecorder recorder : results) {
+			System.out.println(recorder.format());
+			errors += recorder.getErrors();
+		}
+		if (errors > 0) {
+			System.out.println(errors + " commands failed, see log for details.");
+		}
+	}
+
+	/**
+	 * runs the benchmark
+	 *
+	 * @throws Exception in case of an unexpected error
+	 */
+	public void run() throws Exception {
+		initializeDatabase();
+		populate();
+		runScenarios();
+		awaitDBCommandQueue();
+		printSummary();
+		DBCommandQueue.get().finish();
+	}
+
+	/**
+	 * starts the benchmark
+	 *
+	 * @param args [number of players] [number of iterations]
+	 * @throws Exception in case of an unexpected error
+	 */
+	public static void main(String[] args) throws Exception {
+		Log4J.init();
+		int playerCount = 1000;
+		int iterations = 500;
+		if (args.length > 0) {
+			playerCount = Integer.parseInt(args[0]);
+		}
+		if (args.length > 1) {
+			iterations = Integer.parseInt(args[1]);
+		}
+		new DAOBenchmark(playerCount, iterations).run();
+		System.exit(0);
+	}
+}
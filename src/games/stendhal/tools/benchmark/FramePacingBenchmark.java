@@ -0,0 +1,123 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.Random;
+
+import games.stendhal.client.FramePacer;
+import marauroa.common.Log4J;
+
+/**
+ * Compares the frame interval jitter and the CPU use of the old millisecond
+ * timer pacing and the nanosecond deadline pacing of the game loop. The
+ * frames do a random amount of busy work, like the game loop.
+ *
+ * <p>Usage: ant benchmark_pacing -Dframes=500</p>
+ */
+public class FramePacingBenchmark {
+	private static final int FPS = 25;
+	private static final int IDLE_FPS = 10;
+	/** longest simulated frame work in milliseconds */
+	private static final int MAX_WORK = 12;
+
+	private final int frames;
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * creates a new FramePacingBenchmark
+	 *
+	 * @param frames number of frames for each mode
+	 */
+	public FramePacingBenchmark(int frames) {
+		this.frames = frames;
+	}
+
+	/**
+	 * runs the benchmark
+	 */
+	public void run() {
+		System.out.println(String.format(Locale.ENGLISH, "%-8s %-6s %8s %10s %10s %10s %10s",
+				"pacing", "rate", "frames", "mean ms", "stddev ms", "max ms", "cpu %"));
+		measure("millis", new FramePacer(FPS, IDLE_FPS, false), false);
+		measure("nanos", new FramePacer(FPS, IDLE_FPS, true), false);
+		measure("millis", new FramePacer(FPS, IDLE_FPS, false), true);
+		measure("nanos", new FramePacer(FPS, IDLE_FPS, true), true);
+	}
+
+	private void measure(String mode, FramePacer pacer, boolean idle) {
+		pacer.setIdle(idle);
+		Random random = new Random(42);
+		long[] intervals = new long[frames];
+		long cpuStart = threads.getCurrentThreadCpuTime();
+		long start = System.nanoTime();
+		long last = 0;
+		// one extra frame to get the start time for the first interval
+		for (int frame = -1; frame < frames; frame++) {
+			pacer.startFrame();
+			long now = System.nanoTime();
+			if (frame >= 0) {
+				intervals[frame] = now - last;
+			}
+			last = now;
+			work(random.nextInt(MAX_WORK * 1000000));
+			pacer.waitForNextFrame();
+		}
+		long cpu = threads.getCurrentThreadCpuTime() - cpuStart;
+		long elapsed = System.nanoTime() - start;
+
+		double sum = 0;
+		long max = 0;
+		for (long interval : intervals) {
+			sum += interval;
+			max = Math.max(max, interval);
+		}
+		double mean = sum / frames;
+		double variance = 0;
+		for (long interval : intervals) {
+			variance += (interval - mean) * (interval - mean);
+		}
+		double stddev = Math.sqrt(variance / frames);
+		System.out.println(String.format(Locale.ENGLISH, "%-8s %-6s %8d %10.3f %10.3f %10.3f %10.1f",
+				mode, idle ? "idle" : "normal", frames, mean / 1000000, stddev / 1000000, max / 1000000.0,
+				100.0 * cpu / elapsed));
+	}
+
+	/**
+	 * keeps the processor busy, like a game loop frame
+	 *
+	 * @param nanos duration
+	 */
+	private static void work(long nanos) {
+		long end = System.nanoTime() + nanos;
+		while (System.nanoTime() < end) {
+			// busy
+		}
+	}
+
+	/**
+	 * starts the benchmark
+	 *
+	 * @param args number of frames
+	 */
+	public static void main(String[] args) {
+		Log4J.init();
+		int frames = 500;
+		if (args.length > 0) {
+			frames = Integer.parseInt(args[0]);
+		}
+		new FramePacingBenchmark(frames).run();
+		System.exit(0);
+	}
+}
@@ -0,0 +1,139 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import games.stendhal.server.core.engine.PerceptionStatistics;
+import games.stendhal.server.core.engine.RPClassGenerator;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.transformer.PlayerTransformer;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.creature.Creature;
+import games.stendhal.server.entity.player.Player;
+import marauroa.common.Log4J;
+import marauroa.common.game.Perception;
+import marauroa.common.game.RPObject;
+
+/**
+ * Simulates a crowded 256x256 zone, in which players and creatures walk
+ * around, and estimates how many bytes each player receives per turn with
+ * and without an interest radius.
+ *
+ * <p>Usage: ant benchmark_interest -Dturns=500</p>
+ */
+public class InterestBenchmark {
+	private static final int SIZE = 256;
+	private static final int PLAYERS = 40;
+	private static final int CREATURES = 400;
+	private static final int[] RADII = {0, 64, 48, 32};
+
+	private final int turns;
+
+	/**
+	 * creates a new InterestBenchmark
+	 *
+	 * @param turns number of simulated turns
+	 */
+	public InterestBenchmark(int turns) {
+		this.turns = turns;
+	}
+
+	/**
+	 * runs the benchmark
+	 */
+	public void run() {
+		new RPClassGenerator().createRPClasses();
+		System.out.println(String.format(Locale.ENGLISH, "%-10s %10s %18s %18s %12s",
+				"radius", "turns", "objects/player", "bytes/player", "ms/turn"));
+		for (final int radius : RADII) {
+			measure(radius);
+		}
+	}
+
+	private void measure(int radius) {
+		// the same walks for every radius
+		final Random random = new Random(42);
+		final StendhalRPZone zone = new StendhalRPZone("benchmark_interest_" + radius, SIZE, SIZE);
+		zone.setInterestRadius(radius);
+		final List<Player> players = new ArrayList<Player>();
+		final List<Entity> walkers = new ArrayList<Entity>();
+		for (int i = 0; i < PLAYERS; i++) {
+			final RPObject object = new RPObject();
+			object.put("name", "walker" + i);
+			final Player player = (Player) new PlayerTransformer().transform(object);
+			player.setPosition(random.nextInt(SIZE), random.nextInt(SIZE));
+			zone.add(player);
+			players.add(player);
+			walkers.add(player);
+		}
+		for (int i = 0; i < CREATURES; i++) {
+			final Creature creature = new Creature();
+			creature.setPosition(random.nextInt(SIZE), random.nextInt(SIZE));
+			zone.add(creature);
+			walkers.add(creature);
+		}
+		for (final Player player : players) {
+			zone.getPerception(player, Perception.SYNC);
+		}
+		zone.nextTurn();
+
+		long objects = 0;
+		long bytes = 0;
+		final long start = System.nanoTime();
+		for (int turn = 0; turn < turns; turn++) {
+			for (final Entity walker : walkers) {
+				if (random.nextInt(4) == 0) {
+					final int x = Math.max(0, Math.min(SIZE - 1, walker.getX() + random.nextInt(3) - 1));
+					final int y = Math.max(0, Math.min(SIZE - 1, walker.getY() + random.nextInt(3) - 1));
+					walker.setPosition(x, y);
+					walker.notifyWorldAboutChanges();
+				}
+			}
+			for (final Player player : players) {
+				final Perception perception = zone.getPerception(player, Perception.DELTA);
+				for (final List<RPObject> list : Arrays.asList(perception.addedList, perception.modifiedAddedList,
+						perception.modifiedDeletedList, perception.deletedList)) {
+					for (final RPObject object : list) {
+						objects++;
+						bytes += PerceptionStatistics.estimateSize(object);
+					}
+				}
+			}
+			zone.nextTurn();
+		}
+		final double millis = (System.nanoTime() - start) / 1000000.0;
+		final double perceptions = turns * (double) PLAYERS;
+		System.out.println(String.format(Locale.ENGLISH, "%-10s %10d %18.1f %18.1f %12.3f",
+				(radius > 0) ? Integer.toString(radius) : "whole zone", turns,
+				objects / perceptions, bytes / perceptions, millis / turns));
+	}
+
+	/**
+	 * starts the benchmark
+	 *
+	 * @param args number of turns
+	 */
+	public static void main(String[] args) {
+		Log4J.init();
+		int turns = 500;
+		if (args.length > 0) {
+			turns = Integer.parseInt(args[0]);
+		}
+		new InterestBenchmark(turns).run();
+		System.exit(0);
+	}
+}
@@ -0,0 +1,135 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.core.engine.RPClassGenerator;
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.rule.EntityManager;
+import games.stendhal.server.core.rule.defaultruleset.DefaultCreature;
+import games.stendhal.server.core.rule.defaultruleset.DefaultItem;
+import marauroa.common.Log4J;
+
+/**
+ * Measures how many items, creatures and spells can be created per second.
+ *
+ * <p>The benchmark loads the item, creature and spell definitions and
+ * creates every configured type repeatedly, as it happens when creatures
+ * respawn and drop loot. The first round is not measured, so that the
+ * factories and shared attributes are initialized.</p>
+ *
+ * <p>Usage: ant benchmark_items -Drounds=200</p>
+ */
+public class ItemFactoryBenchmark {
+	private static Logger logger = Logger.getLogger(ItemFactoryBenchmark.class);
+
+	private final int rounds;
+	private final List<LatencyRecorder> results = new ArrayList<LatencyRecorder>();
+
+	/**
+	 * creates a new ItemFactoryBenchmark
+	 *
+	 * @param rounds number of times each type is created
+	 */
+	public ItemFactoryBenchmark(int rounds) {
+		this.rounds = rounds;
+	}
+
+	/**
+	 * runs the benchmark
+	 */
+	public void run() {
+		new RPClassGenerator().createRPClasses();
+		final EntityManager entityManager = SingletonRepository.getEntityManager();
+
+		final LatencyRecorder items = new LatencyRecorder("items");
+		for (int i = 0; i <= rounds; i++) {
+			for (final DefaultItem item : entityManager.getDefaultItems()) {
+				final long start = System.nanoTime();
+				final Object created = item.getItem();
+				final long duration = System.nanoTime() - start;
+				record(items, i, created, duration);
+			}
+		}
+		results.add(items);
+
+		final LatencyRecorder creatures = new LatencyRecorder("creatures");
+		for (int i = 0; i <= rounds; i++) {
+			for (final DefaultCreature creature : entityManager.getDefaultCreatures()) {
+				final long start = System.nanoTime();
+				final Object created = creature.getCreature();
+				final long duration = System.nanoTime() - start;
+				record(creatures, i, created, duration);
+			}
+		}
+		results.add(creatures);
+
+		final LatencyRecorder spells = new LatencyRecorder("spells");
+		for (int i = 0; i <= rounds; i++) {
+			for (final String name : entityManager.getConfiguredSpells()) {
+				final long start = System.nanoTime();
+				final Object created = entityManager.getSpell(name);
+				final long duration = System.nanoTime() - start;
+				record(spells, i, created, duration);
+			}
+		}
+		results.add(spells);
+
+		printResults();
+	}
+
+	private void record(LatencyRecorder recorder, int round, Object created, long duration) {
+		if (created == null) {
+			if (round == 0) {
+				recorder.recordError();
+			}
+			return;
+		}
+		// the first round warms up the factories
+		if (round > 0) {
+			recorder.record(duration);
+		}
+	}
+
+	private void printResults() {
+		System.out.println("Results (" + rounds + " rounds):");
+		System.out.println(LatencyRecorder.formatHeader());
+		int errors = 0;
+		for (final LatencyRecorder recorder : results) {
+			System.out.println(recorder.format());
+			errors += recorder.getErrors();
+		}
+		if (errors > 0) {
+			System.out.println(errors + " types could not be created, see log for details.");
+			logger.warn(errors + " types could not be created");
+		}
+	}
+
+	/**
+	 * starts the benchmark
+	 *
+	 * @param args number of rounds
+	 */
+	public static void main(String[] args) {
+		Log4J.init();
+		int rounds = 200;
+		if (args.length > 0) {
+			rounds = Integer.parseInt(args[0]);
+		}
+		new ItemFactoryBenchmark(rounds).run();
+		System.exit(0);
+	}
+}
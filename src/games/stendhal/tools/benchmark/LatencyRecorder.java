@@ -0,0 +1,145 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * collects the latencies of one benchmark scenario
+ */
+class LatencyRecorder {
+	private final String name;
+	private long[] samples = new long[256];
+	private int count;
+	private int errors;
+	private long totalNanos;
+
+	/**
+	 * creates a new LatencyRecorder
+	 *
+	 * @param name name of the scenario
+	 */
+	LatencyRecorder(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * records the duration of one operation
+	 *
+	 * @param nanos duration in nanoseconds
+	 */
+	void record(long nanos) {
+		if (count == samples.length) {
+			samples = Arrays.copyOf(samples, samples.length * 2);
+		}
+		samples[count] = nanos;
+		count++;
+		totalNanos += nanos;
+	}
+
+	/**
+	 * counts an operation which failed
+	 */
+	void recordError() {
+		errors++;
+	}
+
+	/**
+	 * gets the name of the scenario
+	 *
+	 * @return name
+	 */
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * gets the number of successful operations
+	 *
+	 * @return number of operations
+	 */
+	int getCount() {
+		return count;
+	}
+
+	/**
+	 * gets the number of failed operations
+	 *
+	 * @return number of operations
+	 */
+	int getErrors() {
+		return errors;
+	}
+
+	/**
+	 * gets the number of operations per second
+	 *
+	 * @return throughput
+	 */
+	double getThroughput() {
+		if (totalNanos == 0) {
+			return 0;
+		}
+		return count * 1000000000.0 / totalNanos;
+	}
+
+	/**
+	 * gets the mean latency
+	 *
+	 * @return latency in milliseconds
+	 */
+	double getMeanMillis() {
+		if (count == 0) {
+			return 0;
+		}
+		return totalNanos / (count * 1000000.0);
+	}
+
+	/**
+	 * gets a percentile of the latency
+	 *
+	 * @param percentile percentile between 0 and 100
+	 * @return latency in milliseconds
+	 */
+	double getPercentileMillis(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long[] sorted = Arrays.copyOf(samples, count);
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+		index = Math.max(0, Math.min(count - 1, index));
+		return sorted[index] / 1000000.0;
+	}
+
+	/**
+	 * gets the header line for {@link #format()}
+	 *
+	 * @return header line
+	 */
+	static String formatHeader() {
+		return String.format(Locale.ENGLISH, "%-42s %7s %6s %10s %9s %9s %9s %9s %9s",
+				"command", "ops", "errors", "ops/s", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms");
+	}
+
+	/**
+	 * formats the results as one line of a table
+	 *
+	 * @return result line
+	 */
+	String format() {
+		return String.format(Locale.ENGLISH, "%-42s %7d %6d %10.1f %9.3f %9.3f %9.3f %9.3f %9.3f",
+				name, count, errors, getThroughput(), getMeanMillis(), getPercentileMillis(50),
+				getPercentileMillis(95), getPercentileMillis(99), getPercentileMillis(100));
+	}
+}
@@ -0,0 +1,164 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import static games.stendhal.common.Outfits.LAYER_NAMES;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import games.stendhal.client.OutfitStore;
+import games.stendhal.client.gui.OutfitColor;
+import marauroa.common.Log4J;
+
+/**
+ * Measures composing random outfits directly, in the background and from the
+ * outfit cache.
+ *
+ * <p>Usage: ant benchmark_outfits -Doutfits=500</p>
+ */
+public class OutfitBenchmark {
+	/** outfit directory */
+	private static final String OUTFITS = "data/sprites/outfit";
+
+	private final int count;
+	private final Random random = new Random(42);
+	/** available image indices of each layer */
+	private final List<List<Integer>> indices = new ArrayList<>();
+
+	/**
+	 * creates a new OutfitBenchmark
+	 *
+	 * @param count number of composed outfits
+	 */
+	public OutfitBenchmark(int count) {
+		this.count = count;
+		for (String layer : LAYER_NAMES) {
+			List<Integer> available = new ArrayList<>();
+			String[] files = new File(OUTFITS, layer).list();
+			if (files != null) {
+				for (String file : files) {
+					// only the plain images, such as 012.png
+					if (file.matches("[0-9]{3}\\.png")) {
+						available.add(Integer.valueOf(file.substring(0, 3)));
+					}
+				}
+			}
+			if (available.isEmpty()) {
+				available.add(0);
+			}
+			indices.add(available);
+		}
+	}
+
+	/**
+	 * creates random outfit codes
+	 *
+	 * @return outfit codes
+	 */
+	private List<String> createOutfits() {
+		List<String> outfits = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			StringBuilder sb = new StringBuilder();
+			for (int layer = 0; layer < LAYER_NAMES.size(); layer++) {
+				List<Integer> available = indices.get(layer);
+				if (layer > 0) {
+					sb.append(',');
+				}
+				sb.append(LAYER_NAMES.get(layer));
+				sb.append('=');
+				sb.append(available.get(random.nextInt(available.size())));
+			}
+			outfits.add(sb.toString());
+		}
+		return outfits;
+	}
+
+	/**
+	 * runs the benchmark
+	 *
+	 * @throws InterruptedException if interrupted while waiting for the
+	 * 	background composition
+	 */
+	public void run() throws InterruptedException {
+		OutfitStore store = OutfitStore.get();
+		// load most of the layer images, so that the first mode does not pay
+		// for reading them
+		for (String outfit : createOutfits()) {
+			store.getAdjustedOutfit(outfit, OutfitColor.PLAIN, null, null);
+		}
+
+		System.out.println(String.format(Locale.ENGLISH, "%-12s %10s %12s", "mode", "outfits", "ms/outfit"));
+
+		List<String> outfits = createOutfits();
+		long start = System.nanoTime();
+		for (String outfit : outfits) {
+			store.getAdjustedOutfit(outfit, OutfitColor.PLAIN, null, null);
+		}
+		report("composed", start);
+
+		start = System.nanoTime();
+		for (String outfit : outfits) {
+			store.getAdjustedOutfit(outfit, OutfitColor.PLAIN, null, null);
+		}
+		report("cached", start);
+
+		List<String> background = createOutfits();
+		final CountDownLatch latch = new CountDownLatch(background.size());
+		Runnable onReady = new Runnable() {
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		};
+		start = System.nanoTime();
+		int placeholders = 0;
+		for (String outfit : background) {
+			if (store.getAdjustedOutfit(outfit, OutfitColor.PLAIN, null, null, onReady) == store.getFailsafeOutfit()) {
+				placeholders++;
+			} else {
+				latch.countDown();
+			}
+		}
+		report("requested", start);
+		latch.await(10, TimeUnit.MINUTES);
+		report("background", start);
+		System.out.println(placeholders + " placeholders shown");
+	}
+
+	private void report(String mode, long start) {
+		double millis = (System.nanoTime() - start) / 1000000.0;
+		System.out.println(String.format(Locale.ENGLISH, "%-12s %10d %12.3f", mode, count, millis / count));
+	}
+
+	/**
+	 * starts the benchmark
+	 *
+	 * @param args number of outfits
+	 * @throws InterruptedException if interrupted
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		Log4J.init();
+		int count = 500;
+		if (args.length > 0) {
+			count = Integer.parseInt(args[0]);
+		}
+		OutfitStore.get().init();
+		new OutfitBenchmark(count).run();
+		System.exit(0);
+	}
+}
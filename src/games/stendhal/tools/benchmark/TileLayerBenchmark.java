@@ -0,0 +1,147 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Locale;
+import java.util.Random;
+
+import games.stendhal.client.IGameScreen;
+import games.stendhal.client.TileChunkCache;
+import games.stendhal.client.sprite.AnimatedSprite;
+import games.stendhal.client.sprite.ImageSprite;
+import games.stendhal.client.sprite.Sprite;
+import marauroa.common.Log4J;
+
+/**
+ * Compares the time of drawing a scrolling view of a tile layer tile by
+ * tile, and from pre-rendered chunks.
+ *
+ * <p>Usage: ant benchmark_tiles -Dframes=2000</p>
+ */
+public class TileLayerBenchmark {
+	private static final int SIZE = IGameScreen.SIZE_UNIT_PIXELS;
+	private static final int MAP_WIDTH = 128;
+	private static final int MAP_HEIGHT = 128;
+	/** view size in tiles, including the border the game screen adds */
+	private static final int VIEW_WIDTH = 22;
+	private static final int VIEW_HEIGHT = 17;
+
+	private final int frames;
+	private final Sprite[] tiles = new Sprite[MAP_WIDTH * MAP_HEIGHT];
+
+	/**
+	 * creates a new TileLayerBenchmark
+	 *
+	 * @param frames number of drawn frames
+	 */
+	public TileLayerBenchmark(int frames) {
+		this.frames = frames;
+		Random random = new Random(42);
+		// the tiles of a bundle are merged to one image, which covers the
+		// ground completely
+		Sprite[] palette = new Sprite[64];
+		for (int i = 0; i < palette.length; i++) {
+			palette[i] = createTile(random);
+		}
+		Sprite[] animation = new Sprite[4];
+		for (int i = 0; i < animation.length; i++) {
+			animation[i] = createTile(random);
+		}
+		Sprite water = new AnimatedSprite(animation, 100, true);
+		for (int y = 0; y < MAP_HEIGHT; y++) {
+			for (int x = 0; x < MAP_WIDTH; x++) {
+				// a lake of animated tiles
+				if ((x >= 40) && (x < 60) && (y >= 40) && (y < 56)) {
+					tiles[y * MAP_WIDTH + x] = water;
+				} else {
+					tiles[y * MAP_WIDTH + x] = palette[random.nextInt(palette.length)];
+				}
+			}
+		}
+	}
+
+	private static Sprite createTile(Random random) {
+		BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+		g.fillRect(0, 0, SIZE, SIZE);
+		for (int i = 0; i < 8; i++) {
+			g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256), 128));
+			g.fillRect(random.nextInt(SIZE), random.nextInt(SIZE), random.nextInt(SIZE), random.nextInt(SIZE));
+		}
+		g.dispose();
+		return new ImageSprite(image);
+	}
+
+	/**
+	 * runs the benchmark
+	 */
+	public void run() {
+		BufferedImage screen = new BufferedImage(VIEW_WIDTH * SIZE, VIEW_HEIGHT * SIZE, BufferedImage.TYPE_INT_RGB);
+		System.out.println(String.format(Locale.ENGLISH, "%-10s %10s %12s", "mode", "frames", "ms/frame"));
+		// twice, the first round warms up the JIT
+		for (int round = 0; round < 2; round++) {
+			measure("tiles", screen, null);
+			measure("chunks", screen, new TileChunkCache(tiles, MAP_WIDTH, MAP_HEIGHT));
+		}
+	}
+
+	private void measure(String mode, BufferedImage screen, TileChunkCache cache) {
+		long start = System.nanoTime();
+		for (int frame = 0; frame < frames; frame++) {
+			// walk diagonally over the map, one pixel per frame
+			int pixel = frame % ((MAP_WIDTH - VIEW_WIDTH) * SIZE);
+			int x = pixel / SIZE;
+			int y = (pixel / SIZE) % (MAP_HEIGHT - VIEW_HEIGHT);
+			Graphics2D g = screen.createGraphics();
+			g.translate(-pixel, -y * SIZE);
+			if (cache != null) {
+				cache.draw(g, x, y, VIEW_WIDTH, VIEW_HEIGHT);
+			} else {
+				drawTiles(g, x, y, VIEW_WIDTH, VIEW_HEIGHT);
+			}
+			g.dispose();
+		}
+		double millis = (System.nanoTime() - start) / 1000000.0;
+		System.out.println(String.format(Locale.ENGLISH, "%-10s %10d %12.3f", mode, frames, millis / frames));
+	}
+
+	/**
+	 * draws the tiles one by one, like the layers did before the chunk cache
+	 */
+	private void drawTiles(Graphics g, int x, int y, int w, int h) {
+		for (int j = y; j < y + h; j++) {
+			for (int i = x; i < x + w; i++) {
+				tiles[j * MAP_WIDTH + i].draw(g, i * SIZE, j * SIZE);
+			}
+		}
+	}
+
+	/**
+	 * starts the benchmark
+	 *
+	 * @param args number of frames
+	 */
+	public static void main(String[] args) {
+		Log4J.init();
+		int frames = 2000;
+		if (args.length > 0) {
+			frames = Integer.parseInt(args[0]);
+		}
+		new TileLayerBenchmark(frames).run();
+		System.exit(0);
+	}
+}
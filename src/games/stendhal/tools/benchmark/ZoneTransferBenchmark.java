@@ -0,0 +1,129 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+
+import games.stendhal.common.tiled.LayerDefinition;
+import games.stendhal.server.core.engine.DataProvider;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.ZoneAttributes;
+import marauroa.common.Log4J;
+import marauroa.common.net.message.TransferContent;
+
+/**
+ * Measures the time and the memory allocated for assembling the content
+ * which is sent to a client on a zone change.
+ *
+ * <p>The zone content used to be copied into a new list for every player
+ * and zone change. It is now shared as an immutable bundle. Both variants
+ * are measured on a zone with the usual layers.</p>
+ *
+ * <p>Usage: ant benchmark_transfer -Diterations=100000</p>
+ */
+public class ZoneTransferBenchmark {
+	private static final String[] LAYERS = {"0_floor", "1_terrain", "2_object", "3_roof",
+		"4_roof_add", "collision", "protection"};
+
+	private final int iterations;
+	private final DataProvider provider = new DataProvider();
+	private final com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	/** prevents the measured code from being optimized away */
+	private int sink;
+
+	/**
+	 * creates a new ZoneTransferBenchmark
+	 *
+	 * @param iterations number of simulated zone changes
+	 */
+	public ZoneTransferBenchmark(int iterations) {
+		this.iterations = iterations;
+	}
+
+	/**
+	 * runs the benchmark
+	 *
+	 * @throws IOException in case of an input/output error
+	 */
+	public void run() throws IOException {
+		final StendhalRPZone zone = new StendhalRPZone("benchmark_zone");
+		for (final String name : LAYERS) {
+			final LayerDefinition layer = new LayerDefinition(128, 128);
+			layer.setName(name);
+			zone.addLayer("benchmark_zone." + name, layer);
+		}
+		final ZoneAttributes attributes = new ZoneAttributes(zone);
+		attributes.put("color_method", "multiply");
+		zone.setAttributes(attributes);
+
+		System.out.println(String.format(Locale.ENGLISH, "%-30s %10s %10s %12s",
+				"variant", "ops", "ns/op", "bytes/op"));
+		// the first round warms up the JIT
+		for (int round = 0; round < 2; round++) {
+			measure("copied list", round > 0, new Runnable() {
+				@Override
+				public void run() {
+					// what transferContent did for every player before
+					final List<TransferContent> allContent = new LinkedList<TransferContent>(zone.getContents());
+					final List<TransferContent> data = provider.getData("1.0");
+					if (data != null) {
+						allContent.addAll(data);
+					}
+					sink += allContent.size();
+				}
+			});
+			measure("shared bundle", round > 0, new Runnable() {
+				@Override
+				public void run() {
+					sink += zone.getContents(provider, "1.0").size();
+				}
+			});
+		}
+	}
+
+	private void measure(String name, boolean print, Runnable zoneChange) {
+		final long threadId = Thread.currentThread().getId();
+		final long startBytes = threads.getThreadAllocatedBytes(threadId);
+		final long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			zoneChange.run();
+		}
+		final long nanos = System.nanoTime() - start;
+		final long bytes = threads.getThreadAllocatedBytes(threadId) - startBytes;
+		if (print) {
+			System.out.println(String.format(Locale.ENGLISH, "%-30s %10d %10.1f %12.1f",
+					name, iterations, nanos / (double) iterations, bytes / (double) iterations));
+		}
+	}
+
+	/**
+	 * starts the benchmark
+	 *
+	 * @param args number of iterations
+	 * @throws IOException in case of an input/output error
+	 */
+	public static void main(String[] args) throws IOException {
+		Log4J.init();
+		int iterations = 100000;
+		if (args.length > 0) {
+			iterations = Integer.parseInt(args[0]);
+		}
+		new ZoneTransferBenchmark(iterations).run();
+		System.exit(0);
+	}
+}
@@ -0,0 +1,91 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for DirtyRegion.
+ */
+public class DirtyRegionTest {
+	private static final int SIZE = IGameScreen.SIZE_UNIT_PIXELS;
+
+	/**
+	 * Check that the changed areas are merged to tile aligned rectangles
+	 * within the view.
+	 */
+	@Test
+	public void testRectangles() {
+		DirtyRegion region = new DirtyRegion();
+		region.reset(new Rectangle(10, 10, 20 * SIZE, 15 * SIZE));
+		assertTrue(region.isEmpty());
+		assertTrue(region.getRectangles().isEmpty());
+
+		// Two overlapping entities
+		region.add(2 * SIZE + 5, 2 * SIZE + 5, 20, 40);
+		region.add(2 * SIZE + 10, 3 * SIZE, 10, 10);
+		// Partly outside the view
+		region.add(-50, -50, 60, 60);
+		assertFalse(region.isEmpty());
+		assertFalse(region.isFull());
+
+		List<Rectangle> rects = region.getRectangles();
+		assertEquals(2, rects.size());
+		assertTrue(rects.contains(new Rectangle(10, 10, SIZE - 10, SIZE - 10)));
+		assertTrue(rects.contains(new Rectangle(2 * SIZE, 2 * SIZE, SIZE, 2 * SIZE)));
+	}
+
+	/**
+	 * Check that runs of different widths are not merged.
+	 */
+	@Test
+	public void testRuns() {
+		DirtyRegion region = new DirtyRegion();
+		region.reset(new Rectangle(0, 0, 10 * SIZE, 10 * SIZE));
+		region.add(0, 0, 3 * SIZE, SIZE);
+		region.add(SIZE, SIZE, SIZE, SIZE);
+		region.add(0, 2 * SIZE, 3 * SIZE, SIZE);
+
+		List<Rectangle> rects = region.getRectangles();
+		assertEquals(3, rects.size());
+		assertTrue(rects.contains(new Rectangle(0, 0, 3 * SIZE, SIZE)));
+		assertTrue(rects.contains(new Rectangle(SIZE, SIZE, SIZE, SIZE)));
+		assertTrue(rects.contains(new Rectangle(0, 2 * SIZE, 3 * SIZE, SIZE)));
+	}
+
+	/**
+	 * Check the requests for drawing everything.
+	 */
+	@Test
+	public void testFull() {
+		DirtyRegion region = new DirtyRegion();
+		Rectangle view = new Rectangle(0, 0, 10 * SIZE, 10 * SIZE);
+		region.reset(view);
+		region.add(null);
+		assertTrue(region.isFull());
+		assertEquals(1, region.getRectangles().size());
+		assertEquals(view, region.getRectangles().get(0));
+
+		// More than half dirty
+		region.reset(view);
+		assertFalse(region.isFull());
+		region.add(0, 0, 10 * SIZE, 6 * SIZE);
+		assertTrue(region.isFull());
+	}
+}
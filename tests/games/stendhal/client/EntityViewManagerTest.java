@@ -0,0 +1,255 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import games.stendhal.client.entity.ActionType;
+import games.stendhal.client.entity.Entity;
+import games.stendhal.client.entity.IEntity;
+import games.stendhal.client.entity.Inspector;
+import games.stendhal.client.gui.j2d.entity.EntityView;
+import games.stendhal.client.gui.styled.cursor.StendhalCursor;
+import marauroa.common.game.RPObject;
+import marauroa.common.game.RPObject.ID;
+
+/**
+ * Tests for the drawing order of EntityViewManager.
+ */
+public class EntityViewManagerTest {
+	private static final Rectangle SCREEN = new Rectangle(0, 0, 1000, 1000);
+
+	/** Views in the order they were drawn. */
+	private final List<String> drawn = new ArrayList<String>();
+	private EntityViewManager manager;
+
+	@Before
+	public void setUp() {
+		new MockStendhalClient();
+		manager = new EntityViewManager();
+	}
+
+	@After
+	public void tearDown() {
+		StendhalClient.resetClient();
+	}
+
+	/**
+	 * Prepare the views and get the names of the views in drawing order.
+	 *
+	 * @return view names
+	 */
+	private List<String> drawingOrder() {
+		manager.prepareViews(SCREEN, false);
+		drawn.clear();
+		manager.draw(null);
+		return new ArrayList<String>(drawn);
+	}
+
+	/**
+	 * Check that views added in any order are drawn ordered by the z index,
+	 * then by the bottom edge, then by the object id.
+	 */
+	@Test
+	public void testAddedOutOfOrder() {
+		manager.addEntityView(new TestView("d", 4, 8000, 30));
+		manager.addEntityView(new TestView("a", 1, 8000, 50));
+		manager.addEntityView(new TestView("c", 3, 7000, 20));
+		manager.addEntityView(new TestView("b", 2, 8000, 40));
+		manager.addEntityView(new TestView("e", 5, 7000, 20));
+		assertEquals(Arrays.asList("c", "e", "d", "b", "a"), drawingOrder());
+
+		// A view added later goes to its place among the ordered ones
+		manager.addEntityView(new TestView("f", 6, 8000, 35));
+		assertEquals(Arrays.asList("c", "e", "d", "f", "b", "a"), drawingOrder());
+	}
+
+	/**
+	 * Check that views are moved when their position or z index changes.
+	 */
+	@Test
+	public void testChangedViews() {
+		TestView a = new TestView("a", 1, 8000, 10);
+		TestView b = new TestView("b", 2, 8000, 20);
+		TestView c = new TestView("c", 3, 8000, 30);
+		TestView d = new TestView("d", 4, 8000, 40);
+		manager.addEntityView(a);
+		manager.addEntityView(b);
+		manager.addEntityView(c);
+		manager.addEntityView(d);
+		assertEquals(Arrays.asList("a", "b", "c", "d"), drawingOrder());
+
+		// Moving down the screen moves the view forward
+		a.y = 35;
+		assertEquals(Arrays.asList("b", "c", "a", "d"), drawingOrder());
+		// Moving up moves it back
+		d.y = 0;
+		assertEquals(Arrays.asList("d", "b", "c", "a"), drawingOrder());
+		// Several changes at once
+		b.y = 50;
+		c.y = 5;
+		assertEquals(Arrays.asList("d", "c", "a", "b"), drawingOrder());
+
+		// The z index goes before the position
+		d.zIndex = 9000;
+		assertEquals(Arrays.asList("c", "a", "b", "d"), drawingOrder());
+		b.zIndex = 7000;
+		assertEquals(Arrays.asList("b", "c", "a", "d"), drawingOrder());
+	}
+
+	/**
+	 * Check that views that compare equal keep the order in which they were
+	 * added, also when other views move around them.
+	 */
+	@Test
+	public void testTiesKeepOrder() {
+		// Same object id in different zones, so the views compare equal
+		TestView first = new TestView("first", 1, "zone1", 8000, 20);
+		TestView second = new TestView("second", 1, "zone2", 8000, 20);
+		TestView third = new TestView("third", 1, "zone3", 8000, 20);
+		TestView other = new TestView("other", 2, 8000, 30);
+		manager.addEntityView(other);
+		manager.addEntityView(first);
+		manager.addEntityView(second);
+		assertEquals(Arrays.asList("first", "second", "other"), drawingOrder());
+
+		manager.addEntityView(third);
+		assertEquals(Arrays.asList("first", "second", "third", "other"), drawingOrder());
+
+		// A view moving past the equal ones does not reorder them
+		other.y = 10;
+		assertEquals(Arrays.asList("other", "first", "second", "third"), drawingOrder());
+		other.y = 20;
+		assertEquals(Arrays.asList("first", "second", "third", "other"), drawingOrder());
+		assertEquals(Arrays.asList("first", "second", "third", "other"), drawingOrder());
+	}
+
+	/**
+	 * A view with a settable z index and position, that records when it is
+	 * drawn.
+	 */
+	private class TestView implements EntityView<IEntity> {
+		private final String name;
+		private final IEntity entity;
+		int zIndex;
+		int y;
+
+		TestView(String name, int id, int zIndex, int y) {
+			this(name, id, "zone", zIndex, y);
+		}
+
+		TestView(String name, int id, String zone, int zIndex, int y) {
+			this.name = name;
+			RPObject object = new RPObject();
+			object.setID(new ID(id, zone));
+			entity = new Entity();
+			entity.initialize(object);
+			this.zIndex = zIndex;
+			this.y = y;
+		}
+
+		@Override
+		public IEntity getEntity() {
+			return entity;
+		}
+
+		@Override
+		public int getZIndex() {
+			return zIndex;
+		}
+
+		@Override
+		public Rectangle getArea() {
+			return new Rectangle(0, y, 32, 32);
+		}
+
+		@Override
+		public void draw(Graphics2D g2d) {
+			drawn.add(name);
+		}
+
+		@Override
+		public void setInspector(Inspector inspector) {
+		}
+
+		@Override
+		public String[] getActions() {
+			return new String[0];
+		}
+
+		@Override
+		public boolean isMovable() {
+			return false;
+		}
+
+		@Override
+		public void onAction() {
+		}
+
+		@Override
+		public void onAction(ActionType at) {
+		}
+
+		@Override
+		public boolean onHarmlessAction() {
+			return false;
+		}
+
+		@Override
+		public void release() {
+		}
+
+		@Override
+		public void drawTop(Graphics2D g2d) {
+		}
+
+		@Override
+		public void setContained(boolean b) {
+		}
+
+		@Override
+		public void setVisibleScreenArea(Rectangle area) {
+		}
+
+		@Override
+		public void initialize(IEntity entity) {
+		}
+
+		@Override
+		public boolean isInteractive() {
+			return false;
+		}
+
+		@Override
+		public StendhalCursor getCursor() {
+			return null;
+		}
+
+		@Override
+		public void applyChanges() {
+		}
+
+		@Override
+		public void reportChanges(DirtyRegion region) {
+		}
+	}
+}
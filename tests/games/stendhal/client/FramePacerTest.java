@@ -0,0 +1,76 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for FramePacer.
+ */
+public class FramePacerTest {
+	/**
+	 * Check the frame lengths of the normal and idle rates.
+	 */
+	@Test
+	public void testIdle() {
+		FramePacer pacer = new FramePacer(25, 10, true);
+		assertFalse(pacer.isIdle());
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(40), pacer.getFrameNanos());
+		pacer.setIdle(true);
+		assertTrue(pacer.isIdle());
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(100), pacer.getFrameNanos());
+
+		// The idle rate is never faster than the normal rate
+		pacer = new FramePacer(5, 10, true);
+		pacer.setIdle(true);
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(200), pacer.getFrameNanos());
+	}
+
+	/**
+	 * Check that the frames are not shorter than the frame length, that the
+	 * frame deltas add up to the elapsed time, and that the loop does not
+	 * try to catch up frames it has missed.
+	 */
+	@Test
+	public void testPacing() {
+		FramePacer pacer = new FramePacer(200, 200, true);
+		long start = System.nanoTime();
+		assertEquals(0, pacer.startFrame());
+		int total = 0;
+		for (int i = 0; i < 20; i++) {
+			pacer.waitForNextFrame();
+			total += pacer.startFrame();
+		}
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		// 20 frames of 5 ms
+		assertTrue(elapsed >= 100);
+		assertTrue(Math.abs(elapsed - total) <= 1);
+
+		// A long frame
+		long slowStart = System.nanoTime();
+		while (System.nanoTime() - slowStart < TimeUnit.MILLISECONDS.toNanos(30)) {
+			// busy
+		}
+		pacer.waitForNextFrame();
+		pacer.startFrame();
+		// The next frame gets its full length
+		long next = System.nanoTime();
+		pacer.waitForNextFrame();
+		assertTrue(System.nanoTime() - next >= TimeUnit.MILLISECONDS.toNanos(4));
+	}
+}
@@ -0,0 +1,97 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for FrameProfiler.
+ */
+public class FrameProfilerTest {
+	/**
+	 * Check that the recorded file has a line for every frame, and the phase
+	 * times go to the right columns.
+	 *
+	 * @throws IOException if the recording fails
+	 */
+	@Test
+	public void testRecording() throws IOException {
+		FrameProfiler profiler = FrameProfiler.get();
+		// Nothing is measured when not enabled
+		assertEquals(0, profiler.start());
+		assertNull(profiler.stopRecording());
+
+		File file = File.createTempFile("frames", ".csv");
+		file.deleteOnExit();
+		profiler.startRecording(file, "test client");
+		assertTrue(profiler.isRecording());
+
+		// 2 ms object updates
+		profiler.end(FrameProfiler.Phase.OBJECTS, System.nanoTime() - 2000000);
+		profiler.endFrame();
+		profiler.end(FrameProfiler.Phase.TEXT, System.nanoTime() - 3000000);
+		profiler.endFrame();
+		assertEquals("2 frames recorded to " + file.getPath(), profiler.stopRecording());
+		assertFalse(profiler.isRecording());
+		assertEquals(0, profiler.start());
+
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		assertEquals(4, lines.size());
+		assertTrue(lines.get(0).startsWith("# test client"));
+		assertEquals("frame,perception,objects,views,layers,entities,effects,text,paint", lines.get(1));
+
+		String[] first = lines.get(2).split(",");
+		assertEquals(9, first.length);
+		assertTrue(Long.parseLong(first[2]) >= 2000);
+		assertEquals("0", first[7]);
+		String[] second = lines.get(3).split(",");
+		assertEquals("0", second[2]);
+		assertTrue(Long.parseLong(second[7]) >= 3000);
+	}
+
+	/**
+	 * Check toggling the overlay, and that drawing it works before and after
+	 * measuring frames.
+	 */
+	@Test
+	public void testOverlay() {
+		FrameProfiler profiler = FrameProfiler.get();
+		BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+
+		assertFalse(profiler.isOverlayShown());
+		assertTrue(profiler.toggleOverlay());
+		profiler.drawOverlay(g);
+		assertTrue(profiler.start() != 0);
+		profiler.end(FrameProfiler.Phase.PAINT, profiler.start());
+		profiler.endFrame();
+		profiler.drawOverlay(g);
+		// something was drawn in the corner
+		assertTrue(image.getRGB(6, 6) != 0);
+		assertFalse(profiler.toggleOverlay());
+		assertEquals(0, profiler.start());
+		g.dispose();
+	}
+}
@@ -0,0 +1,63 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import games.stendhal.client.gui.OutfitColor;
+
+/**
+ * Tests for the outfit references of OutfitStore.
+ */
+public class OutfitStoreTest {
+	/**
+	 * Check parsing outfit codes.
+	 */
+	@Test
+	public void testParseOutfit() {
+		Map<String, Integer> layers = OutfitStore.parseOutfit("dress=12,body=1,hat=104");
+		assertEquals(Integer.valueOf(1), layers.get("body"));
+		assertEquals(Integer.valueOf(12), layers.get("dress"));
+		assertEquals(Integer.valueOf(104), layers.get("hat"));
+		// unspecified layers
+		assertEquals(Integer.valueOf(0), layers.get("head"));
+		assertEquals(Integer.valueOf(0), layers.get("detail"));
+	}
+
+	/**
+	 * Check that equivalent outfit codes get the same cache reference, and
+	 * different ones do not.
+	 */
+	@Test
+	public void testBuildReference() {
+		String ref = OutfitStore.buildReference(OutfitStore.parseOutfit("body=1,dress=12,head=0"),
+				OutfitColor.PLAIN, true);
+		assertEquals(ref, OutfitStore.buildReference(OutfitStore.parseOutfit("dress=12,body=1"),
+				OutfitColor.PLAIN, true));
+		assertEquals(ref, OutfitStore.buildReference(OutfitStore.parseOutfit(
+				"body=1,dress=12,head=0,mouth=0,eyes=0,mask=0,hair=0,hat=0,detail=0"), OutfitColor.PLAIN, true));
+
+		assertFalse(ref.equals(OutfitStore.buildReference(OutfitStore.parseOutfit("body=1,dress=13"),
+				OutfitColor.PLAIN, true)));
+		// the body images differ
+		assertFalse(ref.equals(OutfitStore.buildReference(OutfitStore.parseOutfit("body=1,dress=12"),
+				OutfitColor.PLAIN, false)));
+		// colored sprites are looked up differently than plain ones
+		assertFalse(ref.equals(OutfitStore.buildReference(OutfitStore.parseOutfit("body=1,dress=12"),
+				null, true)));
+	}
+}
@@ -0,0 +1,174 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+import games.stendhal.client.sprite.EmptySprite;
+import games.stendhal.client.sprite.Sprite;
+
+/**
+ * Tests for TileChunkCache.
+ */
+public class TileChunkCacheTest {
+	private static final int SIZE = IGameScreen.SIZE_UNIT_PIXELS;
+
+	/**
+	 * A tile of a single color.
+	 */
+	private static class ColorSprite implements Sprite {
+		private final Color color;
+		private final boolean constant;
+		int draws;
+
+		ColorSprite(Color color, boolean constant) {
+			this.color = color;
+			this.constant = constant;
+		}
+
+		@Override
+		public Sprite createRegion(int x, int y, int width, int height, Object ref) {
+			return this;
+		}
+
+		@Override
+		public void draw(Graphics g, int x, int y) {
+			draws++;
+			g.setColor(color);
+			g.fillRect(x, y, SIZE, SIZE);
+		}
+
+		@Override
+		public void draw(Graphics g, int destx, int desty, int x, int y, int w, int h) {
+			draw(g, destx, desty);
+		}
+
+		@Override
+		public int getHeight() {
+			return SIZE;
+		}
+
+		@Override
+		public Object getReference() {
+			return null;
+		}
+
+		@Override
+		public int getWidth() {
+			return SIZE;
+		}
+
+		@Override
+		public boolean isConstant() {
+			return constant;
+		}
+	}
+
+	/**
+	 * Check that the chunks look like the tiles drawn one by one, and that
+	 * only the animated tiles are drawn again.
+	 */
+	@Test
+	public void testDraw() {
+		final int width = 40;
+		final int height = 20;
+		ColorSprite red = new ColorSprite(Color.RED, true);
+		ColorSprite blue = new ColorSprite(Color.BLUE, true);
+		ColorSprite animated = new ColorSprite(Color.GREEN, false);
+		Sprite empty = new EmptySprite(SIZE, SIZE, null);
+		Sprite[] tiles = new Sprite[width * height];
+		for (int i = 0; i < tiles.length; i++) {
+			tiles[i] = ((i % 3) == 0) ? red : blue;
+		}
+		tiles[5 * width + 5] = animated;
+		tiles[17 * width + 33] = empty;
+
+		TileChunkCache cache = new TileChunkCache(tiles, width, height);
+		BufferedImage expected = new BufferedImage(20 * SIZE, 10 * SIZE, BufferedImage.TYPE_INT_RGB);
+		BufferedImage actual = new BufferedImage(20 * SIZE, 10 * SIZE, BufferedImage.TYPE_INT_RGB);
+		int[][] views = {{0, 0}, {3, 2}, {19, 9}, {20, 10}};
+		for (int[] view : views) {
+			Graphics2D g = expected.createGraphics();
+			g.setColor(Color.BLACK);
+			g.fillRect(0, 0, expected.getWidth(), expected.getHeight());
+			g.translate(-view[0] * SIZE, -view[1] * SIZE);
+			for (int y = view[1]; y < Math.min(view[1] + 10, height); y++) {
+				for (int x = view[0]; x < Math.min(view[0] + 20, width); x++) {
+					tiles[y * width + x].draw(g, x * SIZE, y * SIZE);
+				}
+			}
+			g.dispose();
+
+			g = actual.createGraphics();
+			g.setColor(Color.BLACK);
+			g.fillRect(0, 0, actual.getWidth(), actual.getHeight());
+			g.translate(-view[0] * SIZE, -view[1] * SIZE);
+			cache.draw(g, view[0], view[1], 20, 10);
+			g.dispose();
+
+			for (int y = 0; y < actual.getHeight(); y++) {
+				for (int x = 0; x < actual.getWidth(); x++) {
+					assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+				}
+			}
+		}
+
+		red.draws = 0;
+		animated.draws = 0;
+		cache.draw(actual.createGraphics(), 0, 0, 20, 10);
+		assertEquals(0, red.draws);
+		assertEquals(1, animated.draws);
+	}
+
+	/**
+	 * Check that the chunks that are not visible anymore are dropped when
+	 * they do not fit in the memory budget, and that a zone change drops all
+	 * chunks.
+	 */
+	@Test
+	public void testMemoryBudget() {
+		TileChunkCache.releaseAll();
+		final int size = 200;
+		ColorSprite red = new ColorSprite(Color.RED, true);
+		Sprite[] tiles = new Sprite[size * size];
+		for (int i = 0; i < tiles.length; i++) {
+			tiles[i] = red;
+		}
+		TileChunkCache cache = new TileChunkCache(tiles, size, size);
+		BufferedImage screen = new BufferedImage(20 * SIZE, 10 * SIZE, BufferedImage.TYPE_INT_RGB);
+		// 2 visible chunks, and as many neighbors
+		final long limit = 4 * 4L * (16 * SIZE) * (16 * SIZE);
+		for (int i = 0; i < size - 20; i += 16) {
+			Graphics2D g = screen.createGraphics();
+			g.translate(-i * SIZE, -i * SIZE);
+			cache.draw(g, i, i, 20, 10);
+			g.dispose();
+			assertTrue(TileChunkCache.getUsedBytes() > 0);
+			assertTrue(TileChunkCache.getUsedBytes() <= limit);
+		}
+
+		TileChunkCache.releaseAll();
+		assertEquals(0, TileChunkCache.getUsedBytes());
+		// Dropped chunks are rendered again when needed
+		red.draws = 0;
+		cache.draw(screen.createGraphics(), 0, 0, 20, 10);
+		assertEquals(2 * 16 * 16, red.draws);
+	}
+}
@@ -0,0 +1,109 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client.sprite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+import games.stendhal.client.sprite.SpriteCache.Pool;
+
+/**
+ * Tests for SpriteCache.
+ */
+public class SpriteCacheTest {
+	/**
+	 * Create a 10x10 sprite.
+	 *
+	 * @param ref sprite reference
+	 * @return sprite
+	 */
+	private static Sprite createSprite(String ref) {
+		return new ImageSprite(new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB), ref);
+	}
+
+	/**
+	 * Check that the least recently used sprites are dropped when a pool
+	 * exceeds its budget, and that the pools are separate.
+	 */
+	@Test
+	public void testEviction() {
+		long size = SpriteCache.estimateSize(createSprite("a"));
+		SpriteCache cache = new SpriteCache(3 * size, 3 * size);
+		cache.add("a", createSprite("a"), Pool.BASE);
+		cache.add("b", createSprite("b"), Pool.BASE);
+		cache.add("c", createSprite("c"), Pool.BASE);
+		cache.add("x", createSprite("x"));
+		assertEquals(3 * size, cache.getBytes(Pool.BASE));
+		assertEquals(size, cache.getBytes(Pool.DERIVED));
+
+		// Use "a", so that "b" is the oldest
+		cache.get("a");
+		cache.add("d", createSprite("d"), Pool.BASE);
+		assertEquals(1, cache.getEvictions(Pool.BASE));
+		assertEquals(0, cache.getEvictions(Pool.DERIVED));
+		assertEquals(3 * size, cache.getBytes(Pool.BASE));
+
+		// "b" is not used elsewhere, so it can be collected
+		cache.collectDropped("b");
+		assertNull(cache.get("b"));
+		assertEquals(1, cache.getMisses());
+		assertEquals("a", cache.get("a").getReference());
+		assertEquals("x", cache.get("x").getReference());
+		assertEquals(3, cache.getHits());
+	}
+
+	/**
+	 * Check that dropped sprites that are still in use are not lost.
+	 */
+	@Test
+	public void testInUse() {
+		long size = SpriteCache.estimateSize(createSprite("a"));
+		SpriteCache cache = new SpriteCache(size, size);
+		Sprite a = createSprite("a");
+		cache.add("a", a);
+		cache.add("b", createSprite("b"));
+		assertEquals(1, cache.getEvictions(Pool.DERIVED));
+
+		assertSame(a, cache.get("a"));
+		// Back in the pool, and "b" dropped in turn
+		assertEquals(2, cache.getEvictions(Pool.DERIVED));
+		assertEquals(size, cache.getBytes(Pool.DERIVED));
+	}
+
+	/**
+	 * Check that user interface sprites are never dropped.
+	 */
+	@Test
+	public void testPinned() {
+		long size = SpriteCache.estimateSize(createSprite("a"));
+		SpriteCache cache = new SpriteCache(size, size);
+		Sprite pinned = createSprite("data/gui/button.png");
+		cache.add("data/gui/button.png", pinned, Pool.BASE);
+		cache.add("a", createSprite("a"), Pool.BASE);
+		cache.add("b", createSprite("b"), Pool.BASE);
+		assertSame(pinned, cache.get("data/gui/button.png"));
+		assertEquals(size, cache.getBytes(Pool.BASE));
+
+		// Sprites made from the user interface images are not pinned
+		cache.add("data/gui/button.png:tinted", createSprite("data/gui/button.png"));
+		cache.add("x", createSprite("x"));
+		assertEquals(1, cache.getEvictions(Pool.DERIVED));
+		assertEquals(size, cache.getBytes(Pool.DERIVED));
+		cache.collectDropped("data/gui/button.png:tinted");
+		assertNull(cache.get("data/gui/button.png:tinted"));
+	}
+}
@@ -0,0 +1,222 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.config.ZonesXMLLoader.ZoneDesc;
+import games.stendhal.server.core.config.zone.ConfiguratorDescriptor;
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.transformer.PlayerTransformer;
+import games.stendhal.server.core.events.TurnNotifier;
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.mapstuff.spawner.CreatureRespawnPoint;
+import games.stendhal.server.entity.mapstuff.spawner.PassiveEntityRespawnPoint;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.game.RPObject;
+import marauroa.server.game.db.DatabaseFactory;
+import utilities.PlayerTestHelper;
+
+/**
+ * Tests for LazyZoneLoader
+ */
+public class LazyZoneLoaderTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+		new DatabaseFactory().initializeDatabase();
+	}
+
+	private static ZoneDesc createDesc(String name) {
+		return new ZoneDesc(name, "interiors/semos/frank_house.tmx", "semos",
+				ZoneDesc.UNSET, ZoneDesc.UNSET, ZoneDesc.UNSET, true);
+	}
+
+	/**
+	 * Tests which zones may be loaded on demand
+	 */
+	@Test
+	public void testIsSuitable() {
+		LazyZoneLoader loader = new LazyZoneLoader(true, 0, "int_lazy_resident");
+		assertTrue(loader.isSuitable(createDesc("int_lazy_house")));
+		assertFalse(loader.isSuitable(createDesc("int_lazy_resident")));
+		assertFalse(loader.isSuitable(createDesc(PlayerTransformer.DEFAULT_ENTRY_ZONE)));
+		assertFalse(loader.isSuitable(createDesc(PlayerTransformer.RESET_ENTRY_ZONE)));
+		assertFalse(loader.isSuitable(new ZoneDesc("0_lazy_exterior", "interiors/semos/frank_house.tmx",
+				"semos", 0, 0, 0, true)));
+
+		ZoneDesc withNPC = createDesc("int_lazy_npc");
+		withNPC.addDescriptor(new ConfiguratorDescriptor("games.stendhal.server.maps.semos.house.FlowerSellerNPC"));
+		assertFalse(loader.isSuitable(withNPC));
+
+		assertFalse(new LazyZoneLoader(false, 0, "").register(createDesc("int_lazy_house"), new ZoneCache(null)));
+	}
+
+	/**
+	 * Tests loading and unloading of a zone
+	 */
+	@Test
+	public void testLoadUnload() {
+		LazyZoneLoader loader = new LazyZoneLoader(true, 0, "");
+		loader.onTurnReached(0);
+		assertTrue(loader.register(createDesc("int_lazy_test"), new ZoneCache(null)));
+		assertTrue(loader.isUnloaded("int_lazy_test"));
+		assertNull(SingletonRepository.getRPWorld().getZone("int_lazy_test"));
+
+		StendhalRPZone zone = loader.load("int_lazy_test");
+		assertNotNull(zone);
+		assertFalse(loader.isUnloaded("int_lazy_test"));
+		assertSame(zone, SingletonRepository.getRPWorld().getZone("int_lazy_test"));
+
+		// a zone with a player stays loaded
+		Player player = PlayerTestHelper.createPlayer("lazybob");
+		zone.add(player);
+		loader.onTurnReached(0);
+		assertSame(zone, SingletonRepository.getRPWorld().getZone("int_lazy_test"));
+
+		zone.remove(player);
+		unloadIdleZones(loader);
+		assertNull(SingletonRepository.getRPWorld().getZone("int_lazy_test"));
+		assertTrue(loader.isUnloaded("int_lazy_test"));
+
+		// it can be loaded again
+		assertNotNull(loader.load("int_lazy_test"));
+	}
+
+	/**
+	 * Tests that unloading stops the respawn points and growers, and that the
+	 * stored content matches the zone at the time it was unloaded
+	 */
+	@Test
+	public void testUnloadStopsRespawnsAndStores() {
+		LazyZoneLoader loader = new LazyZoneLoader(true, 0, "");
+		loader.onTurnReached(0);
+		assertTrue(loader.register(createDesc("int_lazy_store"), new ZoneCache(null)));
+		StendhalRPZone zone = loader.load("int_lazy_store");
+
+		TurnNotifier turnNotifier = SingletonRepository.getTurnNotifier();
+		CreatureRespawnPoint point = new CreatureRespawnPoint(zone, 1, 1,
+				SingletonRepository.getEntityManager().getCreature("rat"), 1);
+		zone.add(point);
+		PassiveEntityRespawnPoint grower = new PassiveEntityRespawnPoint("apple", 100);
+		zone.add(grower);
+		grower.onFruitPicked(null);
+		assertTrue(turnNotifier.getRemainingTurns(point) >= 0);
+		assertTrue(turnNotifier.getRemainingTurns(grower) >= 0);
+
+		Item item = SingletonRepository.getEntityManager().getItem("money");
+		item.setPosition(2, 2);
+		item.store();
+		zone.add(item);
+		// the database may have content from earlier runs
+		int stored = countObjects(zone, "money");
+		loader.onTurnReached(0);
+		// the zone stays until its content has been stored
+		assertSame(zone, SingletonRepository.getRPWorld().getZone("int_lazy_store"));
+		unloadIdleZones(loader);
+		assertNull(SingletonRepository.getRPWorld().getZone("int_lazy_store"));
+		assertEquals(-1, turnNotifier.getRemainingTurns(point));
+		assertEquals(-1, turnNotifier.getRemainingTurns(grower));
+
+		zone = loader.load("int_lazy_store");
+		assertEquals(stored, countObjects(zone, "money"));
+
+		// a zone without storable objects is stored, too
+		List<RPObject> objects = new ArrayList<RPObject>();
+		for (RPObject object : zone) {
+			objects.add(object);
+		}
+		for (RPObject object : objects) {
+			zone.remove(object.getID());
+		}
+		unloadIdleZones(loader);
+		zone = loader.load("int_lazy_store");
+		assertEquals(0, countObjects(zone, "money"));
+	}
+
+	/**
+	 * Tests that a zone entered while its content is stored, stays loaded
+	 */
+	@Test
+	public void testUnloadCancelled() {
+		LazyZoneLoader loader = new LazyZoneLoader(true, 0, "");
+		loader.onTurnReached(0);
+		assertTrue(loader.register(createDesc("int_lazy_cancel"), new ZoneCache(null)));
+		StendhalRPZone zone = loader.load("int_lazy_cancel");
+
+		loader.onTurnReached(0);
+		Player player = PlayerTestHelper.createPlayer("lazyalice");
+		zone.add(player);
+		finishUnloads(loader);
+		zone.remove(player);
+		assertSame(zone, SingletonRepository.getRPWorld().getZone("int_lazy_cancel"));
+		assertFalse(loader.isUnloaded("int_lazy_cancel"));
+
+		// it is unloaded on a later check
+		unloadIdleZones(loader);
+		assertNull(SingletonRepository.getRPWorld().getZone("int_lazy_cancel"));
+	}
+
+	/**
+	 * Starts unloading the idle zones, and waits until they are unloaded.
+	 *
+	 * @param loader loader
+	 */
+	private static void unloadIdleZones(LazyZoneLoader loader) {
+		loader.onTurnReached(0);
+		finishUnloads(loader);
+	}
+
+	/**
+	 * Waits until the pending unloads are finished.
+	 *
+	 * @param loader loader
+	 */
+	private static void finishUnloads(LazyZoneLoader loader) {
+		// the database thread may be busy with commands of other tests
+		long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10);
+		while (loader.finishUnloads()) {
+			assertTrue(System.currentTimeMillis() < deadline);
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private static int countObjects(StendhalRPZone zone, String name) {
+		int count = 0;
+		for (RPObject object : zone) {
+			if (name.equals(object.get("name"))) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,94 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import games.stendhal.common.tiled.LayerDefinition;
+import games.stendhal.server.core.config.ZonesXMLLoader.PreparedZone;
+import games.stendhal.server.core.config.ZonesXMLLoader.ZoneDesc;
+
+/**
+ * Tests for ZoneCache
+ */
+public class ZoneCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Tests that a cached zone contains the same data as a freshly loaded one
+	 *
+	 * @throws IOException in case of an input/output error
+	 */
+	@Test
+	public void testReadWrite() throws IOException {
+		ZoneCache cache = new ZoneCache(folder.getRoot().toPath());
+		ZoneDesc desc = new ZoneDesc("int_semos_frank_house", "interiors/semos/frank_house.tmx",
+				"semos", ZoneDesc.UNSET, ZoneDesc.UNSET, ZoneDesc.UNSET, true);
+
+		PreparedZone loaded = ZonesXMLLoader.prepare(desc, cache);
+		assertNull(loaded.error);
+		assertFalse(loaded.cached);
+
+		PreparedZone cached = ZonesXMLLoader.prepare(desc, cache);
+		assertNull(cached.error);
+		assertTrue(cached.cached);
+
+		assertArrayEquals(loaded.tilesets, cached.tilesets);
+		assertEquals(loaded.layers.keySet(), cached.layers.keySet());
+		for (String name : loaded.layers.keySet()) {
+			assertArrayEquals(loaded.layers.get(name), cached.layers.get(name));
+		}
+		assertArrayEquals(loaded.collisionLayer, cached.collisionLayer);
+		assertArrayEquals(loaded.protectionLayer, cached.protectionLayer);
+
+		int width = loaded.collision.getWidth();
+		int height = loaded.collision.getHeight();
+		assertEquals(width, cached.collision.getWidth());
+		assertEquals(height, cached.collision.getHeight());
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				assertEquals(loaded.collision.collides(x, y), cached.collision.collides(x, y));
+				assertEquals(loaded.protection.collides(x, y), cached.protection.collides(x, y));
+			}
+		}
+
+		LayerDefinition objects = loaded.zonedata.getLayer("objects");
+		assertArrayEquals(objects.exposeRaw(), cached.zonedata.getLayer("objects").exposeRaw());
+		assertEquals(loaded.zonedata.getTilesets(), cached.zonedata.getTilesets());
+	}
+
+	/**
+	 * Tests that an entry for a different version of the map is ignored
+	 */
+	@Test
+	public void testChangedMap() {
+		ZoneCache cache = new ZoneCache(folder.getRoot().toPath());
+		ZoneDesc desc = new ZoneDesc("int_semos_frank_house", "interiors/semos/frank_house.tmx",
+				"semos", ZoneDesc.UNSET, ZoneDesc.UNSET, ZoneDesc.UNSET, true);
+
+		PreparedZone loaded = ZonesXMLLoader.prepare(desc, cache);
+		assertNull(loaded.error);
+		assertNull(cache.read(desc, ZoneCache.hash(new byte[] {1, 2, 3})));
+	}
+}
@@ -5,11 +5,15 @@ package games.stendhal.server.core.config;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.junit.After;
 import org.junit.Before;
@@ -21,6 +25,7 @@ import games.stendhal.server.core.engine.StendhalRPWorld;
 import games.stendhal.server.core.engine.StendhalRPZone;
 import games.stendhal.server.maps.MockStendlRPWorld;
 import marauroa.common.game.IRPZone;
+import marauroa.common.net.message.TransferContent;
 import marauroa.server.game.db.DatabaseFactory;
 
 /**
@@ -67,6 +72,18 @@ public class ZonesXMLLoaderTest {
 		Collection<StendhalRPZone> regionSemosInteriors = world.getAllZonesFromRegion("semos", Boolean.FALSE, Boolean.FALSE, Boolean.TRUE);
 		IRPZone rpZone = world.getRPZone("int_semos_house");
 		assertThat(regionSemosInteriors.contains(rpZone), is(Boolean.FALSE));
-	}
 
+		// the layers and collision maps are prepared in parallel
+		StendhalRPZone zone = (StendhalRPZone) world.getRPZone("int_semos_frank_house");
+		Set<String> names = new HashSet<String>();
+		for (TransferContent content : zone.getContents()) {
+			names.add(content.name);
+		}
+		assertTrue(names.containsAll(Arrays.asList("int_semos_frank_house.tilesets",
+				"int_semos_frank_house.0_floor", "int_semos_frank_house.1_terrain", "int_semos_frank_house.2_object",
+				"int_semos_frank_house.collision", "int_semos_frank_house.protection")));
+		assertTrue(zone.getWidth() > 0);
+		assertThat(zone.protectionMap.getWidth(), is(zone.getWidth()));
+		assertThat(zone.protectionMap.getHeight(), is(zone.getHeight()));
+	}
 }
@@ -0,0 +1,120 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.entity.creature.Creature;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.game.Perception;
+import marauroa.common.game.RPObject;
+import utilities.PlayerTestHelper;
+
+/**
+ * Tests for InterestManager.
+ */
+public class InterestManagerTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		PlayerTestHelper.removeAllPlayers();
+	}
+
+	private static boolean contains(List<RPObject> list, RPObject object) {
+		for (RPObject o : list) {
+			if (o.getID().equals(object.getID())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tests that entities are sent when they enter and leave the area of
+	 * interest of a player.
+	 */
+	@Test
+	public void testEnterAndLeave() {
+		final StendhalRPZone zone = new StendhalRPZone("interest_zone", 200, 200);
+		zone.setInterestRadius(32);
+		assertEquals(32, zone.getInterestRadius());
+
+		final Player alice = PlayerTestHelper.createPlayer("interest_alice");
+		alice.setPosition(10, 10);
+		zone.add(alice);
+		final Player bob = PlayerTestHelper.createPlayer("interest_bob");
+		bob.setPosition(150, 150);
+		zone.add(bob);
+		final Creature creature = new Creature();
+		creature.setPosition(20, 20);
+		zone.add(creature);
+
+		Perception perception = zone.getPerception(alice, Perception.SYNC);
+		assertTrue(contains(perception.addedList, alice));
+		assertTrue(contains(perception.addedList, creature));
+		assertFalse(contains(perception.addedList, bob));
+		perception = zone.getPerception(bob, Perception.SYNC);
+		assertFalse(contains(perception.addedList, creature));
+		// every player gets an own perception
+		assertFalse(perception.zoneid.equals(zone.getPerception(alice, Perception.SYNC).zoneid));
+		zone.nextTurn();
+
+		// changes out of range are not sent
+		creature.setPosition(21, 20);
+		creature.notifyWorldAboutChanges();
+		perception = zone.getPerception(alice, Perception.DELTA);
+		assertTrue(contains(perception.modifiedAddedList, creature));
+		perception = zone.getPerception(bob, Perception.DELTA);
+		assertEquals(0, perception.size());
+		zone.nextTurn();
+
+		// a little bit outside of the radius is kept
+		creature.setPosition(44, 44);
+		creature.notifyWorldAboutChanges();
+		perception = zone.getPerception(alice, Perception.DELTA);
+		assertTrue(contains(perception.modifiedAddedList, creature));
+		assertFalse(contains(perception.deletedList, creature));
+		zone.nextTurn();
+
+		creature.setPosition(140, 140);
+		creature.notifyWorldAboutChanges();
+		perception = zone.getPerception(alice, Perception.DELTA);
+		assertTrue(contains(perception.deletedList, creature));
+		assertTrue(perception.modifiedAddedList.isEmpty());
+		perception = zone.getPerception(bob, Perception.DELTA);
+		assertTrue(contains(perception.addedList, creature));
+		assertTrue(perception.modifiedAddedList.isEmpty());
+		zone.nextTurn();
+
+		// removed objects are only deleted on the clients which know them
+		zone.remove(creature);
+		perception = zone.getPerception(alice, Perception.DELTA);
+		assertFalse(contains(perception.deletedList, creature));
+		perception = zone.getPerception(bob, Perception.DELTA);
+		assertTrue(contains(perception.deletedList, creature));
+		zone.nextTurn();
+	}
+}
@@ -0,0 +1,81 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import marauroa.common.game.IRPZone;
+import marauroa.common.game.Perception;
+import marauroa.common.game.RPObject;
+
+/**
+ * Tests for PerceptionStatistics.
+ */
+public class PerceptionStatisticsTest {
+
+	private static RPObject player(String name) {
+		final RPObject player = new RPObject();
+		player.put("name", name);
+		return player;
+	}
+
+	/**
+	 * Tests that a shared perception is counted once per zone, but its bytes
+	 * for every recipient.
+	 */
+	@Test
+	public void testRecord() {
+		final PerceptionStatistics statistics = new PerceptionStatistics(0);
+		final StendhalRPZone zone = new StendhalRPZone("perception_zone");
+		final Perception perception = new Perception(Perception.DELTA, new IRPZone.ID("perception_zone"));
+
+		final RPObject added = new RPObject();
+		added.put("id", 1);
+		added.put("outfit", "12345");
+		perception.addedList.add(added);
+		final RPObject modified = new RPObject();
+		modified.put("id", 2);
+		modified.put("hp", 100);
+		perception.modifiedAddedList.add(modified);
+
+		// disabled statistics do not account anything
+		statistics.record(zone, player("alice"), perception);
+		assertNull(statistics.getZone("perception_zone"));
+
+		statistics.setEnabled(true);
+		statistics.record(zone, player("alice"), perception);
+		final long bytes = statistics.getZone("perception_zone").bytes;
+		assertEquals(PerceptionStatistics.estimateSize(added) + PerceptionStatistics.estimateSize(modified), bytes);
+		statistics.record(zone, player("bob"), perception);
+
+		final PerceptionStatistics.Counter counter = statistics.getZone("perception_zone");
+		assertEquals(2, counter.objects);
+		assertEquals(2 * bytes, counter.bytes);
+
+		assertNotNull(statistics.getAttribute("hp"));
+		assertEquals(1, statistics.getAttribute("hp").objects);
+		assertNull(statistics.getAttribute("id"));
+		assertNull(statistics.getAttribute("outfit"));
+
+		final String report = statistics.report(5);
+		assertTrue(report, report.contains("perception_zone"));
+		assertTrue(report, report.contains("alice"));
+
+		statistics.reset();
+		assertNull(statistics.getZone("perception_zone"));
+	}
+}
@@ -0,0 +1,118 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import games.stendhal.common.tiled.LayerDefinition;
+import marauroa.common.net.message.TransferContent;
+
+/**
+ * Tests for the transfer content of StendhalRPZone.
+ */
+public class StendhalRPZoneContentsTest {
+
+	private static LayerDefinition layer() {
+		final LayerDefinition layer = new LayerDefinition(4, 4);
+		layer.setName("layer");
+		return layer;
+	}
+
+	/**
+	 * Tests that the content is cached until the zone changes.
+	 *
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void testGetContents() throws Exception {
+		final StendhalRPZone zone = new StendhalRPZone("contents_zone");
+		zone.addLayer("contents_zone.0_floor", layer());
+
+		final List<TransferContent> contents = zone.getContents();
+		assertSame(contents, zone.getContents());
+
+		// the zone has attributes for its readable name
+		final ZoneAttributes attributes = zone.getAttributes();
+		attributes.put("color", "0x123456");
+		final List<TransferContent> colored = zone.getContents();
+		assertNotSame(contents, colored);
+		assertEquals(2, colored.size());
+		assertEquals("contents_zone.data_map", colored.get(0).name);
+		assertSame(contents.get(1), colored.get(1));
+
+		// the previous attributes stay unchanged, because they may still be
+		// waiting to be sent
+		final TransferContent oldAttributes = colored.get(0);
+		final byte[] oldData = oldAttributes.data.clone();
+		attributes.put("color", "0x654321");
+		final List<TransferContent> recolored = zone.getContents();
+		assertNotSame(colored, recolored);
+		assertNotSame(oldAttributes, recolored.get(0));
+		assertArrayEquals(oldData, oldAttributes.data);
+
+		zone.addLayer("contents_zone.1_terrain", layer());
+		assertEquals(3, zone.getContents().size());
+
+		zone.setAttributes(new ZoneAttributes(zone));
+		assertNotSame(recolored.get(0), zone.getContents().get(0));
+	}
+
+	/**
+	 * Tests the content combined with data for a client version.
+	 *
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void testGetContentsForVersion() throws Exception {
+		final StendhalRPZone zone = new StendhalRPZone("contents_zone");
+		zone.addLayer("contents_zone.0_floor", layer());
+		final TransferContent extra = new TransferContent();
+		extra.name = "extra.jar";
+		final DataProvider provider = new DataProvider() {
+			@Override
+			public List<TransferContent> getData(String version) {
+				if ("1.0".equals(version)) {
+					return Collections.singletonList(extra);
+				}
+				return null;
+			}
+		};
+
+		assertSame(zone.getContents(), zone.getContents(provider, "2.0"));
+		final List<TransferContent> contents = zone.getContents(provider, "1.0");
+		assertEquals(3, contents.size());
+		assertSame(extra, contents.get(2));
+		assertSame(contents, zone.getContents(provider, "1.0"));
+
+		zone.addLayer("contents_zone.1_terrain", layer());
+		assertEquals(4, zone.getContents(provider, "1.0").size());
+	}
+
+	/**
+	 * Tests that the shared content cannot be modified.
+	 *
+	 * @throws Exception in case of an error
+	 */
+	@Test(expected = UnsupportedOperationException.class)
+	public void testContentsUnmodifiable() throws Exception {
+		final StendhalRPZone zone = new StendhalRPZone("contents_zone");
+		zone.getContents().add(new TransferContent());
+	}
+}
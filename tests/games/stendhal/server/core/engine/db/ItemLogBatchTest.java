@@ -0,0 +1,120 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import marauroa.common.Log4J;
+import marauroa.common.game.RPObject;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.game.db.DAORegister;
+import marauroa.server.game.db.DatabaseFactory;
+
+/**
+ * Tests for ItemLogBatch
+ */
+public class ItemLogBatchTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Log4J.init();
+		new DatabaseFactory().initializeDatabase();
+	}
+
+	/**
+	 * Tests that ids are assigned by the database and all rows are written on flush
+	 *
+	 * @throws SQLException in case of an database error
+	 */
+	@Test
+	public void testAssignAndWrite() throws SQLException {
+		StendhalItemDAO dao = DAORegister.get().get(StendhalItemDAO.class);
+		Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			RPObject first = createItem("itemlogbatchtest");
+			RPObject second = createItem("itemlogbatchtest");
+
+			ItemLogBatch batch = dao.createItemLogBatch(transaction);
+			batch.assignIDIfNotPresent(first, timestamp);
+			batch.assignIDIfNotPresent(second, timestamp);
+			batch.assignIDIfNotPresent(second, timestamp);
+			batch.writeEntry(timestamp, first, null, "ground-to-ground", "zone", "1 1", "zone", "2 2");
+
+			// two item rows, two register entries and one event
+			assertEquals(5, batch.flush());
+			assertEquals(0, batch.flush());
+
+			int firstId = first.getInt(StendhalItemDAO.ATTR_ITEM_LOGID);
+			int secondId = second.getInt(StendhalItemDAO.ATTR_ITEM_LOGID);
+			assertTrue(secondId > firstId);
+
+			assertEquals(2, transaction.querySingleCellInt("SELECT count(*) FROM item WHERE id IN (" + firstId + ", " + secondId + ")", null));
+			assertEquals(2, transaction.querySingleCellInt("SELECT count(*) FROM itemlog WHERE itemid=" + firstId, null));
+			assertEquals(1, transaction.querySingleCellInt("SELECT count(*) FROM itemlog WHERE itemid=" + secondId + " AND event='register'", null));
+
+			// rows written by other means do not collide with the next id
+			transaction.execute("INSERT INTO item (name, timedate) VALUES ('itemlogbatchtest', NOW())", null);
+			int otherId = transaction.getLastInsertId("item", "id");
+			RPObject third = createItem("itemlogbatchtest");
+			batch.assignIDIfNotPresent(third, timestamp);
+			assertEquals(2, batch.flush());
+			assertTrue(third.getInt(StendhalItemDAO.ATTR_ITEM_LOGID) > otherId);
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * Tests that a row which can not be written does not take the other
+	 * rows of the batch with it
+	 *
+	 * @throws SQLException in case of an database error
+	 */
+	@Test
+	public void testBadRow() throws SQLException {
+		StendhalItemDAO dao = DAORegister.get().get(StendhalItemDAO.class);
+		Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			transaction.execute("ALTER TABLE itemlog ADD CONSTRAINT IF NOT EXISTS itemlogbatchtest_bad CHECK (event <> 'bad')", null);
+			RPObject item = createItem("itemlogbatchtest");
+			ItemLogBatch batch = dao.createItemLogBatch(transaction);
+			batch.assignIDIfNotPresent(item, timestamp);
+			batch.writeEntry(timestamp, item, null, "bad", "zone", "1 1", "zone", "2 2");
+			batch.writeEntry(timestamp, item, null, "ground-to-ground", "zone", "1 1", "zone", "2 2");
+
+			// one item row, the register entry and the good event
+			assertEquals(3, batch.flush());
+			int id = item.getInt(StendhalItemDAO.ATTR_ITEM_LOGID);
+			assertEquals(2, transaction.querySingleCellInt("SELECT count(*) FROM itemlog WHERE itemid=" + id, null));
+			assertEquals(0, transaction.querySingleCellInt("SELECT count(*) FROM itemlog WHERE itemid=" + id + " AND event='bad'", null));
+		} finally {
+			transaction.execute("ALTER TABLE itemlog DROP CONSTRAINT IF EXISTS itemlogbatchtest_bad", null);
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	private RPObject createItem(String name) {
+		RPObject item = new RPObject();
+		item.put("name", name);
+		return item;
+	}
+}
@@ -0,0 +1,126 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.SQLException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.entity.player.PersistedCharacterState;
+import games.stendhal.server.entity.player.Player;
+import marauroa.common.Log4J;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.game.db.DAORegister;
+import marauroa.server.game.db.DatabaseFactory;
+import utilities.PlayerTestHelper;
+import utilities.RPClass.ItemTestHelper;
+
+/**
+ * Tests for StendhalBuddyDAO
+ */
+public class StendhalBuddyDAOTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Log4J.init();
+		new DatabaseFactory().initializeDatabase();
+		PlayerTestHelper.generatePlayerRPClasses();
+		ItemTestHelper.generateRPClasses();
+	}
+
+	/**
+	 * Tests that unchanged buddy lists are not written again
+	 *
+	 * @throws SQLException in case of an database error
+	 */
+	@Test
+	public void testSaveRelations() throws SQLException {
+		StendhalBuddyDAO dao = DAORegister.get().get(StendhalBuddyDAO.class);
+		DirtyWriteStatistics statistics = DirtyWriteStatistics.get();
+		Player player = PlayerTestHelper.createPlayer("dirtybuddytest");
+		player.addBuddy("dirtybuddy", false);
+
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			long now = System.currentTimeMillis();
+			long written = statistics.getRelationsWritten();
+			long skipped = statistics.getRelationsSkipped();
+
+			dao.saveRelations(transaction, "dirtybuddytest", player, now);
+			commit(player);
+			dao.saveRelations(transaction, "dirtybuddytest", player, now + 1000);
+			assertEquals(written + 1, statistics.getRelationsWritten());
+			assertEquals(skipped + 1, statistics.getRelationsSkipped());
+
+			player.removeBuddy("dirtybuddy");
+			player.addIgnore("dirtyignore", 0, null);
+			dao.saveRelations(transaction, "dirtybuddytest", player, now + 2000);
+			commit(player);
+			assertEquals(written + 2, statistics.getRelationsWritten());
+			assertEquals(1, dao.loadRelations(transaction, "dirtybuddytest").get("buddy").size());
+			assertEquals(1, dao.loadRelations(transaction, "dirtybuddytest").get("ignore").size());
+
+			// after the resync interval, the database is read again
+			dao.saveRelations(transaction, "dirtybuddytest", player, now + 3000 + PersistedCharacterState.RESYNC_INTERVAL);
+			assertEquals(written + 3, statistics.getRelationsWritten());
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * Tests that buddy lists of a save which was not committed are not
+	 * remembered
+	 *
+	 * @throws SQLException in case of an database error
+	 */
+	@Test
+	public void testUncommittedSave() throws SQLException {
+		StendhalBuddyDAO dao = DAORegister.get().get(StendhalBuddyDAO.class);
+		DirtyWriteStatistics statistics = DirtyWriteStatistics.get();
+		Player player = PlayerTestHelper.createPlayer("dirtybuddytest");
+		player.addBuddy("dirtybuddy", false);
+
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			long now = System.currentTimeMillis();
+			long written = statistics.getRelationsWritten();
+			dao.saveRelations(transaction, "dirtybuddytest", player, now);
+			commit(player);
+
+			player.addBuddy("otherbuddy", false);
+			dao.saveRelations(transaction, "dirtybuddytest", player, now + 1000);
+			// the save was rolled back, so the save id was not written
+			player.getPersistedState().confirmSave(0);
+
+			dao.saveRelations(transaction, "dirtybuddytest", player, now + 2000);
+			assertEquals(written + 3, statistics.getRelationsWritten());
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * confirms the last save of the player, as if its transaction was
+	 * committed
+	 *
+	 * @param player Player
+	 */
+	private void commit(Player player) {
+		PersistedCharacterState state = player.getPersistedState();
+		state.confirmSave(state.getPendingSaveId());
+	}
+}
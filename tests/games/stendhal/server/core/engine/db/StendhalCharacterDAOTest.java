@@ -0,0 +1,253 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.dbcommand.LogKillEventCommand;
+import games.stendhal.server.core.engine.dbcommand.StoreCharacterSnapshotCommand;
+import games.stendhal.server.entity.player.PersistedCharacterState;
+import games.stendhal.server.entity.player.Player;
+import marauroa.common.Log4J;
+import marauroa.common.game.RPObject;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.db.command.AbstractDBCommand;
+import marauroa.server.game.db.AccountDAO;
+import marauroa.server.game.db.CharacterDAO;
+import marauroa.server.game.db.DAORegister;
+import marauroa.server.game.db.DatabaseFactory;
+import utilities.PlayerTestHelper;
+import utilities.RPClass.ItemTestHelper;
+
+/**
+ * Tests for StendhalCharacterDAO
+ */
+public class StendhalCharacterDAOTest {
+	private static final String USERNAME = "snapshottestaccount";
+	private static final String CHARNAME = "snapshottest";
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Log4J.init();
+		new DatabaseFactory().initializeDatabase();
+		PlayerTestHelper.generatePlayerRPClasses();
+		ItemTestHelper.generateRPClasses();
+	}
+
+	/**
+	 * Tests that a save which was rolled back leaves the previous state in
+	 * the database and does not prevent the same change from being written
+	 * later.
+	 *
+	 * @throws Exception in case of an database error
+	 */
+	@Test
+	public void testCrashConsistency() throws Exception {
+		CharacterDAO dao = DAORegister.get().get(CharacterDAO.class);
+		DirtyWriteStatistics statistics = DirtyWriteStatistics.get();
+		Player player = PlayerTestHelper.createPlayer(CHARNAME);
+		player.setLevel(5);
+
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			long now = System.currentTimeMillis();
+			DAORegister.get().get(AccountDAO.class).addPlayer(transaction, USERNAME, new byte[] {1, 2, 3}, "test@example.com", new Timestamp(now));
+			dao.addCharacter(transaction, USERNAME, CHARNAME, player, new Timestamp(now));
+
+			long written = statistics.getObjectsWritten();
+			long skipped = statistics.getObjectsSkipped();
+			dao.storeCharacter(transaction, USERNAME, CHARNAME, (RPObject) player.clone(), new Timestamp(now));
+			assertEquals(written + 1, statistics.getObjectsWritten());
+
+			// nothing changed
+			dao.storeCharacter(transaction, USERNAME, CHARNAME, (RPObject) player.clone(), new Timestamp(now + 1000));
+			assertEquals(written + 1, statistics.getObjectsWritten());
+			assertEquals(skipped + 1, statistics.getObjectsSkipped());
+
+			// the server crashes in the middle of the next save
+			transaction.execute("SAVEPOINT before_crash", null);
+			player.setLevel(6);
+			dao.storeCharacter(transaction, USERNAME, CHARNAME, (RPObject) player.clone(), new Timestamp(now + 2000));
+			assertEquals(written + 2, statistics.getObjectsWritten());
+			transaction.execute("ROLLBACK TO SAVEPOINT before_crash", null);
+			assertEquals(5, loadLevel(transaction, dao));
+			assertEquals(5, queryStatsLevel(transaction));
+
+			// the change is written again by the next save
+			dao.storeCharacter(transaction, USERNAME, CHARNAME, (RPObject) player.clone(), new Timestamp(now + 3000));
+			assertEquals(written + 3, statistics.getObjectsWritten());
+			assertEquals(6, loadLevel(transaction, dao));
+			assertEquals(6, queryStatsLevel(transaction));
+
+			// an unchanged object is written again after the resync interval
+			dao.storeCharacter(transaction, USERNAME, CHARNAME, (RPObject) player.clone(), new Timestamp(now + 3000 + PersistedCharacterState.RESYNC_INTERVAL));
+			assertEquals(written + 4, statistics.getObjectsWritten());
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * Tests that no digest is computed for a player who reported changes, and
+	 * that the next save computes it again
+	 *
+	 * @throws Exception in case of an database error
+	 */
+	@Test
+	public void testKnownChanges() throws Exception {
+		CharacterDAO dao = DAORegister.get().get(CharacterDAO.class);
+		DirtyWriteStatistics statistics = DirtyWriteStatistics.get();
+		Player player = PlayerTestHelper.createPlayer(CHARNAME);
+
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			long now = System.currentTimeMillis();
+			DAORegister.get().get(AccountDAO.class).addPlayer(transaction, USERNAME, new byte[] {1, 2, 3}, "test@example.com", new Timestamp(now));
+			dao.addCharacter(transaction, USERNAME, CHARNAME, player, new Timestamp(now));
+			dao.storeCharacter(transaction, USERNAME, CHARNAME, player.createSaveSnapshot(), new Timestamp(now));
+			assertTrue(queryDigest(transaction, player).length() > 0);
+
+			long written = statistics.getObjectsWritten();
+			long skipped = statistics.getObjectsSkipped();
+			player.setLevel(7);
+			dao.storeCharacter(transaction, USERNAME, CHARNAME, player.createSaveSnapshot(), new Timestamp(now + 1000));
+			assertEquals(written + 1, statistics.getObjectsWritten());
+			assertEquals(7, loadLevel(transaction, dao));
+			assertEquals("", queryDigest(transaction, player));
+
+			// the digest is unknown, so the object is written once more
+			dao.storeCharacter(transaction, USERNAME, CHARNAME, player.createSaveSnapshot(), new Timestamp(now + 2000));
+			assertEquals(written + 2, statistics.getObjectsWritten());
+			assertTrue(queryDigest(transaction, player).length() > 0);
+			dao.storeCharacter(transaction, USERNAME, CHARNAME, player.createSaveSnapshot(), new Timestamp(now + 3000));
+			assertEquals(written + 2, statistics.getObjectsWritten());
+			assertEquals(skipped + 1, statistics.getObjectsSkipped());
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * Tests that an older pending snapshot is dropped in favour of a newer one
+	 *
+	 * @throws Exception in case of an database error
+	 */
+	@Test
+	public void testCoalescing() throws Exception {
+		CharacterDAO dao = DAORegister.get().get(CharacterDAO.class);
+		DirtyWriteStatistics statistics = DirtyWriteStatistics.get();
+		Player player = PlayerTestHelper.createPlayer(CHARNAME);
+
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			long now = System.currentTimeMillis();
+			DAORegister.get().get(AccountDAO.class).addPlayer(transaction, USERNAME, new byte[] {1, 2, 3}, "test@example.com", new Timestamp(now));
+			dao.addCharacter(transaction, USERNAME, CHARNAME, player, new Timestamp(now));
+
+			StoreCharacterSnapshotCommand older = new StoreCharacterSnapshotCommand(USERNAME, CHARNAME, player);
+			player.setLevel(7);
+			StoreCharacterSnapshotCommand newer = new StoreCharacterSnapshotCommand(USERNAME, CHARNAME, player);
+
+			long coalesced = statistics.getSavesCoalesced();
+			store(transaction, newer, now + 1000);
+			store(transaction, older, now + 2000);
+			assertEquals(coalesced + 1, statistics.getSavesCoalesced());
+			assertEquals(7, loadLevel(transaction, dao));
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * Tests that copies of the player, which are not saved, do not cause a
+	 * pending save to be skipped
+	 *
+	 * @throws Exception in case of an database error
+	 */
+	@Test
+	public void testNonSaveCopy() throws Exception {
+		CharacterDAO dao = DAORegister.get().get(CharacterDAO.class);
+		DirtyWriteStatistics statistics = DirtyWriteStatistics.get();
+		Player player = PlayerTestHelper.createPlayer(CHARNAME);
+
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			long now = System.currentTimeMillis();
+			DAORegister.get().get(AccountDAO.class).addPlayer(transaction, USERNAME, new byte[] {1, 2, 3}, "test@example.com", new Timestamp(now));
+			dao.addCharacter(transaction, USERNAME, CHARNAME, player, new Timestamp(now));
+
+			long coalesced = statistics.getSavesCoalesced();
+			player.setLevel(8);
+			StoreCharacterSnapshotCommand first = new StoreCharacterSnapshotCommand(USERNAME, CHARNAME, player);
+			// a kill is logged before the save is processed
+			new LogKillEventCommand(SingletonRepository.getEntityManager().getCreature("rat"), player);
+			store(transaction, first, now + 1000);
+			assertEquals(8, loadLevel(transaction, dao));
+
+			player.setLevel(9);
+			StoreCharacterSnapshotCommand second = new StoreCharacterSnapshotCommand(USERNAME, CHARNAME, player);
+			// any other copy
+			assertEquals(0, ((Player) player.clone()).getSnapshotGeneration());
+			store(transaction, second, now + 2000);
+			assertEquals(9, loadLevel(transaction, dao));
+			assertEquals(coalesced, statistics.getSavesCoalesced());
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * saves a snapshot like the database thread does
+	 *
+	 * @param transaction DBTransaction
+	 * @param command command holding the snapshot
+	 * @param time enqueue time
+	 * @throws Exception in case of an database error
+	 */
+	private void store(DBTransaction transaction, AbstractDBCommand command, long time) throws Exception {
+		command.setEnqueueTime(new Timestamp(time));
+		command.execute(transaction);
+	}
+
+	private String queryDigest(DBTransaction transaction, Player player) throws SQLException {
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("object_id", player.getInt("#db_id"));
+		ResultSet resultSet = transaction.query("SELECT digest FROM character_snapshot WHERE object_id=[object_id]", params);
+		try {
+			assertTrue(resultSet.next());
+			return resultSet.getString(1);
+		} finally {
+			resultSet.close();
+		}
+	}
+
+	private int queryStatsLevel(DBTransaction transaction) throws SQLException {
+		return transaction.querySingleCellInt("SELECT level FROM character_stats WHERE name='" + CHARNAME + "'", null);
+	}
+
+	private int loadLevel(DBTransaction transaction, CharacterDAO dao) throws SQLException, IOException {
+		return dao.loadCharacter(transaction, USERNAME, CHARNAME).getInt("level");
+	}
+}
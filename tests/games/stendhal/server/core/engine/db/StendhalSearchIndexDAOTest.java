@@ -0,0 +1,96 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+
+import games.stendhal.server.core.rp.searchindex.SearchIndexEntry;
+import games.stendhal.server.core.rp.searchindex.SearchIndexManager;
+import marauroa.common.Log4J;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.game.db.DAORegister;
+import marauroa.server.game.db.DatabaseFactory;
+
+/**
+ * Tests for StendhalSearchIndexDAO
+ */
+public class StendhalSearchIndexDAOTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Log4J.init();
+		new DatabaseFactory().initializeDatabase();
+	}
+
+	/**
+	 * Tests that entities are replaced including their fingerprints
+	 *
+	 * @throws SQLException in case of an database error
+	 */
+	@Test
+	public void testReplaceEntities() throws SQLException {
+		StendhalSearchIndexDAO dao = DAORegister.get().get(StendhalSearchIndexDAO.class);
+		String key = SearchIndexManager.getKey('I', "Searchtest");
+		String otherKey = SearchIndexManager.getKey('I', "searchtest");
+
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			transaction.execute("DELETE FROM searchindex WHERE entitytype='I' AND LOWER(entityname)='searchtest'", null);
+			transaction.execute("DELETE FROM searchindex_fingerprint WHERE entitytype='I' AND LOWER(entityname)='searchtest'", null);
+
+			Set<SearchIndexEntry> entries = Sets.newHashSet(
+					new SearchIndexEntry("searchtest", 'I', "Searchtest", 3080),
+					new SearchIndexEntry("shiny", 'I', "Searchtest", 1080),
+					new SearchIndexEntry("dull", 'I', "searchtest", 1080));
+			dao.replaceEntities(transaction, Arrays.asList(key, otherKey), entries,
+					ImmutableMap.of(key, "fingerprint1", otherKey, "fingerprint2"));
+			assertEquals(3, countEntries(transaction));
+
+			// update one entity, the other one with a similar name is not touched
+			dao.replaceEntities(transaction, Arrays.asList(key),
+					Sets.newHashSet(new SearchIndexEntry("searchtest", 'I', "Searchtest", 3080)),
+					ImmutableMap.of(key, "fingerprint3"));
+			assertEquals(2, countEntries(transaction));
+			Map<String, String> fingerprints = dao.readFingerprints(transaction);
+			assertEquals("fingerprint3", fingerprints.get(key));
+			assertEquals("fingerprint2", fingerprints.get(otherKey));
+
+			// remove an entity
+			dao.replaceEntities(transaction, Arrays.asList(otherKey), Sets.<SearchIndexEntry>newHashSet(),
+					ImmutableMap.<String, String>of());
+			assertEquals(1, countEntries(transaction));
+			assertFalse(dao.readFingerprints(transaction).containsKey(otherKey));
+			assertTrue(dao.readIndexedKeys(transaction).contains(key));
+			assertFalse(dao.readIndexedKeys(transaction).contains(otherKey));
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	private int countEntries(DBTransaction transaction) throws SQLException {
+		return transaction.querySingleCellInt("SELECT count(*) FROM searchindex WHERE entitytype='I' AND LOWER(entityname)='searchtest'", null);
+	}
+}
@@ -0,0 +1,180 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.entity.player.PersistedCharacterState;
+import games.stendhal.server.entity.player.Player;
+import marauroa.common.Log4J;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.game.db.DAORegister;
+import marauroa.server.game.db.DatabaseFactory;
+import utilities.PlayerTestHelper;
+import utilities.RPClass.ItemTestHelper;
+
+/**
+ * Tests for StendhalWebsiteDAO
+ */
+public class StendhalWebsiteDAOTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Log4J.init();
+		new DatabaseFactory().initializeDatabase();
+		PlayerTestHelper.generatePlayerRPClasses();
+		ItemTestHelper.generateRPClasses();
+	}
+
+	/**
+	 * Tests that unchanged character_stats are not written again
+	 *
+	 * @throws SQLException in case of an database error
+	 */
+	@Test
+	public void testStoreCharStats() throws SQLException {
+		StendhalWebsiteDAO dao = DAORegister.get().get(StendhalWebsiteDAO.class);
+		DirtyWriteStatistics statistics = DirtyWriteStatistics.get();
+		Player player = PlayerTestHelper.createPlayer("dirtystatstest");
+		player.setLevel(5);
+
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			long now = System.currentTimeMillis();
+			long written = statistics.getStatsWritten();
+			long skipped = statistics.getStatsSkipped();
+
+			dao.storeCharStats(transaction, player, new Timestamp(now));
+			assertEquals(written + 1, statistics.getStatsWritten());
+			assertEquals(5, queryLevel(transaction));
+			commit(player);
+
+			dao.storeCharStats(transaction, player, new Timestamp(now + 1000));
+			assertEquals(written + 1, statistics.getStatsWritten());
+			assertEquals(skipped + 1, statistics.getStatsSkipped());
+
+			player.setLevel(6);
+			dao.storeCharStats(transaction, player, new Timestamp(now + 2000));
+			assertEquals(written + 2, statistics.getStatsWritten());
+			assertEquals(6, queryLevel(transaction));
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * Tests that the columns of a save which was not committed are not
+	 * remembered
+	 *
+	 * @throws SQLException in case of an database error
+	 */
+	@Test
+	public void testUncommittedSave() throws SQLException {
+		StendhalWebsiteDAO dao = DAORegister.get().get(StendhalWebsiteDAO.class);
+		DirtyWriteStatistics statistics = DirtyWriteStatistics.get();
+		Player player = PlayerTestHelper.createPlayer("dirtystatstest");
+		player.setLevel(5);
+
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			long now = System.currentTimeMillis();
+			long written = statistics.getStatsWritten();
+			dao.storeCharStats(transaction, player, new Timestamp(now));
+			commit(player);
+
+			transaction.execute("SAVEPOINT before_crash", null);
+			player.setLevel(6);
+			dao.storeCharStats(transaction, player, new Timestamp(now + 1000));
+			transaction.execute("ROLLBACK TO SAVEPOINT before_crash", null);
+			// the save id was rolled back, too
+			player.getPersistedState().confirmSave(0);
+			assertEquals(5, queryLevel(transaction));
+
+			dao.storeCharStats(transaction, player, new Timestamp(now + 2000));
+			assertEquals(written + 3, statistics.getStatsWritten());
+			assertEquals(6, queryLevel(transaction));
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * Tests that the changes reported by the player decide which columns
+	 * are collected again
+	 *
+	 * @throws SQLException in case of an database error
+	 */
+	@Test
+	public void testChangeTracking() throws SQLException {
+		StendhalWebsiteDAO dao = DAORegister.get().get(StendhalWebsiteDAO.class);
+		DirtyWriteStatistics statistics = DirtyWriteStatistics.get();
+		Player player = PlayerTestHelper.createPlayer("dirtystatstest");
+
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			long now = System.currentTimeMillis();
+			long written = statistics.getStatsWritten();
+			long skipped = statistics.getStatsSkipped();
+			dao.storeCharStats(transaction, player, new Timestamp(now));
+			commit(player);
+
+			// walking around is not shown on the website
+			int statsVersion = player.getStatsVersion();
+			int itemsVersion = player.getItemsVersion();
+			player.setPosition(5, 7);
+			assertEquals(statsVersion, player.getStatsVersion());
+			assertEquals(itemsVersion, player.getItemsVersion());
+			dao.storeCharStats(transaction, player, new Timestamp(now + 1000));
+			assertEquals(skipped + 1, statistics.getStatsSkipped());
+
+			PlayerTestHelper.equipWithMoney(player, 100);
+			assertTrue(player.getItemsVersion() != itemsVersion);
+			Player snapshot = player.createSaveSnapshot();
+			assertEquals(player.getItemsVersion(), snapshot.getItemsVersion());
+			dao.storeCharStats(transaction, snapshot, new Timestamp(now + 2000));
+			assertEquals(written + 2, statistics.getStatsWritten());
+			assertEquals(100, transaction.querySingleCellInt("SELECT money FROM character_stats WHERE name='dirtystatstest'", null));
+			commit(player);
+
+			player.setXP(200);
+			assertTrue(player.getStatsVersion() != statsVersion);
+			dao.storeCharStats(transaction, player, new Timestamp(now + 3000));
+			assertEquals(written + 3, statistics.getStatsWritten());
+			assertEquals(100, transaction.querySingleCellInt("SELECT money FROM character_stats WHERE name='dirtystatstest'", null));
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * confirms the last save of the player, as if its transaction was
+	 * committed
+	 *
+	 * @param player Player
+	 */
+	private void commit(Player player) {
+		PersistedCharacterState state = player.getPersistedState();
+		state.confirmSave(state.getPendingSaveId());
+	}
+
+	private int queryLevel(DBTransaction transaction) throws SQLException {
+		return transaction.querySingleCellInt("SELECT level FROM character_stats WHERE name='dirtystatstest'", null);
+	}
+}
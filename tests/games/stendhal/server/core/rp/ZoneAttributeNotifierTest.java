@@ -0,0 +1,79 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.rp;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.ZoneAttributes;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import utilities.PlayerTestHelper;
+
+/**
+ * Tests for ZoneAttributeNotifier.
+ */
+public class ZoneAttributeNotifierTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		PlayerTestHelper.removeAllPlayers();
+	}
+
+	private StendhalRPZone createZone(String name, int players) {
+		final StendhalRPZone zone = new StendhalRPZone(name, 20, 20);
+		zone.setAttributes(new ZoneAttributes(zone));
+		for (int i = 0; i < players; i++) {
+			final Player player = PlayerTestHelper.createPlayer(name + "_player" + i);
+			player.setClientVersion("1.44");
+			zone.add(player);
+		}
+		return zone;
+	}
+
+	/**
+	 * Tests that the notifications are spread over several turns.
+	 */
+	@Test
+	public void testThrottling() {
+		final ZoneAttributeNotifier notifier = new ZoneAttributeNotifier(2);
+		final StendhalRPZone first = createZone("notifier_zone1", 1);
+		final StendhalRPZone empty = createZone("notifier_zone2", 0);
+		final StendhalRPZone second = createZone("notifier_zone3", 1);
+		final StendhalRPZone third = createZone("notifier_zone4", 2);
+
+		assertEquals(1, first.notifyAttributesChanged());
+		assertEquals(0, empty.notifyAttributesChanged());
+
+		notifier.attributesChanged(first);
+		notifier.attributesChanged(empty);
+		notifier.attributesChanged(first);
+		notifier.attributesChanged(second);
+		notifier.attributesChanged(third);
+		assertEquals(4, notifier.getPendingCount());
+
+		// empty zones do not use up the budget
+		notifier.onTurnReached(1);
+		assertEquals(1, notifier.getPendingCount());
+		notifier.onTurnReached(2);
+		assertEquals(0, notifier.getPendingCount());
+	}
+}
@@ -0,0 +1,91 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.rule.defaultruleset;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.rule.EntityManager;
+import games.stendhal.server.entity.creature.Creature;
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.item.Weapon;
+import games.stendhal.server.entity.spell.Spell;
+import games.stendhal.server.entity.status.PoisonAttacker;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for DefaultEntityManager.
+ */
+public class DefaultEntityManagerTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+	}
+
+	/**
+	 * Tests that every item gets its own attributes, but shares the status
+	 * attackers with the other items of the same kind.
+	 */
+	@Test
+	public void testGetItem() {
+		final EntityManager em = SingletonRepository.getEntityManager();
+		final Item whip = em.getItem("venom whip");
+		final Item other = em.getItem("venom whip");
+		assertThat(whip, instanceOf(Weapon.class));
+		assertNotSame(whip, other);
+		assertEquals("venom whip", whip.getName());
+		assertEquals(30, whip.getAttack());
+		assertEquals(1, whip.getStatusAttackers().size());
+		assertThat(whip.getStatusAttackers().get(0), instanceOf(PoisonAttacker.class));
+		assertSame(whip.getStatusAttackers(), other.getStatusAttackers());
+
+		whip.put("atk", 1);
+		assertEquals(30, other.getAttack());
+	}
+
+	/**
+	 * Tests that requested items and creatures are listed.
+	 */
+	@Test
+	public void testGetCreatedEntities() {
+		final EntityManager em = SingletonRepository.getEntityManager();
+		final Creature rat = em.getCreature("rat");
+		assertEquals("rat", rat.getName());
+		assertNotSame(rat, em.getCreature("rat"));
+		boolean found = false;
+		for (final Creature creature : em.getCreatures()) {
+			found = found || "rat".equals(creature.getName());
+			assertNotSame(rat, creature);
+		}
+		assertTrue(found);
+
+		final Item dagger = em.getItem("dagger");
+		found = false;
+		for (final Item item : em.getItems()) {
+			found = found || "dagger".equals(item.getName());
+			assertNotSame(dagger, item);
+		}
+		assertTrue(found);
+
+		final Spell spell = em.getSpell(em.getConfiguredSpells().iterator().next());
+		assertEquals(spell.getClass(), em.getSpell(spell.getName()).getClass());
+	}
+}
@@ -0,0 +1,72 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.scripting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import groovy.lang.Binding;
+import groovy.lang.Script;
+
+/**
+ * Tests for GroovyScriptCache
+ */
+public class GroovyScriptCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Object run(Class<? extends Script> scriptClass) {
+		Binding binding = new Binding();
+		binding.setVariable("a", 20);
+		return InvokerHelper.createScript(scriptClass, binding).run();
+	}
+
+	/**
+	 * Tests that scripts are compiled once and again after they changed
+	 *
+	 * @throws IOException in case of an input/output error
+	 */
+	@Test
+	public void testGetScriptClass() throws IOException {
+		GroovyScriptCache cache = GroovyScriptCache.get();
+		File file = folder.newFile("cachetest.groovy");
+		Files.write(file.toPath(), "return a + 1".getBytes(StandardCharsets.UTF_8));
+		assertFalse(cache.isCompiled(file));
+
+		Class<? extends Script> compiled = cache.getScriptClass(file);
+		assertTrue(cache.isCompiled(file));
+		assertEquals(21, run(compiled));
+		assertSame(compiled, cache.getScriptClass(file));
+
+		Files.write(file.toPath(), "return a + 22".getBytes(StandardCharsets.UTF_8));
+		assertFalse(cache.isCompiled(file));
+		Class<? extends Script> changed = cache.getScriptClass(file);
+		assertNotSame(compiled, changed);
+		// the replaced version is not kept alive by a shared class loader
+		assertNotSame(compiled.getClassLoader(), changed.getClassLoader());
+		assertEquals(42, run(changed));
+	}
+}
@@ -0,0 +1,84 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.scripting.lua;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LoadState;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.compiler.LuaC;
+import org.luaj.vm2.lib.BaseLib;
+
+/**
+ * Tests for LuaProfiler.
+ */
+public class LuaProfilerTest {
+
+	private static Globals createGlobals(final LuaProfiler profiler) {
+		// no standard globals, they would replace the string functions of the scripting system
+		final Globals globals = new Globals();
+		globals.load(new BaseLib());
+		LoadState.install(globals);
+		LuaC.install(globals);
+		profiler.install(globals);
+		return globals;
+	}
+
+	/**
+	 * Tests that calls are stopped when they exceed their budget.
+	 */
+	@Test
+	public void testBudget() {
+		final LuaProfiler profiler = new LuaProfiler(10000, 0);
+		final Globals globals = createGlobals(profiler);
+
+		assertEquals(3, profiler.call(globals.load("return 1 + 2", "@sum.lua")).toint());
+		assertEquals(LuaValue.NIL, profiler.call(globals.load("while true do end", "@loop.lua")));
+		// the error of the budget cannot be caught by the script
+		final LuaValue pcallLoop = globals.load("while true do pcall(function() while true do end end) end", "@pcall.lua");
+		assertEquals(0, profiler.invoke(pcallLoop, LuaValue.NONE).narg());
+
+		// other errors are passed on
+		try {
+			profiler.call(globals.load("error('broken')", "@error.lua"));
+			fail("error expected");
+		} catch (final LuaError e) {
+			assertTrue(e.getMessage().contains("broken"));
+		}
+		// the next call gets a new budget
+		assertEquals(3, profiler.call(globals.load("return 1 + 2", "@sum.lua")).toint());
+
+		final String report = profiler.report(10);
+		assertTrue(report, report.contains("5 calls"));
+		assertTrue(report, report.contains("2 stopped"));
+		assertTrue(report, report.contains("loop.lua:0"));
+		profiler.reset();
+		assertTrue(profiler.report(10).contains("0 calls"));
+	}
+
+	/**
+	 * Tests the time limit.
+	 */
+	@Test
+	public void testTimeLimit() {
+		final LuaProfiler profiler = new LuaProfiler(0, 50);
+		final Globals globals = createGlobals(profiler);
+		final long start = System.currentTimeMillis();
+		assertEquals(LuaValue.NIL, profiler.call(globals.load("while true do end", "@loop.lua")));
+		assertTrue(System.currentTimeMillis() - start < 5000);
+	}
+}
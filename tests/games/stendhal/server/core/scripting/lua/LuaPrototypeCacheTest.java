@@ -0,0 +1,74 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.scripting.lua;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.luaj.vm2.LuaClosure;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.Prototype;
+
+/**
+ * Tests for LuaPrototypeCache
+ */
+public class LuaPrototypeCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static int run(Prototype prototype) {
+		// no standard globals, they would replace the string functions of the scripting system
+		return new LuaClosure(prototype, new LuaTable()).call().toint();
+	}
+
+	/**
+	 * Tests that cached scripts behave like freshly compiled ones
+	 *
+	 * @throws IOException in case of an input/output error
+	 */
+	@Test
+	public void testReadWrite() throws IOException {
+		LuaPrototypeCache cache = new LuaPrototypeCache(folder.getRoot().toPath());
+		byte[] source = "local a = 40\nreturn a + 2\n".getBytes(StandardCharsets.UTF_8);
+
+		Prototype compiled = cache.get("@test.lua", source);
+		assertEquals(42, run(compiled));
+		File entry = new File(folder.getRoot(), LuaPrototypeCache.hash("@test.lua", source) + ".luac");
+		assertTrue(entry.isFile());
+
+		Prototype cached = cache.get("@test.lua", source);
+		assertEquals(42, run(cached));
+		assertEquals("@test.lua", cached.source.tojstring());
+		assertEquals(compiled.linedefined, cached.linedefined);
+
+		// changed scripts get a new entry
+		byte[] changed = "return 7\n".getBytes(StandardCharsets.UTF_8);
+		assertEquals(7, run(cache.get("@test.lua", changed)));
+		assertEquals(2, folder.getRoot().list().length);
+
+		// broken entries are compiled again
+		Files.write(entry.toPath(), new byte[] {1, 2, 3});
+		assertEquals(42, run(cache.get("@test.lua", source)));
+
+		// without a directory nothing is written
+		assertEquals(42, run(new LuaPrototypeCache(null).get("@test.lua", source)));
+	}
+}
@@ -22,7 +22,13 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
@@ -30,6 +36,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import games.stendhal.common.KeyedSlotUtil;
+import games.stendhal.common.constants.Events;
 import games.stendhal.common.constants.Nature;
 import games.stendhal.server.core.engine.StendhalRPZone;
 import games.stendhal.server.entity.Entity;
@@ -38,7 +45,11 @@ import games.stendhal.server.entity.item.Item;
 import games.stendhal.server.entity.status.StatusType;
 import games.stendhal.server.maps.MockStendhalRPRuleProcessor;
 import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.game.DetailLevel;
+import marauroa.common.game.RPEvent;
 import marauroa.common.game.RPObject;
+import marauroa.common.net.InputSerializer;
+import marauroa.common.net.OutputSerializer;
 import marauroa.server.game.db.DatabaseFactory;
 import utilities.PlayerTestHelper;
 
@@ -517,4 +528,97 @@ public class PlayerTest {
 		int magicSkillXpLater = player.getMagicSkillXp(Nature.LIGHT);
 		assertThat(magicSkillXpLater, is(0));
 	}
+
+	/**
+	 * Tests that heals and buddy logins are sent as attributes to old
+	 * clients and as coalesced events to newer ones.
+	 */
+	@Test
+	public void testTransientEvents() {
+		player.setBaseHP(100);
+		player.setHP(50);
+		player.put("buddies", "bob", false);
+		player.put("buddies", "alice", false);
+
+		// old client
+		player.heal(10, true);
+		player.notifyOnline("bob");
+		assertThat(player.get("heal"), is("10"));
+		assertThat(player.get("online"), is("bob"));
+		assertTrue(player.events().isEmpty());
+		player.clearTransientAttributes();
+		assertFalse(player.has("heal"));
+		assertFalse(player.has("online"));
+
+		player.setTransientEvents(true);
+		player.heal(10, true);
+		player.heal(5, true);
+		player.notifyOnline("bob");
+		player.notifyOnline("alice");
+		assertFalse(player.has("heal"));
+		assertFalse(player.has("online"));
+		assertThat(player.events().size(), is(2));
+		assertThat(player.events().get(0).getInt("amount"), is(15));
+		assertThat(player.events().get(1).get("name"), is("bob,alice"));
+	}
+
+	/**
+	 * Tests that the transient events survive the serialization for the
+	 * client, which drops events without a definition.
+	 *
+	 * @throws IOException on serialization errors
+	 */
+	@Test
+	public void testTransientEventsSerialized() throws IOException {
+		player.setBaseHP(100);
+		player.setHP(50);
+		player.put("buddies", "bob", false);
+		player.put("buddies", "alice", false);
+		player.setTransientEvents(true);
+		player.heal(10, true);
+		player.notifyOnline("bob");
+		player.notifyOffline("alice");
+		assertThat(player.events().size(), is(3));
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		player.writeObject(new OutputSerializer(bytes), DetailLevel.PRIVATE);
+		final RPObject received = new RPObject();
+		received.readObject(new InputSerializer(new ByteArrayInputStream(bytes.toByteArray())));
+
+		final List<String> names = new ArrayList<String>();
+		for (final RPEvent event : received.events()) {
+			names.add(event.getName());
+		}
+		assertThat(names, is(Arrays.asList(Events.HEALED, Events.BUDDY_LOGIN, Events.BUDDY_LOGOUT)));
+		assertThat(received.events().get(0).getInt("amount"), is(10));
+		assertThat(received.events().get(1).get("name"), is("bob"));
+		assertThat(received.events().get(2).get("name"), is("alice"));
+	}
+
+	/**
+	 * Tests that a zone uses the transient events only while all players on
+	 * it understand them.
+	 */
+	@Test
+	public void testZoneSupportsTransientEvents() {
+		final StendhalRPZone zone = new StendhalRPZone("transient_zone");
+		assertTrue(zone.supportsTransientEvents());
+		final Player old = PlayerTestHelper.createPlayer("oldclient");
+		zone.add(old);
+		assertFalse(zone.supportsTransientEvents());
+		old.setTransientEvents(true);
+		assertTrue(zone.supportsTransientEvents());
+
+		final Player other = PlayerTestHelper.createPlayer("otherclient");
+		zone.add(other);
+		assertFalse(zone.supportsTransientEvents());
+		zone.remove(other);
+		assertTrue(zone.supportsTransientEvents());
+		// players on other zones do not count
+		other.setTransientEvents(true);
+		other.setTransientEvents(false);
+		assertTrue(zone.supportsTransientEvents());
+		old.setTransientEvents(false);
+		assertFalse(zone.supportsTransientEvents());
+	}
 }
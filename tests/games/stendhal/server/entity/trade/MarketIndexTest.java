@@ -0,0 +1,88 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.trade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for MarketIndex.
+ */
+public class MarketIndexTest {
+
+	private static class Entry implements Dateable {
+		private final String owner;
+		private long timestamp;
+
+		Entry(String owner, long timestamp) {
+			this.owner = owner;
+			this.timestamp = timestamp;
+		}
+
+		@Override
+		public long getTimestamp() {
+			return timestamp;
+		}
+	}
+
+	private static MarketIndex<Entry> createIndex() {
+		return new MarketIndex<Entry>(entry -> entry.owner, null);
+	}
+
+	/**
+	 * Tests that the age lookup uses the recorded timestamps until the index
+	 * is told about a change.
+	 */
+	@Test
+	public void testGetNotAfter() {
+		MarketIndex<Entry> index = createIndex();
+		Entry first = new Entry("bob", 100);
+		Entry second = new Entry("bob", 200);
+		Entry third = new Entry("george", 300);
+		index.add(third);
+		index.add(first);
+		index.add(second);
+		assertEquals(Arrays.asList(first, second), index.getNotAfter(250));
+
+		// a timestamp changed behind the index does not end the lookup early
+		first.timestamp = 400;
+		assertEquals(Arrays.asList(first, second), index.getNotAfter(250));
+
+		index.updateTimestamp(first);
+		assertEquals(Arrays.asList(second), index.getNotAfter(250));
+		assertEquals(Arrays.asList(second, third, first), index.getNotAfter(400));
+	}
+
+	/**
+	 * Tests invalidating and rebuilding the index.
+	 */
+	@Test
+	public void testInvalidate() {
+		MarketIndex<Entry> index = createIndex();
+		assertTrue(index.isValid());
+		Entry first = new Entry("bob", 100);
+		index.add(first);
+		index.invalidate();
+		assertFalse(index.isValid());
+
+		Entry second = new Entry("george", 50);
+		index.rebuild(Arrays.asList(first, second));
+		assertTrue(index.isValid());
+		assertEquals(Arrays.asList(second, first), index.getAll());
+		assertEquals(Arrays.asList(second), index.getByOwner("george"));
+	}
+}
@@ -19,7 +19,9 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.TreeSet;
 
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -776,4 +778,93 @@ public class MarketTest {
 
 		assertThat(george.getTradescore(), is(0));
 	}
+
+	/**
+	 * Tests that the lookups by player and by item follow changes of the market.
+	 */
+	@Test
+	public void testIndexedLookups() {
+		Player bob = PlayerTestHelper.createPlayer("bob");
+		Player george = PlayerTestHelper.createPlayer("george");
+		StendhalRPZone zone = new StendhalRPZone("shop");
+		Market market = Market.createShop();
+		zone.add(market);
+
+		Item axe = SingletonRepository.getEntityManager().getItem("axe");
+		bob.equipToInventoryOnly(axe);
+		Offer axeOffer = market.createOffer(bob, axe, 10, 1);
+		Item cheese = SingletonRepository.getEntityManager().getItem("cheese");
+		bob.equipToInventoryOnly(cheese);
+		Offer cheeseOffer = market.createOffer(bob, cheese, 10, 1);
+		Item carrot = SingletonRepository.getEntityManager().getItem("carrot");
+		george.equipToInventoryOnly(carrot);
+		Offer carrotOffer = market.createOffer(george, carrot, 5, 1);
+
+		assertThat(market.countOffersOfPlayer(bob), is(2));
+		assertEquals(Arrays.asList(axeOffer, cheeseOffer), market.getOffersOfPlayer(bob));
+		assertEquals(Arrays.asList(axeOffer, cheeseOffer, carrotOffer), market.getOffers());
+		assertEquals(Arrays.asList(carrotOffer), market.getOffersMatching("carr"));
+		assertEquals(new TreeSet<String>(Arrays.asList("axe", "carrot", "cheese")), market.getOfferedItemNames());
+
+		market.expireOffer(axeOffer);
+		assertThat(market.countOffersOfPlayer(bob), is(1));
+		assertEquals(Arrays.asList(axeOffer), market.getExpiredOffersOfPlayer(bob));
+		assertTrue(market.getOffersMatching("axe").isEmpty());
+
+		market.prolongOffer(axeOffer);
+		assertThat(market.countOffersOfPlayer(bob), is(2));
+		assertTrue(market.getExpiredOffersOfPlayer(bob).isEmpty());
+		assertEquals(Arrays.asList(axeOffer), market.getOffersMatching("axe"));
+
+		market.removeOffer(cheeseOffer, bob);
+		assertEquals(Arrays.asList(axeOffer), market.getOffersOfPlayer(bob));
+
+		// the indexes notice direct changes to the slots
+		market.getSlot(Market.OFFERS_SLOT_NAME).clear();
+		assertThat(market.countOffersOfPlayer(bob), is(0));
+		assertTrue(market.getOffers().isEmpty());
+	}
+
+	/**
+	 * Tests that the indexes follow offers and earnings added to or removed
+	 * from the slots directly, and timestamps changed without prolonging.
+	 */
+	@Test
+	public void testIndexFollowsSlots() {
+		Player bob = PlayerTestHelper.createPlayer("bob");
+		StendhalRPZone zone = new StendhalRPZone("shop");
+		Market market = Market.createShop();
+		zone.add(market);
+
+		Item axe = SingletonRepository.getEntityManager().getItem("axe");
+		bob.equipToInventoryOnly(axe);
+		Offer axeOffer = market.createOffer(bob, axe, 10, 1);
+		Item cheese = SingletonRepository.getEntityManager().getItem("cheese");
+		bob.equipToInventoryOnly(cheese);
+		Offer cheeseOffer = new Offer(cheese, 5, bob);
+
+		// one offer added and one removed, so the slot size does not change
+		market.getSlot(Market.OFFERS_SLOT_NAME).add(cheeseOffer);
+		market.getSlot(Market.OFFERS_SLOT_NAME).remove(axeOffer.getID());
+		assertEquals(Arrays.asList(cheeseOffer), market.getOffersOfPlayer(bob));
+		assertEquals(Arrays.asList(cheeseOffer), market.getOffersMatching("cheese"));
+		assertTrue(market.getOffersMatching("axe").isEmpty());
+
+		market.getSlot(Market.EXPIRED_OFFERS_SLOT_NAME).add(axeOffer);
+		assertEquals(Arrays.asList(axeOffer), market.getExpiredOffersOfPlayer(bob));
+
+		Earning earning = new Earning(10, "bob", false);
+		market.getSlot(Market.EARNINGS_SLOT_NAME).add(earning);
+
+		// timestamps changed directly move the entries in the age index
+		assertTrue(market.getOffersOlderThan(100).isEmpty());
+		cheeseOffer.put("timestamp", "0");
+		assertEquals(Arrays.asList(cheeseOffer), market.getOffersOlderThan(100));
+		cheeseOffer.updateTimestamp();
+		assertTrue(market.getOffersOlderThan(100).isEmpty());
+		earning.put("timestamp", 0);
+		assertEquals(Arrays.asList(earning), market.getEarningsOlderThan(100));
+		assertEquals(1, market.fetchEarnings(bob).size());
+		assertTrue(market.getEarningsOlderThan(100).isEmpty());
+	}
 }
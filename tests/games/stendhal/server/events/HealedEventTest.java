@@ -18,6 +18,8 @@ import static org.junit.Assert.assertThat;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import marauroa.common.game.RPObject;
+
 public class HealedEventTest {
 
 	/**
@@ -29,6 +31,18 @@ public class HealedEventTest {
         assertThat(Integer.valueOf(event.getInt("amount")), is(Integer.valueOf(1)));
     }
 
+	/**
+	 * Tests that the heals of a turn are summed up in one event.
+	 */
+	@Test
+	public void testAdd() {
+		RPObject object = new RPObject();
+		HealedEvent.add(object, 3);
+		HealedEvent.add(object, 4);
+		assertThat(object.events().size(), is(1));
+		assertThat(Integer.valueOf(object.events().get(0).getInt("amount")), is(Integer.valueOf(7)));
+	}
+
 	/**
 	 * Tests for healedEventTryBroken.
 	 */